@@ -0,0 +1,151 @@
+package fr.pturpin.lambdastring;
+
+import fr.pturpin.lambdastring.agent.LambdaToStringAgent;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Measure the startup time of a JVM creating lambdas, with and without the agent, and with and without an AppCDS
+ * archive of its classes.
+ * <p>
+ * Each invocation runs a new JVM whose main creates {@link LambdaCreatingMain some lambdas} and calls their
+ * <code>toString</code>. With CDS, the archive is dumped once per trial by a first run with
+ * <code>-XX:ArchiveClassesAtExit</code>, the agent being active if measured, so the archived lambda classes already
+ * have the injected <code>toString</code>. The agent is started with <code>cds=true</code> in all its runs.
+ * <p>
+ * Dynamic archives are only available since JDK 13, and archive the lambda classes since JDK 16. Before, the CDS runs
+ * only use the default archive of the JDK, as the runs without CDS.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CdsStartupComparisonBenchmark {
+
+    @Param({ "true", "false" })
+    public boolean withAgent;
+
+    @Param({ "true", "false" })
+    public boolean withCds;
+
+    private File workDirectory;
+    private File output;
+    private List<String> command;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        workDirectory = Files.createTempDirectory("lambda-cds").toFile();
+        output = new File(workDirectory, "output.log");
+
+        List<String> jvmArgs = new ArrayList<>();
+        if (withAgent) {
+            File agentJar = createAgentJar(new File(workDirectory, "agent.jar"));
+            jvmArgs.add("-javaagent:" + agentJar.getAbsolutePath() + "=cds=true");
+        }
+
+        if (withCds && isDynamicArchiveSupported()) {
+            if (withAgent) {
+                jvmArgs.add("-XX:+UnlockDiagnosticVMOptions");
+                jvmArgs.add("-XX:+AllowArchivingWithJavaAgent");
+            }
+            File archive = new File(workDirectory, "app.jsa");
+            List<String> dumpJvmArgs = new ArrayList<>(jvmArgs);
+            dumpJvmArgs.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+            run(createCommand(dumpJvmArgs));
+            jvmArgs.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+        }
+
+        command = createCommand(jvmArgs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = workDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDirectory.delete();
+    }
+
+    @Benchmark
+    public void startup() throws IOException, InterruptedException {
+        run(command);
+    }
+
+    private void run(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(output)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("The JVM exited with " + exitCode + ", see " + output);
+        }
+    }
+
+    private static List<String> createCommand(List<String> jvmArgs) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LambdaCreatingMain.class.getName());
+        return command;
+    }
+
+    /**
+     * Create a jar only declaring the agent, whose class is found in the class path of the benchmark.
+     */
+    private static File createAgentJar(File agentJar) throws IOException {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Premain-Class", LambdaToStringAgent.class.getName());
+        attributes.putValue("Can-Retransform-Classes", "true");
+        try (JarOutputStream ignored = new JarOutputStream(new FileOutputStream(agentJar), manifest)) {
+            return agentJar;
+        }
+    }
+
+    private static boolean isDynamicArchiveSupported() {
+        String version = System.getProperty("java.specification.version");
+        return !version.startsWith("1.") && Integer.parseInt(version) >= 13;
+    }
+
+    /**
+     * Main of the measured JVMs, creating lambdas of different classes and calling their <code>toString</code>.
+     */
+    public static final class LambdaCreatingMain {
+
+        public static void main(String[] args) {
+            IntSupplier[] lambdas = {
+                    () -> 0, () -> 1, () -> 2, () -> 3, () -> 4, () -> 5, () -> 6, () -> 7,
+                    () -> 8, () -> 9, () -> 10, () -> 11, () -> 12, () -> 13, () -> 14, () -> 15,
+                    () -> 16, () -> 17, () -> 18, () -> 19, () -> 20, () -> 21, () -> 22, () -> 23,
+                    () -> 24, () -> 25, () -> 26, () -> 27, () -> 28, () -> 29, () -> 30, () -> 31
+            };
+
+            int length = 0;
+            for (IntSupplier lambda : lambdas) {
+                length += lambda.toString().length() + lambda.getAsInt();
+            }
+            System.out.println(length);
+        }
+    }
+
+}
@@ -2,14 +2,14 @@ package fr.pturpin.lambdastring;
 
 import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
 import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
-import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
+import fr.pturpin.lambdastring.strategy.DefaultMetaInfoToStringStrategy;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.infra.Blackhole;
 
 import java.util.concurrent.TimeUnit;
 
 /**
- * Measure the time injecting the {@link Object#toString()} with the {@link DefaultToStringStrategy} set up.
+ * Measure the time injecting the {@link Object#toString()} with the {@link DefaultMetaInfoToStringStrategy} set up.
  */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.NANOSECONDS)
@@ -25,7 +25,7 @@ public class DefaultToStringStrategyComparisonBenchmark {
     @Setup
     public void setup() {
         if (isInjected) {
-            LambdaAgentLoader.loadAgent(DefaultToStringStrategy.class.getName());
+            LambdaAgentLoader.loadAgent(DefaultMetaInfoToStringStrategy.class.getName());
         }
     }
 
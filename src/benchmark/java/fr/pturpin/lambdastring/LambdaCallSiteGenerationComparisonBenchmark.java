@@ -2,7 +2,10 @@ package fr.pturpin.lambdastring;
 
 import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
 import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.ConstantToStringStrategy;
+import fr.pturpin.lambdastring.strategy.DefaultMetaInfoToStringStrategy;
 import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import fr.pturpin.lambdastring.transform.LambdaClassRegistry;
 import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
 import org.objectweb.asm.Type;
 import org.openjdk.jmh.annotations.*;
@@ -15,6 +18,13 @@ import java.util.concurrent.TimeUnit;
 /**
  * Measure the time difference between generating a lambda call site through the {@link LambdaMetafactory} with or
  * without agent.
+ * <p>
+ * With the agent, the <code>toString</code> may be lazy, memoized in the lambda class, or eagerly computed by the
+ * {@link DefaultMetaInfoToStringStrategy} while the lambda class is spun. The eager mode includes the spin-time work of the
+ * strategy, the declaration line of the lambda being already indexed after the first iteration.
+ * The compact mode only writes in the lambda class a short <code>toString</code> delegating to a shared helper.
+ * The registry mode is the lazy one registering each spun lambda class into the {@link LambdaClassRegistry}, so it
+ * includes the registration and the purge of the unloaded lambda classes.
  */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.NANOSECONDS)
@@ -24,13 +34,29 @@ import java.util.concurrent.TimeUnit;
 @Fork(1)
 public class LambdaCallSiteGenerationComparisonBenchmark {
 
-    @Param({ "true", "false" })
-    public boolean isInjected;
+    @Param({ "none", "lazy", "memoized", "eager", "compact", "registry" })
+    public String injection;
 
     @Setup
     public void setup() {
-        if (isInjected) {
-            LambdaAgentLoader.loadAgent(NoOpToStringStrategy.class.getName());
+        switch (injection) {
+            case "lazy":
+                LambdaAgentLoader.loadAgent(NoOpToStringStrategy.class.getName());
+                break;
+            case "memoized":
+                LambdaAgentLoader.loadAgent(NoOpConstantToStringStrategy.class.getName());
+                break;
+            case "eager":
+                LambdaAgentLoader.loadAgent(DefaultMetaInfoToStringStrategy.class.getName() + ",eager-tostring=true");
+                break;
+            case "compact":
+                LambdaAgentLoader.loadAgent(NoOpToStringStrategy.class.getName() + ",compact-tostring=true");
+                break;
+            case "registry":
+                LambdaAgentLoader.loadAgent(NoOpToStringStrategy.class.getName() + ",registry=true");
+                break;
+            default:
+                break;
         }
     }
 
@@ -112,4 +138,12 @@ public class LambdaCallSiteGenerationComparisonBenchmark {
         }
     }
 
+    @SuppressWarnings("unused")
+    private static final class NoOpConstantToStringStrategy implements ConstantToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return null;
+        }
+    }
+
 }
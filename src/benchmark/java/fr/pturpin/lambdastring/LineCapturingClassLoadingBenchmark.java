@@ -0,0 +1,77 @@
+package fr.pturpin.lambdastring;
+
+import fr.pturpin.lambdastring.transform.LineCapturingTransformer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.IllegalClassFormatException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the class loading overhead of the {@link LineCapturingTransformer}.
+ * <p>
+ * Each invocation defines a class from its bytes in a new class loader. When capturing, the transformer is called
+ * beforehand, as the JVM would do. Classes with and without lambdas are compared, as the latter are only scanned.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LineCapturingClassLoadingBenchmark {
+
+    @Param({ "true", "false" })
+    public boolean isCapturing;
+
+    @Param({ "true", "false" })
+    public boolean hasLambdas;
+
+    private LineCapturingTransformer transformer;
+    private String className;
+    private byte[] classBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        transformer = new LineCapturingTransformer();
+        Class<?> loadedClass = hasLambdas ? StaticLambdaHolder.class : LambdaTestHolder.class;
+        className = loadedClass.getName();
+        classBytes = readBytes(loadedClass);
+    }
+
+    @Benchmark
+    public Class<?> loadClass() throws IllegalClassFormatException {
+        ByteArrayClassLoader loader = new ByteArrayClassLoader();
+        if (isCapturing) {
+            transformer.transform(loader, className.replace('.', '/'), null, null, classBytes);
+        }
+        return loader.define(className, classBytes);
+    }
+
+    private static byte[] readBytes(Class<?> type) throws IOException {
+        String resourceName = type.getName().replace('.', '/') + ".class";
+        try (InputStream input = type.getClassLoader().getResourceAsStream(resourceName)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    private static final class ByteArrayClassLoader extends ClassLoader {
+
+        ByteArrayClassLoader() {
+            super(LineCapturingClassLoadingBenchmark.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package fr.pturpin.lambdastring;
+
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
+import org.objectweb.asm.Type;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the time difference between linking each lambda class to its own strategy instance or to a shared one.
+ * <p>
+ * Each invocation spins a new lambda class and calls its first <code>toString</code>, so the strategy linkage is
+ * included. With a shared strategy, only the first linkage instantiates the strategy by reflection. The heap held by
+ * the strategies, one per lambda class or a single one, is not measured here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StrategyLinkageComparisonBenchmark {
+
+    @Param({ "per-class", "shared" })
+    public String linkage;
+
+    private MethodHandles.Lookup caller;
+    private String invokedName;
+    private MethodType invokedType;
+    private MethodType samMethodType;
+    private MethodHandle implMethod;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        if ("shared".equals(linkage)) {
+            LambdaAgentLoader.loadAgent(ConstantToStringStrategy.class.getName() + ",shared-strategy=true");
+        } else {
+            LambdaAgentLoader.loadAgent(ConstantToStringStrategy.class.getName());
+        }
+
+        Method lambdaMethod = Lambda.class.getDeclaredMethods()[0];
+        caller = MethodHandles.lookup();
+        invokedName = lambdaMethod.getName();
+        invokedType = MethodType.methodType(lambdaMethod.getDeclaringClass());
+        samMethodType = MethodType.fromMethodDescriptorString(
+                Type.getMethodDescriptor(lambdaMethod),
+                StrategyLinkageComparisonBenchmark.class.getClassLoader());
+        implMethod = caller.unreflect(LambdaTestHolder.class.getDeclaredMethod("body"));
+    }
+
+    @Benchmark
+    public String firstToString() throws Throwable {
+        CallSite callSite = LambdaMetafactory.metafactory(
+                caller,
+                invokedName,
+                invokedType,
+                samMethodType,
+                implMethod,
+                samMethodType);
+        Lambda lambda = (Lambda) callSite.getTarget().invoke();
+        return lambda.toString();
+    }
+
+    @SuppressWarnings("unused")
+    private static final class ConstantToStringStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "toString";
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package fr.pturpin.lambdastring;
+
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the time difference of the lambda <code>toString</code> between a constant call site and a switchable one,
+ * switched on or off.
+ * <p>
+ * The injected strategy recomputes the {@link Object#toString()}, so the switched off <code>toString</code> does the
+ * same work and only the linkage is compared.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SwitchableToStringComparisonBenchmark {
+
+    @Param({ "constant", "switched-on", "switched-off" })
+    public String linkage;
+
+    @Setup
+    public void setup() {
+        String strategy = OriginalToStringStrategy.class.getName();
+        if ("switched-on".equals(linkage)) {
+            LambdaAgentLoader.loadAgent(strategy + ",switchable=true");
+        } else if ("switched-off".equals(linkage)) {
+            LambdaAgentLoader.loadAgent(strategy + ",switchable=true,enabled=false");
+        } else {
+            LambdaAgentLoader.loadAgent(strategy);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Data {
+
+        final Lambda lambda;
+        final Lambda methodRef;
+
+        public Data() {
+            this.lambda = () -> {};
+            this.methodRef = LambdaTestHolder::body;
+        }
+    }
+
+    @Benchmark
+    public void staticLambda(Data data, Blackhole bh) {
+        bh.consume(data.lambda.toString());
+    }
+
+    @Benchmark
+    public void staticMethodRef(Data data, Blackhole bh) {
+        bh.consume(data.methodRef.toString());
+    }
+
+    @SuppressWarnings("unused")
+    private static final class OriginalToStringStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return lambda.getClass().getName() + "@" + Integer.toHexString(lambda.hashCode());
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.asm.FetchingFirstLineNumbersClassVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the time spent building the {@link LineNumberIndex} of a class from its bytes, either with a complete ASM
+ * traversal or with the {@link LineNumberTableScanner}.
+ * <p>
+ * This is the cost paid by the first <code>toString</code> of a lambda declared in this class, excluding the reading of
+ * the class file. The indexed class is generated with the given number of methods, each having a body of some hundreds
+ * of instructions, as generated classes may have.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LineNumberIndexLoadingComparisonBenchmark {
+
+    private static final int INSTRUCTIONS_PER_METHOD = 200;
+
+    @Param({ "10", "1000" })
+    public int methodCount;
+
+    private byte[] classFile;
+
+    @Setup
+    public void setup() {
+        classFile = generateClass(methodCount);
+    }
+
+    @Benchmark
+    public LineNumberIndex asm() {
+        LineNumberIndex.Builder builder = new LineNumberIndex.Builder();
+        new ClassReader(classFile).accept(new FetchingFirstLineNumbersClassVisitor(builder::put),
+                ClassReader.SKIP_FRAMES);
+        return builder.build();
+    }
+
+    @Benchmark
+    public LineNumberIndex scanner() {
+        return LineNumberTableScanner.scan(ByteBuffer.wrap(classFile));
+    }
+
+    private static byte[] generateClass(int methodCount) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "generated/LargeClass", null, "java/lang/Object", null);
+        cw.visitSource("LargeClass.java", null);
+
+        int line = 1;
+        for (int m = 0; m < methodCount; m++) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC,
+                    "lambda$generated$" + m,
+                    "(I)I",
+                    null,
+                    null);
+            mv.visitCode();
+            for (int i = 0; i < INSTRUCTIONS_PER_METHOD; i++) {
+                if (i % 10 == 0) {
+                    Label label = new Label();
+                    mv.visitLabel(label);
+                    mv.visitLineNumber(line++, label);
+                }
+                mv.visitVarInsn(Opcodes.ILOAD, 0);
+                mv.visitLdcInsn(i * 31 + m);
+                mv.visitInsn(Opcodes.IADD);
+                mv.visitVarInsn(Opcodes.ISTORE, 0);
+            }
+            mv.visitVarInsn(Opcodes.ILOAD, 0);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+}
@@ -0,0 +1,360 @@
+package fr.pturpin.lambdastring.agent;
+
+import fr.pturpin.lambdastring.asm.InjectionOptions;
+import fr.pturpin.lambdastring.asm.ToStringMode;
+import fr.pturpin.lambdastring.strategy.DefaultMetaInfoToStringStrategy;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Parsed arguments of the {@link LambdaToStringAgent}.
+ * <p>
+ * Arguments are comma separated. The only token without any <code>=</code> is the class name of the strategy. Other
+ * tokens are <code>key=value</code> options:
+ * <ul>
+ * <li><code>eager-lines=true|false</code>: resolve the declaration lines of lambdas in background when they are
+ * spun (default to <code>false</code>)</li>
+ * <li><code>eager-lines-queue=&lt;n&gt;</code>: maximum number of declaring classes waiting for being resolved in
+ * background (default to <code>256</code>)</li>
+ * <li><code>capture-lines=true|false</code>: index the method lines of classes declaring lambdas while they are
+ * loaded, instead of reading their class file later (default to <code>false</code>)</li>
+ * <li><code>line-store=&lt;directory&gt;</code>: persist the line indexes of classes in jars into the given directory,
+ * so the next runs of the same jars do not read their class files again (disabled by default)</li>
+ * <li><code>prescan=true|false</code>: index the lines of the classpath classes in background when the agent starts
+ * (default to <code>false</code>)</li>
+ * <li><code>prescan-parallelism=&lt;n&gt;</code>: maximum number of threads scanning the classpath (default to the
+ * number of available processors)</li>
+ * <li><code>prescan-timeout=&lt;ms&gt;</code>: maximum wall-clock time of the classpath scan in milliseconds (default
+ * to <code>30000</code>)</li>
+ * <li><code>eager-tostring=true|false</code>: compute the <code>toString</code> of lambdas when they are spun, only
+ * valid for a {@link fr.pturpin.lambdastring.strategy.MetaInfoToStringStrategy} (default to <code>false</code>)</li>
+ * <li><code>compact-tostring=true|false</code>: inject a short <code>toString</code> delegating to a shared helper,
+ * exclusive with <code>eager-tostring</code> (default to <code>false</code>)</li>
+ * <li><code>shared-strategy=true|false</code>: link all lambda classes to a single strategy instance instead of one
+ * instance per lambda class (default to <code>false</code>)</li>
+ * <li><code>routes=&lt;prefix&gt;:&lt;strategy&gt;;...</code>: strategy classes of the lambdas by package of their
+ * target class, as parsed by {@link fr.pturpin.lambdastring.transform.StrategyRouter} (disabled by default)</li>
+ * <li><code>include=&lt;prefix&gt;;...</code>: packages of the lambda target classes to inject, as parsed by
+ * {@link fr.pturpin.lambdastring.transform.LambdaSpinFilter} (all packages by default)</li>
+ * <li><code>exclude=&lt;prefix&gt;;...</code>: packages of the lambda target classes to not inject, as parsed by
+ * {@link fr.pturpin.lambdastring.transform.LambdaSpinFilter} (none by default)</li>
+ * <li><code>switchable=true|false</code>: allow to turn on and off the injected <code>toString</code> at runtime
+ * through the {@link fr.pturpin.lambdastring.transform.LambdaToStringSwitch} (default to <code>false</code>)</li>
+ * <li><code>enabled=true|false</code>: initial state of the switch (default to <code>true</code>)</li>
+ * <li><code>cds=true|false</code>: link the lambda classes loaded from a CDS archive to the strategy of this agent,
+ * as done by the {@link fr.pturpin.lambdastring.transform.CdsLinkage} (default to <code>false</code>)</li>
+ * <li><code>registry=true|false</code>: register the spun lambda classes into the
+ * {@link fr.pturpin.lambdastring.transform.LambdaClassRegistry} (default to <code>false</code>)</li>
+ * <li><code>describe=&lt;file&gt;</code>: only write the description of the loaded lambda classes into the given file,
+ * as done by the {@link LambdaDescriber} (disabled by default)</li>
+ * <li><code>inventory=&lt;file&gt;</code>: only write the inventory of the live lambda classes into the given file, as
+ * done by the {@link fr.pturpin.lambdastring.transform.LambdaInventory} (disabled by default)</li>
+ * </ul>
+ */
+final class AgentArguments {
+
+    static final int DEFAULT_EAGER_LINES_QUEUE = 256;
+    static final int DEFAULT_PRESCAN_TIMEOUT = 30_000;
+
+    private final String strategyClassName;
+    private final Map<Option, Object> options;
+
+    private AgentArguments(String strategyClassName, Map<Option, Object> options) {
+        this.strategyClassName = strategyClassName;
+        this.options = options;
+    }
+
+    /**
+     * Parse the given agent arguments.
+     *
+     * @param agentArgs arguments of the agent, may be <code>null</code> or empty
+     * @return parsed arguments
+     * @throws IllegalArgumentException if an option is unknown or invalid, or if several strategies are given
+     */
+    static AgentArguments parse(String agentArgs) {
+        String strategyClassName = null;
+        Map<Option, Object> options = new EnumMap<>(Option.class);
+        for (Option option : Option.values()) {
+            options.put(option, option.defaultValue);
+        }
+
+        if (agentArgs != null) {
+            for (String token : agentArgs.split(",")) {
+                token = token.trim();
+                if (token.isEmpty()) {
+                    continue;
+                }
+
+                int separator = token.indexOf('=');
+                if (separator < 0) {
+                    if (strategyClassName != null) {
+                        throw new IllegalArgumentException("Several strategies are given: " + strategyClassName
+                                + " and " + token);
+                    }
+                    strategyClassName = token;
+                    continue;
+                }
+
+                String key = token.substring(0, separator).trim();
+                String value = token.substring(separator + 1).trim();
+                Option option = Option.of(key);
+                options.put(option, option.type.parse(key, value));
+            }
+        }
+
+        if (strategyClassName == null) {
+            strategyClassName = DefaultMetaInfoToStringStrategy.class.getName();
+        }
+        return new AgentArguments(strategyClassName, options);
+    }
+
+    String getStrategyClassName() {
+        return strategyClassName;
+    }
+
+    boolean isEagerLines() {
+        return (Boolean) options.get(Option.EAGER_LINES);
+    }
+
+    int getEagerLinesQueue() {
+        return (Integer) options.get(Option.EAGER_LINES_QUEUE);
+    }
+
+    boolean isCaptureLines() {
+        return (Boolean) options.get(Option.CAPTURE_LINES);
+    }
+
+    /**
+     * Returns the directory of the line store, or <code>null</code> if it's disabled.
+     */
+    String getLineStore() {
+        return (String) options.get(Option.LINE_STORE);
+    }
+
+    boolean isPrescan() {
+        return (Boolean) options.get(Option.PRESCAN);
+    }
+
+    int getPrescanParallelism() {
+        Integer parallelism = (Integer) options.get(Option.PRESCAN_PARALLELISM);
+        return parallelism == null ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    int getPrescanTimeout() {
+        return (Integer) options.get(Option.PRESCAN_TIMEOUT);
+    }
+
+    boolean isEagerToString() {
+        return (Boolean) options.get(Option.EAGER_TO_STRING);
+    }
+
+    boolean isCompactToString() {
+        return (Boolean) options.get(Option.COMPACT_TO_STRING);
+    }
+
+    boolean isSharedStrategy() {
+        return (Boolean) options.get(Option.SHARED_STRATEGY);
+    }
+
+    /**
+     * Returns the routes of the lambdas to other strategies, or <code>null</code> if there is none.
+     */
+    String getRoutes() {
+        return (String) options.get(Option.ROUTES);
+    }
+
+    /**
+     * Returns the packages of the lambdas to inject, or <code>null</code> if all of them are injected.
+     */
+    String getIncludes() {
+        return (String) options.get(Option.INCLUDES);
+    }
+
+    /**
+     * Returns the packages of the lambdas to not inject, or <code>null</code> if there is none.
+     */
+    String getExcludes() {
+        return (String) options.get(Option.EXCLUDES);
+    }
+
+    boolean isSwitchable() {
+        return (Boolean) options.get(Option.SWITCHABLE);
+    }
+
+    boolean isEnabled() {
+        return (Boolean) options.get(Option.ENABLED);
+    }
+
+    boolean isCds() {
+        return (Boolean) options.get(Option.CDS);
+    }
+
+    boolean isRegistry() {
+        return (Boolean) options.get(Option.REGISTRY);
+    }
+
+    /**
+     * Returns the file to describe the loaded lambdas into, or <code>null</code> if the agent should be installed.
+     */
+    String getDescribe() {
+        return (String) options.get(Option.DESCRIBE);
+    }
+
+    /**
+     * Returns the file to write the inventory of the lambdas into, or <code>null</code> if the agent should be
+     * installed.
+     */
+    String getInventory() {
+        return (String) options.get(Option.INVENTORY);
+    }
+
+    /**
+     * Returns the options of the code injected in the metafactory by these arguments.
+     *
+     * @param toStringMode how the injected <code>toString</code> calls the strategy, as checked against the strategy
+     * @return options of the injected code
+     */
+    InjectionOptions toInjectionOptions(ToStringMode toStringMode) {
+        return InjectionOptions.builder(strategyClassName)
+                .toStringMode(toStringMode)
+                .sharedStrategy(isSharedStrategy())
+                .notifySpinListener(isEagerLines())
+                .filterSpin(getIncludes() != null || getExcludes() != null)
+                .registerClasses(isRegistry())
+                .build();
+    }
+
+    /**
+     * Indicate if the agent started with these arguments may swap to the given ones without transforming any class
+     * again, so only by linking the lambdas again.
+     * <p>
+     * This is possible if the agent is switchable and only the strategy, the routes or the initial state differ.
+     *
+     * @param other arguments to swap to
+     * @return <code>true</code> if the swap is possible
+     */
+    boolean isSwappableTo(AgentArguments other) {
+        if (!isSwitchable()) {
+            return false;
+        }
+        EnumSet<Option> linkedOptions = EnumSet.of(Option.ROUTES, Option.ENABLED);
+        for (Option option : Option.values()) {
+            if (!linkedOptions.contains(option) && !Objects.equals(options.get(option), other.options.get(option))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AgentArguments that = (AgentArguments) o;
+        return strategyClassName.equals(that.strategyClassName) && options.equals(that.options);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(strategyClassName, options);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(strategyClassName);
+        options.forEach((option, value) -> {
+            if (value != null) {
+                builder.append(',').append(option.key).append('=').append(value);
+            }
+        });
+        return builder.toString();
+    }
+
+    private enum Option {
+        EAGER_LINES("eager-lines", Type.BOOLEAN, false),
+        EAGER_LINES_QUEUE("eager-lines-queue", Type.POSITIVE_INT, DEFAULT_EAGER_LINES_QUEUE),
+        CAPTURE_LINES("capture-lines", Type.BOOLEAN, false),
+        LINE_STORE("line-store", Type.STRING, null),
+        PRESCAN("prescan", Type.BOOLEAN, false),
+        PRESCAN_PARALLELISM("prescan-parallelism", Type.POSITIVE_INT, null),
+        PRESCAN_TIMEOUT("prescan-timeout", Type.POSITIVE_INT, DEFAULT_PRESCAN_TIMEOUT),
+        EAGER_TO_STRING("eager-tostring", Type.BOOLEAN, false),
+        COMPACT_TO_STRING("compact-tostring", Type.BOOLEAN, false),
+        SHARED_STRATEGY("shared-strategy", Type.BOOLEAN, false),
+        ROUTES("routes", Type.STRING, null),
+        INCLUDES("include", Type.STRING, null),
+        EXCLUDES("exclude", Type.STRING, null),
+        SWITCHABLE("switchable", Type.BOOLEAN, false),
+        ENABLED("enabled", Type.BOOLEAN, true),
+        CDS("cds", Type.BOOLEAN, false),
+        REGISTRY("registry", Type.BOOLEAN, false),
+        DESCRIBE("describe", Type.STRING, null),
+        INVENTORY("inventory", Type.STRING, null);
+
+        private final String key;
+        private final Type type;
+        private final Object defaultValue;
+
+        Option(String key, Type type, Object defaultValue) {
+            this.key = key;
+            this.type = type;
+            this.defaultValue = defaultValue;
+        }
+
+        static Option of(String key) {
+            for (Option option : values()) {
+                if (option.key.equals(key)) {
+                    return option;
+                }
+            }
+            throw new IllegalArgumentException("Unknown agent option: " + key);
+        }
+    }
+
+    private enum Type {
+        BOOLEAN {
+            @Override
+            Object parse(String key, String value) {
+                if ("true".equalsIgnoreCase(value)) {
+                    return true;
+                } else if ("false".equalsIgnoreCase(value)) {
+                    return false;
+                }
+                throw new IllegalArgumentException("Invalid boolean value for " + key + ": " + value);
+            }
+        },
+        POSITIVE_INT {
+            @Override
+            Object parse(String key, String value) {
+                int parsed;
+                try {
+                    parsed = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid integer value for " + key + ": " + value, e);
+                }
+                if (parsed <= 0) {
+                    throw new IllegalArgumentException("Expected a positive value for " + key + ": " + value);
+                }
+                return parsed;
+            }
+        },
+        STRING {
+            @Override
+            Object parse(String key, String value) {
+                if (value.isEmpty()) {
+                    throw new IllegalArgumentException("Expected a value for " + key);
+                }
+                return value;
+            }
+        };
+
+        abstract Object parse(String key, String value);
+    }
+}
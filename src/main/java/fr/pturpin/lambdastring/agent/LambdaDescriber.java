@@ -0,0 +1,135 @@
+package fr.pturpin.lambdastring.agent;
+
+import fr.pturpin.lambdastring.transform.LambdaSpinFilter;
+import fr.pturpin.lambdastring.transform.LambdaStrings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line describing the lambdas of a running JVM, including the ones created before any agent was attached.
+ * <p>
+ * The agent is attached to the JVM of the given process with the <code>describe=&lt;file&gt;</code> option. Instead of
+ * being installed, it then writes a line per loaded lambda class into the file, with the name of the class and its
+ * description by {@link LambdaStrings#describe(Class)}, or <code>?</code> if its lambda site could not be resolved. The
+ * file is finally printed by this command. So a lambda seen in a heap dump or a log may be identified without
+ * restarting the JVM.
+ * <p>
+ * Usage:<br>
+ * <code>java -cp lambda-string.jar fr.pturpin.lambdastring.agent.LambdaDescriber &lt;pid&gt;
+ * [&lt;prefix&gt;;...]</code>
+ * <p>
+ * The optional prefixes keep only the lambdas whose target class is in the given packages, as the
+ * <code>include</code> option parsed by {@link LambdaSpinFilter}. Before JDK 9, the Attach API is loaded from the
+ * <code>tools.jar</code> of the JDK running this command.
+ */
+public final class LambdaDescriber {
+
+    private static final String VIRTUAL_MACHINE_CLASS_NAME = "com.sun.tools.attach.VirtualMachine";
+    private static final String UNRESOLVED = "?";
+
+    private LambdaDescriber() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: " + LambdaDescriber.class.getName() + " <pid> [<prefix>;...]");
+            System.exit(1);
+            return;
+        }
+
+        Path output = null;
+        boolean failed = false;
+        try {
+            output = Files.createTempFile("lambda-string", ".txt");
+            String agentArgs = "describe=" + output + (args.length > 1 ? ",include=" + args[1] : "");
+            attach(args[0], getAgentJar(), agentArgs);
+            Files.copy(output, System.out);
+        } catch (IOException | ReflectiveOperationException | URISyntaxException | RuntimeException e) {
+            Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+            System.err.println("Could not describe the lambdas of " + args[0] + ": " + cause);
+            failed = true;
+        } finally {
+            if (output != null) {
+                try {
+                    Files.deleteIfExists(output);
+                } catch (IOException e) {
+                    // The temporary file is left
+                }
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Write the description of the loaded lambda classes into the given file.
+     *
+     * @param inst   instrumentation of the agent
+     * @param output file to write into
+     * @param filter filter of the described lambdas by their target class, or <code>null</code> to describe all of
+     *               them
+     * @throws IOException if the file could not be written
+     */
+    static void describeLoadedLambdas(Instrumentation inst, Path output, LambdaSpinFilter filter) throws IOException {
+        LambdaStrings.install(inst);
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (Class<?> loadedClass : inst.getAllLoadedClasses()) {
+                // The name of lambda classes starts with the name of their target class
+                if (LambdaStrings.isLambdaClass(loadedClass)
+                        && (filter == null || filter.isInjected(loadedClass.getName()))) {
+                    writer.write(loadedClass.getName());
+                    writer.write('\t');
+                    writer.write(LambdaStrings.describe(loadedClass).orElse(UNRESOLVED));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    private static void attach(String pid, Path agentJar, String agentArgs) throws ReflectiveOperationException,
+            IOException {
+        Class<?> virtualMachineClass = loadVirtualMachineClass();
+        Object virtualMachine = virtualMachineClass.getMethod("attach", String.class).invoke(null, pid);
+        try {
+            virtualMachineClass.getMethod("loadAgent", String.class, String.class)
+                    .invoke(virtualMachine, agentJar.toString(), agentArgs);
+        } finally {
+            virtualMachineClass.getMethod("detach").invoke(virtualMachine);
+        }
+    }
+
+    private static Class<?> loadVirtualMachineClass() throws ClassNotFoundException, IOException {
+        try {
+            return Class.forName(VIRTUAL_MACHINE_CLASS_NAME);
+        } catch (ClassNotFoundException e) {
+            // Before JDK 9, the Attach API is in the JDK tools.jar, next to the JRE
+            Path toolsJar = Paths.get(System.getProperty("java.home"), "..", "lib", "tools.jar");
+            if (!Files.isRegularFile(toolsJar)) {
+                throw e;
+            }
+            URLClassLoader classLoader = new URLClassLoader(new URL[] { toolsJar.toUri().toURL() }, null);
+            return Class.forName(VIRTUAL_MACHINE_CLASS_NAME, true, classLoader);
+        }
+    }
+
+    private static Path getAgentJar() throws URISyntaxException {
+        Path location = Paths.get(LambdaDescriber.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        if (!Files.isRegularFile(location)) {
+            throw new IllegalStateException("This command should be run from the agent jar, but was run from "
+                    + location);
+        }
+        return location;
+    }
+
+}
@@ -1,12 +1,33 @@
 package fr.pturpin.lambdastring.agent;
 
+import fr.pturpin.lambdastring.asm.InjectionOptions;
+import fr.pturpin.lambdastring.asm.ToStringMode;
+import fr.pturpin.lambdastring.strategy.ConstantToStringStrategy;
+import fr.pturpin.lambdastring.strategy.DefaultMetaInfoToStringStrategy;
 import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
 import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import fr.pturpin.lambdastring.strategy.MetaInfoToStringStrategy;
+import fr.pturpin.lambdastring.transform.CdsLinkage;
+import fr.pturpin.lambdastring.transform.ClasspathPrescanner;
+import fr.pturpin.lambdastring.transform.EagerLineResolver;
+import fr.pturpin.lambdastring.transform.EagerToStringFactory;
 import fr.pturpin.lambdastring.transform.InnerClassLambdaMetafactoryTransformer;
+import fr.pturpin.lambdastring.transform.LambdaClassRegistry;
+import fr.pturpin.lambdastring.transform.LambdaInventory;
+import fr.pturpin.lambdastring.transform.LambdaSpinFilter;
+import fr.pturpin.lambdastring.transform.LambdaStrings;
 import fr.pturpin.lambdastring.transform.LambdaToStringLinker;
 import fr.pturpin.lambdastring.transform.LambdaToStringLinkerException;
+import fr.pturpin.lambdastring.transform.LambdaToStringSwitch;
+import fr.pturpin.lambdastring.transform.LineCapturingTransformer;
+import fr.pturpin.lambdastring.transform.LineIndexStore;
+import fr.pturpin.lambdastring.transform.SpinHooks;
+import fr.pturpin.lambdastring.transform.StrategyRouter;
 
+import java.io.IOException;
 import java.lang.instrument.Instrumentation;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -18,13 +39,68 @@ import java.util.concurrent.atomic.AtomicReference;
  * to {@link java.lang.reflect.Constructor#setAccessible(boolean) set it accessible} but may failed because of a
  * {@link SecurityManager}.
  * <p>
- * If no class parameter is given, this agent use the {@link DefaultToStringStrategy} strategy.
+ * If no class parameter is given, this agent use the {@link DefaultMetaInfoToStringStrategy} strategy, describing the
+ * lambdas as the {@link DefaultToStringStrategy} once per lambda class.
+ * <p>
+ * If the strategy is a {@link ConstantToStringStrategy}, the first <code>toString</code> of each lambda class is kept
+ * and returned by the next calls without calling the strategy again.
+ * <p>
+ * Options may follow the class name as comma separated <code>key=value</code> pairs:
+ * <ul>
+ * <li><code>eager-lines=true</code>: resolve the declaration lines of lambdas on a background thread as soon as they
+ * are spun, instead of on their first <code>toString</code></li>
+ * <li><code>eager-lines-queue=&lt;n&gt;</code>: bound of the background queue, further classes are dropped and
+ * resolved lazily (default to 256)</li>
+ * <li><code>capture-lines=true</code>: index the method lines of classes declaring lambdas while they are loaded, so
+ * their class file is never read again. Classes loaded before the agent are still read lazily.</li>
+ * <li><code>line-store=&lt;directory&gt;</code>: persist the line indexes of classes in jars into the given directory,
+ * shareable by all JVMs running the same jars, so the next runs do not read their class files again</li>
+ * <li><code>prescan=true</code>: index the lines of all the classpath classes declaring lambdas in background, with at
+ * most <code>prescan-parallelism=&lt;n&gt;</code> threads (default to the number of processors) and during at most
+ * <code>prescan-timeout=&lt;ms&gt;</code> milliseconds (default to 30000)</li>
+ * <li><code>eager-tostring=true</code>: call the strategy once per lambda class while it is spun, so the injected
+ * <code>toString</code> returns a constant. The strategy should be a {@link MetaInfoToStringStrategy}, otherwise an
+ * {@link IllegalArgumentException} is thrown while loading this agent.</li>
+ * <li><code>compact-tostring=true</code>: inject in each lambda class a short <code>toString</code> passing the lambda
+ * and its meta information to a helper shared by all the lambda classes, so spinning them is cheaper and they take
+ * less metaspace. This is exclusive with <code>eager-tostring=true</code>.</li>
+ * <li><code>shared-strategy=true</code>: instantiate the strategy once and link all lambda classes to this instance,
+ * instead of instantiating one strategy per lambda class. The strategy is then called concurrently by all lambdas
+ * and should be thread safe.</li>
+ * <li><code>routes=&lt;prefix&gt;:&lt;strategy&gt;;...</code>: link the lambdas whose target class is in the given
+ * packages to the given strategy classes instead of the main one, see {@link StrategyRouter}. The routed strategies
+ * are only memoized if all of them are constant, and can not be combined with <code>eager-tostring=true</code>.</li>
+ * <li><code>include=&lt;prefix&gt;;...</code> and <code>exclude=&lt;prefix&gt;;...</code>: inject only the lambdas
+ * whose target class is in the included packages but not in the excluded ones, see {@link LambdaSpinFilter}. The
+ * other lambda classes are spun as if there were no agent, so they keep their default <code>toString</code>.</li>
+ * <li><code>switchable=true</code>: allow to turn on and off the injected <code>toString</code> at runtime through
+ * the {@link LambdaToStringSwitch}, starting in the state given by <code>enabled=true|false</code>. The
+ * <code>toString</code> of constant strategies is then not memoized, and this can not be combined with
+ * <code>eager-tostring=true</code>.</li>
+ * <li><code>cds=true</code>: keep the lambda classes archived by AppCDS with the injected <code>toString</code>, see
+ * {@link CdsLinkage}. The archive should be dumped and used with this option, so the archived lambdas are linked to
+ * the strategy of the running agent instead of the dumping one. The <code>toString</code> of constant strategies is
+ * then not memoized, and this can not be combined with <code>eager-tostring=true</code>, whose strings would be
+ * archived.</li>
+ * <li><code>registry=true</code>: register each spun lambda class, injected or not, into the
+ * {@link LambdaClassRegistry}, which may then be queried by the declaring class or the package of the lambda
+ * implementations.</li>
+ * </ul>
+ * For instance: <code>-javaagent:lambda-string.jar=my.custom.ToStringStrategy,eager-lines=true</code>.
  * <p>
  * If an error occurs because the given strategy class name is invalid, a {@link RuntimeException} containing the
  * {@link LambdaToStringLinkerException} cause is thrown while loading this agent.
  * <p>
  * If this agent is dynamically set up during runtime, already created lambdas are not modified and keep their
- * default <code>toString</code>.
+ * default <code>toString</code>. They may still be described by {@link LambdaStrings#describe(Object)}, or from
+ * outside the JVM by the {@link LambdaDescriber} command, which attaches this agent with the
+ * <code>describe=&lt;file&gt;</code> option: instead of being installed, the agent then only writes the description
+ * of the loaded lambda classes, filtered by the <code>include</code> and <code>exclude</code> options, into the given
+ * file.
+ * <p>
+ * In the same way, attaching this agent with the <code>inventory=&lt;file&gt;</code> option only writes the
+ * {@link LambdaInventory inventory} of the live lambda classes into the given file. If this agent was started with
+ * <code>registry=true</code>, the inventory lists all the registered lambda classes with the size of their class file.
  * <p>
  * Lambda in classes loaded during bootstrap class loader are not supported except if the given
  * {@link LambdaToStringStrategy} class is included in the bootstrap classpath via
@@ -33,35 +109,96 @@ import java.util.concurrent.atomic.AtomicReference;
  * <code>toString</code> from bootstrap. This explicit implementation is:<br>
  * <code>return getClass().getName() + "@" Integer.toHexString(hashCode());</code>
  * <p>
- * This agent is runnable only once in the same JVM. A {@link IllegalStateException} is thrown in case of multiple run.
+ * This agent is runnable only once in the same JVM. A {@link IllegalStateException} is thrown in case of multiple run,
+ * except if the agent is switchable and only the strategy, the <code>routes</code> or the <code>enabled</code> options
+ * change. Then the lambdas are linked again to the new strategy on their next <code>toString</code>, see
+ * {@link LambdaToStringSwitch#swapStrategy(String, boolean)}. So a strategy may be swapped without restarting the JVM
+ * by attaching this agent again.
  */
 public final class LambdaToStringAgent {
 
-    private static final AtomicReference<String> initializedArgs = new AtomicReference<>(null);
+    private static final AtomicReference<AgentArguments> initializedArgs = new AtomicReference<>(null);
 
     public static void agentmain(String agentArgs, Instrumentation inst) {
         premain(agentArgs, inst);
     }
 
     public static void premain(String agentArgs, Instrumentation inst) {
-        if (agentArgs == null || agentArgs.isEmpty()) {
-            agentArgs = DefaultToStringStrategy.class.getName();
+        AgentArguments arguments = AgentArguments.parse(agentArgs);
+        if (arguments.getDescribe() != null) {
+            describe(arguments, inst);
+            return;
+        }
+        if (arguments.getInventory() != null) {
+            writeInventory(arguments, inst);
+            return;
         }
 
+        LambdaToStringStrategy strategy;
         try {
             // Check validity
-            LambdaToStringLinker.createStrategy(agentArgs);
+            strategy = LambdaToStringLinker.createStrategy(arguments.getStrategyClassName());
         } catch (LambdaToStringLinkerException e) {
             throw new RuntimeException(e);
         }
 
-        if (!initializedArgs.compareAndSet(null, agentArgs)) {
-            String args = initializedArgs.get();
-            if (args.equals(agentArgs)) {
-                // Already initialized with same args
-                return;
+        StrategyRouter router = null;
+        boolean isConstant = strategy instanceof ConstantToStringStrategy;
+        if (arguments.getRoutes() != null) {
+            router = StrategyRouter.parse(arguments.getRoutes());
+            for (String routedClassName : router.getStrategyClassNames()) {
+                try {
+                    // Check validity
+                    isConstant &= LambdaToStringLinker.createStrategy(routedClassName)
+                            instanceof ConstantToStringStrategy;
+                } catch (LambdaToStringLinkerException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        LambdaSpinFilter filter = null;
+        if (arguments.getIncludes() != null || arguments.getExcludes() != null) {
+            filter = LambdaSpinFilter.parse(arguments.getIncludes(), arguments.getExcludes());
+        }
+
+        if (!arguments.isEnabled() && !arguments.isSwitchable()) {
+            throw new IllegalArgumentException("Only a switchable toString may start disabled");
+        }
+
+        ToStringMode toStringMode;
+        if (arguments.isEagerToString() && arguments.isCompactToString()) {
+            throw new IllegalArgumentException("Eager and compact toString are exclusive");
+        } else if (arguments.isCompactToString()) {
+            toStringMode = ToStringMode.COMPACT;
+        } else if (arguments.isEagerToString()) {
+            if (router != null) {
+                throw new IllegalArgumentException("Eager toString does not support strategy routes");
             }
-            throw new IllegalStateException("This agent is runnable only once but was already ran with " + args + " as argument.");
+            if (arguments.isSwitchable()) {
+                throw new IllegalArgumentException("Eager toString is not switchable");
+            }
+            if (arguments.isCds()) {
+                throw new IllegalArgumentException("Eager toString can not be archived by CDS");
+            }
+            if (!(strategy instanceof MetaInfoToStringStrategy)) {
+                throw new IllegalArgumentException("Eager toString requires a "
+                        + MetaInfoToStringStrategy.class.getName() + " strategy but got "
+                        + arguments.getStrategyClassName());
+            }
+            toStringMode = ToStringMode.EAGER;
+        } else if (isConstant && !arguments.isSwitchable() && !arguments.isCds()) {
+            // All routed strategies should be constant, as the memoization is written in all lambda classes.
+            // Not if switchable, as the memoized toString would still be returned when switched off.
+            // Not with CDS, as the archived lambda classes may be linked to a strategy which is not constant.
+            toStringMode = ToStringMode.MEMOIZED;
+        } else {
+            toStringMode = ToStringMode.LAZY;
+        }
+
+        if (!initializedArgs.compareAndSet(null, arguments)) {
+            swap(arguments, router);
+            return;
         }
 
         Class<?> metaFactoryClass;
@@ -72,9 +209,60 @@ public final class LambdaToStringAgent {
             throw new IllegalStateException("Lambda meta factory not found", e);
         }
 
-        inst.addTransformer(new InnerClassLambdaMetafactoryTransformer(agentArgs), true);
+        InjectionOptions options = arguments.toInjectionOptions(toStringMode);
+        if (options.isUsingSpinHooks()) {
+            // Installed before the metafactory is transformed, as the patched metafactory always calls them
+            SpinHooks.install(inst);
+        }
+        if (arguments.getLineStore() != null) {
+            try {
+                LineIndexStore.install(Paths.get(arguments.getLineStore()));
+            } catch (IOException | InvalidPathException e) {
+                throw new IllegalArgumentException("Invalid line store directory " + arguments.getLineStore(), e);
+            }
+        }
+        if (arguments.isCaptureLines()) {
+            inst.addTransformer(new LineCapturingTransformer());
+        }
+        if (arguments.isPrescan()) {
+            ClasspathPrescanner.start(arguments.getPrescanParallelism(), arguments.getPrescanTimeout());
+        }
+        if (arguments.isEagerLines()) {
+            EagerLineResolver.install(arguments.getEagerLinesQueue());
+        }
+        if (router != null) {
+            StrategyRouter.install(router);
+        }
+        if (arguments.isSwitchable()) {
+            LambdaToStringSwitch.install(arguments.isEnabled());
+        }
+        if (arguments.isCds()) {
+            CdsLinkage.install(arguments.getStrategyClassName());
+        }
+        if (filter != null) {
+            // Installed before the metafactory is transformed, so the first spun lambdas are filtered too
+            LambdaSpinFilter.install(filter);
+        }
+        if (arguments.isRegistry()) {
+            // Installed before the metafactory is transformed, so the first spun lambdas are registered too
+            LambdaClassRegistry.install();
+        }
+        if (toStringMode == ToStringMode.EAGER) {
+            // Installed before the metafactory is transformed, so the first spun lambdas are computed eagerly too
+            EagerToStringFactory.install((MetaInfoToStringStrategy) strategy);
+        }
+
+        InnerClassLambdaMetafactoryTransformer transformer = new InnerClassLambdaMetafactoryTransformer(options);
+        inst.addTransformer(transformer, true);
         try {
             inst.retransformClasses(metaFactoryClass);
+            if (transformer.getUnsupportedReason() != null) {
+                // The lambdas keep their original toString, there is no reason to stop the application.
+                // The unsupported JDKs are listed in the README.
+                System.err.println("Lambda toString not injected on Java " + System.getProperty("java.version")
+                        + ": " + transformer.getUnsupportedReason()
+                        + " (see the supported JVMs of lambda-string)");
+            }
             // Impossible to retransform the already created lambda classes.
             // On JDK8: there is a bug in HotSpot implementation: https://bugs.openjdk.java.net/browse/JDK-8145964
             // On JDK9: anonymous classes (and so lambda classes) are not Instrumentation.isModifiableClass
@@ -82,4 +270,41 @@ public final class LambdaToStringAgent {
             e.printStackTrace();
         }
     }
+
+    private static void describe(AgentArguments arguments, Instrumentation inst) {
+        LambdaSpinFilter filter = null;
+        if (arguments.getIncludes() != null || arguments.getExcludes() != null) {
+            filter = LambdaSpinFilter.parse(arguments.getIncludes(), arguments.getExcludes());
+        }
+        try {
+            LambdaDescriber.describeLoadedLambdas(inst, Paths.get(arguments.getDescribe()), filter);
+        } catch (IOException | InvalidPathException e) {
+            throw new IllegalArgumentException("Could not describe the lambdas into " + arguments.getDescribe(), e);
+        }
+    }
+
+    private static void writeInventory(AgentArguments arguments, Instrumentation inst) {
+        try {
+            LambdaInventory.write(Paths.get(arguments.getInventory()), inst);
+        } catch (IOException | InvalidPathException e) {
+            throw new IllegalArgumentException(
+                    "Could not write the lambda inventory into " + arguments.getInventory(), e);
+        }
+    }
+
+    private static synchronized void swap(AgentArguments arguments, StrategyRouter router) {
+        AgentArguments args = initializedArgs.get();
+        if (args.equals(arguments)) {
+            // Already initialized with same args
+            return;
+        }
+        if (!args.isSwappableTo(arguments)) {
+            throw new IllegalStateException("This agent is runnable only once but was already ran with " + args
+                    + " as argument. Only the strategy, routes and enabled options of a switchable agent may change.");
+        }
+
+        StrategyRouter.install(router == null ? StrategyRouter.parse("") : router);
+        LambdaToStringSwitch.swapStrategy(arguments.getStrategyClassName(), arguments.isEnabled());
+        initializedArgs.set(arguments);
+    }
 }
@@ -40,7 +40,7 @@ public final class FetchingFirstLineNumberOfIndyClassVisitor extends ClassVisito
      * @throws NullPointerException if any argument is <code>null</code>
      */
     public FetchingFirstLineNumberOfIndyClassVisitor(String methodName, String methodDesc, IntConsumer onFirstLine) {
-        super(Opcodes.ASM6);
+        super(Opcodes.ASM9);
         this.methodName = requireNonNull(methodName);
         this.methodDesc = requireNonNull(methodDesc);
         this.onFirstLine = requireNonNull(onFirstLine);
@@ -33,7 +33,7 @@ public final class FetchingFirstLineNumberOfIndyMethodVisitor extends MethodVisi
      * @throws NullPointerException if the consumer is <code>null</code>
      */
     public FetchingFirstLineNumberOfIndyMethodVisitor(IntConsumer onFirstLine) {
-        super(Opcodes.ASM6);
+        super(Opcodes.ASM9);
         this.onFirstLine = requireNonNull(onFirstLine);
     }
 
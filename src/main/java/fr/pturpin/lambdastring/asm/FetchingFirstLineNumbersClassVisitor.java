@@ -0,0 +1,59 @@
+package fr.pturpin.lambdastring.asm;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link ClassVisitor} fetching the first <code>LINENUMBER</code> used in every method of the visited class.
+ *
+ * @see FetchingFirstLineNumberOfIndyMethodVisitor
+ */
+public final class FetchingFirstLineNumbersClassVisitor extends ClassVisitor {
+
+    private final MethodLineConsumer onFirstLine;
+
+    /**
+     * Create new {@link ClassVisitor} fetching the first <code>LINENUMBER</code> used in every method of the visited
+     * class.
+     * <p>
+     * Methods may have any access {@link java.lang.reflect.Modifier}, including special ones as
+     * {@link java.lang.reflect.Modifier#SYNTHETIC} or {@link java.lang.reflect.Modifier#BRIDGE}.
+     * <p>
+     * It's guarantee that the consumer will only be triggered at maximum once per method.
+     * <p>
+     * Note that a class may be compiled without debug information, and so does not included any
+     * <code>LINENUMBER</code> opcodes. In this case, the consumer will never be triggered.
+     *
+     * @param onFirstLine consumer to call when finding the first <code>LINENUMBER</code> of a method
+     * @throws NullPointerException if the consumer is <code>null</code>
+     */
+    public FetchingFirstLineNumbersClassVisitor(MethodLineConsumer onFirstLine) {
+        super(Opcodes.ASM9);
+        this.onFirstLine = requireNonNull(onFirstLine);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return new FetchingFirstLineNumberOfIndyMethodVisitor(line -> onFirstLine.accept(name, desc, line));
+    }
+
+    /**
+     * Consumer of the first line of a method.
+     */
+    @FunctionalInterface
+    public interface MethodLineConsumer {
+
+        /**
+         * Consume the first line of a method.
+         *
+         * @param methodName name of the method
+         * @param methodDesc descriptor of the method
+         * @param line       first line of the method
+         */
+        void accept(String methodName, String methodDesc, int line);
+
+    }
+}
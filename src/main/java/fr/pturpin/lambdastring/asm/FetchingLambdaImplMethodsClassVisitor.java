@@ -0,0 +1,68 @@
+package fr.pturpin.lambdastring.asm;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link ClassVisitor} fetching the implementation methods of every lambda and method reference created in the visited
+ * class.
+ * <p>
+ * Lambdas and method references are the <code>invokedynamic</code> instructions bootstrapped by the
+ * {@link java.lang.invoke.LambdaMetafactory}. Their implementation method is the second argument of the bootstrap
+ * method.
+ */
+public final class FetchingLambdaImplMethodsClassVisitor extends ClassVisitor {
+
+    private static final String LAMBDA_META_FACTORY_NAME = "java/lang/invoke/LambdaMetafactory";
+
+    private final ImplMethodConsumer onImplMethod;
+
+    /**
+     * Create new {@link ClassVisitor} fetching the implementation methods of lambdas.
+     * <p>
+     * The consumer is called once per lambda, so a same implementation method may be consumed several times.
+     *
+     * @param onImplMethod consumer to call when finding a lambda
+     * @throws NullPointerException if the consumer is <code>null</code>
+     */
+    public FetchingLambdaImplMethodsClassVisitor(ImplMethodConsumer onImplMethod) {
+        super(Opcodes.ASM9);
+        this.onImplMethod = requireNonNull(onImplMethod);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return new MethodVisitor(Opcodes.ASM9) {
+            @Override
+            public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+                if (LAMBDA_META_FACTORY_NAME.equals(bsm.getOwner())
+                        && bsmArgs.length > 1
+                        && bsmArgs[1] instanceof Handle) {
+                    Handle implMethod = (Handle) bsmArgs[1];
+                    onImplMethod.accept(implMethod.getOwner(), implMethod.getName(), implMethod.getDesc());
+                }
+            }
+        };
+    }
+
+    /**
+     * Consumer of the implementation method of a lambda.
+     */
+    @FunctionalInterface
+    public interface ImplMethodConsumer {
+
+        /**
+         * Consume the implementation method of a lambda.
+         *
+         * @param owner internal name of the class declaring the method
+         * @param name  name of the method
+         * @param desc  descriptor of the method
+         */
+        void accept(String owner, String name, String desc);
+
+    }
+}
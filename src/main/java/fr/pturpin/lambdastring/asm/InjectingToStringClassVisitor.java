@@ -8,13 +8,20 @@ import static java.util.Objects.requireNonNull;
 
 public final class InjectingToStringClassVisitor extends ClassVisitor {
 
-    private static final String SPIN_INNER_CLASS_METHOD = "spinInnerClass";
-
-    private final String toStringStrategyClassName;
-
-    public InjectingToStringClassVisitor(ClassVisitor cw, String toStringStrategyClassName) {
-        super(Opcodes.ASM5, cw);
-        this.toStringStrategyClassName = requireNonNull(toStringStrategyClassName);
+    private final InjectionOptions options;
+    private final MetafactoryShape shape;
+
+    /**
+     * Create a new visitor injecting the <code>toString</code> in the generator of the given metafactory shape.
+     *
+     * @param cw      the delegate class visitor
+     * @param options options of the injected code
+     * @param shape   shape of the visited metafactory
+     */
+    public InjectingToStringClassVisitor(ClassVisitor cw, InjectionOptions options, MetafactoryShape shape) {
+        super(Opcodes.ASM9, cw);
+        this.options = requireNonNull(options);
+        this.shape = requireNonNull(shape);
     }
 
     @Override
@@ -30,8 +37,21 @@ public final class InjectingToStringClassVisitor extends ClassVisitor {
                 signature,
                 exceptions);
 
-        if (SPIN_INNER_CLASS_METHOD.equals(name)) {
-            return new InjectingToStringMethodVisitor(mv, toStringStrategyClassName);
+        if (shape.isGenerator(name, desc)) {
+            MethodVisitor injecting = new InjectingToStringMethodVisitor(mv,
+                    options.getToStringStrategyClassName(),
+                    options.getToStringMode(),
+                    options.isSharedStrategy(),
+                    options.isFilterSpin(),
+                    shape.getFirstFreeLocal(),
+                    shape.isFramed());
+            if (options.isRegisterClasses()) {
+                injecting = new RegisteringSpunClassMethodVisitor(injecting);
+            }
+            if (options.isNotifySpinListener()) {
+                return new NotifyingSpinListenerMethodVisitor(injecting);
+            }
+            return injecting;
         }
         return mv;
     }
@@ -1,9 +1,9 @@
 package fr.pturpin.lambdastring.asm;
 
 import fr.pturpin.lambdastring.strategy.LambdaToStringException;
-import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
 import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
 import fr.pturpin.lambdastring.transform.LambdaToStringLinker;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -11,6 +11,7 @@ import org.objectweb.asm.Type;
 import java.lang.invoke.CallSite;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -19,6 +20,7 @@ import static java.util.Objects.requireNonNull;
 public class InjectingToStringMethodVisitor extends MethodVisitor {
 
     private static final String INNER_CLASS_LAMBDA_METAFACTORY_NAME = "java/lang/invoke/InnerClassLambdaMetafactory";
+    private static final String SPIN_HOOKS_NAME = "fr/pturpin/lambdastring/boot/LambdaSpinHooks";
 
     private static final String CLASS_WRITER_NAME = "jdk/internal/org/objectweb/asm/ClassWriter";
     private static final String CLASS_WRITER_DESC = "Ljdk/internal/org/objectweb/asm/ClassWriter;";
@@ -32,28 +34,115 @@ public class InjectingToStringMethodVisitor extends MethodVisitor {
             Type.getType(String.class),
             Type.getType(String[].class));
 
+    private static final String CLASS_WRITER_VISIT_FIELD_DESC = Type.getMethodDescriptor(
+            Type.getType("Ljdk/internal/org/objectweb/asm/FieldVisitor;"),
+            Type.getType(int.class),
+            Type.getType(String.class),
+            Type.getType(String.class),
+            Type.getType(String.class),
+            Type.getType(Object.class));
+
     private static final String TO_STRING_DESC = Type.getMethodDescriptor(Type.getType(String.class));
-    private static final String LAMBDA_META_INFO_NAME = Type.getInternalName(LambdaMetaInfo.class);
+    private static final String STRING_DESC = Type.getDescriptor(String.class);
+    private static final String META_INFO_METHOD_DESC = Type.getMethodDescriptor(Type.getType(LambdaMetaInfo.class));
+    private static final String FORMAT_DESC = Type.getMethodDescriptor(Type.getType(String.class),
+            Type.getType(Object.class));
+    private static final MethodType LINK_TYPE = MethodType.methodType(CallSite.class,
+            MethodHandles.Lookup.class,
+            String.class,
+            MethodType.class,
+            String.class);
 
     private final MethodVisitor mv;
     private final String toStringStrategyClassName;
+    private final ToStringMode toStringMode;
+    private final boolean sharedStrategy;
+    private final boolean filterSpin;
+    private final int firstFreeLocal;
+    private final boolean framed;
 
-    InjectingToStringMethodVisitor(MethodVisitor mv, String toStringStrategyClassName) {
-        super(Opcodes.ASM5, mv);
-        this.mv = new ShiftingLocalIdMethodVisitor(Opcodes.ASM5, mv, 9);
+    /**
+     * @param mv                        the delegate method visitor
+     * @param toStringStrategyClassName class name of the strategy to inject
+     * @param toStringMode              how the injected <code>toString</code> calls the strategy
+     * @param sharedStrategy            <code>true</code> to link all lambda classes to the same strategy instance,
+     *                                  <code>false</code> to link each one to its own instance
+     * @param filterSpin                <code>true</code> to inject only the lambda classes accepted by the spin filter
+     *                                  of the spin hooks
+     * @param firstFreeLocal            first local variable not used by the original generator
+     * @param framed                    <code>true</code> if the original generator has stack map frames
+     */
+    InjectingToStringMethodVisitor(
+            MethodVisitor mv,
+            String toStringStrategyClassName,
+            ToStringMode toStringMode,
+            boolean sharedStrategy,
+            boolean filterSpin,
+            int firstFreeLocal,
+            boolean framed) {
+        super(Opcodes.ASM9, mv);
+        this.mv = new ShiftingLocalIdMethodVisitor(Opcodes.ASM9, mv, firstFreeLocal);
         this.toStringStrategyClassName = requireNonNull(toStringStrategyClassName);
+        this.toStringMode = requireNonNull(toStringMode);
+        this.sharedStrategy = sharedStrategy;
+        this.filterSpin = filterSpin;
+        this.firstFreeLocal = firstFreeLocal;
+        this.framed = framed;
     }
 
     @Override
     public void visitMaxs(int maxStack, int maxLocals) {
-        super.visitMaxs(10, 13);
+        super.visitMaxs(Math.max(maxStack, 10), Math.max(maxLocals, firstFreeLocal + 4));
     }
 
+    /**
+     * Write the injected members right after the header of the lambda class. The <code>ClassWriter</code> of the
+     * hidden class generator needs the class version of the header to write the stack map frames of the members.
+     * <p>
+     * The {@link MetafactoryShape shape} of the metafactory guarantees that no local variable is stored between the
+     * last stack map frame and the header, so the injection may be skipped with a single branch to a same frame.
+     * <p>
+     * If the spin is filtered, the injection is represented by this snippet:<br>
+     * <code>if (LambdaSpinHooks.isInjected(targetClass)) {
+     *     // inject
+     * }</code>
+     */
     @Override
     public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
         super.visitMethodInsn(opcode, owner, name, desc, itf);
 
-        if (CLASS_WRITER_NAME.equals(owner) && "visit".equals(name)) {
+        if (!MetafactoryShape.isHeaderWriting(opcode, owner, name, desc)) {
+            return;
+        }
+
+        Label end = new Label();
+        if (filterSpin) {
+            visitSpinFilter(end);
+        }
+
+        // get cw
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "cw",
+                CLASS_WRITER_DESC);
+
+        visitToString();
+
+        // get cw
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "cw",
+                CLASS_WRITER_DESC);
+
+        visitMetaInfoMethod();
+
+        if (toStringMode.isMemoized()) {
+            if (toStringMode == ToStringMode.EAGER) {
+                visitEagerToString();
+            }
+
             // get cw
             mv.visitVarInsn(Opcodes.ALOAD, 0);
             mv.visitFieldInsn(Opcodes.GETFIELD,
@@ -61,8 +150,109 @@ public class InjectingToStringMethodVisitor extends MethodVisitor {
                     "cw",
                     CLASS_WRITER_DESC);
 
-            visitToString();
+            visitToStringField();
+        }
+
+        if (filterSpin) {
+            mv.visitLabel(end);
+            if (framed) {
+                // Same locals as the last original frame, so the following original frames stay valid
+                mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+            }
+        }
+    }
+
+    /**
+     * Jump, in the metafactory, to the given label if the filter excludes the spun lambda.
+     *
+     * @param end label following the injection
+     */
+    private void visitSpinFilter(Label end) {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "targetClass",
+                "Ljava/lang/Class;");
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+                SPIN_HOOKS_NAME,
+                "isInjected",
+                "(Ljava/lang/Class;)Z",
+                false);
+        mv.visitJumpInsn(Opcodes.IFEQ, end);
+    }
+
+    /**
+     * Compute, in the metafactory, the <code>toString</code> of the spun lambda and store it in a local variable. The
+     * spin hooks give <code>null</code> if there is no factory or if it fails, so the <code>toString</code> is then
+     * linked lazily.
+     * <p>
+     * The computation is represented by this snippet:<br>
+     * <code>String eagerToString = LambdaSpinHooks.eagerToString(targetClass, implInfo);</code>
+     */
+    private void visitEagerToString() {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "targetClass",
+                "Ljava/lang/Class;");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "implInfo",
+                "Ljava/lang/invoke/MethodHandleInfo;");
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+                SPIN_HOOKS_NAME,
+                "eagerToString",
+                "(Ljava/lang/Class;Ljava/lang/invoke/MethodHandleInfo;)Ljava/lang/String;",
+                false);
+        mv.visitVarInsn(Opcodes.ASTORE, 1);
+    }
+
+    /**
+     * Write, in the lambda, the static field keeping its first <code>toString</code>.
+     * <p>
+     * The field is represented by this snippet:<br>
+     * <code>private static String toString$;</code>
+     * <p>
+     * In the {@link ToStringMode#EAGER eager mode}, the field is final and initialized to the computed
+     * <code>toString</code>, if any:<br>
+     * <code>private static final String toString$ = eagerToString;</code><br>
+     * So the injected <code>toString</code> always returns this constant. The final modifier is set without branching,
+     * so the injection adds no stack map frame to the metafactory but the one of the filter.
+     */
+    private void visitToStringField() {
+        // cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, "toString$", "Ljava/lang/String;", null, null).visitEnd();
+        mv.visitIntInsn(Opcodes.SIPUSH, Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC);
+        if (toStringMode == ToStringMode.EAGER) {
+            // | (Objects.nonNull(eagerToString) ? ACC_FINAL : 0), with ACC_FINAL == 1 << 4
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+                    "java/util/Objects",
+                    "nonNull",
+                    "(Ljava/lang/Object;)Z",
+                    false);
+            mv.visitInsn(Opcodes.ICONST_4);
+            mv.visitInsn(Opcodes.ISHL);
+            mv.visitInsn(Opcodes.IOR);
         }
+        mv.visitLdcInsn(LambdaToStringLinker.TO_STRING_FIELD_NAME);
+        mv.visitLdcInsn(STRING_DESC);
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        if (toStringMode == ToStringMode.EAGER) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+        } else {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                CLASS_WRITER_NAME,
+                "visitField",
+                CLASS_WRITER_VISIT_FIELD_DESC,
+                false);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                "jdk/internal/org/objectweb/asm/FieldVisitor",
+                "visitEnd",
+                "()V",
+                false);
     }
 
     private void visitToString() {
@@ -82,14 +272,57 @@ public class InjectingToStringMethodVisitor extends MethodVisitor {
 
         mmv.visitCode();
 
-        mmv.visitTryCatchBlock(() -> visitExternalToString(mmv),
-                () -> mmv.visitInsn(Opcodes.ARETURN),
-                getCatchBlocks(mmv));
+        if (toStringMode == ToStringMode.COMPACT) {
+            mmv.visitTryCatchBlock(() -> visitCompactToString(mmv),
+                    () -> mmv.visitInsn(Opcodes.ARETURN),
+                    getCompactCatchBlocks(mmv));
+        } else {
+            if (toStringMode.isMemoized()) {
+                visitMemoizedToString(mmv);
+            }
+
+            mmv.visitTryCatchBlock(() -> visitExternalToString(mmv),
+                    () -> mmv.visitInsn(Opcodes.ARETURN),
+                    getCatchBlocks(mmv));
+        }
 
         mmv.visitMaxs(-1, -1); // Maxs computed by ClassWriter.COMPUTE_FRAMES, these arguments ignored
         mmv.visitEnd();
     }
 
+    /**
+     * Return, in the lambda, the <code>toString</code> kept in its static field if any.
+     * <p>
+     * The returned string is represented by this snippet:<br>
+     * <code>String toString = toString$;
+     * if (toString != null) return toString;</code>
+     * <p>
+     * The field is read once and kept on the stack, so a concurrent write can not be missed between the check and the
+     * return. Strings are immutable, so they are safely published through the field without synchronization.
+     *
+     * @param mmv meta method visitor of the generated lambda
+     */
+    private void visitMemoizedToString(MetaMethodVisitor mmv) {
+        Runnable newLabel = () -> {
+            mmv.newLabel();
+            mv.visitVarInsn(Opcodes.ASTORE, 1);
+        };
+        Runnable pushLabel = () -> mv.visitVarInsn(Opcodes.ALOAD, 1);
+
+        newLabel.run();
+        mmv.visitFieldInsn(Opcodes.GETSTATIC,
+                this::pushLambdaClassName,
+                LambdaToStringLinker.TO_STRING_FIELD_NAME,
+                STRING_DESC);
+        mmv.visitInsn(Opcodes.DUP);
+        mmv.visitJumpInsn(Opcodes.IFNULL, pushLabel);
+        mmv.visitInsn(Opcodes.ARETURN);
+
+        mmv.visitLabel(pushLabel);
+        mmv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[] { Type.getInternalName(String.class) });
+        mmv.visitInsn(Opcodes.POP);
+    }
+
     /**
      * Rethrows {@link fr.pturpin.lambdastring.strategy.LambdaToStringException} but catch all other exceptions
      * and execute the {@link Object#toString()}.
@@ -168,164 +401,248 @@ public class InjectingToStringMethodVisitor extends MethodVisitor {
     }
 
     /**
-     * Push, in the stack of the lambda, the call to the external <code>toString</code> method used as new
-     * lambda <code>toString</code>.
+     * Push, in the stack of the lambda, the call to the shared helper computing the lambda <code>toString</code> in
+     * the {@link ToStringMode#COMPACT compact mode}.
      * <p>
      * The call is represented by this snippet:<br>
-     * <code>LambdaToStringLinker.lambdaToString(
-     *     toStringStrategyClassName,
-     *     this,
-     *     new LambdaMetaInfo(targetClass));</code>
+     * <code>invokedynamic LambdaToStringLinker.linkToString(strategyClassName)(this);</code><br>
+     * or <code>LambdaToStringLinker.linkSharedToString</code> if the strategy is shared.
+     * <p>
+     * The helper handles the errors of the strategy and the memoization, so they are not written in every lambda.
      *
      * @param mmv meta method visitor of the generated lambda
      */
-    private void visitExternalToString(MetaMethodVisitor mmv) {
-        // Use a invokedynamic with constant call site to cache the initialization setup and keep permanent
-        // strategy instance by lambda
-        mmv.visitInvokeDynamicInsn("createToString",
-                Type.getMethodDescriptor(Type.getType(LambdaToStringStrategy.class)),
-                () -> {
-                    // Handle to LambdaToStringLinker#link
-                    // The Handle may not be given through a simpleLDC to the InnerClassLambdaMetafactory because it
-                    // doesn't know the LambdaToStringLinker class
-                    mv.visitTypeInsn(Opcodes.NEW, "jdk/internal/org/objectweb/asm/Handle");
-                    mv.visitInsn(Opcodes.DUP);
-                    mv.visitIntInsn(Opcodes.BIPUSH, Opcodes.H_INVOKESTATIC);
-                    mv.visitLdcInsn(Type.getInternalName(LambdaToStringLinker.class));
-                    mv.visitLdcInsn("link");
-                    mv.visitLdcInsn(MethodType.methodType(CallSite.class,
-                            MethodHandles.Lookup.class,
-                            String.class,
-                            MethodType.class,
-                            String.class).toMethodDescriptorString());
-                    mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
-                            "jdk/internal/org/objectweb/asm/Handle",
-                            "<init>",
-                            MethodType.methodType(void.class, int.class, String.class, String.class, String.class)
-                                    .toMethodDescriptorString(),
-                            false);
-                },
-                toStringStrategyClassName);
-
+    private void visitCompactToString(MetaMethodVisitor mmv) {
         mmv.visitVarInsn(Opcodes.ALOAD, 0);
 
-        mmv.visitTypeInsn(Opcodes.NEW, LAMBDA_META_INFO_NAME);
-        mmv.visitInsn(Opcodes.DUP);
+        mmv.visitInvokeDynamicInsn("toString",
+                FORMAT_DESC,
+                // Handle to LambdaToStringLinker#linkToString or LambdaToStringLinker#linkSharedToString
+                () -> pushLinkerHandle(sharedStrategy ? "linkSharedToString" : "linkToString", LINK_TYPE),
+                toStringStrategyClassName);
+    }
 
-        mmv.visitLdcInsn(() -> {
-            // targetClass
-            mv.visitVarInsn(Opcodes.ALOAD, 0);
-            mv.visitFieldInsn(Opcodes.GETFIELD,
-                    INNER_CLASS_LAMBDA_METAFACTORY_NAME,
-                    "targetClass",
-                    "Ljava/lang/Class;");
-            mv.visitMethodInsn(Opcodes.INVOKESTATIC,
-                    "jdk/internal/org/objectweb/asm/Type",
-                    "getType",
-                    "(Ljava/lang/Class;)Ljdk/internal/org/objectweb/asm/Type;",
-                    false);
+    /**
+     * Execute the original {@link Object#toString()} if the shared helper of the {@link ToStringMode#COMPACT compact
+     * mode} could not be linked.
+     * <p>
+     * As explained in {@link #getCatchBlocks(MetaMethodVisitor)}, this happens when the lambda has no visibility on
+     * this agent classes. On every JRE, the thrown error is then a {@link LinkageError}, while the other errors of
+     * the strategy are already handled by the helper.
+     * <p>
+     * The catch block is represented by this snippet:<br>
+     * <code>catch (LinkageError e) {
+     *     return getClass().getName() + "@" + Integer.toHexString(hashCode());
+     * }</code>
+     * <p>
+     * A <code>super.toString()</code> is not possible: the verifier would load the lambda class by its name to check
+     * the <code>invokespecial</code>, which fails for anonymous classes.
+     *
+     * @param mmv the meta method visitor to write code in lambda
+     * @return map of catch blocks by their supported {@link Throwable} class name
+     */
+    private Map<String, Runnable> getCompactCatchBlocks(MetaMethodVisitor mmv) {
+        return Collections.singletonMap(Type.getInternalName(LinkageError.class), () -> {
+            mmv.visitInsn(Opcodes.POP);
+            visitDefaultToString(mmv);
+            mmv.visitInsn(Opcodes.ARETURN);
         });
+    }
 
-        mmv.visitLdcInsn(() -> {
-            // implInfo.getDeclaringClass()
-            mv.visitVarInsn(Opcodes.ALOAD, 0);
-            mv.visitFieldInsn(Opcodes.GETFIELD,
-                    INNER_CLASS_LAMBDA_METAFACTORY_NAME,
-                    "implInfo",
-                    "Ljava/lang/invoke/MethodHandleInfo;");
-            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE,
-                    "java/lang/invoke/MethodHandleInfo",
-                    "getDeclaringClass",
-                    "()Ljava/lang/Class;",
-                    true);
-            mv.visitMethodInsn(Opcodes.INVOKESTATIC,
-                    "jdk/internal/org/objectweb/asm/Type",
-                    "getType",
-                    "(Ljava/lang/Class;)Ljdk/internal/org/objectweb/asm/Type;",
-                    false);
-        });
+    /**
+     * Push, in the stack of the lambda, the call to the external <code>toString</code> method used as new
+     * lambda <code>toString</code>.
+     * <p>
+     * The call is represented by this snippet:<br>
+     * <code>invokedynamic LambdaToStringLinker.link(strategyClassName)(this);</code><br>
+     * or <code>LambdaToStringLinker.linkShared</code> if the strategy is shared.
+     * <p>
+     * If the <code>toString</code> is memoized, the result is also kept in the static field of the lambda.
+     *
+     * @param mmv meta method visitor of the generated lambda
+     */
+    private void visitExternalToString(MetaMethodVisitor mmv) {
+        mmv.visitVarInsn(Opcodes.ALOAD, 0);
 
-        mmv.visitLdcInsn(() -> {
-            // implInfo.getName()
-            mv.visitVarInsn(Opcodes.ALOAD, 0);
-            mv.visitFieldInsn(Opcodes.GETFIELD,
-                    INNER_CLASS_LAMBDA_METAFACTORY_NAME,
-                    "implInfo",
-                    "Ljava/lang/invoke/MethodHandleInfo;");
-            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE,
-                    "java/lang/invoke/MethodHandleInfo",
-                    "getName",
-                    "()Ljava/lang/String;",
-                    true);
-        });
+        // Use a invokedynamic with constant call site to cache the initialization setup and keep the formatter
+        // prepared once per lambda, by its own strategy instance or by the instance shared by all lambdas
+        mmv.visitInvokeDynamicInsn("format",
+                FORMAT_DESC,
+                // Handle to LambdaToStringLinker#link or LambdaToStringLinker#linkShared
+                () -> pushLinkerHandle(sharedStrategy ? "linkShared" : "link", LINK_TYPE),
+                toStringStrategyClassName);
 
-        mmv.visitLdcInsn(() -> {
-            // implInfo.getMethodType().toMethodDescriptorString();
-            mv.visitVarInsn(Opcodes.ALOAD, 0);
-            mv.visitFieldInsn(Opcodes.GETFIELD,
-                    INNER_CLASS_LAMBDA_METAFACTORY_NAME,
-                    "implInfo",
-                    "Ljava/lang/invoke/MethodHandleInfo;");
-            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE,
-                    "java/lang/invoke/MethodHandleInfo",
-                    "getMethodType",
-                    "()Ljava/lang/invoke/MethodType;",
-                    true);
-            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
-                    "java/lang/invoke/MethodType",
-                    "toMethodDescriptorString",
-                    "()Ljava/lang/String;",
-                    false);
-        });
+        if (toStringMode.isMemoized()) {
+            // toString$ = toString;
+            mmv.visitInsn(Opcodes.DUP);
+            mmv.visitFieldInsn(Opcodes.PUTSTATIC,
+                    this::pushLambdaClassName,
+                    LambdaToStringLinker.TO_STRING_FIELD_NAME,
+                    STRING_DESC);
+        }
+    }
 
-        mmv.visitIntInsn(Opcodes.SIPUSH, () -> {
-            // implInfo.getReferenceKind()
-            mv.visitVarInsn(Opcodes.ALOAD, 0);
-            mv.visitFieldInsn(Opcodes.GETFIELD,
-                    INNER_CLASS_LAMBDA_METAFACTORY_NAME,
-                    "implInfo",
-                    "Ljava/lang/invoke/MethodHandleInfo;");
-            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE,
-                    "java/lang/invoke/MethodHandleInfo",
-                    "getReferenceKind",
-                    "()I",
-                    true);
-        });
+    /**
+     * Write, in the lambda, the static method returning its unique {@link LambdaMetaInfo}.
+     * <p>
+     * The method is represented by this snippet:<br>
+     * <code>private static LambdaMetaInfo lambdaMetaInfo$() {
+     *     return invokedynamic LambdaToStringLinker.linkMetaInfo(
+     *         targetClass, declaringClass, methodName, methodDesc, referenceKind, modifiers);
+     * }</code>
+     * <p>
+     * The constant call site builds the meta information once per lambda class, on first use.
+     */
+    private void visitMetaInfoMethod() {
+        // MethodVisitor mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, "lambdaMetaInfo$", "()LLambdaMetaInfo;", null, null);
+        mv.visitIntInsn(Opcodes.SIPUSH, Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC);
+        mv.visitLdcInsn(LambdaToStringLinker.META_INFO_METHOD_NAME);
+        mv.visitLdcInsn(META_INFO_METHOD_DESC);
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                CLASS_WRITER_NAME,
+                "visitMethod",
+                CLASS_WRITER_VISIT_METHOD_DESC,
+                false);
 
-        mmv.visitIntInsn(Opcodes.SIPUSH, () -> {
-            // implInfo.getModifiers()
-            mv.visitVarInsn(Opcodes.ALOAD, 0);
-            mv.visitFieldInsn(Opcodes.GETFIELD,
-                    INNER_CLASS_LAMBDA_METAFACTORY_NAME,
-                    "implInfo",
-                    "Ljava/lang/invoke/MethodHandleInfo;");
-            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE,
-                    "java/lang/invoke/MethodHandleInfo",
-                    "getModifiers",
-                    "()I",
-                    true);
-        });
+        MetaMethodVisitor mmv = new MetaMethodVisitor(api, mv);
 
-        mmv.visitMethodInsn(Opcodes.INVOKESPECIAL,
-                LAMBDA_META_INFO_NAME,
-                "<init>",
-                MethodType.methodType(void.class,
+        mmv.visitCode();
+
+        mmv.visitInvokeDynamicInsn("metaInfo",
+                META_INFO_METHOD_DESC,
+                () -> pushLinkerHandle("linkMetaInfo", MethodType.methodType(CallSite.class,
+                        MethodHandles.Lookup.class,
+                        String.class,
+                        MethodType.class,
                         Class.class,
                         Class.class,
                         String.class,
                         String.class,
                         int.class,
-                        int.class)
+                        int.class)),
+                () -> {
+                    // targetClass
+                    mv.visitVarInsn(Opcodes.ALOAD, 0);
+                    mv.visitFieldInsn(Opcodes.GETFIELD,
+                            INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                            "targetClass",
+                            "Ljava/lang/Class;");
+                    pushAsmType();
+                },
+                () -> {
+                    // implInfo.getDeclaringClass()
+                    pushImplInfo("getDeclaringClass", "()Ljava/lang/Class;");
+                    pushAsmType();
+                },
+                () -> {
+                    // implInfo.getName()
+                    pushImplInfo("getName", "()Ljava/lang/String;");
+                },
+                () -> {
+                    // implInfo.getMethodType().toMethodDescriptorString();
+                    pushImplInfo("getMethodType", "()Ljava/lang/invoke/MethodType;");
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                            "java/lang/invoke/MethodType",
+                            "toMethodDescriptorString",
+                            "()Ljava/lang/String;",
+                            false);
+                },
+                () -> {
+                    // Integer.valueOf(implInfo.getReferenceKind())
+                    pushImplInfo("getReferenceKind", "()I");
+                    pushBoxedInteger();
+                },
+                () -> {
+                    // Integer.valueOf(implInfo.getModifiers())
+                    pushImplInfo("getModifiers", "()I");
+                    pushBoxedInteger();
+                });
+
+        mmv.visitInsn(Opcodes.ARETURN);
+
+        mmv.visitMaxs(-1, -1); // Maxs computed by ClassWriter.COMPUTE_MAXS, these arguments ignored
+        mmv.visitEnd();
+    }
+
+    /**
+     * Push, in the stack of the metafactory, a new <code>Handle</code> to the given static method of
+     * {@link LambdaToStringLinker}.
+     * <p>
+     * The Handle may not be given through a simple LDC to the InnerClassLambdaMetafactory because it doesn't know the
+     * LambdaToStringLinker class.
+     *
+     * @param name name of the static linker method
+     * @param type type of the static linker method
+     */
+    private void pushLinkerHandle(String name, MethodType type) {
+        mv.visitTypeInsn(Opcodes.NEW, "jdk/internal/org/objectweb/asm/Handle");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitIntInsn(Opcodes.BIPUSH, Opcodes.H_INVOKESTATIC);
+        mv.visitLdcInsn(Type.getInternalName(LambdaToStringLinker.class));
+        mv.visitLdcInsn(name);
+        mv.visitLdcInsn(type.toMethodDescriptorString());
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
+                "jdk/internal/org/objectweb/asm/Handle",
+                "<init>",
+                MethodType.methodType(void.class, int.class, String.class, String.class, String.class)
                         .toMethodDescriptorString(),
                 false);
+    }
 
-        mmv.visitMethodInsn(Opcodes.INVOKEINTERFACE,
-                Type.getInternalName(LambdaToStringStrategy.class),
-                "createToString",
-                MethodType.methodType(String.class, Object.class, LambdaMetaInfo.class).toMethodDescriptorString(),
+    /**
+     * Push, in the stack of the metafactory, the internal name of the generated lambda class.
+     */
+    private void pushLambdaClassName() {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "lambdaClassName",
+                "Ljava/lang/String;");
+    }
+
+    /**
+     * Push, in the stack of the metafactory, the result of the given <code>implInfo</code> getter.
+     *
+     * @param getterName name of the <code>MethodHandleInfo</code> getter
+     * @param getterDesc descriptor of the <code>MethodHandleInfo</code> getter
+     */
+    private void pushImplInfo(String getterName, String getterDesc) {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "implInfo",
+                "Ljava/lang/invoke/MethodHandleInfo;");
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE,
+                "java/lang/invoke/MethodHandleInfo",
+                getterName,
+                getterDesc,
                 true);
     }
 
+    /**
+     * Replace the class on top of the stack of the metafactory by its ASM <code>Type</code>.
+     */
+    private void pushAsmType() {
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+                "jdk/internal/org/objectweb/asm/Type",
+                "getType",
+                "(Ljava/lang/Class;)Ljdk/internal/org/objectweb/asm/Type;",
+                false);
+    }
+
+    /**
+     * Replace the int on top of the stack of the metafactory by its boxed {@link Integer}.
+     */
+    private void pushBoxedInteger() {
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+                "java/lang/Integer",
+                "valueOf",
+                "(I)Ljava/lang/Integer;",
+                false);
+    }
+
     /**
      * Push the original {@link Object#toString()} implementation in the stack of the lambda
      * <p>
@@ -0,0 +1,160 @@
+package fr.pturpin.lambdastring.asm;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Options of the code injected in the generator of the lambda classes.
+ * <p>
+ * Options are built with a {@link #builder(String) builder} starting from the class name of the strategy. The other
+ * options default to a {@link ToStringMode#LAZY lazy} <code>toString</code> linked to its own strategy instance, with
+ * no spin listener, no spin filter and no registry.
+ */
+public final class InjectionOptions {
+
+    private final String toStringStrategyClassName;
+    private final ToStringMode toStringMode;
+    private final boolean sharedStrategy;
+    private final boolean notifySpinListener;
+    private final boolean filterSpin;
+    private final boolean registerClasses;
+
+    private InjectionOptions(Builder builder) {
+        this.toStringStrategyClassName = builder.toStringStrategyClassName;
+        this.toStringMode = builder.toStringMode;
+        this.sharedStrategy = builder.sharedStrategy;
+        this.notifySpinListener = builder.notifySpinListener;
+        this.filterSpin = builder.filterSpin;
+        this.registerClasses = builder.registerClasses;
+    }
+
+    /**
+     * Start building the options injecting the given strategy.
+     *
+     * @param toStringStrategyClassName class name of the strategy to inject
+     * @return builder of the options
+     * @throws NullPointerException if the class name is <code>null</code>
+     */
+    public static Builder builder(String toStringStrategyClassName) {
+        return new Builder(toStringStrategyClassName);
+    }
+
+    /**
+     * Returns the class name of the strategy to inject.
+     */
+    public String getToStringStrategyClassName() {
+        return toStringStrategyClassName;
+    }
+
+    /**
+     * Returns how the injected <code>toString</code> calls the strategy.
+     */
+    public ToStringMode getToStringMode() {
+        return toStringMode;
+    }
+
+    /**
+     * Indicate if all lambda classes are linked to the same strategy instance, instead of each one to its own.
+     */
+    public boolean isSharedStrategy() {
+        return sharedStrategy;
+    }
+
+    /**
+     * Indicate if the installed spin listener is notified each time a lambda class is spun.
+     */
+    public boolean isNotifySpinListener() {
+        return notifySpinListener || filterSpin || registerClasses || toStringMode == ToStringMode.EAGER;
+    }
+
+    /**
+     * Indicate if only the lambda classes accepted by the installed spin filter are injected.
+     */
+    public boolean isFilterSpin() {
+        return filterSpin;
+    }
+
+    /**
+     * Indicate if the spun lambda classes are registered into the installed registry.
+     */
+    public boolean isRegisterClasses() {
+        return registerClasses;
+    }
+
+    /**
+     * Indicate if the injected code calls the spin hooks, which should then be defined in the bootstrap class loader
+     * before the metafactory is transformed.
+     */
+    public boolean isUsingSpinHooks() {
+        return notifySpinListener || filterSpin || registerClasses || toStringMode == ToStringMode.EAGER;
+    }
+
+    /**
+     * Builder of {@link InjectionOptions}.
+     */
+    public static final class Builder {
+
+        private final String toStringStrategyClassName;
+        private ToStringMode toStringMode = ToStringMode.LAZY;
+        private boolean sharedStrategy;
+        private boolean notifySpinListener;
+        private boolean filterSpin;
+        private boolean registerClasses;
+
+        private Builder(String toStringStrategyClassName) {
+            this.toStringStrategyClassName = requireNonNull(toStringStrategyClassName);
+        }
+
+        /**
+         * @param toStringMode how the injected <code>toString</code> calls the strategy
+         * @return this builder
+         * @throws NullPointerException if the mode is <code>null</code>
+         */
+        public Builder toStringMode(ToStringMode toStringMode) {
+            this.toStringMode = requireNonNull(toStringMode);
+            return this;
+        }
+
+        /**
+         * @param sharedStrategy <code>true</code> to link all lambda classes to the same strategy instance,
+         *                       <code>false</code> to link each one to its own instance
+         * @return this builder
+         */
+        public Builder sharedStrategy(boolean sharedStrategy) {
+            this.sharedStrategy = sharedStrategy;
+            return this;
+        }
+
+        /**
+         * @param notifySpinListener <code>true</code> to notify the installed spin listener
+         * @return this builder
+         */
+        public Builder notifySpinListener(boolean notifySpinListener) {
+            this.notifySpinListener = notifySpinListener;
+            return this;
+        }
+
+        /**
+         * @param filterSpin <code>true</code> to inject only the lambda classes accepted by the installed spin filter
+         * @return this builder
+         */
+        public Builder filterSpin(boolean filterSpin) {
+            this.filterSpin = filterSpin;
+            return this;
+        }
+
+        /**
+         * @param registerClasses <code>true</code> to register the spun lambda classes into the installed registry
+         * @return this builder
+         */
+        public Builder registerClasses(boolean registerClasses) {
+            this.registerClasses = registerClasses;
+            return this;
+        }
+
+        public InjectionOptions build() {
+            return new InjectionOptions(this);
+        }
+
+    }
+
+}
@@ -52,6 +52,24 @@ public final class MetaMethodVisitor extends MethodVisitor {
         invoke("visitFieldInsn", "(ILjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V");
     }
 
+    /**
+     * Make the internal {@link MethodVisitor} write a <code>visitFieldInsn</code>.
+     * The owner of the field is injected by the given <code>ownerPusher</code>.
+     *
+     * @param opcode      opcode of the field instruction
+     * @param ownerPusher runnable injecting the internal name of the field owner in the internal stack
+     * @param name        name of the field
+     * @param desc        descriptor of the field
+     */
+    public void visitFieldInsn(int opcode, Runnable ownerPusher, String name, String desc) {
+        dup();
+        push(opcode);
+        ownerPusher.run();
+        push(name);
+        push(desc);
+        invoke("visitFieldInsn", "(ILjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V");
+    }
+
     @Override
     public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack) {
         dup();
@@ -112,6 +130,27 @@ public final class MetaMethodVisitor extends MethodVisitor {
                         "[Ljava/lang/Object;)V");
     }
 
+    /**
+     * Make the internal {@link MethodVisitor} write a <code>visitInvokeDynamicInsn</code> whose bootstrap arguments
+     * are only known while running the meta code.
+     *
+     * @param name          name of the invokedynamic
+     * @param desc          descriptor of the invokedynamic
+     * @param bsmPusher     runnable injecting the bootstrap method handle in the internal stack
+     * @param bsmArgPushers runnables injecting each bootstrap argument, as an object, in the internal stack
+     */
+    public void visitInvokeDynamicInsn(String name, String desc, Runnable bsmPusher, Runnable... bsmArgPushers) {
+        dup();
+        push(name);
+        push(desc);
+        bsmPusher.run();
+        pushArray("java/lang/Object", bsmArgPushers);
+        invoke("visitInvokeDynamicInsn",
+                "(Ljava/lang/String;Ljava/lang/String;" +
+                        "Ljdk/internal/org/objectweb/asm/Handle;" +
+                        "[Ljava/lang/Object;)V");
+    }
+
     @Override
     public void visitJumpInsn(int opcode, Label label) {
         throw new UnsupportedOperationException();
@@ -204,6 +243,26 @@ public final class MetaMethodVisitor extends MethodVisitor {
         invoke("visitMethodInsn", "(ILjava/lang/String;Ljava/lang/String;Ljava/lang/String;Z)V");
     }
 
+    /**
+     * Make the internal {@link MethodVisitor} write a <code>visitMethodInsn</code>.
+     * The owner of the method is injected by the given <code>ownerPusher</code>.
+     *
+     * @param opcode      opcode of the method instruction
+     * @param ownerPusher runnable injecting the internal name of the method owner in the internal stack
+     * @param name        name of the method
+     * @param desc        descriptor of the method
+     * @param itf         if the owner is an interface
+     */
+    public void visitMethodInsn(int opcode, Runnable ownerPusher, String name, String desc, boolean itf) {
+        dup();
+        push(opcode);
+        ownerPusher.run();
+        push(name);
+        push(desc);
+        push(itf);
+        invoke("visitMethodInsn", "(ILjava/lang/String;Ljava/lang/String;Ljava/lang/String;Z)V");
+    }
+
     @Override
     public void visitMultiANewArrayInsn(String desc, int dims) {
         dup();
@@ -360,4 +419,21 @@ public final class MetaMethodVisitor extends MethodVisitor {
         }
     }
 
+    /**
+     * Push a new array in the internal stack whose elements are injected by the given pushers.
+     *
+     * @param name           internal name of the array component type
+     * @param elementPushers runnables injecting each element of the array in the internal stack
+     */
+    public void pushArray(String name, Runnable... elementPushers) {
+        push(elementPushers.length);
+        mv.visitTypeInsn(Opcodes.ANEWARRAY, name);
+        for (int i = 0; i < elementPushers.length; i++) {
+            dup();
+            push(i);
+            elementPushers[i].run();
+            mv.visitInsn(Opcodes.AASTORE);
+        }
+    }
+
 }
@@ -0,0 +1,217 @@
+package fr.pturpin.lambdastring.asm;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shape of the bytecode of the <code>InnerClassLambdaMetafactory</code> of the running JDK, telling where the lambda
+ * classes are generated.
+ * <p>
+ * Up to JDK 14, lambda classes are VM anonymous classes generated by <code>spinInnerClass</code>. Since JDK 15, they
+ * are hidden classes generated by <code>generateInnerClass</code>, which <code>spinInnerClass</code> only calls if the
+ * class is not found in the CDS archive. In both cases, the class is written by the internal ASM
+ * <code>ClassWriter</code> held by the <code>cw</code> field, and its header by a single <code>ClassWriter.visit</code>
+ * call. The method doing this call is the generator, where the <code>toString</code> is injected.
+ * <p>
+ * The JVM may give the bytecode of the classes it did not verify without their stack map frames. The injected code
+ * then writes no frame either.
+ * <p>
+ * Newer JDKs, since JDK 24, generate the lambda classes with the ClassFile API and have no such writer. Their
+ * metafactory is out of the scope of the injection, and is reported as unsupported.
+ */
+public final class MetafactoryShape {
+
+    /**
+     * Shape of the JDK 8 metafactory, generating the lambda classes in <code>spinInnerClass</code>.
+     */
+    public static final MetafactoryShape JDK_8 =
+            new MetafactoryShape("spinInnerClass", "()Ljava/lang/Class;", 9, true);
+
+    private static final String CLASS_WRITER_NAME = "jdk/internal/org/objectweb/asm/ClassWriter";
+    private static final String CLASS_WRITER_DESC = "Ljdk/internal/org/objectweb/asm/ClassWriter;";
+    private static final String CLASS_WRITER_VISIT_DESC =
+            "(IILjava/lang/String;Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;)V";
+
+    private final String generatorName;
+    private final String generatorDesc;
+    private final int firstFreeLocal;
+    private final boolean framed;
+
+    private MetafactoryShape(String generatorName, String generatorDesc, int firstFreeLocal, boolean framed) {
+        this.generatorName = requireNonNull(generatorName);
+        this.generatorDesc = requireNonNull(generatorDesc);
+        this.firstFreeLocal = firstFreeLocal;
+        this.framed = framed;
+    }
+
+    /**
+     * Detect the shape of the given metafactory class.
+     *
+     * @param metafactory reader of the <code>InnerClassLambdaMetafactory</code> class
+     * @return shape of the metafactory
+     * @throws IllegalArgumentException if the lambda classes are not generated by a supported shape
+     */
+    public static MetafactoryShape of(ClassReader metafactory) {
+        ShapeClassVisitor visitor = new ShapeClassVisitor();
+        metafactory.accept(visitor, ClassReader.SKIP_DEBUG);
+        return visitor.getShape();
+    }
+
+    /**
+     * Returns the name of the method writing the lambda classes.
+     */
+    public String getGeneratorName() {
+        return generatorName;
+    }
+
+    /**
+     * Returns the descriptor of the method writing the lambda classes.
+     */
+    public String getGeneratorDesc() {
+        return generatorDesc;
+    }
+
+    /**
+     * Returns the first local variable not used by the generator, from which the injected code may store its own.
+     */
+    public int getFirstFreeLocal() {
+        return firstFreeLocal;
+    }
+
+    /**
+     * Indicate if the generator has stack map frames, so the injected code should have some too.
+     */
+    public boolean isFramed() {
+        return framed;
+    }
+
+    /**
+     * Indicate if the given method is the generator of the lambda classes.
+     */
+    boolean isGenerator(String name, String desc) {
+        return generatorName.equals(name) && generatorDesc.equals(desc);
+    }
+
+    /**
+     * Indicate if the given instruction writes the header of the lambda class.
+     */
+    static boolean isHeaderWriting(int opcode, String owner, String name, String desc) {
+        return opcode == Opcodes.INVOKEVIRTUAL
+                && CLASS_WRITER_NAME.equals(owner)
+                && "visit".equals(name)
+                && CLASS_WRITER_VISIT_DESC.equals(desc);
+    }
+
+    /**
+     * Indicate if the given instruction writes the class file of the lambda class.
+     */
+    static boolean isClassFileWriting(int opcode, String owner, String name, String desc) {
+        return opcode == Opcodes.INVOKEVIRTUAL
+                && CLASS_WRITER_NAME.equals(owner)
+                && "toByteArray".equals(name)
+                && "()[B".equals(desc);
+    }
+
+    @Override
+    public String toString() {
+        return generatorName + generatorDesc;
+    }
+
+    private static final class ShapeClassVisitor extends ClassVisitor {
+
+        private boolean hasClassWriter;
+        private boolean hasClassName;
+        private MetafactoryShape shape;
+        private String error;
+
+        private ShapeClassVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if ("cw".equals(name) && CLASS_WRITER_DESC.equals(desc)) {
+                hasClassWriter = true;
+            } else if ("lambdaClassName".equals(name) && "Ljava/lang/String;".equals(desc)) {
+                hasClassName = true;
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            return new MethodVisitor(Opcodes.ASM9) {
+
+                private int headerWritings;
+                private boolean framed;
+                private boolean storedSinceFrame;
+                private boolean storedBeforeHeader;
+                private int maxLocals;
+
+                @Override
+                public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack) {
+                    framed = true;
+                    storedSinceFrame = false;
+                }
+
+                @Override
+                public void visitVarInsn(int opcode, int var) {
+                    if (opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE) {
+                        storedSinceFrame = true;
+                    }
+                }
+
+                @Override
+                public void visitIincInsn(int var, int increment) {
+                    storedSinceFrame = true;
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                    if (isHeaderWriting(opcode, owner, name, desc)) {
+                        headerWritings++;
+                        storedBeforeHeader |= storedSinceFrame;
+                    }
+                }
+
+                @Override
+                public void visitMaxs(int maxStack, int maxLocals) {
+                    this.maxLocals = maxLocals;
+                }
+
+                @Override
+                public void visitEnd() {
+                    if (headerWritings == 0 || error != null) {
+                        return;
+                    }
+                    if (shape != null || headerWritings > 1) {
+                        error = "the lambda class header is written several times";
+                    } else if (framed && storedBeforeHeader) {
+                        // The injection could not be skipped with a branch to the last frame
+                        error = "the locals of " + name + desc + " change before the lambda class header is written";
+                    } else {
+                        shape = new MetafactoryShape(name, desc, maxLocals, framed);
+                    }
+                }
+            };
+        }
+
+        private MetafactoryShape getShape() {
+            if (!hasClassWriter || !hasClassName) {
+                error = "no ASM ClassWriter writes the lambda classes, they may be generated with the ClassFile API";
+            } else if (shape == null && error == null) {
+                error = "no method writes the lambda class header";
+            }
+            if (error != null) {
+                throw new IllegalArgumentException("Unsupported lambda metafactory: " + error);
+            }
+            return shape;
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package fr.pturpin.lambdastring.asm;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link MethodVisitor} notifying, at the beginning of the {@link MetafactoryShape generator} of the lambda classes,
+ * the spin listener kept by the spin hooks of the bootstrap class loader.
+ * <p>
+ * The hooks check the listener themselves, so there is no branch and no stack map frame to write. The injected code is
+ * represented by this snippet:<br>
+ * <code>LambdaSpinHooks.notifySpin(targetClass, implInfo);</code>
+ */
+final class NotifyingSpinListenerMethodVisitor extends MethodVisitor {
+
+    private static final String INNER_CLASS_LAMBDA_METAFACTORY_NAME = "java/lang/invoke/InnerClassLambdaMetafactory";
+    private static final String SPIN_HOOKS_NAME = "fr/pturpin/lambdastring/boot/LambdaSpinHooks";
+
+    NotifyingSpinListenerMethodVisitor(MethodVisitor mv) {
+        super(Opcodes.ASM9, requireNonNull(mv));
+    }
+
+    @Override
+    public void visitCode() {
+        super.visitCode();
+
+        super.visitVarInsn(Opcodes.ALOAD, 0);
+        super.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "targetClass",
+                "Ljava/lang/Class;");
+        super.visitVarInsn(Opcodes.ALOAD, 0);
+        super.visitFieldInsn(Opcodes.GETFIELD,
+                INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                "implInfo",
+                "Ljava/lang/invoke/MethodHandleInfo;");
+        super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                SPIN_HOOKS_NAME,
+                "notifySpin",
+                "(Ljava/lang/Class;Ljava/lang/invoke/MethodHandleInfo;)V",
+                false);
+    }
+
+}
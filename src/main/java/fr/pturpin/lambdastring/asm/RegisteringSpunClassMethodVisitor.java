@@ -0,0 +1,69 @@
+package fr.pturpin.lambdastring.asm;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link MethodVisitor} registering, at each return of the {@link MetafactoryShape generator} of the lambda classes,
+ * the returned lambda class through the spin hooks of the bootstrap class loader. The size of the class file, written
+ * before, is recorded through the hooks too.
+ * <p>
+ * The hooks check the registry themselves, so there is no branch and no stack map frame to write. The injected code is
+ * represented by this snippet:<br>
+ * <code>byte[] classBytes = cw.toByteArray();
+ * LambdaSpinHooks.recordSize(classBytes.length);
+ * ...
+ * Class lambdaClass = ...;
+ * LambdaSpinHooks.register(lambdaClass, targetClass, implInfo);
+ * return lambdaClass;</code>
+ */
+final class RegisteringSpunClassMethodVisitor extends MethodVisitor {
+
+    private static final String INNER_CLASS_LAMBDA_METAFACTORY_NAME = "java/lang/invoke/InnerClassLambdaMetafactory";
+    private static final String SPIN_HOOKS_NAME = "fr/pturpin/lambdastring/boot/LambdaSpinHooks";
+
+    RegisteringSpunClassMethodVisitor(MethodVisitor mv) {
+        super(Opcodes.ASM9, requireNonNull(mv));
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+        super.visitMethodInsn(opcode, owner, name, desc, itf);
+
+        if (MetafactoryShape.isClassFileWriting(opcode, owner, name, desc)) {
+            super.visitInsn(Opcodes.DUP);
+            super.visitInsn(Opcodes.ARRAYLENGTH);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                    SPIN_HOOKS_NAME,
+                    "recordSize",
+                    "(I)V",
+                    false);
+        }
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+        if (opcode == Opcodes.ARETURN) {
+            super.visitInsn(Opcodes.DUP);
+            super.visitVarInsn(Opcodes.ALOAD, 0);
+            super.visitFieldInsn(Opcodes.GETFIELD,
+                    INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                    "targetClass",
+                    "Ljava/lang/Class;");
+            super.visitVarInsn(Opcodes.ALOAD, 0);
+            super.visitFieldInsn(Opcodes.GETFIELD,
+                    INNER_CLASS_LAMBDA_METAFACTORY_NAME,
+                    "implInfo",
+                    "Ljava/lang/invoke/MethodHandleInfo;");
+            super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                    SPIN_HOOKS_NAME,
+                    "register",
+                    "(Ljava/lang/Class;Ljava/lang/Class;Ljava/lang/invoke/MethodHandleInfo;)V",
+                    false);
+        }
+        super.visitInsn(opcode);
+    }
+
+}
@@ -0,0 +1,43 @@
+package fr.pturpin.lambdastring.asm;
+
+/**
+ * How the <code>toString</code> injected in the lambda classes gets its string from the strategy.
+ */
+public enum ToStringMode {
+
+    /**
+     * The strategy is called on every <code>toString</code>.
+     */
+    LAZY,
+
+    /**
+     * The strategy is called on the first <code>toString</code> of each lambda class, and its result is kept in a
+     * static field of this class. Only valid for a {@link fr.pturpin.lambdastring.strategy.ConstantToStringStrategy}.
+     */
+    MEMOIZED,
+
+    /**
+     * The strategy is called while the lambda class is spun, and its result is written as the constant value of the
+     * static field of the {@link #MEMOIZED} mode. If the strategy could not give a string at this time, the lambda
+     * class behaves as in the {@link #MEMOIZED} mode. Only valid for a
+     * {@link fr.pturpin.lambdastring.strategy.MetaInfoToStringStrategy} published as the
+     * {@link fr.pturpin.lambdastring.transform.EagerToStringFactory eager factory}.
+     */
+    EAGER,
+
+    /**
+     * The lambda classes only get a short <code>toString</code> passing the lambda and its meta information to a
+     * shared helper, {@link fr.pturpin.lambdastring.transform.LambdaToStringLinker#linkToString linked} once per lambda
+     * class. The helper calls the strategy and keeps the result itself for a
+     * {@link fr.pturpin.lambdastring.strategy.ConstantToStringStrategy}, so the lambda classes have no static field.
+     */
+    COMPACT;
+
+    /**
+     * Returns <code>true</code> if the lambda classes keep their <code>toString</code> in a static field.
+     */
+    boolean isMemoized() {
+        return this == MEMOIZED || this == EAGER;
+    }
+
+}
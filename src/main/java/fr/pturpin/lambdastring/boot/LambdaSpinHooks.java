@@ -0,0 +1,143 @@
+package fr.pturpin.lambdastring.boot;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Hooks called by the patched <code>InnerClassLambdaMetafactory</code> while it spins a lambda class.
+ * <p>
+ * The metafactory is loaded by the bootstrap class loader and does not see the classes of this agent. So this class is
+ * defined by the agent in the bootstrap class loader, from its class file, and is never loaded from the agent jar. It
+ * only depends on JDK types, and its callbacks are set by the agent through reflection.
+ * <p>
+ * The metafactory calls the static methods of this class with a single instruction. Each of them reads its callback
+ * with a volatile read and no lock. A callback not set, or throwing, never disturbs the linkage of the lambda: the
+ * methods then behave as if there were no agent.
+ */
+public final class LambdaSpinHooks {
+
+    /**
+     * Listener notified with the target class and the implementation method info of each spun lambda, or
+     * <code>null</code>.
+     */
+    public static volatile BiConsumer<Class<?>, MethodHandleInfo> spinListener;
+
+    /**
+     * Factory giving the <code>toString</code> of each spun lambda from its target class and its implementation method
+     * info, or <code>null</code>.
+     */
+    public static volatile BiFunction<Class<?>, MethodHandleInfo, String> eagerToStringFactory;
+
+    /**
+     * Filter of the target classes whose lambdas get an injected <code>toString</code>, or <code>null</code> to inject
+     * all of them.
+     */
+    public static volatile Predicate<Class<?>> spinFilter;
+
+    /**
+     * Registration of the spun lambda classes, as a <code>(Class, Class, MethodHandleInfo)void</code> handle receiving
+     * the lambda class, its target class and its implementation method info, or <code>null</code>.
+     */
+    public static volatile MethodHandle classRegistration;
+
+    /**
+     * Record of the size of the class files of the spun lambda classes, as a <code>(int)void</code> handle, or
+     * <code>null</code>.
+     */
+    public static volatile MethodHandle classSizeRecord;
+
+    private LambdaSpinHooks() {
+    }
+
+    /**
+     * Notify the spin listener, if any, that a lambda class is about to be spun.
+     */
+    public static void notifySpin(Class<?> targetClass, MethodHandleInfo implInfo) {
+        BiConsumer<Class<?>, MethodHandleInfo> listener = spinListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.accept(targetClass, implInfo);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            // Never disturb the linkage of a lambda
+        }
+    }
+
+    /**
+     * Indicate if the lambda about to be spun gets an injected <code>toString</code>. It does if there is no filter or
+     * if the filter fails, as without filter.
+     */
+    public static boolean isInjected(Class<?> targetClass) {
+        Predicate<Class<?>> filter = spinFilter;
+        if (filter == null) {
+            return true;
+        }
+        try {
+            return filter.test(targetClass);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns the <code>toString</code> of the lambda about to be spun given by the factory, or <code>null</code> if
+     * it should be computed lazily.
+     */
+    public static String eagerToString(Class<?> targetClass, MethodHandleInfo implInfo) {
+        BiFunction<Class<?>, MethodHandleInfo, String> factory = eagerToStringFactory;
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return factory.apply(targetClass, implInfo);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            // Never disturb the linkage of a lambda, the toString is computed lazily anyway
+            return null;
+        }
+    }
+
+    /**
+     * Record the size of the class file of the lambda class about to be defined, if the size is recorded.
+     */
+    public static void recordSize(int byteSize) {
+        MethodHandle record = classSizeRecord;
+        if (record == null) {
+            return;
+        }
+        try {
+            record.invokeExact(byteSize);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            // Never disturb the linkage of a lambda
+        }
+    }
+
+    /**
+     * Register the given spun lambda class, if the classes are registered.
+     */
+    public static void register(Class<?> lambdaClass, Class<?> targetClass, MethodHandleInfo implInfo) {
+        MethodHandle registration = classRegistration;
+        if (registration == null) {
+            return;
+        }
+        try {
+            registration.invokeExact(lambdaClass, targetClass, implInfo);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            // Never disturb the linkage of a lambda
+        }
+    }
+
+}
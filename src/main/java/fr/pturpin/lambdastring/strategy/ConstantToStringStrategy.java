@@ -0,0 +1,15 @@
+package fr.pturpin.lambdastring.strategy;
+
+/**
+ * Marker of the {@link LambdaToStringStrategy strategies} returning the same <code>toString</code> for every instance
+ * of a lambda class.
+ *
+ * <p>The <code>toString</code> injected in the lambdas then keeps the first string returned by
+ * {@link #createToString(Object, fr.pturpin.lambdastring.transform.LambdaMetaInfo) createToString} in a static field of
+ * the lambda class, and returns it directly on the next calls. So the strategy is generally called once per lambda
+ * class, but may be called several times if the first calls are concurrent.
+ *
+ * <p>If the strategy throws, nothing is kept and it's called again on the next <code>toString</code>.
+ */
+public interface ConstantToStringStrategy extends LambdaToStringStrategy {
+}
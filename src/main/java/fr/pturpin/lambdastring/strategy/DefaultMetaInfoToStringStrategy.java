@@ -0,0 +1,19 @@
+package fr.pturpin.lambdastring.strategy;
+
+import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
+
+/**
+ * Default strategy of the agent, describing the lambdas as the {@link DefaultToStringStrategy}.
+ * <p>
+ * The description only depends on the {@link LambdaMetaInfo meta information} of the lambda, so it's computed once per
+ * lambda class (see {@link MetaInfoToStringStrategy}). This class is final, so the description can not be made to
+ * depend on the lambda instance: such strategies should extend {@link DefaultToStringStrategy} instead.
+ */
+public final class DefaultMetaInfoToStringStrategy implements MetaInfoToStringStrategy {
+
+    @Override
+    public String createToString(LambdaMetaInfo metaInfo) throws LambdaToStringException {
+        return DefaultToStringStrategy.describe(metaInfo);
+    }
+
+}
@@ -4,10 +4,23 @@ import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
 
 import java.util.OptionalInt;
 
+/**
+ * Strategy describing a lambda by the simple name of the class declaring its implementation method and by its
+ * declaration line, such as <code>MyClass:42</code> or <code>MyClass::myMethod:42</code> for method references.
+ * <p>
+ * This class may be extended to describe the lambdas from their instance, so the agent calls
+ * {@link #createToString(Object, LambdaMetaInfo)} for each <code>toString</code>, as any other
+ * {@link LambdaToStringStrategy}. The agent uses by default the {@link DefaultMetaInfoToStringStrategy}, giving the
+ * same description but computed once per lambda class.
+ */
 public class DefaultToStringStrategy implements LambdaToStringStrategy {
 
     @Override
     public String createToString(Object lambda, LambdaMetaInfo metaInfo) throws LambdaToStringException {
+        return describe(metaInfo);
+    }
+
+    static String describe(LambdaMetaInfo metaInfo) throws LambdaToStringException {
         String className = getClassName(metaInfo);
         OptionalInt declarationLine = metaInfo.getDeclarationLine();
 
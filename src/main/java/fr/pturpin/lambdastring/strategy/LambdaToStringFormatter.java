@@ -0,0 +1,24 @@
+package fr.pturpin.lambdastring.strategy;
+
+/**
+ * Formatter of the <code>toString</code> of the instances of a lambda class, as
+ * {@link LambdaToStringStrategy#prepare(fr.pturpin.lambdastring.transform.LambdaMetaInfo) prepared} by a strategy.
+ *
+ * <p>A formatter is created once per lambda class, and kept by this class. So it may hold all the data computed from
+ * the {@link fr.pturpin.lambdastring.transform.LambdaMetaInfo meta information} of the lambda, and only compute the
+ * parts depending on the lambda instance.
+ */
+@FunctionalInterface
+public interface LambdaToStringFormatter {
+
+    /**
+     * Generate a <code>toString</code> for the given lambda.
+     *
+     * @param lambda lambda instance
+     * @return toString for the given lambda
+     * @throws LambdaToStringException if this formatter cannot generate a toString
+     * @see LambdaToStringStrategy#createToString(Object, fr.pturpin.lambdastring.transform.LambdaMetaInfo)
+     */
+    String format(Object lambda) throws LambdaToStringException;
+
+}
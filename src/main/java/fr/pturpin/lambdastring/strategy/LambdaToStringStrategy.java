@@ -10,6 +10,11 @@ import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
  * store cached data in the strategy. For shared cached data, implementation should use static
  * variable as usual.
  *
+ * <p>The strategy is called in two phases. Once per lambda class, on its first <code>toString</code>, the strategy
+ * {@link #prepare(LambdaMetaInfo) prepares} a {@link LambdaToStringFormatter formatter} kept by the lambda class. Then
+ * every <code>toString</code> of the lambda instances only calls this formatter. By default, the formatter calls
+ * {@link #createToString(Object, LambdaMetaInfo)}.
+ *
  * <p>For more information about the linkage of a lambda to a strategy, please see {@link
  * fr.pturpin.lambdastring.transform.LambdaToStringLinker}.
  */
@@ -30,4 +35,22 @@ public interface LambdaToStringStrategy {
      */
     String createToString(Object lambda, LambdaMetaInfo metaInfo) throws LambdaToStringException;
 
+    /**
+     * Prepare the <code>toString</code> of the lambdas having the given {@link LambdaMetaInfo meta information}.
+     *
+     * <p>This is called once per lambda class, when its first <code>toString</code> is linked. The returned formatter
+     * then generates the <code>toString</code> of all instances of this lambda class. So the implementation may compute
+     * in advance everything only depending on the meta information, as the declaration line or the names of classes.
+     *
+     * <p>If this throws, or returns <code>null</code>, the <code>toString</code> of the lambdas falls back to
+     * {@link #createToString(Object, LambdaMetaInfo)}.
+     *
+     * @param metaInfo lambda meta information
+     * @return formatter of the lambdas having this meta information
+     * @throws LambdaToStringException if this strategy cannot prepare a formatter
+     */
+    default LambdaToStringFormatter prepare(LambdaMetaInfo metaInfo) throws LambdaToStringException {
+        return lambda -> createToString(lambda, metaInfo);
+    }
+
 }
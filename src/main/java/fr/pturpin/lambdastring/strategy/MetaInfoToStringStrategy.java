@@ -0,0 +1,40 @@
+package fr.pturpin.lambdastring.strategy;
+
+import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
+
+/**
+ * {@link ConstantToStringStrategy Constant strategy} only depending on the {@link LambdaMetaInfo meta information} of
+ * the lambdas, and never on the lambda instance.
+ *
+ * <p>Such a strategy may be called while the lambda class is being spun, before any instance exists, when the agent
+ * runs with the <code>eager-tostring=true</code> option. The injected <code>toString</code> then simply returns the
+ * computed constant. As the strategy is called on the thread linking the lambda, it should not block.
+ */
+@FunctionalInterface
+public interface MetaInfoToStringStrategy extends ConstantToStringStrategy {
+
+    /**
+     * Generate the <code>toString</code> of the lambdas having the given {@link LambdaMetaInfo meta information}.
+     *
+     * @param metaInfo lambda meta information
+     * @return toString for the lambdas
+     * @throws LambdaToStringException if this strategy cannot generate a toString
+     * @see LambdaToStringStrategy#createToString(Object, LambdaMetaInfo)
+     */
+    String createToString(LambdaMetaInfo metaInfo) throws LambdaToStringException;
+
+    @Override
+    default String createToString(Object lambda, LambdaMetaInfo metaInfo) throws LambdaToStringException {
+        return createToString(metaInfo);
+    }
+
+    /**
+     * Generate the <code>toString</code> once for the lambda class, and return a formatter always returning it.
+     */
+    @Override
+    default LambdaToStringFormatter prepare(LambdaMetaInfo metaInfo) throws LambdaToStringException {
+        String toString = createToString(metaInfo);
+        return lambda -> toString;
+    }
+
+}
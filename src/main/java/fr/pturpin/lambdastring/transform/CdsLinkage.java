@@ -0,0 +1,55 @@
+package fr.pturpin.lambdastring.transform;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Linkage of the lambda classes loaded from a CDS archive.
+ * <p>
+ * When a dynamic AppCDS archive is dumped (<code>-XX:ArchiveClassesAtExit</code>) while the agent is active, the
+ * lambda classes are archived with their injected <code>toString</code>. The next runs using the archive load them
+ * without spinning them again, so their bytecode keeps the strategy class name, the linkage method and the
+ * {@link fr.pturpin.lambdastring.asm.ToStringMode mode} of the agent which dumped the archive.
+ * <p>
+ * Once installed, the {@link LambdaToStringLinker linker} ignores the strategy class name written in the lambda
+ * classes and links them to the strategy of the running agent instead. So archived and newly spun lambdas are linked
+ * the same way, whatever the strategy of the dumping run. The {@link StrategyRouter routes} and the
+ * {@link LambdaToStringSwitch switch} still apply afterward.
+ */
+public final class CdsLinkage {
+
+    /**
+     * Class name of the strategy of the running agent, or <code>null</code> if not installed
+     */
+    private static volatile String strategyClassName;
+
+    private CdsLinkage() {
+    }
+
+    /**
+     * Link the next lambdas to the given strategy, whatever the strategy written in their class.
+     *
+     * @param strategyClassName class name of the {@link fr.pturpin.lambdastring.strategy.LambdaToStringStrategy} of
+     *                          the running agent
+     */
+    public static void install(String strategyClassName) {
+        CdsLinkage.strategyClassName = requireNonNull(strategyClassName);
+    }
+
+    /**
+     * Indicate if the lambdas are linked to the strategy of the running agent.
+     */
+    public static boolean isInstalled() {
+        return strategyClassName != null;
+    }
+
+    /**
+     * Returns the class name of the strategy of the running agent, or the given one if not installed.
+     *
+     * @param linkedStrategyClassName class name of the strategy given to the linker by the lambda class
+     */
+    static String getStrategyClassName(String linkedStrategyClassName) {
+        String installed = strategyClassName;
+        return installed == null ? linkedStrategyClassName : installed;
+    }
+
+}
@@ -0,0 +1,349 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.AccessController;
+import java.security.CodeSource;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+/**
+ * Locator of class files going straight to the jar or the directory given by the {@link CodeSource} of the class.
+ * <p>
+ * Contrary to {@link ClassLoader#getResourceAsStream(String)}, this does not walk the class loader hierarchy, and does
+ * not reopen the jar on each lookup:
+ * <ul>
+ * <li>class files of exploded directories are read directly from their path. They are small, so they are read in a
+ * single call rather than memory-mapped, which would cost a mapping and a page fault per file.</li>
+ * <li>jars are opened once and kept in a bounded cache of {@link JarFile} handles</li>
+ * <li>nested jars, as in fat jars with a <code>jar:file:/app.jar!/BOOT-INF/lib/lib.jar!/</code> location, are read
+ * from the memory-mapped outer jar. Nested jars should be stored without compression, as fat jar launchers expect.</li>
+ * </ul>
+ * When the location is not supported, the locator gives up and callers should fall back on the class loader.
+ */
+final class ClassFileLocator {
+
+    /**
+     * Maximum number of archives kept open. The least recently used are closed first.
+     */
+    static final int MAX_OPEN_ARCHIVES = 16;
+
+    /**
+     * Minimum size of the files of exploded directories that are memory-mapped instead of read, as big lambda site
+     * indexes.
+     */
+    static final int MIN_MAPPED_FILE_SIZE = 1 << 20;
+
+    private static final String FILE_PROTOCOL = "file";
+    private static final String JAR_PROTOCOL = "jar";
+    private static final String JAR_SEPARATOR = "!/";
+    private static final String JAR_EXTENSION = ".jar";
+
+    private static final Map<String, Archive> OPEN_ARCHIVES = new OpenArchives();
+
+    private ClassFileLocator() {
+    }
+
+    /**
+     * Returns the class file of the given class, read from its code source location.
+     *
+     * @param declaringClass class whose class file is located
+     * @return class file of the class, or <code>null</code> if the location of the class is unknown or unsupported
+     * @throws IOException if the location is supported but the class file could not be read from it
+     */
+    static ByteBuffer locate(Class<?> declaringClass) throws IOException {
+        URL location = getLocation(declaringClass);
+        if (location == null) {
+            return null;
+        }
+        return locate(location, declaringClass.getName().replace('.', '/') + ".class");
+    }
+
+    /**
+     * Returns the given entry of the given code source location.
+     *
+     * @param location  location of a code source
+     * @param entryName name of the entry, relative to the location
+     * @return content of the entry, or <code>null</code> if the location is unsupported or the entry is missing
+     * @throws IOException if the entry could not be read
+     */
+    static ByteBuffer locate(URL location, String entryName) throws IOException {
+        try {
+            if (FILE_PROTOCOL.equals(location.getProtocol())) {
+                Path path = Paths.get(location.toURI());
+                if (Files.isDirectory(path)) {
+                    return readFile(path.resolve(entryName));
+                }
+                return archive(path.toString(), null).read(entryName);
+            } else if (JAR_PROTOCOL.equals(location.getProtocol())) {
+                return locateInJar(location.getPath(), entryName);
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static ByteBuffer locateInJar(String jarPath, String entryName) throws IOException, URISyntaxException {
+        // jar:file:/outer.jar!/nested.jar!/directory!/
+        String[] parts = jarPath.split(JAR_SEPARATOR);
+        URL outerLocation = new URL(parts[0]);
+        if (!FILE_PROTOCOL.equals(outerLocation.getProtocol())) {
+            return null;
+        }
+
+        String key = Paths.get(outerLocation.toURI()).toString();
+        Archive archive = null;
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.endsWith(JAR_EXTENSION)) {
+                archive = archive(key, archive);
+                key = key + JAR_SEPARATOR + prefix + part;
+                prefix.setLength(0);
+            } else if (!part.isEmpty()) {
+                prefix.append(part);
+                if (!part.endsWith("/")) {
+                    prefix.append('/');
+                }
+            }
+        }
+        return archive(key, archive).read(prefix + entryName);
+    }
+
+    /**
+     * Returns the cached archive of the given key, or open it.
+     *
+     * @param key   path of a jar file, or key of a nested jar, made of the key of its parent and its entry name
+     * @param outer parent of a nested jar, or <code>null</code> for a jar file
+     */
+    private static Archive archive(String key, Archive outer) throws IOException {
+        synchronized (OPEN_ARCHIVES) {
+            Archive archive = OPEN_ARCHIVES.get(key);
+            if (archive != null) {
+                return archive;
+            }
+        }
+
+        Archive archive;
+        if (outer == null) {
+            archive = new JarFileArchive(new JarFile(key));
+        } else {
+            String nestedName = key.substring(key.lastIndexOf(JAR_SEPARATOR) + JAR_SEPARATOR.length());
+            ByteBuffer nested = outer.readArchive(nestedName);
+            if (nested == null) {
+                throw new IOException("Nested jar not found: " + key);
+            }
+            archive = new ZipFileArchive(ZipArchive.open(nested));
+        }
+
+        synchronized (OPEN_ARCHIVES) {
+            Archive concurrent = OPEN_ARCHIVES.putIfAbsent(key, archive);
+            if (concurrent != null) {
+                archive.close();
+                return concurrent;
+            }
+            return archive;
+        }
+    }
+
+    private static ByteBuffer readFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        if (Files.size(file) >= MIN_MAPPED_FILE_SIZE) {
+            return mapFile(file);
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file));
+    }
+
+    private static ByteBuffer mapFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Returns the local jar file containing the given code source location. For nested jars, the outermost jar file is
+     * returned.
+     *
+     * @param location location of a code source
+     * @return jar file of the location, or <code>null</code> if the location is not in a local jar file
+     */
+    static Path getJarFile(URL location) {
+        try {
+            Path path;
+            if (FILE_PROTOCOL.equals(location.getProtocol())) {
+                path = Paths.get(location.toURI());
+            } else if (JAR_PROTOCOL.equals(location.getProtocol())) {
+                URL outerLocation = new URL(location.getPath().split(JAR_SEPARATOR)[0]);
+                if (!FILE_PROTOCOL.equals(outerLocation.getProtocol())) {
+                    return null;
+                }
+                path = Paths.get(outerLocation.toURI());
+            } else {
+                return null;
+            }
+            return Files.isRegularFile(path) ? path : null;
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static URL getLocation(Class<?> declaringClass) {
+        ProtectionDomain protectionDomain;
+        try {
+            protectionDomain = AccessController.doPrivileged(
+                    (PrivilegedAction<ProtectionDomain>) declaringClass::getProtectionDomain);
+        } catch (SecurityException e) {
+            return null;
+        }
+        if (protectionDomain == null) {
+            return null;
+        }
+        CodeSource codeSource = protectionDomain.getCodeSource();
+        return codeSource == null ? null : codeSource.getLocation();
+    }
+
+    static int openArchiveCount() {
+        synchronized (OPEN_ARCHIVES) {
+            return OPEN_ARCHIVES.size();
+        }
+    }
+
+    /**
+     * Last used archives, closing the eldest one beyond {@link #MAX_OPEN_ARCHIVES}.
+     */
+    private static final class OpenArchives extends LinkedHashMap<String, Archive> {
+
+        private static final long serialVersionUID = 1L;
+
+        OpenArchives() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Archive> eldest) {
+            if (size() > MAX_OPEN_ARCHIVES) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private interface Archive {
+
+        /**
+         * Returns the content of the given entry, or <code>null</code> if it's missing.
+         */
+        ByteBuffer read(String entryName) throws IOException;
+
+        /**
+         * Returns the given entry as a buffer readable by a {@link ZipArchive}, or <code>null</code> if it's missing.
+         */
+        ByteBuffer readArchive(String entryName) throws IOException;
+
+        void close();
+    }
+
+    /**
+     * Jar file opened through a {@link JarFile} handle.
+     * <p>
+     * Nested jars are read from a memory-mapping of the jar file, created on demand.
+     */
+    private static final class JarFileArchive implements Archive {
+
+        private final JarFile jarFile;
+        private volatile ZipArchive mapped;
+
+        JarFileArchive(JarFile jarFile) {
+            this.jarFile = jarFile;
+        }
+
+        @Override
+        public ByteBuffer read(String entryName) throws IOException {
+            ZipEntry entry;
+            byte[] content;
+            try {
+                entry = jarFile.getEntry(entryName);
+                if (entry == null) {
+                    return null;
+                }
+                try (InputStream input = jarFile.getInputStream(entry)) {
+                    content = LineNumberIndex.readFully(input);
+                }
+            } catch (IllegalStateException e) {
+                // Closed concurrently by the eviction of the cache
+                throw new IOException("Jar file closed: " + jarFile.getName(), e);
+            }
+            return ByteBuffer.wrap(content);
+        }
+
+        @Override
+        public ByteBuffer readArchive(String entryName) throws IOException {
+            ZipArchive zip = mapped;
+            if (zip == null) {
+                ByteBuffer file = mapFile(Paths.get(jarFile.getName()));
+                if (file == null) {
+                    return null;
+                }
+                zip = ZipArchive.open(file);
+                mapped = zip;
+            }
+            return zip.read(entryName);
+        }
+
+        @Override
+        public void close() {
+            try {
+                jarFile.close();
+            } catch (IOException e) {
+                // Nothing to do, the handle is dropped anyway
+            }
+        }
+    }
+
+    /**
+     * Nested jar read from a buffer. Nothing is held, so there is nothing to close.
+     */
+    private static final class ZipFileArchive implements Archive {
+
+        private final ZipArchive zip;
+
+        ZipFileArchive(ZipArchive zip) {
+            this.zip = zip;
+        }
+
+        @Override
+        public ByteBuffer read(String entryName) throws IOException {
+            return zip.read(entryName);
+        }
+
+        @Override
+        public ByteBuffer readArchive(String entryName) throws IOException {
+            return zip.read(entryName);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
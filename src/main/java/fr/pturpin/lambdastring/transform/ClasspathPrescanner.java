@@ -0,0 +1,209 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Background scan of the application classpath, indexing the lines of all classes declaring lambdas before they are
+ * even loaded.
+ * <p>
+ * Each jar or directory of the classpath is scanned by its own task on a dedicated {@link ForkJoinPool}, whose
+ * parallelism is the CPU budget given to the scan. Indexes are kept in the {@link PendingLineIndexes side table} of the
+ * system class loader, so no lambda toString has to parse a classpath class later. If a class is in several entries,
+ * the index of the first entry in the classpath is kept, as it is the one the class loader loads, whatever the task
+ * finishing first.
+ * <p>
+ * The scan never holds the startup: it runs on daemon threads with a low priority, and is abandoned once the given
+ * wall-clock time is elapsed. Indexes of classes that are never loaded are never taken from the side table, so the
+ * scan also stops once {@link #MAX_INDEXED_CLASSES} classes are indexed. Classes not scanned are simply indexed lazily.
+ */
+public final class ClasspathPrescanner {
+
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String VERSIONED_ENTRY_PREFIX = "META-INF/";
+
+    /**
+     * Maximum number of indexes kept by a scan, bounding the memory retained by classes never loaded.
+     */
+    static final int MAX_INDEXED_CLASSES = 16_384;
+
+    private final List<Path> classpath;
+    private final ClassLoader loader;
+    private final ForkJoinPool pool;
+    private final long deadlineNanos;
+    private final int maxIndexedClasses;
+    private final AtomicInteger indexedClasses;
+
+    ClasspathPrescanner(
+            List<Path> classpath,
+            ClassLoader loader,
+            int parallelism,
+            long timeoutMillis,
+            int maxIndexedClasses) {
+        this.classpath = requireNonNull(classpath);
+        this.loader = requireNonNull(loader);
+        this.pool = new ForkJoinPool(parallelism, new LowPriorityThreadFactory(), null, true);
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxIndexedClasses = maxIndexedClasses;
+        this.indexedClasses = new AtomicInteger();
+    }
+
+    /**
+     * Start the scan of the <code>java.class.path</code> in background.
+     *
+     * @param parallelism   maximum number of threads scanning the classpath
+     * @param timeoutMillis maximum wall-clock time of the scan, in milliseconds
+     * @throws IllegalArgumentException if the parallelism or the timeout is not positive
+     */
+    public static void start(int parallelism, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Expected a positive timeout: " + timeoutMillis);
+        }
+        List<Path> classpath = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                classpath.add(Paths.get(entry));
+            }
+        }
+        new ClasspathPrescanner(classpath, ClassLoader.getSystemClassLoader(), parallelism, timeoutMillis,
+                MAX_INDEXED_CLASSES).start();
+    }
+
+    void start() {
+        for (int position = 0; position < classpath.size(); position++) {
+            pool.execute(new ScanningTask(this, classpath.get(position), position));
+        }
+        // Let the threads die once the scan is done
+        pool.shutdown();
+    }
+
+    /**
+     * Wait for the end of the scan.
+     *
+     * @return <code>true</code> if the scan is done, <code>false</code> if the waiting timed out
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    int getIndexedClasses() {
+        return indexedClasses.get();
+    }
+
+    /**
+     * Indicate if the scan should stop, because its time is elapsed or because it indexed enough classes.
+     */
+    private boolean isOver() {
+        return System.nanoTime() - deadlineNanos > 0 || indexedClasses.get() >= maxIndexedClasses;
+    }
+
+    private void scan(Path entry, int position) throws IOException {
+        if (Files.isDirectory(entry)) {
+            scanDirectory(entry, position);
+        } else if (Files.isRegularFile(entry)) {
+            scanJar(entry, position);
+        }
+    }
+
+    private void scanDirectory(Path directory, int position) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext() && !isOver()) {
+                Path file = iterator.next();
+                String name = directory.relativize(file).toString().replace(File.separatorChar, '/');
+                if (name.endsWith(CLASS_EXTENSION) && Files.isRegularFile(file)) {
+                    index(name, position, Files.readAllBytes(file));
+                }
+            }
+        }
+    }
+
+    private void scanJar(Path jar, int position) throws IOException {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements() && !isOver()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!name.endsWith(CLASS_EXTENSION) || name.startsWith(VERSIONED_ENTRY_PREFIX)) {
+                    continue;
+                }
+                try (InputStream input = jarFile.getInputStream(entry)) {
+                    index(name, position, LineNumberIndex.readFully(input));
+                }
+            }
+        }
+    }
+
+    private void index(String entryName, int position, byte[] classFile) {
+        if (!LineCapturingTransformer.containsLambdaMethodName(classFile)) {
+            return;
+        }
+        String internalName = entryName.substring(0, entryName.length() - CLASS_EXTENSION.length());
+        LineNumberIndex index;
+        try {
+            index = LineNumberTableScanner.scan(ByteBuffer.wrap(classFile));
+        } catch (IllegalArgumentException e) {
+            // Invalid class file, it will fail anyway when loaded
+            return;
+        }
+        if (indexedClasses.getAndUpdate(count -> count < maxIndexedClasses ? count + 1 : count) < maxIndexedClasses) {
+            PendingLineIndexes.putPrescanned(loader, internalName, index, position);
+        }
+    }
+
+    private static final class ScanningTask implements Runnable {
+
+        private final ClasspathPrescanner scanner;
+        private final Path entry;
+        private final int position;
+
+        ScanningTask(ClasspathPrescanner scanner, Path entry, int position) {
+            this.scanner = scanner;
+            this.entry = entry;
+            this.position = position;
+        }
+
+        @Override
+        public void run() {
+            if (scanner.isOver()) {
+                return;
+            }
+            try {
+                scanner.scan(entry, position);
+            } catch (IOException | RuntimeException e) {
+                // The classes of this entry are indexed lazily
+            }
+        }
+    }
+
+    private static final class LowPriorityThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("lambda-string-prescan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+import fr.pturpin.lambdastring.strategy.LambdaToStringFormatter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Helper called by the <code>toString</code> of the lambda classes in the
+ * {@link fr.pturpin.lambdastring.asm.ToStringMode#COMPACT compact mode}.
+ * <p>
+ * A helper is linked once per lambda class, and holds the formatter of this class. It replaces the code that the
+ * other modes write in every lambda class:
+ * <ul>
+ * <li>a {@link LambdaToStringException} thrown by the formatter is rethrown</li>
+ * <li>any other error of the formatter gives the original {@link Object#toString()} of the lambda</li>
+ * <li>if asked, the first <code>toString</code> is kept and returned by the next calls</li>
+ * </ul>
+ */
+final class CompactToString {
+
+    /**
+     * Handle to {@link #createToString(Object)}, to bind to a helper instance.
+     */
+    static final MethodHandle CREATE_TO_STRING;
+
+    static {
+        try {
+            CREATE_TO_STRING = MethodHandles.lookup().findVirtual(CompactToString.class,
+                    "createToString",
+                    MethodType.methodType(String.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final LambdaToStringFormatter formatter;
+    private final boolean memoized;
+
+    // Not volatile: strings are immutable, so a racy read at most calls the formatter again
+    private String toString;
+
+    /**
+     * @param formatter formatter of the lambda class
+     * @param memoized  <code>true</code> to keep the first <code>toString</code>, only valid for a formatter of a
+     *                  {@link fr.pturpin.lambdastring.strategy.ConstantToStringStrategy}
+     */
+    CompactToString(LambdaToStringFormatter formatter, boolean memoized) {
+        this.formatter = requireNonNull(formatter);
+        this.memoized = memoized;
+    }
+
+    String createToString(Object lambda) throws LambdaToStringException {
+        String result = toString;
+        if (result != null) {
+            return result;
+        }
+
+        try {
+            result = formatter.format(lambda);
+        } catch (LambdaToStringException e) {
+            throw e;
+        } catch (Throwable e) {
+            // Same fallback than the toString written in the lambda classes by the other modes
+            return lambda.getClass().getName() + "@" + Integer.toHexString(lambda.hashCode());
+        }
+
+        if (memoized) {
+            toString = result;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,153 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+
+import java.lang.invoke.MethodHandleInfo;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Spin listener resolving, in background, the declaration lines of the spun lambdas.
+ * <p>
+ * Each time a lambda class is spun, its declaring class is queued on a single daemon thread indexing it. So the first
+ * <code>toString</code> of the lambda finds its declaration line already resolved instead of reading the class file on
+ * the caller thread.
+ * <p>
+ * The linking threads never wait for this resolution: classes already indexed or already queued are coalesced, and
+ * classes are simply dropped when the bounded queue is full. A dropped class is still resolved lazily on its first
+ * <code>toString</code>.
+ * <p>
+ * Lambdas declared in classes of the bootstrap class loader are ignored, as their <code>toString</code> is generally
+ * not injected.
+ * <p>
+ * This listener is called while lambdas are linked, including the lambdas spun by the resolution itself, as the ones
+ * of the class file lookup. So the notifications of the resolving thread are ignored, and so are nested notifications
+ * on a same thread. No lambda is used in this class.
+ */
+public final class EagerLineResolver implements BiConsumer<Class<?>, MethodHandleInfo> {
+
+    private final ThreadPoolExecutor executor;
+    private final Set<Class<?>> queuedClasses;
+    private final ThreadLocal<boolean[]> isNotifying;
+
+    /**
+     * Create a new resolver whose queue is bounded by the given capacity.
+     *
+     * @param queueCapacity maximum number of declaring classes waiting for being resolved
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public EagerLineResolver(int queueCapacity) {
+        this.queuedClasses = ConcurrentHashMap.newKeySet();
+        this.executor = new ThreadPoolExecutor(1,
+                1,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new DaemonThreadFactory(),
+                new DroppingPolicy(queuedClasses));
+        this.isNotifying = new ThreadLocal<boolean[]>() {
+            @Override
+            protected boolean[] initialValue() {
+                return new boolean[1];
+            }
+        };
+    }
+
+    /**
+     * Install a new resolver as the {@link LambdaSpinListeners spin listener}.
+     *
+     * @param queueCapacity maximum number of declaring classes waiting for being resolved
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public static void install(int queueCapacity) {
+        LambdaSpinListeners.install(new EagerLineResolver(queueCapacity));
+    }
+
+    @Override
+    public void accept(Class<?> targetClass, MethodHandleInfo implInfo) {
+        if (Thread.currentThread() instanceof ResolvingThread) {
+            // Lambdas spun while resolving would be queued back to the resolving thread
+            return;
+        }
+        boolean[] notifying = isNotifying.get();
+        if (notifying[0]) {
+            return;
+        }
+        notifying[0] = true;
+        try {
+            Class<?> declaringClass = implInfo.getDeclaringClass();
+            if (declaringClass.getClassLoader() == null
+                    || LineNumberIndex.isLoaded(declaringClass)
+                    || !queuedClasses.add(declaringClass)) {
+                return;
+            }
+            executor.execute(new ResolvingTask(declaringClass, queuedClasses));
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            // Never disturb the linkage of a lambda, the line is resolved lazily anyway
+        } finally {
+            notifying[0] = false;
+        }
+    }
+
+    private static final class ResolvingTask implements Runnable {
+
+        private final Class<?> declaringClass;
+        private final Set<Class<?>> queuedClasses;
+
+        ResolvingTask(Class<?> declaringClass, Set<Class<?>> queuedClasses) {
+            this.declaringClass = declaringClass;
+            this.queuedClasses = queuedClasses;
+        }
+
+        @Override
+        public void run() {
+            queuedClasses.remove(declaringClass);
+            try {
+                LineNumberIndex.of(declaringClass);
+            } catch (LambdaToStringException e) {
+                // The failure is kept by the index and reported on the first toString
+            }
+        }
+    }
+
+    private static final class DroppingPolicy implements RejectedExecutionHandler {
+
+        private final Set<Class<?>> queuedClasses;
+
+        DroppingPolicy(Set<Class<?>> queuedClasses) {
+            this.queuedClasses = queuedClasses;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            queuedClasses.remove(((ResolvingTask) task).declaringClass);
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new ResolvingThread(task);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+
+    private static final class ResolvingThread extends Thread {
+
+        ResolvingThread(Runnable task) {
+            super(task, "lambda-string-eager-line-resolver");
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.strategy.MetaInfoToStringStrategy;
+
+import java.lang.invoke.MethodHandleInfo;
+import java.util.function.BiFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Factory computing the <code>toString</code> of the lambdas while their classes are spun, for the
+ * {@link fr.pturpin.lambdastring.asm.ToStringMode#EAGER eager mode}.
+ * <p>
+ * As the {@link LambdaSpinListeners spin listener}, the factory is kept by the {@link SpinHooks spin hooks}, as a
+ * {@link BiFunction} receiving the target class of the lambda and the info of its implementation method. The patched
+ * metafactory calls it through the hooks, so the <code>toString</code> is computed lazily while it's not installed.
+ * <p>
+ * The factory returns <code>null</code>, so the <code>toString</code> is computed on the first call instead, if:
+ * <ul>
+ * <li>the strategy fails, so the failure is reported by the <code>toString</code> as in the other modes</li>
+ * <li>the lambda is created in a class of the bootstrap class loader, whose <code>toString</code> is generally not
+ * injected</li>
+ * <li>the lambda is spun while the strategy is already running on the same thread, as for a lambda used by the
+ * strategy itself</li>
+ * </ul>
+ */
+public final class EagerToStringFactory implements BiFunction<Class<?>, MethodHandleInfo, String> {
+
+    private static final String HOOK_NAME = "eagerToStringFactory";
+
+    private final MetaInfoToStringStrategy strategy;
+    private final ThreadLocal<boolean[]> isComputing;
+
+    /**
+     * Create a new factory computing the strings with the given strategy.
+     *
+     * @param strategy strategy to call when lambda classes are spun
+     * @throws NullPointerException if the strategy is <code>null</code>
+     */
+    public EagerToStringFactory(MetaInfoToStringStrategy strategy) {
+        this.strategy = requireNonNull(strategy);
+        this.isComputing = new ThreadLocal<boolean[]>() {
+            @Override
+            protected boolean[] initialValue() {
+                return new boolean[1];
+            }
+        };
+    }
+
+    /**
+     * Publish a new factory calling the given strategy, replacing any previous one.
+     *
+     * @param strategy strategy to call when lambda classes are spun
+     * @throws NullPointerException  if the strategy is <code>null</code>
+     * @throws IllegalStateException if the spin hooks are not installed
+     */
+    public static void install(MetaInfoToStringStrategy strategy) {
+        SpinHooks.set(HOOK_NAME, new EagerToStringFactory(strategy));
+    }
+
+    /**
+     * Remove the published factory, if any, so the <code>toString</code> of the next spun lambdas is computed lazily.
+     *
+     * @throws IllegalStateException if the spin hooks are not installed
+     */
+    public static void uninstall() {
+        SpinHooks.set(HOOK_NAME, null);
+    }
+
+    @Override
+    public String apply(Class<?> targetClass, MethodHandleInfo implInfo) {
+        boolean[] computing = isComputing.get();
+        if (computing[0] || targetClass.getClassLoader() == null) {
+            return null;
+        }
+        computing[0] = true;
+        try {
+            return strategy.createToString(new LambdaMetaInfo(targetClass,
+                    implInfo.getDeclaringClass(),
+                    implInfo.getName(),
+                    implInfo.getMethodType().toMethodDescriptorString(),
+                    implInfo.getReferenceKind(),
+                    implInfo.getModifiers()));
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            // Never disturb the linkage of a lambda, the toString is computed lazily anyway
+            return null;
+        } finally {
+            computing[0] = false;
+        }
+    }
+
+}
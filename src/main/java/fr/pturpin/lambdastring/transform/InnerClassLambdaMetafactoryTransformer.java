@@ -1,6 +1,8 @@
 package fr.pturpin.lambdastring.transform;
 
 import fr.pturpin.lambdastring.asm.InjectingToStringClassVisitor;
+import fr.pturpin.lambdastring.asm.InjectionOptions;
+import fr.pturpin.lambdastring.asm.MetafactoryShape;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -11,19 +13,34 @@ import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Transformer of the <code>InnerClassLambdaMetafactory</code>, injecting the <code>toString</code> in the lambda
+ * classes it spins.
+ * <p>
+ * The generator of the lambda classes is found by {@link MetafactoryShape detecting} the shape of the metafactory, so
+ * both the anonymous classes of JDK 8 to 14 and the hidden classes of the next JDKs are injected. A metafactory of an
+ * unsupported shape is left untouched, and the reason is kept in {@link #getUnsupportedReason()}.
+ */
 public final class InnerClassLambdaMetafactoryTransformer implements ClassFileTransformer {
 
-    private final String toStringStrategyClassName;
+    private final InjectionOptions options;
     private final UnaryOperator<ClassVisitor> classVisitorDecorator;
 
-    public InnerClassLambdaMetafactoryTransformer(String toStringStrategyClassName) {
-        this(toStringStrategyClassName, UnaryOperator.identity());
+    private volatile String unsupportedReason;
+
+    /**
+     * Create a transformer injecting the code described by the given options.
+     *
+     * @param options options of the injected code
+     */
+    public InnerClassLambdaMetafactoryTransformer(InjectionOptions options) {
+        this(options, UnaryOperator.identity());
     }
 
     InnerClassLambdaMetafactoryTransformer(
-            String toStringStrategyClassName,
+            InjectionOptions options,
             UnaryOperator<ClassVisitor> classVisitorDecorator) {
-        this.toStringStrategyClassName = requireNonNull(toStringStrategyClassName);
+        this.options = requireNonNull(options);
         this.classVisitorDecorator = requireNonNull(classVisitorDecorator);
     }
 
@@ -32,11 +49,28 @@ public final class InnerClassLambdaMetafactoryTransformer implements ClassFileTr
             ProtectionDomain protectionDomain, byte[] classfileBuffer) {
         if (className.equals("java/lang/invoke/InnerClassLambdaMetafactory")) {
             ClassReader cr = new ClassReader(classfileBuffer);
+            MetafactoryShape shape;
+            try {
+                shape = MetafactoryShape.of(cr);
+            } catch (IllegalArgumentException e) {
+                unsupportedReason = e.getMessage();
+                return null;
+            }
+            unsupportedReason = null;
+
             ClassWriter cw = new ClassWriter(cr, 0);
-            cr.accept(new InjectingToStringClassVisitor(classVisitorDecorator.apply(cw), toStringStrategyClassName), 0);
+            cr.accept(new InjectingToStringClassVisitor(classVisitorDecorator.apply(cw), options, shape), 0);
             return cw.toByteArray();
         }
         return null;
     }
 
+    /**
+     * Returns the reason why the last seen metafactory was left untouched, or <code>null</code> if it was transformed
+     * or not seen yet.
+     */
+    public String getUnsupportedReason() {
+        return unsupportedReason;
+    }
+
 }
@@ -0,0 +1,320 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of the lambda classes spun by the patched <code>InnerClassLambdaMetafactory</code>, with the inputs of their
+ * {@link LambdaMetaInfo meta information}.
+ * <p>
+ * Each time the generator of the metafactory returns a new lambda class, it registers the class, its target class and
+ * the info of its implementation method. The generator needs three arguments, more than the functional interfaces of
+ * the JDK, so the registration is kept by the {@link SpinHooks spin hooks} as a {@link MethodHandle} invoked exactly.
+ * Just before, once the class file is written, the generator records its size through another handle, kept by the
+ * linking thread until the registration. The hooks read these handles with a volatile read and no lock, and ignore
+ * them while the registry is not installed. So it should be installed before the metafactory is transformed, to
+ * register all the spun lambda classes.
+ * <p>
+ * The registration only appends an entry to a lock-free queue, so it does not slow down the linkage of the lambdas, as
+ * measured by the <code>LambdaCallSiteGenerationComparisonBenchmark</code>. The classes are weakly referenced, so the
+ * registry does not prevent their unloading. The unloaded lambda classes are counted from a {@link ReferenceQueue} on
+ * the next registrations, and their entries are purged in a single pass once they are half of the registry. So the
+ * purge costs an amortized constant time per unloaded class.
+ * <p>
+ * Lambda classes loaded from a CDS archive are not generated, so they are not registered.
+ */
+public final class LambdaClassRegistry {
+
+    private static final String REGISTRATION_HOOK_NAME = "classRegistration";
+    private static final String SIZE_RECORD_HOOK_NAME = "classSizeRecord";
+
+    private static final int UNKNOWN_SIZE = -1;
+
+    private static final ConcurrentLinkedQueue<Entry> ENTRIES = new ConcurrentLinkedQueue<>();
+    private static final ReferenceQueue<Class<?>> UNLOADED_CLASSES = new ReferenceQueue<>();
+    private static final AtomicInteger ENTRY_COUNT = new AtomicInteger();
+    private static final AtomicInteger UNLOADED_COUNT = new AtomicInteger();
+    private static final AtomicBoolean PURGING = new AtomicBoolean();
+    private static final ThreadLocal<int[]> PENDING_SIZE = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[] { UNKNOWN_SIZE };
+        }
+    };
+
+    private LambdaClassRegistry() {
+    }
+
+    /**
+     * Publish the registration so the next spun lambda classes are registered.
+     *
+     * @throws IllegalStateException if the spin hooks are not installed
+     */
+    public static void install() {
+        MethodHandle register;
+        MethodHandle recordSize;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            register = lookup.findStatic(LambdaClassRegistry.class,
+                    "register",
+                    MethodType.methodType(void.class, Class.class, Class.class, MethodHandleInfo.class));
+            recordSize = lookup.findStatic(LambdaClassRegistry.class,
+                    "recordSize",
+                    MethodType.methodType(void.class, int.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Could not find the registration", e);
+        }
+        SpinHooks.set(SIZE_RECORD_HOOK_NAME, recordSize);
+        SpinHooks.set(REGISTRATION_HOOK_NAME, register);
+    }
+
+    /**
+     * Indicate if the registration is published.
+     */
+    public static boolean isInstalled() {
+        return SpinHooks.isInstalled() && SpinHooks.get(REGISTRATION_HOOK_NAME) != null;
+    }
+
+    /**
+     * Returns the registered lambda classes still loaded whose implementation method is declared by the given class.
+     *
+     * @param declaringClass class declaring the implementation methods
+     * @return registered lambda classes, in the order of their registration
+     * @throws NullPointerException if the declaring class is <code>null</code>
+     */
+    public static List<RegisteredLambda> findByDeclaringClass(Class<?> declaringClass) {
+        requireNonNull(declaringClass);
+        List<RegisteredLambda> found = new ArrayList<>();
+        for (Entry entry : ENTRIES) {
+            if (entry.getDeclaringClass() == declaringClass) {
+                entry.addTo(found);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the registered lambda classes still loaded whose implementation method is declared by a class of the
+     * given package or of one of its sub-packages.
+     *
+     * @param packageName name of the package of the declaring classes, as <code>my.app</code>
+     * @return registered lambda classes, in the order of their registration
+     * @throws NullPointerException if the package name is <code>null</code>
+     */
+    public static List<RegisteredLambda> findByPackage(String packageName) {
+        requireNonNull(packageName);
+        List<RegisteredLambda> found = new ArrayList<>();
+        for (Entry entry : ENTRIES) {
+            Class<?> declaringClass = entry.getDeclaringClass();
+            if (declaringClass != null && isInPackage(declaringClass.getName(), packageName)) {
+                entry.addTo(found);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Give each registered lambda class still loaded to the given action, in the order of their registration, without
+     * copying the registry.
+     *
+     * @param action action receiving the registered lambda classes
+     * @throws NullPointerException if the action is <code>null</code>
+     */
+    public static void forEach(Consumer<? super RegisteredLambda> action) {
+        requireNonNull(action);
+        for (Entry entry : ENTRIES) {
+            RegisteredLambda registered = entry.snapshot();
+            if (registered != null) {
+                action.accept(registered);
+            }
+        }
+    }
+
+    private static boolean isInPackage(String className, String packageName) {
+        int packageEnd = className.lastIndexOf('.');
+        if (packageEnd < packageName.length() || !className.startsWith(packageName)) {
+            return false;
+        }
+        return packageEnd == packageName.length() || className.charAt(packageName.length()) == '.';
+    }
+
+    /**
+     * Called by the patched metafactory each time it writes the class file of a lambda class, before defining it.
+     */
+    private static void recordSize(int byteSize) {
+        PENDING_SIZE.get()[0] = byteSize;
+    }
+
+    /**
+     * Called by the patched metafactory each time it generates a lambda class. This is called while lambdas are
+     * linked, including the ones this method would use, so no lambda is used here.
+     */
+    private static void register(Class<?> lambdaClass, Class<?> targetClass, MethodHandleInfo implInfo) {
+        if (UNLOADED_CLASSES.poll() != null) {
+            countUnloaded();
+        }
+        int[] pendingSize = PENDING_SIZE.get();
+        int byteSize = pendingSize[0];
+        pendingSize[0] = UNKNOWN_SIZE;
+        ENTRIES.add(new Entry(lambdaClass, targetClass, implInfo, byteSize, UNLOADED_CLASSES));
+        ENTRY_COUNT.incrementAndGet();
+    }
+
+    /**
+     * Count the unloaded lambda classes, one being already polled, and purge their entries once they are half of the
+     * registry.
+     */
+    private static void countUnloaded() {
+        int unloaded = 1;
+        while (UNLOADED_CLASSES.poll() != null) {
+            unloaded++;
+        }
+        if (2 * UNLOADED_COUNT.addAndGet(unloaded) >= ENTRY_COUNT.get()) {
+            purge();
+        }
+    }
+
+    /**
+     * Remove the entries of the unloaded lambda classes, in a single pass whatever their number. A registration
+     * finding another one purging does not wait for it.
+     */
+    private static void purge() {
+        if (!PURGING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // Entries cleared but not enqueued yet are removed too, and counted again later: this only purges earlier
+            UNLOADED_COUNT.set(0);
+            int removed = 0;
+            Iterator<Entry> iterator = ENTRIES.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().get() == null) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+            ENTRY_COUNT.addAndGet(-removed);
+        } finally {
+            PURGING.set(false);
+        }
+    }
+
+    /**
+     * Lambda class found in the registry, strongly referenced while it is used.
+     */
+    public static final class RegisteredLambda {
+
+        private final Class<?> lambdaClass;
+        private final LambdaMetaInfo metaInfo;
+        private final int byteSize;
+
+        private RegisteredLambda(Class<?> lambdaClass, LambdaMetaInfo metaInfo, int byteSize) {
+            this.lambdaClass = lambdaClass;
+            this.metaInfo = metaInfo;
+            this.byteSize = byteSize;
+        }
+
+        public Class<?> getLambdaClass() {
+            return lambdaClass;
+        }
+
+        /**
+         * Returns the meta information of the lambda class, built from the registered inputs. So it's available even
+         * if the <code>toString</code> of the class was not injected.
+         */
+        public LambdaMetaInfo getMetaInfo() {
+            return metaInfo;
+        }
+
+        /**
+         * Returns the size of the class file generated for the lambda class, or an empty optional if it was not
+         * recorded.
+         */
+        public OptionalInt getByteSize() {
+            return byteSize == UNKNOWN_SIZE ? OptionalInt.empty() : OptionalInt.of(byteSize);
+        }
+
+    }
+
+    /**
+     * Entry of a lambda class, weakly referencing it and the classes of its meta information, as they may be in the
+     * same class loader.
+     */
+    private static final class Entry extends WeakReference<Class<?>> {
+
+        private final Reference<Class<?>> targetClass;
+        private final Reference<Class<?>> declaringClass;
+        private final String methodName;
+        private final String methodDesc;
+        private final int referenceKind;
+        private final int modifiers;
+        private final int byteSize;
+
+        private Entry(
+                Class<?> lambdaClass,
+                Class<?> targetClass,
+                MethodHandleInfo implInfo,
+                int byteSize,
+                ReferenceQueue<Class<?>> queue) {
+            super(lambdaClass, queue);
+            Class<?> declaringClass = implInfo.getDeclaringClass();
+            this.targetClass = new WeakReference<>(targetClass);
+            // Lambda bodies are generally declared by their target class
+            this.declaringClass = declaringClass == targetClass
+                    ? this.targetClass
+                    : new WeakReference<>(declaringClass);
+            this.methodName = implInfo.getName();
+            // Already computed and kept by the method type while the metafactory was built
+            this.methodDesc = implInfo.getMethodType().toMethodDescriptorString();
+            this.referenceKind = implInfo.getReferenceKind();
+            this.modifiers = implInfo.getModifiers();
+            this.byteSize = byteSize;
+        }
+
+        private Class<?> getDeclaringClass() {
+            return declaringClass.get();
+        }
+
+        /**
+         * Add a strong snapshot of this entry to the given list, if its classes are still loaded.
+         */
+        private void addTo(List<RegisteredLambda> list) {
+            RegisteredLambda registered = snapshot();
+            if (registered != null) {
+                list.add(registered);
+            }
+        }
+
+        /**
+         * Returns a strong snapshot of this entry, or <code>null</code> if its classes are not loaded anymore.
+         */
+        private RegisteredLambda snapshot() {
+            Class<?> lambdaClass = get();
+            Class<?> target = targetClass.get();
+            Class<?> declaring = declaringClass.get();
+            if (lambdaClass == null || target == null || declaring == null) {
+                return null;
+            }
+            return new RegisteredLambda(lambdaClass,
+                    new LambdaMetaInfo(target, declaring, methodName, methodDesc, referenceKind, modifiers),
+                    byteSize);
+        }
+
+    }
+
+}
@@ -0,0 +1,256 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.instrument.Instrumentation;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Inventory of the live lambda classes, written as CSV.
+ * <p>
+ * The file starts with the {@link #HEADER} line, then has a line per lambda class with:
+ * <ul>
+ * <li>the name of the lambda class</li>
+ * <li>its functional interface</li>
+ * <li>the target class creating it, the class and the method declaring its implementation, and the declaration line
+ * of this method, as given by its {@link LambdaMetaInfo meta information}</li>
+ * <li>the size of its generated class file</li>
+ * <li>its class loader, as the class name and the identity hash of the loader, or <code>bootstrap</code></li>
+ * </ul>
+ * Class names and method names may contain commas and quotes, so values are quoted as in RFC 4180: a value containing
+ * a comma, a double quote or a line break is enclosed in double quotes, and its double quotes are doubled. An unknown
+ * value is left empty.
+ * <p>
+ * The lambda classes are read from the {@link LambdaClassRegistry registry}, and each line is written as soon as its
+ * class is read, so the inventory is never held in memory. If the registry is not installed, the lambda classes loaded
+ * in the JVM are listed instead: their meta information is then {@link LambdaStrings#resolve(Class) resolved} from
+ * their target class, and the size of their class file is unknown.
+ * <p>
+ * Declaration lines not yet resolved are read from the class files without being kept by the lambdas or their
+ * declaring classes, so writing an inventory does not grow the memory of the JVM. While writing, only the
+ * {@link #MAX_READ_INDEXES} last used indexes are kept: the lambdas of a same declaring class being generally spun
+ * together, their class file is read once.
+ */
+public final class LambdaInventory {
+
+    /**
+     * First line of the inventory, naming its columns.
+     */
+    public static final String HEADER = "lambda_class,functional_interface,target_class,declaring_class,method,line,"
+            + "class_bytes,class_loader";
+
+    private static final String BOOTSTRAP_LOADER = "bootstrap";
+    private static final int NO_LINE = -1;
+
+    /**
+     * Maximum number of line indexes read from the class files and kept while writing an inventory.
+     */
+    static final int MAX_READ_INDEXES = 16;
+
+    private LambdaInventory() {
+    }
+
+    /**
+     * Write the inventory of the lambda classes of the {@link LambdaClassRegistry registry} into the given file.
+     *
+     * @param output file to write into, replaced if it exists
+     * @throws IOException           if the file could not be written
+     * @throws IllegalStateException if the registry is not installed
+     */
+    public static void write(Path output) throws IOException {
+        if (!LambdaClassRegistry.isInstalled()) {
+            throw new IllegalStateException("The lambda class registry is not installed");
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writeRegisteredLambdas(writer);
+        }
+    }
+
+    /**
+     * Write the inventory of the lambda classes of the {@link LambdaClassRegistry registry} into the given file, or of
+     * the lambda classes loaded in the JVM if the registry is not installed.
+     *
+     * @param output file to write into, replaced if it exists
+     * @param inst   instrumentation of the agent, giving the loaded classes
+     * @throws IOException if the file could not be written
+     */
+    public static void write(Path output, Instrumentation inst) throws IOException {
+        if (LambdaClassRegistry.isInstalled()) {
+            write(output);
+            return;
+        }
+        LambdaStrings.install(inst);
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writeLoadedLambdas(writer, inst.getAllLoadedClasses());
+        }
+    }
+
+    private static void writeRegisteredLambdas(BufferedWriter writer) throws IOException {
+        writeHeader(writer);
+        Map<Class<?>, LineNumberIndex> readIndexes = new ReadIndexes();
+        try {
+            LambdaClassRegistry.forEach(registered -> {
+                try {
+                    writeLine(writer,
+                            registered.getLambdaClass(),
+                            Optional.of(registered.getMetaInfo()),
+                            registered.getByteSize(),
+                            readIndexes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Write the header and a line per lambda class among the given classes.
+     */
+    static void writeLoadedLambdas(BufferedWriter writer, Class<?>[] loadedClasses) throws IOException {
+        writeHeader(writer);
+        Map<Class<?>, LineNumberIndex> readIndexes = new ReadIndexes();
+        for (Class<?> loadedClass : loadedClasses) {
+            if (LambdaStrings.isLambdaClass(loadedClass)) {
+                writeLine(writer, loadedClass, LambdaStrings.resolve(loadedClass), OptionalInt.empty(), readIndexes);
+            }
+        }
+    }
+
+    private static void writeHeader(BufferedWriter writer) throws IOException {
+        writer.write(HEADER);
+        writer.newLine();
+    }
+
+    private static void writeLine(
+            BufferedWriter writer,
+            Class<?> lambdaClass,
+            Optional<LambdaMetaInfo> metaInfo,
+            OptionalInt byteSize,
+            Map<Class<?>, LineNumberIndex> readIndexes) throws IOException {
+        writeValue(writer, lambdaClass.getName());
+        writer.write(',');
+        Class<?>[] interfaces = lambdaClass.getInterfaces();
+        if (interfaces.length > 0) {
+            // Marker interfaces of serializable or alternate lambdas follow the functional one
+            writeValue(writer, interfaces[0].getName());
+        }
+        writer.write(',');
+        if (metaInfo.isPresent()) {
+            writeMetaInfo(writer, metaInfo.get(), readIndexes);
+        } else {
+            writer.write(",,,");
+        }
+        writer.write(',');
+        if (byteSize.isPresent()) {
+            writer.write(Integer.toString(byteSize.getAsInt()));
+        }
+        writer.write(',');
+        writeClassLoader(writer, lambdaClass.getClassLoader());
+        writer.newLine();
+    }
+
+    private static void writeMetaInfo(
+            Writer writer,
+            LambdaMetaInfo metaInfo,
+            Map<Class<?>, LineNumberIndex> readIndexes) throws IOException {
+        writeValue(writer, metaInfo.getTargetClass().getName());
+        writer.write(',');
+        writeValue(writer, metaInfo.getDeclaringClass().getName());
+        writer.write(',');
+        writeValue(writer, metaInfo.getMethodName());
+        writer.write(',');
+        int line = getDeclarationLine(metaInfo, readIndexes);
+        if (line != NO_LINE) {
+            writer.write(Integer.toString(line));
+        }
+    }
+
+    /**
+     * Returns the declaration line of the given lambda, or <code>-1</code> if it is unknown. If the line is not yet
+     * resolved, it is read without being kept, from the given last indexes read for this inventory.
+     */
+    private static int getDeclarationLine(LambdaMetaInfo metaInfo, Map<Class<?>, LineNumberIndex> readIndexes) {
+        if (metaInfo.isDeclarationLineResolved()) {
+            try {
+                return metaInfo.getDeclarationLine().orElse(NO_LINE);
+            } catch (LambdaToStringException e) {
+                return NO_LINE;
+            }
+        }
+
+        Class<?> declaringClass = metaInfo.getDeclaringClass();
+        String methodName = metaInfo.getMethodName();
+        String methodDesc = metaInfo.getMethodDesc();
+        int line = LambdaSiteIndex.getFirstLine(declaringClass, methodName, methodDesc);
+        if (line != NO_LINE) {
+            return line;
+        }
+        LineNumberIndex index = readIndexes.get(declaringClass);
+        if (index == null) {
+            try {
+                index = LineNumberIndex.read(declaringClass);
+            } catch (LambdaToStringException e) {
+                index = new LineNumberIndex.Builder().build();
+            }
+            readIndexes.put(declaringClass, index);
+        }
+        return index.getFirstLine(methodName, methodDesc);
+    }
+
+    private static void writeClassLoader(Writer writer, ClassLoader classLoader) throws IOException {
+        if (classLoader == null) {
+            writer.write(BOOTSTRAP_LOADER);
+            return;
+        }
+        writeValue(writer, classLoader.getClass().getName() + '@'
+                + Integer.toHexString(System.identityHashCode(classLoader)));
+    }
+
+    /**
+     * Write the given value, enclosed in double quotes if it contains a comma, a double quote or a line break.
+     */
+    static void writeValue(Writer writer, String value) throws IOException {
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Last used line indexes read for an inventory, bounded by {@link #MAX_READ_INDEXES}.
+     */
+    private static final class ReadIndexes extends LinkedHashMap<Class<?>, LineNumberIndex> {
+
+        private static final long serialVersionUID = 1L;
+
+        ReadIndexes() {
+            super(MAX_READ_INDEXES * 2, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Class<?>, LineNumberIndex> eldest) {
+            return size() > MAX_READ_INDEXES;
+        }
+    }
+
+}
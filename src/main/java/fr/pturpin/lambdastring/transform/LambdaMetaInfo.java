@@ -1,25 +1,38 @@
 package fr.pturpin.lambdastring.transform;
 
-import fr.pturpin.lambdastring.asm.FetchingFirstLineNumberOfIndyClassVisitor;
 import fr.pturpin.lambdastring.strategy.LambdaToStringException;
-import org.objectweb.asm.ClassReader;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Optional;
 import java.util.OptionalInt;
 
 import static java.util.Objects.requireNonNull;
 
 public final class LambdaMetaInfo {
 
+    private static final ClassValue<Optional<LambdaMetaInfo>> META_INFO_BY_LAMBDA_CLASS =
+            new ClassValue<Optional<LambdaMetaInfo>>() {
+                @Override
+                protected Optional<LambdaMetaInfo> computeValue(Class<?> type) {
+                    return fetchMetaInfo(type);
+                }
+            };
+
+    private static final int UNRESOLVED_LINE = Integer.MIN_VALUE;
+    private static final int NO_LINE = -1;
+
     private final Class<?> targetClass;
     private final Class<?> declaringClass;
     private final String methodName;
     private final String methodDesc;
     private final int referenceKind;
     private final int modifers;
-    private int declarationLine;
-    private volatile boolean isDeclarationLineComputed;
+    private volatile int declarationLine;
+    private volatile int creationLine;
 
     public LambdaMetaInfo(
             Class<?> targetClass,
@@ -34,8 +47,57 @@ public final class LambdaMetaInfo {
         this.methodDesc = requireNonNull(methodDesc);
         this.referenceKind = referenceKind;
         this.modifers = modifers;
-        this.declarationLine = -1;
-        this.isDeclarationLineComputed = false;
+        this.declarationLine = UNRESOLVED_LINE;
+        this.creationLine = UNRESOLVED_LINE;
+    }
+
+    /**
+     * Returns the meta information of the given lambda.
+     * <p>
+     * There is a unique meta information per lambda class, built on the first use and then kept by the lambda class.
+     * So all instances of a same lambda share the same meta information.
+     * <p>
+     * An empty optional is returned if the given object is not a lambda whose <code>toString</code> was injected by the
+     * agent.
+     *
+     * @param lambda lambda instance
+     * @return meta information of the lambda, or an empty optional if the object is not an injected lambda
+     * @throws NullPointerException  if the lambda is <code>null</code>
+     * @throws IllegalStateException if the meta information of an injected lambda could not be built
+     */
+    public static Optional<LambdaMetaInfo> of(Object lambda) {
+        return META_INFO_BY_LAMBDA_CLASS.get(lambda.getClass());
+    }
+
+    /**
+     * Same as {@link #of(Object)} but with the lambda class instead of an instance.
+     */
+    static Optional<LambdaMetaInfo> ofClass(Class<?> lambdaClass) {
+        return META_INFO_BY_LAMBDA_CLASS.get(lambdaClass);
+    }
+
+    private static Optional<LambdaMetaInfo> fetchMetaInfo(Class<?> lambdaClass) {
+        Method method;
+        try {
+            method = lambdaClass.getDeclaredMethod(LambdaToStringLinker.META_INFO_METHOD_NAME);
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+
+        if (!Modifier.isStatic(method.getModifiers()) || !LambdaMetaInfo.class.equals(method.getReturnType())) {
+            return Optional.empty();
+        }
+
+        AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+            method.setAccessible(true);
+            return null;
+        });
+
+        try {
+            return Optional.of((LambdaMetaInfo) method.invoke(null));
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not get meta information of " + lambdaClass, e);
+        }
     }
 
     public Class<?> getTargetClass() {
@@ -62,39 +124,70 @@ public final class LambdaMetaInfo {
         return methodDesc;
     }
 
+    /**
+     * Returns the first line of the implementation method of the lambda.
+     * <p>
+     * The line is resolved on the first call. Concurrent first callers share the same resolution of the declaring
+     * class, and only a fully resolved line is published.
+     *
+     * @return the declaration line, or an empty optional if the declaring class has no line information
+     * @throws LambdaToStringException if the declaring class could not be read
+     */
     public OptionalInt getDeclarationLine() throws LambdaToStringException {
-        // Not really important to really sync the check. The output is expected to be constant and the worst case
-        // just computing this constant multiple times.
-        if (!isDeclarationLineComputed) {
-            isDeclarationLineComputed = true;
-            declarationLine = computeDeclarationLine();
+        int line = declarationLine;
+        if (line == UNRESOLVED_LINE) {
+            line = computeDeclarationLine();
+            declarationLine = line;
         }
-        return declarationLine == -1 ? OptionalInt.empty() : OptionalInt.of(declarationLine);
+        return line == NO_LINE ? OptionalInt.empty() : OptionalInt.of(line);
+    }
+
+    /**
+     * Indicate if the declaration line is already resolved, so {@link #getDeclarationLine()} does not read any class.
+     */
+    boolean isDeclarationLineResolved() {
+        return declarationLine != UNRESOLVED_LINE;
     }
 
     private int computeDeclarationLine() throws LambdaToStringException {
-        ClassReader cr;
-        ClassLoader classLoader = declaringClass.getClassLoader();
-        if (classLoader == null) {
-            classLoader = ClassLoader.getSystemClassLoader();
+        // The build-time index, if any, avoids reading the class file
+        int line = LambdaSiteIndex.getFirstLine(declaringClass, methodName, methodDesc);
+        if (line != NO_LINE) {
+            return line;
         }
-        String resourceName = declaringClass.getName().replace('.', '/') + ".class";
-        try (InputStream classStream = classLoader.getResourceAsStream(resourceName)) {
-            if (classStream == null) {
-                throw new LambdaToStringException("Could not find resource " + resourceName);
-            }
-            cr = new ClassReader(classStream);
-        } catch (IOException e) {
-            throw new LambdaToStringException("Could not read class " + declaringClass, e);
+        return LineNumberIndex.of(declaringClass).getFirstLine(methodName, methodDesc);
+    }
+
+    /**
+     * Returns the line of the <code>invokedynamic</code> instruction creating the lambda in its target class.
+     * <p>
+     * Contrary to the {@link #getDeclarationLine() declaration line}, this is the place where a method reference is
+     * written, not the first line of the referenced method. For lambdas, both lines are generally the same.
+     * <p>
+     * The creation site is found by the implementation method of the lambda, during the same pass over the target class
+     * as the declaration lines. If several lambdas of the target class have the same implementation method, as a same
+     * method reference written twice, the first one is returned.
+     *
+     * @return the creation line, or an empty optional if the target class has no line information
+     * @throws LambdaToStringException if the target class could not be read
+     */
+    public OptionalInt getCreationLine() throws LambdaToStringException {
+        int line = creationLine;
+        if (line == UNRESOLVED_LINE) {
+            line = computeCreationLine();
+            creationLine = line;
         }
+        return line == NO_LINE ? OptionalInt.empty() : OptionalInt.of(line);
+    }
 
-        int[] line = new int[]{ -1 };
-        FetchingFirstLineNumberOfIndyClassVisitor visitor = new FetchingFirstLineNumberOfIndyClassVisitor(
-                methodName,
-                methodDesc,
-                foundLine -> line[0] = foundLine);
-        cr.accept(visitor, ClassReader.SKIP_FRAMES);
-        return line[0];
+    private int computeCreationLine() throws LambdaToStringException {
+        String implClassName = declaringClass.getName();
+        // The build-time index, if any, avoids reading the class file
+        int line = LambdaSiteIndex.getCreationLine(targetClass, implClassName, methodName, methodDesc);
+        if (line != NO_LINE) {
+            return line;
+        }
+        return LineNumberIndex.of(targetClass).getCreationLine(implClassName, methodName, methodDesc);
     }
 
 }
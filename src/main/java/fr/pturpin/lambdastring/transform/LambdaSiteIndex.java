@@ -0,0 +1,277 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Build-time index of the first line of every lambda and method reference implementation method of a code source, and
+ * of the line of every lambda and method reference creation site.
+ * <p>
+ * The index is built by the {@link LambdaSiteIndexer} and embedded as the {@link #RESOURCE_NAME} resource of the jar or
+ * the classes directory. At runtime, a line is found in constant time without reading any class file, so it also works
+ * for classes whose debug information is stripped when loaded.
+ * <p>
+ * The index is an open-addressing table whose entries are made of the {@link LineNumberIndex#key(int, int) method key}
+ * and {@link LineNumberIndex#check(int, int) check}, the hash and check of the declaring class name, and the line.
+ * Creation sites are entries made of the {@link LineNumberIndex#siteKey(int, int, int) site key} and
+ * {@link LineNumberIndex#siteCheck(int, int, int) check}, the hash and check of the class creating the lambda, and the
+ * line. As in the {@link LineNumberIndex}, the checks must match on lookup, so names of same hash keep their own line.
+ * <p>
+ * File format, in big endian:
+ * <pre>
+ * int magic
+ * int capacity of the table, a power of two
+ * (long method key, int check, int class name hash, int class name check, int line)[] table, with a line of 0 for
+ * empty entries
+ * </pre>
+ */
+final class LambdaSiteIndex {
+
+    /**
+     * Name of the index resource, relative to the code source.
+     */
+    static final String RESOURCE_NAME = "META-INF/lambda-string.idx";
+
+    private static final int MAGIC = 0x4C535332; // "LSS2"
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 24;
+    private static final int LINE_OFFSET = 20;
+    private static final int EMPTY_LINE = 0;
+    private static final int NO_LINE = -1;
+
+    private static final LambdaSiteIndex MISSING = new LambdaSiteIndex(null);
+
+    private static final ConcurrentMap<String, LambdaSiteIndex> INDEX_BY_LOCATION = new ConcurrentHashMap<>();
+
+    private final ByteBuffer buffer;
+
+    private LambdaSiteIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns the first line of the given method, as found by the index of the code source of its class.
+     *
+     * @param declaringClass class declaring the method
+     * @param methodName     name of the method
+     * @param methodDesc     descriptor of the method
+     * @return first line of the method, or <code>-1</code> if the code source has no index or the method is not indexed
+     */
+    static int getFirstLine(Class<?> declaringClass, String methodName, String methodDesc) {
+        return of(declaringClass).getFirstLine(declaringClass.getName(), methodName, methodDesc);
+    }
+
+    /**
+     * Returns the line creating a lambda with the given implementation method, as found by the index of the code source
+     * of the creating class.
+     *
+     * @param targetClass   class creating the lambda
+     * @param implClassName binary name of the class declaring the implementation method
+     * @param implName      name of the implementation method
+     * @param implDesc      descriptor of the implementation method
+     * @return line of the creation site, or <code>-1</code> if the code source has no index or the site is not indexed
+     * @see LineNumberIndex#getCreationLine(String, String, String)
+     */
+    static int getCreationLine(Class<?> targetClass, String implClassName, String implName, String implDesc) {
+        return of(targetClass).getCreationLine(targetClass.getName(), implClassName, implName, implDesc);
+    }
+
+    private static LambdaSiteIndex of(Class<?> type) {
+        URL location = ClassFileLocator.getLocation(type);
+        if (location == null) {
+            return MISSING;
+        }
+        LambdaSiteIndex index = INDEX_BY_LOCATION.get(location.toString());
+        if (index == null) {
+            index = load(location);
+            LambdaSiteIndex concurrent = INDEX_BY_LOCATION.putIfAbsent(location.toString(), index);
+            if (concurrent != null) {
+                index = concurrent;
+            }
+        }
+        return index;
+    }
+
+    private static LambdaSiteIndex load(URL location) {
+        try {
+            ByteBuffer buffer = ClassFileLocator.locate(location, RESOURCE_NAME);
+            return buffer == null ? MISSING : read(buffer);
+        } catch (IOException | RuntimeException e) {
+            return MISSING;
+        }
+    }
+
+    /**
+     * Read the given index bytes. An invalid index is read as an empty index.
+     */
+    static LambdaSiteIndex read(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            return MISSING;
+        }
+        int capacity = buffer.getInt(4);
+        if (Integer.bitCount(capacity) != 1 || buffer.limit() < HEADER_SIZE + (long) capacity * ENTRY_SIZE) {
+            return MISSING;
+        }
+        return new LambdaSiteIndex(buffer);
+    }
+
+    int getFirstLine(String className, String methodName, String methodDesc) {
+        if (buffer == null) {
+            return NO_LINE;
+        }
+        return get(LineNumberIndex.key(methodName.hashCode(), methodDesc.hashCode()),
+                LineNumberIndex.check(LineNumberIndex.check(methodName), LineNumberIndex.check(methodDesc)),
+                className.hashCode(), LineNumberIndex.check(className));
+    }
+
+    int getCreationLine(String targetClassName, String implClassName, String implName, String implDesc) {
+        if (buffer == null) {
+            return NO_LINE;
+        }
+        int classHash = targetClassName.hashCode();
+        int classCheck = LineNumberIndex.check(targetClassName);
+        int nameHash = implName.hashCode();
+        int descHash = implDesc.hashCode();
+        int nameCheck = LineNumberIndex.check(implName);
+        int descCheck = LineNumberIndex.check(implDesc);
+        int line = get(LineNumberIndex.siteKey(LineNumberIndex.internalNameHash(implClassName), nameHash, descHash),
+                LineNumberIndex.siteCheck(LineNumberIndex.internalNameCheck(implClassName), nameCheck, descCheck),
+                classHash, classCheck);
+        return line != NO_LINE ? line : get(LineNumberIndex.siteKey(0, nameHash, descHash),
+                LineNumberIndex.siteCheck(0, nameCheck, descCheck), classHash, classCheck);
+    }
+
+    private int get(long methodKey, int check, int classHash, int classCheck) {
+        int mask = buffer.getInt(4) - 1;
+        for (int i = mix(methodKey, classHash) & mask; ; i = (i + 1) & mask) {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            int line = buffer.getInt(entry + LINE_OFFSET);
+            if (line == EMPTY_LINE) {
+                return NO_LINE;
+            }
+            if (matches(buffer, entry, methodKey, check, classHash, classCheck)) {
+                return line;
+            }
+        }
+    }
+
+    private static boolean matches(ByteBuffer table, int entry, long methodKey, int check, int classHash,
+            int classCheck) {
+        return table.getLong(entry) == methodKey
+                && table.getInt(entry + 8) == check
+                && table.getInt(entry + 12) == classHash
+                && table.getInt(entry + 16) == classCheck;
+    }
+
+    private static int mix(long methodKey, int classHash) {
+        long h = (methodKey ^ ((long) classHash * 0xC2B2AE3D27D4EB4FL)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Mutable accumulator of method and creation site lines, producing the bytes of an index. If a same entry is put
+     * several times, the first line is kept.
+     */
+    static final class Builder {
+
+        private long[] methodKeys = new long[16];
+        private int[] checks = new int[16];
+        private int[] classHashes = new int[16];
+        private int[] classChecks = new int[16];
+        private int[] lines = new int[16];
+        private int size;
+
+        /**
+         * Add a method to the index. Methods without line are ignored.
+         *
+         * @param className  binary name of the class declaring the method
+         * @param methodName name of the method
+         * @param methodDesc descriptor of the method
+         * @param line       first line of the method
+         */
+        void put(String className, String methodName, String methodDesc, int line) {
+            put(LineNumberIndex.key(methodName.hashCode(), methodDesc.hashCode()),
+                    LineNumberIndex.check(LineNumberIndex.check(methodName), LineNumberIndex.check(methodDesc)),
+                    className, line);
+        }
+
+        /**
+         * Add a lambda creation site to the index. Sites without line are ignored.
+         *
+         * @param targetClassName binary name of the class creating the lambda
+         * @param implOwner       internal name of the class declaring the implementation method
+         * @param implName        name of the implementation method
+         * @param implDesc        descriptor of the implementation method
+         * @param line            line of the creation site
+         */
+        void putCreationSite(String targetClassName, String implOwner, String implName, String implDesc, int line) {
+            int nameHash = implName.hashCode();
+            int descHash = implDesc.hashCode();
+            int nameCheck = LineNumberIndex.check(implName);
+            int descCheck = LineNumberIndex.check(implDesc);
+            put(LineNumberIndex.siteKey(implOwner.hashCode(), nameHash, descHash),
+                    LineNumberIndex.siteCheck(LineNumberIndex.check(implOwner), nameCheck, descCheck),
+                    targetClassName, line);
+            put(LineNumberIndex.siteKey(0, nameHash, descHash), LineNumberIndex.siteCheck(0, nameCheck, descCheck),
+                    targetClassName, line);
+        }
+
+        private void put(long key, int check, String className, int line) {
+            if (line <= 0) {
+                return;
+            }
+            methodKeys[size] = key;
+            checks[size] = check;
+            classHashes[size] = className.hashCode();
+            classChecks[size] = LineNumberIndex.check(className);
+            lines[size] = line;
+            size++;
+            if (size == lines.length) {
+                methodKeys = Arrays.copyOf(methodKeys, size * 2);
+                checks = Arrays.copyOf(checks, size * 2);
+                classHashes = Arrays.copyOf(classHashes, size * 2);
+                classChecks = Arrays.copyOf(classChecks, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+        }
+
+        byte[] build() {
+            // Power of two capacity with a load factor of at most 0.5
+            int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+            ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + capacity * ENTRY_SIZE);
+            table.putInt(0, MAGIC);
+            table.putInt(4, capacity);
+
+            int mask = capacity - 1;
+            for (int n = 0; n < size; n++) {
+                long methodKey = methodKeys[n];
+                int check = checks[n];
+                int classHash = classHashes[n];
+                int classCheck = classChecks[n];
+
+                int entry;
+                for (int i = mix(methodKey, classHash) & mask; ; i = (i + 1) & mask) {
+                    entry = HEADER_SIZE + i * ENTRY_SIZE;
+                    if (table.getInt(entry + LINE_OFFSET) == EMPTY_LINE
+                            || matches(table, entry, methodKey, check, classHash, classCheck)) {
+                        break;
+                    }
+                }
+                if (table.getInt(entry + LINE_OFFSET) != EMPTY_LINE) {
+                    continue;
+                }
+                table.putLong(entry, methodKey);
+                table.putInt(entry + 8, check);
+                table.putInt(entry + 12, classHash);
+                table.putInt(entry + 16, classCheck);
+                table.putInt(entry + LINE_OFFSET, lines[n]);
+            }
+            return table.array();
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.asm.FetchingLambdaImplMethodsClassVisitor;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build step writing the {@link LambdaSiteIndex} of compiled classes.
+ * <p>
+ * Every class of the given directories and jars is scanned for lambdas and method references. The first line of their
+ * implementation methods and the line of their creation sites are written in the index. Implementation methods
+ * declared outside the scanned classes, as method references to JDK methods, only have their creation site indexed.
+ * <p>
+ * Usage:<br>
+ * <code>java -cp lambda-string.jar fr.pturpin.lambdastring.transform.LambdaSiteIndexer [-o &lt;output&gt;]
+ * &lt;classes directory or jar&gt;...</code>
+ * <p>
+ * If no output is given and a single directory is scanned, the index is written in its
+ * <code>META-INF/lambda-string.idx</code> file, so it's packaged with the classes.
+ */
+public final class LambdaSiteIndexer {
+
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String OUTPUT_OPTION = "-o";
+
+    private final Map<String, LineNumberIndex> lineIndexByClass = new HashMap<>();
+    private final Set<String> implMethods = new LinkedHashSet<>();
+    private final Set<String> creationSites = new LinkedHashSet<>();
+
+    private LambdaSiteIndexer() {
+    }
+
+    public static void main(String[] args) {
+        Path output = null;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (OUTPUT_OPTION.equals(args[i]) && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+
+        if (output == null && inputs.size() == 1 && Files.isDirectory(inputs.get(0))) {
+            output = inputs.get(0).resolve(LambdaSiteIndex.RESOURCE_NAME);
+        }
+        if (output == null || inputs.isEmpty()) {
+            System.err.println("Usage: " + LambdaSiteIndexer.class.getName()
+                    + " [" + OUTPUT_OPTION + " <output>] <classes directory or jar>...");
+            System.exit(1);
+            return;
+        }
+
+        try {
+            int indexed = index(inputs, output);
+            System.out.println("Indexed " + indexed + " lambda implementation methods into " + output);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not index lambdas: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Write the index of the lambdas of the given directories and jars.
+     *
+     * @param inputs directories and jars to scan
+     * @param output file to write the index into
+     * @return number of indexed implementation methods
+     * @throws IOException if an input could not be read or if the output could not be written
+     */
+    public static int index(List<Path> inputs, Path output) throws IOException {
+        LambdaSiteIndexer indexer = new LambdaSiteIndexer();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                indexer.scanDirectory(input);
+            } else {
+                indexer.scanJar(input);
+            }
+        }
+
+        LambdaSiteIndex.Builder builder = new LambdaSiteIndex.Builder();
+        int indexed = 0;
+        for (String implMethod : indexer.implMethods) {
+            String[] parts = implMethod.split(" ");
+            LineNumberIndex lineIndex = indexer.lineIndexByClass.get(parts[0]);
+            int line = lineIndex == null ? -1 : lineIndex.getFirstLine(parts[1], parts[2]);
+            if (line > 0) {
+                builder.put(parts[0].replace('/', '.'), parts[1], parts[2], line);
+                indexed++;
+            }
+        }
+        for (String creationSite : indexer.creationSites) {
+            String[] parts = creationSite.split(" ");
+            String targetClassName = parts[0].replace('/', '.');
+            LineNumberIndex lineIndex = indexer.lineIndexByClass.get(parts[0]);
+            if (lineIndex != null) {
+                int line = lineIndex.getCreationLine(parts[1].replace('/', '.'), parts[2], parts[3]);
+                builder.putCreationSite(targetClassName, parts[1], parts[2], parts[3], line);
+            }
+        }
+
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(output, builder.build());
+        return indexed;
+    }
+
+    private void scanDirectory(Path directory) throws IOException {
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(directory)) {
+            classFiles = files.filter(file -> file.toString().endsWith(CLASS_EXTENSION))
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toList());
+        }
+        for (Path classFile : classFiles) {
+            scanClass(Files.readAllBytes(classFile));
+        }
+    }
+
+    private void scanJar(Path jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(CLASS_EXTENSION)) {
+                    try (InputStream input = jarFile.getInputStream(entry)) {
+                        scanClass(LineNumberIndex.readFully(input));
+                    }
+                }
+            }
+        }
+    }
+
+    private void scanClass(byte[] classFile) {
+        ClassReader cr = new ClassReader(classFile);
+        String className = cr.getClassName();
+        lineIndexByClass.put(className, LineNumberTableScanner.scan(ByteBuffer.wrap(classFile)));
+        cr.accept(new FetchingLambdaImplMethodsClassVisitor((owner, name, desc) -> {
+                    implMethods.add(owner + ' ' + name + ' ' + desc);
+                    creationSites.add(className + ' ' + owner + ' ' + name + ' ' + desc);
+                }),
+                ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+
+}
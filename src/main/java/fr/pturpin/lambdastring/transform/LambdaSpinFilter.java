@@ -0,0 +1,150 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Filter of the lambdas whose class gets an injected <code>toString</code>, by the package of their target class.
+ * <p>
+ * As the {@link LambdaSpinListeners spin listener}, the filter is kept by the {@link SpinHooks spin hooks}, as a
+ * {@link Predicate} receiving the target class of the lambda. The patched metafactory calls it through the hooks each
+ * time it spins a lambda class. While no filter is installed, or if it fails, all the lambda classes are injected. So
+ * it should be installed before the metafactory is transformed. Excluded lambda classes are spun as if there were no
+ * agent: they keep their default <code>toString</code> and take no more metaspace.
+ * <p>
+ * Patterns are prefixes matching a class if they are the name of the class, of its package or of one of its parent
+ * packages, or of its enclosing class. They are compiled into a trie of name segments, so a class is checked in a
+ * single walk of its name whatever the number of patterns. If several patterns match, the longest one wins. A class
+ * matching no pattern is injected only if no include pattern is given.
+ */
+public final class LambdaSpinFilter implements Predicate<Class<?>> {
+
+    private static final String HOOK_NAME = "spinFilter";
+
+    private final Node root;
+    private final boolean includedByDefault;
+
+    private LambdaSpinFilter(Node root, boolean includedByDefault) {
+        this.root = root;
+        this.includedByDefault = includedByDefault;
+    }
+
+    /**
+     * Parse the given patterns.
+     *
+     * @param includes <code>;</code> separated prefixes of the lambda target classes to inject, or <code>null</code>
+     *                 to inject all the classes not excluded
+     * @param excludes <code>;</code> separated prefixes of the lambda target classes to not inject, or
+     *                 <code>null</code>
+     * @return parsed filter
+     * @throws IllegalArgumentException if a prefix is both included and excluded
+     */
+    public static LambdaSpinFilter parse(String includes, String excludes) {
+        Node root = new Node();
+        boolean hasIncludes = includes != null && add(root, includes, true) > 0;
+        if (excludes != null) {
+            add(root, excludes, false);
+        }
+        return new LambdaSpinFilter(root, !hasIncludes);
+    }
+
+    private static int add(Node root, String patterns, boolean included) {
+        int count = 0;
+        for (String pattern : patterns.split(";")) {
+            pattern = pattern.trim();
+            // A trailing dot only says that the pattern is a package
+            if (pattern.endsWith(".")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.isEmpty()) {
+                continue;
+            }
+
+            Node node = root;
+            int start = 0;
+            while (start < pattern.length()) {
+                int end = nextSegmentEnd(pattern, start);
+                node = node.children.computeIfAbsent(pattern.substring(start, end), segment -> new Node());
+                start = end;
+            }
+            if (node.included != null && node.included != included) {
+                throw new IllegalArgumentException(pattern + " is both included and excluded");
+            }
+            node.included = included;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Publish the given filter, replacing any previous one.
+     *
+     * @param filter filter of the next spun lambda classes
+     * @throws NullPointerException  if the filter is <code>null</code>
+     * @throws IllegalStateException if the spin hooks are not installed
+     */
+    public static void install(LambdaSpinFilter filter) {
+        SpinHooks.set(HOOK_NAME, requireNonNull(filter));
+    }
+
+    /**
+     * Remove the published filter, if any, so all the next spun lambda classes are injected.
+     *
+     * @throws IllegalStateException if the spin hooks are not installed
+     */
+    public static void uninstall() {
+        SpinHooks.set(HOOK_NAME, null);
+    }
+
+    @Override
+    public boolean test(Class<?> targetClass) {
+        return isInjected(targetClass.getName());
+    }
+
+    /**
+     * Indicate if the lambdas whose target class has the given name get an injected <code>toString</code>.
+     *
+     * @param className binary name of the target class
+     * @return <code>true</code> if the lambdas are injected
+     */
+    public boolean isInjected(String className) {
+        boolean included = includedByDefault;
+        Node node = root;
+        int start = 0;
+        while (start < className.length()) {
+            int end = nextSegmentEnd(className, start);
+            node = node.children.get(className.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            if (node.included != null) {
+                included = node.included;
+            }
+            start = end;
+        }
+        return included;
+    }
+
+    /**
+     * Returns the end of the segment starting at the given index. Segments keep their leading separator, so a package
+     * and a nested class of the same name are different segments.
+     */
+    private static int nextSegmentEnd(String name, int start) {
+        for (int i = start + 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '.' || c == '$') {
+                return i;
+            }
+        }
+        return name.length();
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Boolean included;
+    }
+
+}
@@ -0,0 +1,46 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.lang.invoke.MethodHandleInfo;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of the listener notified each time the patched <code>InnerClassLambdaMetafactory#spinInnerClass</code>
+ * is about to spin a new lambda class.
+ * <p>
+ * The metafactory is loaded by the bootstrap class loader and does not see the classes of this agent. So the listener
+ * is kept by the {@link SpinHooks spin hooks}, defined in the bootstrap class loader, as a {@link BiConsumer} receiving
+ * the target class of the lambda and the info of its implementation method. Only JDK types are involved, so the
+ * metafactory can call it directly.
+ * <p>
+ * The listener is called on the thread linking the lambda. It should be fast. If it throws, the failure is ignored.
+ */
+public final class LambdaSpinListeners {
+
+    private static final String HOOK_NAME = "spinListener";
+
+    private LambdaSpinListeners() {
+    }
+
+    /**
+     * Publish the given listener so it is notified of the next spun lambda classes. Any previous listener is replaced.
+     *
+     * @param listener listener receiving the target class and the implementation method info of each spun lambda
+     * @throws NullPointerException  if the listener is <code>null</code>
+     * @throws IllegalStateException if the spin hooks are not installed
+     */
+    public static void install(BiConsumer<Class<?>, MethodHandleInfo> listener) {
+        SpinHooks.set(HOOK_NAME, requireNonNull(listener));
+    }
+
+    /**
+     * Remove the published listener, if any.
+     *
+     * @throws IllegalStateException if the spin hooks are not installed
+     */
+    public static void uninstall() {
+        SpinHooks.set(HOOK_NAME, null);
+    }
+
+}
@@ -0,0 +1,260 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.strategy.DefaultMetaInfoToStringStrategy;
+import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+import org.objectweb.asm.Type;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Description of lambdas, including the ones created before the agent was attached.
+ * <p>
+ * The lambda classes spun before the agent was attached have no injected <code>toString</code>, and can not be
+ * transformed anymore. Their {@link LambdaMetaInfo meta information} is then resolved from their target class, whose
+ * name prefixes their own: the lambda sites of its indy table are matched against the functional interface, the
+ * implemented method and the captured arguments of the lambda class. If several sites match, they are told apart by
+ * the method the lambda class forwards to, read from its constant pool. Since JDK 9, reading this constant pool needs
+ * the {@link #install(Instrumentation) instrumentation} of the agent, which is only given when the agent is attached to
+ * describe the lambdas or to write their inventory. Else, such sites stay unresolved.
+ * <p>
+ * The resolution reads the class file of the target class, located as for the {@link LineNumberIndex}, and scans its
+ * lambda sites with the {@link LineNumberTableScanner}. A resolved lambda class is kept, so it's done once per lambda
+ * class. An unresolved one is not, as its sites may be told apart once the instrumentation is installed: it's resolved
+ * again on the next call.
+ */
+public final class LambdaStrings {
+
+    private static final String LAMBDA_CLASS_MARKER = "$$Lambda";
+    private static final String CAPTURED_FIELD_PREFIX = "arg$";
+    private static final String CONSTRUCTOR_NAME = "<init>";
+
+    private static final ClassValue<Optional<LambdaMetaInfo>> META_INFO_BY_LAMBDA_CLASS =
+            new ClassValue<Optional<LambdaMetaInfo>>() {
+                @Override
+                protected Optional<LambdaMetaInfo> computeValue(Class<?> type) {
+                    Optional<LambdaMetaInfo> injected;
+                    try {
+                        injected = LambdaMetaInfo.ofClass(type);
+                    } catch (LinkageError e) {
+                        // Injected in a class whose loader does not see the agent, as the lambdas of the JDK
+                        injected = Optional.empty();
+                    }
+                    return injected.isPresent() ? injected : resolveMetaInfo(type);
+                }
+            };
+
+    private LambdaStrings() {
+    }
+
+    /**
+     * Give the instrumentation of the agent, allowing to read the constant pool of the lambda classes since JDK 9.
+     *
+     * @param instrumentation instrumentation of the agent
+     */
+    public static void install(Instrumentation instrumentation) {
+        ProxyConstantPool.install(instrumentation);
+    }
+
+    /**
+     * Indicate if the given class is a lambda class spun by the <code>InnerClassLambdaMetafactory</code>.
+     */
+    public static boolean isLambdaClass(Class<?> type) {
+        return type.isSynthetic() && type.getName().contains(LAMBDA_CLASS_MARKER);
+    }
+
+    /**
+     * Returns the meta information of the given lambda class, injected by the agent or resolved from its target
+     * class if it was spun before the agent.
+     *
+     * @param lambdaClass lambda class
+     * @return meta information of the lambda class, or an empty optional if it is not a lambda class or if its lambda
+     * site could not be resolved
+     */
+    public static Optional<LambdaMetaInfo> resolve(Class<?> lambdaClass) {
+        if (!isLambdaClass(lambdaClass)) {
+            return Optional.empty();
+        }
+        Optional<LambdaMetaInfo> metaInfo = META_INFO_BY_LAMBDA_CLASS.get(lambdaClass);
+        if (!metaInfo.isPresent()) {
+            // Not kept, so it's retried once the instrumentation is installed
+            META_INFO_BY_LAMBDA_CLASS.remove(lambdaClass);
+        }
+        return metaInfo;
+    }
+
+    /**
+     * Describe the given lambda as the {@link DefaultToStringStrategy default strategy}, whatever the strategy of the
+     * agent, even if the lambda was created before the agent.
+     * <p>
+     * If the object is not a lambda, or if its lambda site could not be resolved, its own <code>toString</code> is
+     * returned.
+     *
+     * @param lambda lambda to describe
+     * @return description of the lambda
+     * @throws NullPointerException if the lambda is <code>null</code>
+     */
+    public static String describe(Object lambda) {
+        return describe(lambda.getClass()).orElseGet(lambda::toString);
+    }
+
+    /**
+     * Same as {@link #describe(Object)} but with the lambda class instead of an instance.
+     *
+     * @param lambdaClass lambda class to describe
+     * @return description of the lambda class, or an empty optional if it is not a lambda class or if its lambda site
+     * could not be resolved
+     */
+    public static Optional<String> describe(Class<?> lambdaClass) {
+        Optional<LambdaMetaInfo> metaInfo = resolve(lambdaClass);
+        if (!metaInfo.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new DefaultMetaInfoToStringStrategy().createToString(metaInfo.get()));
+        } catch (LambdaToStringException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<LambdaMetaInfo> resolveMetaInfo(Class<?> lambdaClass) {
+        if (!isLambdaClass(lambdaClass) || lambdaClass.getInterfaces().length == 0) {
+            return Optional.empty();
+        }
+        try {
+            String lambdaClassName = lambdaClass.getName();
+            String targetClassName = lambdaClassName.substring(0, lambdaClassName.indexOf(LAMBDA_CLASS_MARKER));
+            Class<?> targetClass = Class.forName(targetClassName, false, lambdaClass.getClassLoader());
+
+            List<LambdaSite> sites = findSites(lambdaClass, targetClass);
+            if (sites.size() > 1) {
+                Set<String> memberRefs = ProxyConstantPool.getMemberRefs(lambdaClass);
+                if (memberRefs != null) {
+                    sites.removeIf(site -> !memberRefs.contains(site.implOwner + ' ' + site.implName + ' '
+                            + site.implDesc));
+                }
+            }
+            if (sites.isEmpty() || sites.stream().anyMatch(site -> !site.isSameImpl(sites.get(0)))) {
+                return Optional.empty();
+            }
+
+            LambdaSite site = sites.get(0);
+            Class<?> declaringClass = Class.forName(Type.getObjectType(site.implOwner).getClassName(), false,
+                    targetClass.getClassLoader());
+            return Optional.of(new LambdaMetaInfo(targetClass,
+                    declaringClass,
+                    site.implName,
+                    site.implDesc,
+                    site.implKind,
+                    getModifiers(declaringClass, site.implName, site.implDesc)));
+        } catch (ClassNotFoundException | LambdaToStringException | LinkageError | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the lambda sites of the given target class which may have spun the given lambda class.
+     */
+    private static List<LambdaSite> findSites(Class<?> lambdaClass, Class<?> targetClass)
+            throws LambdaToStringException {
+        String interfaceName = Type.getInternalName(lambdaClass.getInterfaces()[0]);
+        List<LambdaSite> sites = new ArrayList<>();
+        LineNumberTableScanner.scanLambdaSites(LineNumberIndex.readClassFile(targetClass),
+                (interfaceMethodName, factoryDesc, implKind, implOwner, implName, implDesc) -> {
+                    Type factoryType = Type.getMethodType(factoryDesc);
+                    if (interfaceName.equals(factoryType.getReturnType().getInternalName())
+                            && hasMethod(lambdaClass, interfaceMethodName)
+                            && hasCapturedArguments(lambdaClass, factoryType.getArgumentTypes())) {
+                        sites.add(new LambdaSite(implKind, implOwner, implName, implDesc));
+                    }
+                });
+        return sites;
+    }
+
+    private static boolean hasMethod(Class<?> type, String name) {
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicate if the lambda class captures arguments of the given types, in its <code>arg$1</code>,
+     * <code>arg$2</code>, ... fields.
+     */
+    private static boolean hasCapturedArguments(Class<?> lambdaClass, Type[] capturedTypes) {
+        int capturedCount = 0;
+        for (Field field : lambdaClass.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && field.getName().startsWith(CAPTURED_FIELD_PREFIX)) {
+                capturedCount++;
+            }
+        }
+        if (capturedCount != capturedTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < capturedTypes.length; i++) {
+            try {
+                Field field = lambdaClass.getDeclaredField(CAPTURED_FIELD_PREFIX + (i + 1));
+                if (!capturedTypes[i].getDescriptor().equals(Type.getDescriptor(field.getType()))) {
+                    return false;
+                }
+            } catch (NoSuchFieldException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the modifiers of the given method, as given by the reflection, or <code>0</code> if it's not found.
+     */
+    private static int getModifiers(Class<?> declaringClass, String name, String desc) {
+        Executable[] executables = CONSTRUCTOR_NAME.equals(name)
+                ? declaringClass.getDeclaredConstructors()
+                : declaringClass.getDeclaredMethods();
+        for (Executable executable : executables) {
+            if (executable instanceof Constructor || executable.getName().equals(name)) {
+                Class<?> returnType = executable instanceof Method ? ((Method) executable).getReturnType() : void.class;
+                MethodType type = MethodType.methodType(returnType, executable.getParameterTypes());
+                if (type.toMethodDescriptorString().equals(desc)) {
+                    return executable.getModifiers();
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static final class LambdaSite {
+        private final int implKind;
+        private final String implOwner;
+        private final String implName;
+        private final String implDesc;
+
+        private LambdaSite(int implKind, String implOwner, String implName, String implDesc) {
+            this.implKind = implKind;
+            this.implOwner = implOwner;
+            this.implName = implName;
+            this.implDesc = implDesc;
+        }
+
+        private boolean isSameImpl(LambdaSite other) {
+            return implKind == other.implKind
+                    && implOwner.equals(other.implOwner)
+                    && implName.equals(other.implName)
+                    && implDesc.equals(other.implDesc);
+        }
+    }
+
+}
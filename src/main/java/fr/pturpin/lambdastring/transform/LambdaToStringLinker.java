@@ -1,5 +1,8 @@
 package fr.pturpin.lambdastring.transform;
 
+import fr.pturpin.lambdastring.strategy.ConstantToStringStrategy;
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+import fr.pturpin.lambdastring.strategy.LambdaToStringFormatter;
 import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
 
 import java.lang.invoke.*;
@@ -7,28 +10,66 @@ import java.lang.reflect.Constructor;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class LambdaToStringLinker {
 
+    /**
+     * Name of the static method generated in each lambda class and returning its unique {@link LambdaMetaInfo}.
+     */
+    public static final String META_INFO_METHOD_NAME = "lambdaMetaInfo$";
+
+    /**
+     * Name of the static field generated in each lambda class of a
+     * {@link fr.pturpin.lambdastring.strategy.ConstantToStringStrategy constant strategy}, and keeping its
+     * <code>toString</code>.
+     */
+    public static final String TO_STRING_FIELD_NAME = "toString$";
+
+    private static final ConcurrentMap<String, LambdaToStringStrategy> SHARED_STRATEGIES = new ConcurrentHashMap<>();
+
+    private static final MethodHandle FORMAT;
+
+    static {
+        try {
+            FORMAT = MethodHandles.lookup().findVirtual(LambdaToStringFormatter.class,
+                    "format",
+                    MethodType.methodType(String.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /**
      * Generates a new {@link CallSite} from the given {@link LambdaToStringStrategy} class name.
      * <p>
-     * The call site represent the {@link LambdaToStringStrategy#createToString(Object, LambdaMetaInfo)} method in a
-     * new instance of the given class.
+     * The call site takes a lambda and returns its <code>toString</code>, computed by the
+     * {@link LambdaToStringFormatter formatter} that a new instance of the given class
+     * {@link LambdaToStringStrategy#prepare(LambdaMetaInfo) prepares} for the meta information of the calling lambda
+     * class.
+     * <p>
+     * The strategy class is the one {@link StrategyRouter routed} for the target class of the lambda, if any, or the
+     * given one otherwise.
      * <p>
      * For every call, a new call site is generated with a new strategy instance. Also, the call site is
      * {@link ConstantCallSite constant} and has a permanent target. This means that a unique strategy per VM is
      * instantiated per lambda and those strategies are never shared.
      * <p>
+     * If the {@link LambdaToStringSwitch switch} is installed, the call site is instead bound to the original
+     * <code>toString</code> while the switch is off, and linked again to a new strategy instance each time the
+     * strategy is swapped.
+     * <p>
      * The given class name should represent a static {@link LambdaToStringStrategy} class name with a default
      * instantiable default constructor. If any error occurs, it's embedded in a {@link LambdaToStringLinkerException}.
      *
-     * @param caller            unused
+     * @param caller            lookup of the lambda class, giving its meta information
      * @param invokedName       unused
-     * @param invokedType       unused
-     * @param strategyClassName Class name of {@link LambdaToStringStrategy} to link with
-     * @return the CallSite whose target can be used to create a lambda <code>toString</code>
-     * @throws LambdaToStringLinkerException if an error occurs while instantiating the new strategy
+     * @param invokedType       type of the call site, taking the lambda
+     * @param strategyClassName Class name of {@link LambdaToStringStrategy} to link with, if no route matches
+     * @return the CallSite whose target creates the lambda <code>toString</code>
+     * @throws LambdaToStringLinkerException if an error occurs while instantiating the new strategy or getting the
+     *                                       meta information of the lambda class
      */
     @SuppressWarnings("unused")
     public static CallSite link(MethodHandles.Lookup caller,
@@ -36,11 +77,213 @@ public final class LambdaToStringLinker {
             MethodType invokedType,
             String strategyClassName)
             throws LambdaToStringLinkerException {
-        LambdaToStringStrategy strategy = createStrategy(strategyClassName);
-        MethodHandle mh = MethodHandles.constant(LambdaToStringStrategy.class, strategy);
+        LambdaMetaInfo metaInfo = getMetaInfo(caller);
+        return LambdaToStringSwitch.callSite(() -> {
+            LambdaToStringStrategy strategy = createStrategy(route(metaInfo, strategyClassName));
+            LambdaToStringFormatter formatter = prepareFormatter(strategy, metaInfo);
+            MethodHandle mh = FORMAT.bindTo(formatter);
+            return mh.asType(invokedType);
+        });
+    }
+
+    /**
+     * Generates a new {@link CallSite} from the given {@link LambdaToStringStrategy} class name, sharing the same
+     * strategy instance with all the other call sites linked by this method.
+     * <p>
+     * Contrary to {@link #link(MethodHandles.Lookup, String, MethodType, String)}, the strategy is instantiated only
+     * once per VM, on the first linkage, and the next linkages do not pay for its reflective instantiation. So the
+     * strategy, and the formatters it prepares, are called by all lambda classes, possibly concurrently, and should be
+     * thread safe.
+     *
+     * @param caller            lookup of the lambda class, giving its meta information
+     * @param invokedName       unused
+     * @param invokedType       type of the call site, taking the lambda
+     * @param strategyClassName Class name of {@link LambdaToStringStrategy} to link with
+     * @return the CallSite whose target creates the lambda <code>toString</code>
+     * @throws LambdaToStringLinkerException if an error occurs while instantiating the shared strategy or getting the
+     *                                       meta information of the lambda class
+     */
+    @SuppressWarnings("unused")
+    public static CallSite linkShared(MethodHandles.Lookup caller,
+            String invokedName,
+            MethodType invokedType,
+            String strategyClassName)
+            throws LambdaToStringLinkerException {
+        LambdaMetaInfo metaInfo = getMetaInfo(caller);
+        return LambdaToStringSwitch.callSite(() -> {
+            LambdaToStringStrategy strategy = getSharedStrategy(route(metaInfo, strategyClassName));
+            LambdaToStringFormatter formatter = prepareFormatter(strategy, metaInfo);
+            MethodHandle mh = FORMAT.bindTo(formatter);
+            return mh.asType(invokedType);
+        });
+    }
+
+    /**
+     * Same as {@link #link(MethodHandles.Lookup, String, MethodType, String)} but for the
+     * {@link fr.pturpin.lambdastring.asm.ToStringMode#COMPACT compact mode}.
+     * <p>
+     * The errors of the formatter, and the memoization of {@link ConstantToStringStrategy constant} strategies, are
+     * handled by the call site instead of the lambda class.
+     *
+     * @param caller            lookup of the lambda class, giving its meta information
+     * @param invokedName       unused
+     * @param invokedType       type of the call site, taking the lambda
+     * @param strategyClassName Class name of {@link LambdaToStringStrategy} to link with
+     * @return the CallSite whose target creates the lambda <code>toString</code>
+     * @throws LambdaToStringLinkerException if an error occurs while instantiating the new strategy or getting the
+     *                                       meta information of the lambda class
+     */
+    @SuppressWarnings("unused")
+    public static CallSite linkToString(MethodHandles.Lookup caller,
+            String invokedName,
+            MethodType invokedType,
+            String strategyClassName)
+            throws LambdaToStringLinkerException {
+        LambdaMetaInfo metaInfo = getMetaInfo(caller);
+        return LambdaToStringSwitch.callSite(() -> linkCompact(invokedType,
+                metaInfo,
+                createStrategy(route(metaInfo, strategyClassName))));
+    }
+
+    /**
+     * Same as {@link #linkToString(MethodHandles.Lookup, String, MethodType, String)} but with the strategy instance
+     * shared as in {@link #linkShared(MethodHandles.Lookup, String, MethodType, String)}.
+     * <p>
+     * The <code>toString</code> of {@link ConstantToStringStrategy constant} strategies is still memoized per call
+     * site, so per lambda class.
+     *
+     * @param caller            lookup of the lambda class, giving its meta information
+     * @param invokedName       unused
+     * @param invokedType       type of the call site, taking the lambda
+     * @param strategyClassName Class name of {@link LambdaToStringStrategy} to link with
+     * @return the CallSite whose target creates the lambda <code>toString</code>
+     * @throws LambdaToStringLinkerException if an error occurs while instantiating the shared strategy or getting the
+     *                                       meta information of the lambda class
+     */
+    @SuppressWarnings("unused")
+    public static CallSite linkSharedToString(MethodHandles.Lookup caller,
+            String invokedName,
+            MethodType invokedType,
+            String strategyClassName)
+            throws LambdaToStringLinkerException {
+        LambdaMetaInfo metaInfo = getMetaInfo(caller);
+        return LambdaToStringSwitch.callSite(() -> linkCompact(invokedType,
+                metaInfo,
+                getSharedStrategy(route(metaInfo, strategyClassName))));
+    }
+
+    private static MethodHandle linkCompact(MethodType invokedType,
+            LambdaMetaInfo metaInfo,
+            LambdaToStringStrategy strategy) {
+        LambdaToStringFormatter formatter = prepareFormatter(strategy, metaInfo);
+        CompactToString compactToString = new CompactToString(formatter,
+                strategy instanceof ConstantToStringStrategy);
+        MethodHandle mh = CompactToString.CREATE_TO_STRING.bindTo(compactToString);
+        return mh.asType(invokedType);
+    }
+
+    /**
+     * Returns the strategy class name {@link StrategyRouter routed} for the target class of the given lambda, or the
+     * given one, or the one {@link LambdaToStringSwitch#swapStrategy(String, boolean) swapped} in its place, if no
+     * route matches. The given one is replaced by the strategy of the running agent if the lambda class may come from
+     * a {@link CdsLinkage CDS archive}.
+     */
+    private static String route(LambdaMetaInfo metaInfo, String strategyClassName) {
+        return StrategyRouter.route(metaInfo.getTargetClass(),
+                LambdaToStringSwitch.getStrategyClassName(CdsLinkage.getStrategyClassName(strategyClassName)));
+    }
+
+    /**
+     * Returns the meta information of the lambda class of the given lookup, built by its
+     * {@link #META_INFO_METHOD_NAME} static method.
+     */
+    private static LambdaMetaInfo getMetaInfo(MethodHandles.Lookup caller) throws LambdaToStringLinkerException {
+        try {
+            return (LambdaMetaInfo) caller.findStatic(caller.lookupClass(),
+                    META_INFO_METHOD_NAME,
+                    MethodType.methodType(LambdaMetaInfo.class)).invoke();
+        } catch (Throwable e) {
+            throw new LambdaToStringLinkerException("Could not get meta information of " + caller.lookupClass(), e);
+        }
+    }
+
+    /**
+     * Prepare the formatter of the given strategy, or fall back to its
+     * {@link LambdaToStringStrategy#createToString(Object, LambdaMetaInfo)} method if the preparation fails.
+     */
+    private static LambdaToStringFormatter prepareFormatter(LambdaToStringStrategy strategy, LambdaMetaInfo metaInfo) {
+        LambdaToStringFormatter formatter;
+        try {
+            formatter = strategy.prepare(metaInfo);
+        } catch (LambdaToStringException | RuntimeException e) {
+            formatter = null;
+        }
+        if (formatter == null) {
+            return lambda -> strategy.createToString(lambda, metaInfo);
+        }
+        return formatter;
+    }
+
+    /**
+     * Generates a new {@link CallSite} always returning the same {@link LambdaMetaInfo} built from the given lambda
+     * information.
+     * <p>
+     * This is linked once per lambda class, so the meta information, and all the data it lazily computes, is shared by
+     * all the instances of this lambda class.
+     *
+     * @param caller         unused
+     * @param invokedName    unused
+     * @param invokedType    unused
+     * @param targetClass    class in which the lambda is created
+     * @param declaringClass class declaring the implementation method of the lambda
+     * @param methodName     name of the implementation method
+     * @param methodDesc     descriptor of the implementation method
+     * @param referenceKind  reference kind of the implementation method handle
+     * @param modifiers      modifiers of the implementation method
+     * @return the CallSite whose target returns the meta information of the lambda
+     */
+    @SuppressWarnings("unused")
+    public static CallSite linkMetaInfo(MethodHandles.Lookup caller,
+            String invokedName,
+            MethodType invokedType,
+            Class<?> targetClass,
+            Class<?> declaringClass,
+            String methodName,
+            String methodDesc,
+            int referenceKind,
+            int modifiers) {
+        LambdaMetaInfo metaInfo = new LambdaMetaInfo(targetClass,
+                declaringClass,
+                methodName,
+                methodDesc,
+                referenceKind,
+                modifiers);
+        MethodHandle mh = MethodHandles.constant(LambdaMetaInfo.class, metaInfo);
         return new ConstantCallSite(mh);
     }
 
+    /**
+     * Returns the strategy of the given class name shared by all the lambda classes, instantiating it on the first
+     * call.
+     * <p>
+     * If several threads instantiate it concurrently, only one instance is kept and returned to all of them.
+     *
+     * @param strategyClassName Class name of {@link LambdaToStringStrategy} to get
+     * @return the shared strategy
+     * @throws LambdaToStringLinkerException if an error occurs while instantiating the strategy
+     */
+    static LambdaToStringStrategy getSharedStrategy(String strategyClassName) throws LambdaToStringLinkerException {
+        LambdaToStringStrategy strategy = SHARED_STRATEGIES.get(strategyClassName);
+        if (strategy == null) {
+            strategy = createStrategy(strategyClassName);
+            LambdaToStringStrategy previous = SHARED_STRATEGIES.putIfAbsent(strategyClassName, strategy);
+            if (previous != null) {
+                strategy = previous;
+            }
+        }
+        return strategy;
+    }
+
     public static LambdaToStringStrategy createStrategy(String strategyClassName) throws
             LambdaToStringLinkerException {
         ClassLoader classLoader = LambdaToStringLinker.class.getClassLoader();
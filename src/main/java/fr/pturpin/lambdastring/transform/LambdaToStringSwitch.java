@@ -0,0 +1,277 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Switch turning on and off the injected <code>toString</code> of the lambdas at runtime, or swapping their strategy,
+ * without transforming any class again.
+ * <p>
+ * The switch is only available if the agent is started with the <code>switchable=true</code> option. The
+ * {@link LambdaToStringLinker linker} then links each lambda class to a {@link MutableCallSite} guarded by a
+ * {@link SwitchPoint}, instead of a constant one. While the switch is stable, the guard costs nothing to the JIT
+ * compiled <code>toString</code>, which is as fast as the one of a constant call site. While the switch is off, the
+ * call sites are bound to the original {@link Object#toString()} implementation:<br>
+ * <code>lambda.getClass().getName() + "@" + Integer.toHexString(lambda.hashCode())</code>
+ * <p>
+ * Turning the switch invalidates the switch point of all the call sites, which relink lazily, on their next call, to
+ * the current state. The <code>toString</code> path never takes any lock.
+ * <p>
+ * {@link #swapStrategy(String, boolean) Swapping} the strategy invalidates the call sites the same way. On their next
+ * call, they are linked again by the {@link LambdaToStringLinker linker} to the new strategy, so the lambdas which are
+ * not used anymore never pay for it.
+ * <p>
+ * The switch is not available with the {@link fr.pturpin.lambdastring.asm.ToStringMode#EAGER eager} and
+ * {@link fr.pturpin.lambdastring.asm.ToStringMode#MEMOIZED memoized} modes, as their <code>toString</code> is kept
+ * in the lambda classes, out of reach of the call sites.
+ */
+public final class LambdaToStringSwitch {
+
+    private static final MethodHandle DEFAULT_TO_STRING;
+    private static final MethodHandle RELINK_AND_FORMAT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType type = MethodType.methodType(String.class, Object.class);
+            DEFAULT_TO_STRING = lookup.findStatic(LambdaToStringSwitch.class, "defaultToString", type);
+            RELINK_AND_FORMAT = lookup.findVirtual(SwitchableCallSite.class, "relinkAndFormat", type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Current state, or <code>null</code> if the switch is not installed
+     */
+    private static volatile State state;
+
+    private LambdaToStringSwitch() {
+    }
+
+    /**
+     * Install the switch in the given state, so the next linked lambdas can be turned on and off.
+     *
+     * @param enabled <code>true</code> to start with the injected <code>toString</code>, <code>false</code> to start
+     *                with the original one
+     */
+    public static synchronized void install(boolean enabled) {
+        if (state == null) {
+            state = new State(enabled, null, 0);
+        } else {
+            setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Indicate if the switch is installed, so the lambdas may be turned on and off.
+     */
+    public static boolean isInstalled() {
+        return state != null;
+    }
+
+    /**
+     * Indicate if the lambdas currently use their injected <code>toString</code>.
+     * <p>
+     * This is always <code>true</code> if the switch is not installed.
+     */
+    public static boolean isEnabled() {
+        State current = state;
+        return current == null || current.enabled;
+    }
+
+    /**
+     * Turn on the injected <code>toString</code> of all the lambdas.
+     *
+     * @throws IllegalStateException if the switch is not installed
+     */
+    public static void enable() {
+        setEnabled(true);
+    }
+
+    /**
+     * Turn off the injected <code>toString</code> of all the lambdas, so they return their original one.
+     *
+     * @throws IllegalStateException if the switch is not installed
+     */
+    public static void disable() {
+        setEnabled(false);
+    }
+
+    private static synchronized void setEnabled(boolean enabled) {
+        State previous = state;
+        if (previous == null) {
+            throw new IllegalStateException("The lambda toString is not switchable, the agent should be started with "
+                    + "the switchable=true option");
+        }
+        if (previous.enabled != enabled) {
+            state = new State(enabled, previous.strategyClassName, previous.generation);
+            SwitchPoint.invalidateAll(new SwitchPoint[] { previous.switchPoint });
+        }
+    }
+
+    /**
+     * Link again all the lambdas to the given strategy, instead of the one they were linked to, and turn the switch
+     * to the given state.
+     * <p>
+     * The {@link StrategyRouter routes} installed before this call are also applied when the lambdas are linked again.
+     *
+     * @param strategyClassName class name of the new {@link fr.pturpin.lambdastring.strategy.LambdaToStringStrategy}
+     * @param enabled           <code>true</code> to turn on the injected <code>toString</code>, <code>false</code>
+     *                          to turn it off
+     * @throws IllegalStateException if the switch is not installed
+     */
+    public static synchronized void swapStrategy(String strategyClassName, boolean enabled) {
+        State previous = state;
+        if (previous == null) {
+            throw new IllegalStateException("The lambda strategy is not swappable, the agent should be started with "
+                    + "the switchable=true option");
+        }
+        state = new State(enabled, requireNonNull(strategyClassName), previous.generation + 1);
+        SwitchPoint.invalidateAll(new SwitchPoint[] { previous.switchPoint });
+    }
+
+    /**
+     * Returns the class name of the strategy swapped in place of the given one, or the given one if the strategy was
+     * never swapped.
+     *
+     * @param linkedStrategyClassName class name of the strategy given to the linker by the lambda class
+     */
+    static String getStrategyClassName(String linkedStrategyClassName) {
+        State current = state;
+        if (current == null || current.strategyClassName == null) {
+            return linkedStrategyClassName;
+        }
+        return current.strategyClassName;
+    }
+
+    /**
+     * Returns a call site bound to the target of the given linkage while the switch is on, and to the original
+     * {@link Object#toString()} while it is off. The target is linked again each time the strategy is swapped. If the
+     * switch is not installed, the call site is constant.
+     *
+     * @param linkage linkage of the handle computing the injected <code>toString</code> of the lambda
+     * @return call site of the lambda <code>toString</code>
+     * @throws LambdaToStringLinkerException if the linkage fails
+     */
+    static CallSite callSite(Linkage linkage) throws LambdaToStringLinkerException {
+        if (state == null) {
+            return new ConstantCallSite(linkage.link());
+        }
+        return new SwitchableCallSite(linkage);
+    }
+
+    @SuppressWarnings("unused")
+    private static String defaultToString(Object lambda) {
+        return lambda.getClass().getName() + "@" + Integer.toHexString(lambda.hashCode());
+    }
+
+    /**
+     * Linkage of the handle computing the injected <code>toString</code> of a lambda class, with the current strategy.
+     */
+    @FunctionalInterface
+    interface Linkage {
+        MethodHandle link() throws LambdaToStringLinkerException;
+    }
+
+    private static final class State {
+        private final boolean enabled;
+        private final String strategyClassName;
+        private final int generation;
+        private final SwitchPoint switchPoint;
+
+        /**
+         * @param enabled           <code>true</code> if the injected <code>toString</code> is on
+         * @param strategyClassName class name of the swapped strategy, or <code>null</code> if it was never swapped
+         * @param generation        number of times the strategy was swapped
+         */
+        private State(boolean enabled, String strategyClassName, int generation) {
+            this.enabled = enabled;
+            this.strategyClassName = strategyClassName;
+            this.generation = generation;
+            this.switchPoint = new SwitchPoint();
+        }
+    }
+
+    private static final class SwitchableCallSite extends MutableCallSite {
+
+        private final Linkage linkage;
+        private final MethodHandle disabledTarget;
+        private final MethodHandle relink;
+
+        // Immutable, so a racy relink at most links the same strategy twice
+        private LinkedTarget enabledTarget;
+
+        private SwitchableCallSite(Linkage linkage) throws LambdaToStringLinkerException {
+            this(linkage, LinkedTarget.link(linkage));
+        }
+
+        private SwitchableCallSite(Linkage linkage, LinkedTarget enabledTarget) {
+            super(enabledTarget.target.type());
+            this.linkage = linkage;
+            this.enabledTarget = enabledTarget;
+            this.disabledTarget = DEFAULT_TO_STRING.asType(type());
+            this.relink = RELINK_AND_FORMAT.bindTo(this).asType(type());
+            relink();
+        }
+
+        /**
+         * Bind this call site to the target of the current state, until the state changes.
+         * <p>
+         * If the state changes concurrently, the target is guarded by an already invalidated switch point, and the
+         * next call relinks again.
+         */
+        private MethodHandle relink() {
+            State current = state;
+            LinkedTarget linked = enabledTarget;
+            MethodHandle target;
+            if (!current.enabled) {
+                target = disabledTarget;
+            } else if (current.generation == linked.generation) {
+                target = linked.target;
+            } else {
+                try {
+                    target = linkage.link();
+                } catch (LambdaToStringLinkerException e) {
+                    // The swapped strategy is checked before being swapped, this should not happen
+                    target = disabledTarget;
+                }
+                enabledTarget = new LinkedTarget(target, current.generation);
+            }
+            setTarget(current.switchPoint.guardWithTest(target, relink));
+            return target;
+        }
+
+        @SuppressWarnings("unused")
+        String relinkAndFormat(Object lambda) throws Throwable {
+            return (String) relink().invoke(lambda);
+        }
+    }
+
+    private static final class LinkedTarget {
+        private final MethodHandle target;
+        private final int generation;
+
+        private LinkedTarget(MethodHandle target, int generation) {
+            this.target = target;
+            this.generation = generation;
+        }
+
+        /**
+         * Link the given linkage with the current strategy. The generation is read before, so a concurrent swap is
+         * seen by the next relink.
+         */
+        private static LinkedTarget link(Linkage linkage) throws LambdaToStringLinkerException {
+            int generation = state.generation;
+            return new LinkedTarget(linkage.link(), generation);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
+
+/**
+ * Capture-only {@link ClassFileTransformer} indexing the method lines of classes declaring lambdas while they are
+ * loaded.
+ * <p>
+ * The line index is extracted from the bytes given to the transformer and kept in a
+ * {@link PendingLineIndexes side table} until the class is indexed by the {@link LineNumberIndex}. So the class file is
+ * never read again, and lines are available for classes without any resource, as classes generated in memory or
+ * defined by custom class loaders.
+ * <p>
+ * This transformer never transforms anything and always returns <code>null</code>. Classes whose constant pool does not
+ * mention any <code>lambda$</code> method are skipped by a single scan of their bytes, without any allocation. Only
+ * remaining classes are parsed, and all their methods are indexed so method references to them are also resolved.
+ * <p>
+ * Classes of the bootstrap class loader and redefined classes are ignored.
+ */
+public final class LineCapturingTransformer implements ClassFileTransformer {
+
+    private static final byte[] LAMBDA_METHOD_PREFIX = { 'l', 'a', 'm', 'b', 'd', 'a', '$' };
+
+    private final ThreadLocal<boolean[]> isCapturing;
+
+    public LineCapturingTransformer() {
+        this.isCapturing = new ThreadLocal<boolean[]>() {
+            @Override
+            protected boolean[] initialValue() {
+                return new boolean[1];
+            }
+        };
+    }
+
+    @Override
+    public byte[] transform(
+            ClassLoader loader,
+            String className,
+            Class<?> classBeingRedefined,
+            ProtectionDomain protectionDomain,
+            byte[] classfileBuffer) {
+        if (loader == null
+                || className == null
+                || classBeingRedefined != null
+                || !containsLambdaMethodName(classfileBuffer)) {
+            return null;
+        }
+
+        // Parsing may load classes, those are notified on the same thread and should be ignored
+        boolean[] capturing = isCapturing.get();
+        if (capturing[0]) {
+            return null;
+        }
+        capturing[0] = true;
+        try {
+            LineNumberIndex index = LineNumberTableScanner.scan(ByteBuffer.wrap(classfileBuffer));
+            PendingLineIndexes.put(loader, className, index);
+        } catch (RuntimeException e) {
+            // Never disturb the class loading, the class is indexed lazily from its resource anyway
+        } finally {
+            capturing[0] = false;
+        }
+        return null;
+    }
+
+    /**
+     * Indicates if the given bytes contain the <code>lambda$</code> prefix used by javac to name lambda methods.
+     */
+    static boolean containsLambdaMethodName(byte[] bytes) {
+        byte first = LAMBDA_METHOD_PREFIX[0];
+        int last = bytes.length - LAMBDA_METHOD_PREFIX.length;
+        for (int i = 0; i <= last; i++) {
+            if (bytes[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < LAMBDA_METHOD_PREFIX.length && bytes[i + j] == LAMBDA_METHOD_PREFIX[j]) {
+                j++;
+            }
+            if (j == LAMBDA_METHOD_PREFIX.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,362 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Persistent store of the {@link LineNumberIndex} of classes in jars, shared across runs and JVMs.
+ * <p>
+ * There is one file per jar in the store directory. A jar is identified by its code source location, its size and its
+ * last modification time, so a rebuilt jar never reuses a stale file. Files are memory-mapped read-only the first time
+ * a class of their jar is looked up. Indexes resolved during the run are kept in memory and written back on
+ * {@link #flush()}, and at the latest when the JVM shuts down.
+ * <p>
+ * Files are never modified in place: a new version, merging the mapped file and the new indexes, is written next to it
+ * and atomically renamed over it. So several JVMs running the same artifact on a host can share a store directory,
+ * readers keep mapping the version they opened, and concurrent writers only lose indexes that are resolved again later.
+ * <p>
+ * Classes of exploded directories are not stored, as a directory does not tell when its class files change.
+ * <p>
+ * File format, in big endian:
+ * <pre>
+ * int    magic
+ * UTF8   key of the jar (int length + bytes)
+ * int    capacity of the class table, a power of two
+ * long[] class table: hash of the class name in the high bits, offset of its record in the low bits (0 if empty)
+ * records, each one being:
+ *   UTF8   class name (int length + bytes)
+ *   int    number of entries, methods and lambda creation sites
+ *   (long method or site key, int check, int line)[]
+ * </pre>
+ */
+public final class LineIndexStore {
+
+    private static final int MAGIC = 0x4C534933; // "LSI3"
+    private static final String FILE_EXTENSION = ".idx";
+
+    private static volatile LineIndexStore installed;
+
+    private final Path directory;
+    private final ConcurrentMap<String, ArchiveIndex> archives;
+
+    LineIndexStore(Path directory) {
+        this.directory = requireNonNull(directory);
+        this.archives = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Install a store in the given directory, so the next indexed classes are looked up and recorded in it. The store
+     * is flushed when the JVM shuts down.
+     *
+     * @param directory directory of the store, created if it does not exist
+     * @throws IOException if the directory could not be created
+     */
+    public static synchronized void install(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        LineIndexStore store = new LineIndexStore(directory);
+        Runtime.getRuntime().addShutdownHook(new Thread(new FlushingTask(store), "lambda-string-line-store-flush"));
+        installed = store;
+    }
+
+    static LineIndexStore getInstalled() {
+        return installed;
+    }
+
+    /**
+     * Returns the stored index of the given class, or <code>null</code> if it is not stored.
+     */
+    LineNumberIndex lookup(Class<?> declaringClass) {
+        ArchiveIndex archive = archiveOf(declaringClass);
+        return archive == null ? null : archive.lookup(declaringClass.getName());
+    }
+
+    /**
+     * Record the index of the given class, to write it on the next {@link #flush()}.
+     */
+    void record(Class<?> declaringClass, LineNumberIndex index) {
+        ArchiveIndex archive = archiveOf(declaringClass);
+        if (archive != null) {
+            archive.pending.put(declaringClass.getName(), index);
+        }
+    }
+
+    /**
+     * Write the recorded indexes in the store.
+     */
+    void flush() {
+        for (ArchiveIndex archive : archives.values()) {
+            try {
+                archive.flush();
+            } catch (IOException | RuntimeException e) {
+                // The store is only a cache, indexes are resolved again on the next run
+            }
+        }
+    }
+
+    private ArchiveIndex archiveOf(Class<?> declaringClass) {
+        URL location = ClassFileLocator.getLocation(declaringClass);
+        if (location == null) {
+            return null;
+        }
+        String locationKey = location.toString();
+        ArchiveIndex archive = archives.get(locationKey);
+        if (archive != null) {
+            return archive;
+        }
+
+        Path jarFile = ClassFileLocator.getJarFile(location);
+        if (jarFile == null) {
+            return null;
+        }
+        String key;
+        try {
+            key = locationKey + '|' + Files.size(jarFile) + '|' + Files.getLastModifiedTime(jarFile).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+        archive = new ArchiveIndex(key, directory.resolve(fileName(key)));
+        ArchiveIndex concurrent = archives.putIfAbsent(locationKey, archive);
+        return concurrent == null ? archive : concurrent;
+    }
+
+    private static String fileName(String key) {
+        // 64 bits FNV-1a, the complete key is also written in the file to detect collisions
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return String.format("%016x", hash) + FILE_EXTENSION;
+    }
+
+    private static int classHash(String className) {
+        int hash = className.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Stored indexes of the classes of a jar.
+     */
+    private static final class ArchiveIndex {
+
+        private final String key;
+        private final Path file;
+        private final ConcurrentMap<String, LineNumberIndex> pending;
+        private volatile ByteBuffer mapped;
+        private volatile boolean isMapped;
+
+        ArchiveIndex(String key, Path file) {
+            this.key = key;
+            this.file = file;
+            this.pending = new ConcurrentHashMap<>();
+        }
+
+        LineNumberIndex lookup(String className) {
+            ByteBuffer buffer = mapped();
+            if (buffer == null) {
+                return null;
+            }
+            try {
+                int record = findRecord(buffer, className);
+                return record == 0 ? null : readRecord(buffer, record, null);
+            } catch (RuntimeException e) {
+                // Corrupted file, ignore it
+                return null;
+            }
+        }
+
+        private ByteBuffer mapped() {
+            if (!isMapped) {
+                synchronized (this) {
+                    if (!isMapped) {
+                        mapped = map();
+                        isMapped = true;
+                    }
+                }
+            }
+            return mapped;
+        }
+
+        private ByteBuffer map() {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt(0) != MAGIC || !key.equals(readString(buffer, 4))) {
+                    return null;
+                }
+                return buffer;
+            } catch (IOException | RuntimeException e) {
+                // Missing or unreadable file, indexes are resolved again
+                return null;
+            }
+        }
+
+        private int findRecord(ByteBuffer buffer, String className) {
+            int table = tableOffset(buffer);
+            int mask = buffer.getInt(table - 4) - 1;
+            int hash = classHash(className);
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                long slot = buffer.getLong(table + 8 * i);
+                int record = (int) slot;
+                if (record == 0) {
+                    return 0;
+                }
+                if ((int) (slot >>> 32) == hash && className.equals(readString(buffer, record))) {
+                    return record;
+                }
+            }
+        }
+
+        /**
+         * Read the record at the given offset. If a map is given, the read index is put into it by class name.
+         */
+        private static LineNumberIndex readRecord(ByteBuffer buffer, int record, Map<String, LineNumberIndex> into) {
+            int nameLength = buffer.getInt(record);
+            int offset = record + 4 + nameLength;
+            int size = buffer.getInt(offset);
+            offset += 4;
+
+            LineNumberIndex.Builder builder = new LineNumberIndex.Builder();
+            for (int i = 0; i < size; i++) {
+                builder.put(buffer.getLong(offset), buffer.getInt(offset + 8), buffer.getInt(offset + 12));
+                offset += 16;
+            }
+            LineNumberIndex index = builder.build();
+            if (into != null) {
+                into.put(readString(buffer, record), index);
+            }
+            return index;
+        }
+
+        synchronized void flush() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            Map<String, LineNumberIndex> flushed = new LinkedHashMap<>(pending);
+            Map<String, LineNumberIndex> indexes = new LinkedHashMap<>();
+            ByteBuffer buffer = mapped();
+            if (buffer != null) {
+                int table = tableOffset(buffer);
+                int capacity = buffer.getInt(table - 4);
+                for (int i = 0; i < capacity; i++) {
+                    int record = (int) buffer.getLong(table + 8 * i);
+                    if (record != 0) {
+                        readRecord(buffer, record, indexes);
+                    }
+                }
+            }
+            indexes.putAll(flushed);
+
+            Path temporary = file.resolveSibling(file.getFileName() + "."
+                    + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                Files.write(temporary, serialize(indexes));
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                flushed.forEach(pending::remove);
+                // Map the new version on the next access, so it is merged by the next flush
+                isMapped = false;
+            } catch (AtomicMoveNotSupportedException e) {
+                // Never replace the file non atomically, readers of other JVMs may see a partial file
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private byte[] serialize(Map<String, LineNumberIndex> indexes) throws IOException {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            // Power of two capacity with a load factor of at most 0.5
+            int capacity = Integer.highestOneBit(Math.max(indexes.size(), 1) * 2 - 1) << 1;
+            int tableOffset = 4 + 4 + keyBytes.length + 4;
+
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            DataOutputStream recordOutput = new DataOutputStream(records);
+            long[] table = new long[capacity];
+            int mask = capacity - 1;
+            int recordOffset = tableOffset + 8 * capacity;
+            for (Map.Entry<String, LineNumberIndex> entry : indexes.entrySet()) {
+                int hash = classHash(entry.getKey());
+                int i = hash & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = ((long) hash << 32) | (recordOffset + records.size());
+
+                byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                recordOutput.writeInt(name.length);
+                recordOutput.write(name);
+                recordOutput.writeInt(entry.getValue().size());
+                entry.getValue().forEach((methodKey, check, line) -> {
+                    try {
+                        recordOutput.writeLong(methodKey);
+                        recordOutput.writeInt(check);
+                        recordOutput.writeInt(line);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }
+            recordOutput.flush();
+
+            ByteArrayOutputStream file = new ByteArrayOutputStream(recordOffset + records.size());
+            DataOutputStream output = new DataOutputStream(file);
+            output.writeInt(MAGIC);
+            output.writeInt(keyBytes.length);
+            output.write(keyBytes);
+            output.writeInt(capacity);
+            for (long slot : table) {
+                output.writeLong(slot);
+            }
+            records.writeTo(output);
+            output.flush();
+            return file.toByteArray();
+        }
+
+        private static int tableOffset(ByteBuffer buffer) {
+            return 4 + 4 + buffer.getInt(4) + 4;
+        }
+
+        private static String readString(ByteBuffer buffer, int offset) {
+            int length = buffer.getInt(offset);
+            if (length < 0 || length > buffer.limit() - offset - 4) {
+                throw new IllegalArgumentException("Invalid string length " + length + " at offset " + offset);
+            }
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(offset + 4 + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class FlushingTask implements Runnable {
+
+        private final LineIndexStore store;
+
+        FlushingTask(LineIndexStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void run() {
+            store.flush();
+        }
+    }
+
+}
@@ -0,0 +1,426 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Index of the first line of every method of a class, and of the line of every lambda created in this class.
+ * <p>
+ * The index is built once per class in a single pass over its class file and then shared by all the lambdas
+ * implemented or created in this class. Only the <code>LineNumberTable</code> of the methods are read, and the
+ * bytecode only when the class creates lambdas (see {@link LineNumberTableScanner}).
+ * <p>
+ * Methods are keyed by the hash of their name and descriptor. Creation sites are keyed by the hash of the class, name
+ * and descriptor of the implementation method of their lambda, and again by the hash of its name and descriptor only.
+ * Keys are made of {@link String#hashCode()}, whose collisions are easy to come across (<code>"Aa"</code> and
+ * <code>"BB"</code> for instance), so each entry also holds a check made of an independent hash of the same names, and
+ * both must match on lookup. Only primitives are retained, so the index stays compact even for classes declaring
+ * hundreds of lambdas.
+ * <p>
+ * If the class was captured by the {@link LineCapturingTransformer} while it was loaded, or by the
+ * {@link ClasspathPrescanner}, the {@link PendingLineIndexes pending index} is used and the class file is not read
+ * again. Else the class file is looked up directly in the code source of the class (see
+ * {@link ClassFileLocator}), and only then through its class loader. If a {@link LineIndexStore} is installed, indexes
+ * of classes in jars are looked up in this persistent store first.
+ * <p>
+ * The loading is single-flight: concurrent callers asking for the index of a same class wait for the unique in-flight
+ * loading instead of parsing the class in parallel. No global lock is involved, callers asking for different classes
+ * never wait for each other.
+ */
+final class LineNumberIndex {
+
+    private static final ClassValue<FutureTask<LineNumberIndex>> INDEX_BY_CLASS =
+            new ClassValue<FutureTask<LineNumberIndex>>() {
+                @Override
+                protected FutureTask<LineNumberIndex> computeValue(Class<?> type) {
+                    // Racing threads may create several tasks, but only one is kept and returned to all of them.
+                    return new FutureTask<>(() -> load(type));
+                }
+            };
+
+    private static final int NO_LINE = -1;
+
+    /**
+     * Offset basis and prime of the 32 bits FNV-1a hash of the chars of a name, used to check the entries.
+     */
+    static final int CHECK_OFFSET_BASIS = 0x811C9DC5;
+    static final int CHECK_PRIME = 0x01000193;
+
+    private final long[] keys;
+    private final int[] checks;
+    private final int[] lines;
+    private final int mask;
+
+    private LineNumberIndex(long[] keys, int[] checks, int[] lines) {
+        this.keys = keys;
+        this.checks = checks;
+        this.lines = lines;
+        this.mask = keys.length - 1;
+    }
+
+    /**
+     * Returns the index of the given class. The class file is only read on the first call.
+     * <p>
+     * If the index is being loaded by an other thread, this waits for the end of this loading.
+     *
+     * @param declaringClass class to index
+     * @return index of the class
+     * @throws LambdaToStringException if the class file could not be read or if the waiting thread is interrupted
+     */
+    static LineNumberIndex of(Class<?> declaringClass) throws LambdaToStringException {
+        FutureTask<LineNumberIndex> task = INDEX_BY_CLASS.get(declaringClass);
+        // Only the first caller loads the index, others return immediately and wait for it
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LambdaToStringException) {
+                throw new LambdaToStringException(cause.getMessage(), cause);
+            }
+            throw new LambdaToStringException("Could not index class " + declaringClass, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LambdaToStringException("Interrupted while indexing class " + declaringClass, e);
+        }
+    }
+
+    /**
+     * Indicates if the index of the given class is already loaded, successfully or not.
+     *
+     * @param declaringClass class to check
+     * @return <code>true</code> if the index is loaded, <code>false</code> if it's not yet loaded or being loaded
+     */
+    static boolean isLoaded(Class<?> declaringClass) {
+        return INDEX_BY_CLASS.get(declaringClass).isDone();
+    }
+
+    /**
+     * Returns the first line of the given method, or <code>-1</code> if the method is unknown or has no line
+     * information.
+     *
+     * @param methodName name of the method
+     * @param methodDesc descriptor of the method
+     * @return first line of the method or <code>-1</code>
+     */
+    int getFirstLine(String methodName, String methodDesc) {
+        return get(key(methodName, methodDesc), check(methodName, methodDesc));
+    }
+
+    /**
+     * Returns the line of the <code>invokedynamic</code> instruction creating a lambda with the given implementation
+     * method, or <code>-1</code> if no such lambda is created in the class or if it has no line information.
+     * <p>
+     * If a same implementation method is used by several lambdas of the class, the line of the first one in the class
+     * file is returned.
+     * <p>
+     * The class of the implementation method is the one named in the class file. If none matches, as for method
+     * references to inherited methods, the implementation method is matched by its name and descriptor only.
+     *
+     * @param implClassName binary name of the class declaring the implementation method
+     * @param implName      name of the implementation method
+     * @param implDesc      descriptor of the implementation method
+     * @return line of the creation site or <code>-1</code>
+     */
+    int getCreationLine(String implClassName, String implName, String implDesc) {
+        int nameHash = implName.hashCode();
+        int descHash = implDesc.hashCode();
+        int nameCheck = check(implName);
+        int descCheck = check(implDesc);
+        int line = get(siteKey(internalNameHash(implClassName), nameHash, descHash),
+                siteCheck(internalNameCheck(implClassName), nameCheck, descCheck));
+        return line != NO_LINE ? line : get(siteKey(0, nameHash, descHash), siteCheck(0, nameCheck, descCheck));
+    }
+
+    private int get(long key, int check) {
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            int line = lines[i];
+            if (line == NO_LINE || (keys[i] == key && checks[i] == check)) {
+                return line;
+            }
+        }
+    }
+
+    private static LineNumberIndex load(Class<?> declaringClass) throws LambdaToStringException {
+        LineNumberIndex captured = PendingLineIndexes.take(declaringClass);
+        if (captured != null) {
+            return captured;
+        }
+
+        LineIndexStore store = LineIndexStore.getInstalled();
+        if (store == null) {
+            return read(declaringClass);
+        }
+
+        LineNumberIndex stored = store.lookup(declaringClass);
+        if (stored != null) {
+            return stored;
+        }
+        LineNumberIndex index = read(declaringClass);
+        store.record(declaringClass, index);
+        return index;
+    }
+
+    /**
+     * Read the index of the given class from its class file, without keeping it. Contrary to {@link #of(Class)}, the
+     * class file is read on each call.
+     *
+     * @param declaringClass class to index
+     * @return index of the class
+     * @throws LambdaToStringException if the class file could not be read
+     */
+    static LineNumberIndex read(Class<?> declaringClass) throws LambdaToStringException {
+        ByteBuffer located = locate(declaringClass);
+        if (located != null) {
+            try {
+                return LineNumberTableScanner.scan(located);
+            } catch (IllegalArgumentException e) {
+                // Fall back on the class loader
+            }
+        }
+
+        try {
+            return LineNumberTableScanner.scan(readFromClassLoader(declaringClass));
+        } catch (IllegalArgumentException e) {
+            throw new LambdaToStringException("Could not read class " + declaringClass, e);
+        }
+    }
+
+    /**
+     * Returns the class file of the given class, looked up in its code source first, and then through its class
+     * loader.
+     *
+     * @param type class to read
+     * @return bytes of the class file, from the beginning of the buffer
+     * @throws LambdaToStringException if the class file could not be read
+     */
+    static ByteBuffer readClassFile(Class<?> type) throws LambdaToStringException {
+        ByteBuffer located = locate(type);
+        return located != null ? located : readFromClassLoader(type);
+    }
+
+    private static ByteBuffer readFromClassLoader(Class<?> type) throws LambdaToStringException {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        String resourceName = type.getName().replace('.', '/') + ".class";
+        try (InputStream classStream = classLoader.getResourceAsStream(resourceName)) {
+            if (classStream == null) {
+                throw new LambdaToStringException("Could not find resource " + resourceName);
+            }
+            return ByteBuffer.wrap(readFully(classStream));
+        } catch (IOException e) {
+            throw new LambdaToStringException("Could not read class " + type, e);
+        }
+    }
+
+    private static ByteBuffer locate(Class<?> declaringClass) {
+        try {
+            return ClassFileLocator.locate(declaringClass);
+        } catch (IOException | RuntimeException e) {
+            // Fall back on the class loader
+            return null;
+        }
+    }
+
+    static byte[] readFully(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(input.available(), 1024));
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns the number of entries, methods and creation sites, in this index.
+     */
+    int size() {
+        int size = 0;
+        for (int line : lines) {
+            if (line != NO_LINE) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Give every key, its check and its line to the given consumer.
+     */
+    void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] != NO_LINE) {
+                consumer.accept(keys[i], checks[i], lines[i]);
+            }
+        }
+    }
+
+    private static long key(String methodName, String methodDesc) {
+        return key(methodName.hashCode(), methodDesc.hashCode());
+    }
+
+    private static int check(String methodName, String methodDesc) {
+        return check(check(methodName), check(methodDesc));
+    }
+
+    /**
+     * Returns the key of a method given the {@link String#hashCode() hash} of its name and of its descriptor.
+     */
+    static long key(int methodNameHash, int methodDescHash) {
+        return ((long) methodNameHash << 32) | (methodDescHash & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the key of a lambda creation site given the {@link String#hashCode() hash} of the internal name of the
+     * class of its implementation method, and of the name and descriptor of this method.
+     * <p>
+     * A class hash of <code>0</code> gives the key matching the method name and descriptor only. The descriptor hash is
+     * complemented so creation sites do not collide with the method of the same name and descriptor.
+     */
+    static long siteKey(int implClassHash, int implNameHash, int implDescHash) {
+        return key(implClassHash * 31 + implNameHash, ~implDescHash);
+    }
+
+    /**
+     * Returns the check of a method given the {@link #check(CharSequence) check hash} of its name and of its
+     * descriptor.
+     */
+    static int check(int methodNameCheck, int methodDescCheck) {
+        int check = methodNameCheck * CHECK_PRIME ^ methodDescCheck;
+        return check ^ (check >>> 15);
+    }
+
+    /**
+     * Returns the check of a lambda creation site, as {@link #siteKey(int, int, int)} but given the
+     * {@link #check(CharSequence) check hashes}.
+     */
+    static int siteCheck(int implClassCheck, int implNameCheck, int implDescCheck) {
+        return check(implClassCheck * CHECK_PRIME ^ implNameCheck, ~implDescCheck);
+    }
+
+    /**
+     * Returns the 32 bits FNV-1a hash of the chars of the given name, independent of its {@link String#hashCode()}.
+     */
+    static int check(CharSequence name) {
+        int check = CHECK_OFFSET_BASIS;
+        for (int i = 0; i < name.length(); i++) {
+            check = (check ^ name.charAt(i)) * CHECK_PRIME;
+        }
+        return check;
+    }
+
+    /**
+     * Returns the {@link String#hashCode() hash} of the internal name of the given class, without creating it.
+     *
+     * @param className binary name of a class, with dots
+     * @return hash of the name with slashes
+     */
+    static int internalNameHash(String className) {
+        int hash = 0;
+        for (int i = 0; i < className.length(); i++) {
+            char c = className.charAt(i);
+            hash = 31 * hash + (c == '.' ? '/' : c);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the {@link #check(CharSequence) check hash} of the internal name of the given class, without creating it.
+     *
+     * @param className binary name of a class, with dots
+     * @return check hash of the name with slashes
+     */
+    static int internalNameCheck(String className) {
+        int check = CHECK_OFFSET_BASIS;
+        for (int i = 0; i < className.length(); i++) {
+            char c = className.charAt(i);
+            check = (check ^ (c == '.' ? '/' : c)) * CHECK_PRIME;
+        }
+        return check;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Consumer of the raw entries of an index.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        /**
+         * @param key   key of a method or of a creation site, as given by {@link #key(int, int)} or
+         *              {@link #siteKey(int, int, int)}
+         * @param check check of this method or creation site, as given by {@link #check(int, int)} or
+         *              {@link #siteCheck(int, int, int)}
+         * @param line  first line of this method, or line of this creation site
+         */
+        void accept(long key, int check, int line);
+    }
+
+    /**
+     * Mutable accumulator of method lines, producing an immutable {@link LineNumberIndex}. If a same key and check are
+     * put several times, the first line is kept.
+     */
+    static final class Builder {
+
+        private long[] keys = new long[16];
+        private int[] checks = new int[16];
+        private int[] lines = new int[16];
+        private int size;
+
+        void put(String methodName, String methodDesc, int line) {
+            put(key(methodName, methodDesc), check(methodName, methodDesc), line);
+        }
+
+        void put(long key, int check, int line) {
+            keys[size] = key;
+            checks[size] = check;
+            lines[size] = line;
+            size++;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                checks = Arrays.copyOf(checks, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+        }
+
+        LineNumberIndex build() {
+            // Power of two capacity with a load factor of at most 0.5
+            int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+            long[] tableKeys = new long[capacity];
+            int[] tableChecks = new int[capacity];
+            int[] tableLines = new int[capacity];
+            Arrays.fill(tableLines, NO_LINE);
+
+            int mask = capacity - 1;
+            for (int n = 0; n < size; n++) {
+                long key = keys[n];
+                int check = checks[n];
+                int i = mix(key) & mask;
+                while (tableLines[i] != NO_LINE && (tableKeys[i] != key || tableChecks[i] != check)) {
+                    i = (i + 1) & mask;
+                }
+                if (tableLines[i] == NO_LINE) {
+                    tableKeys[i] = key;
+                    tableChecks[i] = check;
+                    tableLines[i] = lines[n];
+                }
+            }
+            return new LineNumberIndex(tableKeys, tableChecks, tableLines);
+        }
+    }
+
+}
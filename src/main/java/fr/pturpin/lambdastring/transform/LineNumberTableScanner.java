@@ -0,0 +1,634 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Minimal class file scanner building a {@link LineNumberIndex} from the <code>LineNumberTable</code> attributes of
+ * the methods.
+ * <p>
+ * Contrary to a complete class file parser, nothing is decoded except what is needed:
+ * <ul>
+ * <li>the constant pool is walked once to know the offsets of its entries, no string is created</li>
+ * <li>fields, method bodies and all other attributes are skipped by their length</li>
+ * <li>method names and descriptors are directly hashed from their UTF8 bytes, and checked by a second hash computed in
+ * the same pass</li>
+ * </ul>
+ * The first line of a method is the line of its instruction with the lowest offset, the one visited first by a
+ * bytecode reader.
+ * <p>
+ * If the constant pool contains <code>invokedynamic</code> constants, the bytecode of the methods is also walked, in
+ * the same pass, to find the line of every <code>invokedynamic</code> instruction. Those bootstrapped by the
+ * <code>LambdaMetafactory</code> are indexed as lambda creation sites, by their implementation method found in the
+ * <code>BootstrapMethods</code> attribute.
+ * <p>
+ * The same lambda sites may also be {@link #scanLambdaSites(ByteBuffer, LambdaSiteConsumer) listed} with their names,
+ * from the constant pool only, to resolve lambda classes spun before the agent.
+ *
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html">The class File Format</a>
+ */
+final class LineNumberTableScanner {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final byte[] CODE_ATTRIBUTE = { 'C', 'o', 'd', 'e' };
+    private static final byte[] LINE_NUMBER_TABLE_ATTRIBUTE = {
+            'L', 'i', 'n', 'e', 'N', 'u', 'm', 'b', 'e', 'r', 'T', 'a', 'b', 'l', 'e' };
+    private static final byte[] BOOTSTRAP_METHODS_ATTRIBUTE = {
+            'B', 'o', 'o', 't', 's', 't', 'r', 'a', 'p', 'M', 'e', 't', 'h', 'o', 'd', 's' };
+    private static final byte[] LAMBDA_META_FACTORY_NAME = {
+            'j', 'a', 'v', 'a', '/', 'l', 'a', 'n', 'g', '/', 'i', 'n', 'v', 'o', 'k', 'e', '/',
+            'L', 'a', 'm', 'b', 'd', 'a', 'M', 'e', 't', 'a', 'f', 'a', 'c', 't', 'o', 'r', 'y' };
+
+    private static final int TABLESWITCH = 0xAA;
+    private static final int LOOKUPSWITCH = 0xAB;
+    private static final int INVOKEDYNAMIC = 0xBA;
+    private static final int WIDE = 0xC4;
+    private static final int IINC = 0x84;
+
+    /**
+     * Length of the instructions by opcode, 0 for the instructions of variable length
+     */
+    private static final byte[] INSTRUCTION_LENGTHS = instructionLengths();
+
+    private static final int NO_LINE = -1;
+
+    private final ByteBuffer buffer;
+    private final int[] constantOffsets;
+    private final int constantPoolEnd;
+    private final boolean hasInvokeDynamic;
+    private int[] sites;
+    private int siteCount;
+
+    private LineNumberTableScanner(
+            ByteBuffer buffer,
+            int[] constantOffsets,
+            int constantPoolEnd,
+            boolean hasInvokeDynamic) {
+        this.buffer = buffer;
+        this.constantOffsets = constantOffsets;
+        this.constantPoolEnd = constantPoolEnd;
+        this.hasInvokeDynamic = hasInvokeDynamic;
+    }
+
+    /**
+     * Build the index of the first line of every method of the given class file.
+     * <p>
+     * Only absolute reads are done, so the position of the buffer is not modified.
+     *
+     * @param classFile bytes of the class file, from the beginning of the buffer
+     * @return index of the first line of every method
+     * @throws IllegalArgumentException if the given bytes are not a valid class file
+     */
+    static LineNumberIndex scan(ByteBuffer classFile) {
+        try {
+            return doScan(classFile);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or malformed class file", e);
+        }
+    }
+
+    /**
+     * Give every lambda site of the given class file to the given consumer: each <code>invokedynamic</code> constant
+     * bootstrapped by the <code>LambdaMetafactory</code> with its implementation method. The bytecode is not read, so
+     * a constant used by several instructions is given once.
+     * <p>
+     * Only absolute reads are done, so the position of the buffer is not modified.
+     *
+     * @param classFile    bytes of the class file, from the beginning of the buffer
+     * @param onLambdaSite consumer of the lambda sites
+     * @throws IllegalArgumentException if the given bytes are not a valid class file
+     */
+    static void scanLambdaSites(ByteBuffer classFile, LambdaSiteConsumer onLambdaSite) {
+        try {
+            doScanLambdaSites(classFile, onLambdaSite);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or malformed class file", e);
+        }
+    }
+
+    private static LineNumberIndex doScan(ByteBuffer buffer) {
+        LineNumberTableScanner scanner = parse(buffer);
+
+        int offset = scanner.skipToMethods();
+        LineNumberIndex.Builder builder = new LineNumberIndex.Builder();
+        int methodsCount = u2(buffer, offset);
+        offset += 2;
+        for (int i = 0; i < methodsCount; i++) {
+            offset = scanner.scanMethod(offset, builder);
+        }
+
+        if (scanner.siteCount > 0) {
+            scanner.indexSites(offset, builder);
+        }
+        return builder.build();
+    }
+
+    private static void doScanLambdaSites(ByteBuffer buffer, LambdaSiteConsumer onLambdaSite) {
+        LineNumberTableScanner scanner = parse(buffer);
+        if (!scanner.hasInvokeDynamic) {
+            return;
+        }
+
+        int offset = scanner.skipToMethods();
+        int methodsCount = u2(buffer, offset);
+        offset += 2;
+        for (int i = 0; i < methodsCount; i++) {
+            offset = scanner.skipAttributes(offset + 6);
+        }
+        int[] bootstrapMethodOffsets = scanner.bootstrapMethodOffsets(offset);
+        if (bootstrapMethodOffsets == null) {
+            return;
+        }
+
+        for (int i = 1; i < scanner.constantOffsets.length; i++) {
+            int invokeDynamic = scanner.constantOffsets[i];
+            if (invokeDynamic == 0 || (buffer.get(invokeDynamic) & 0xFF) != CONSTANT_INVOKE_DYNAMIC) {
+                continue;
+            }
+            int implHandle = scanner.lambdaImplHandle(invokeDynamic, bootstrapMethodOffsets);
+            if (implHandle == 0) {
+                continue;
+            }
+            int siteNameAndType = scanner.constant(u2(buffer, invokeDynamic + 3), CONSTANT_NAME_AND_TYPE);
+            int implRef = scanner.constant(u2(buffer, implHandle + 2));
+            int implNameAndType = scanner.constant(u2(buffer, implRef + 3), CONSTANT_NAME_AND_TYPE);
+            onLambdaSite.accept(
+                    scanner.utf8(u2(buffer, siteNameAndType + 1)),
+                    scanner.utf8(u2(buffer, siteNameAndType + 3)),
+                    buffer.get(implHandle + 1) & 0xFF,
+                    scanner.utf8(scanner.className(implRef)),
+                    scanner.utf8(u2(buffer, implNameAndType + 1)),
+                    scanner.utf8(u2(buffer, implNameAndType + 3)));
+        }
+    }
+
+    /**
+     * Walk the constant pool once to know the offsets of its entries.
+     */
+    private static LineNumberTableScanner parse(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a class file");
+        }
+
+        int constantPoolCount = u2(buffer, 8);
+        int[] constantOffsets = new int[constantPoolCount];
+        boolean hasInvokeDynamic = false;
+        int offset = 10;
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = buffer.get(offset) & 0xFF;
+            constantOffsets[i] = offset;
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    offset += 3 + u2(buffer, offset + 1);
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    offset += 3;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    offset += 4;
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELD_REF:
+                case CONSTANT_METHOD_REF:
+                case CONSTANT_INTERFACE_METHOD_REF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                    offset += 5;
+                    break;
+                case CONSTANT_INVOKE_DYNAMIC:
+                    hasInvokeDynamic = true;
+                    offset += 5;
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    offset += 9;
+                    // Those constants take two entries
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag " + tag + " at offset " + offset);
+            }
+        }
+
+        return new LineNumberTableScanner(buffer, constantOffsets, offset, hasInvokeDynamic);
+    }
+
+    /**
+     * Returns the offset of the methods count, after the constant pool, the interfaces and the fields.
+     */
+    private int skipToMethods() {
+        // Skip access flags, this class and super class
+        int offset = constantPoolEnd + 6;
+        // Skip interfaces
+        offset += 2 + 2 * u2(buffer, offset);
+
+        int fieldsCount = u2(buffer, offset);
+        offset += 2;
+        for (int i = 0; i < fieldsCount; i++) {
+            offset = skipAttributes(offset + 6);
+        }
+        return offset;
+    }
+
+    private int scanMethod(int offset, LineNumberIndex.Builder builder) {
+        int nameIndex = u2(buffer, offset + 2);
+        int descIndex = u2(buffer, offset + 4);
+        int attributesCount = u2(buffer, offset + 6);
+        offset += 8;
+
+        int line = NO_LINE;
+        for (int i = 0; i < attributesCount; i++) {
+            int attributeNameIndex = u2(buffer, offset);
+            int attributeLength = buffer.getInt(offset + 2);
+            if (line == NO_LINE && utf8Equals(attributeNameIndex, CODE_ATTRIBUTE)) {
+                line = scanCode(offset + 6);
+            }
+            offset += 6 + attributeLength;
+        }
+
+        if (line != NO_LINE) {
+            long name = utf8Hashes(nameIndex);
+            long desc = utf8Hashes(descIndex);
+            builder.put(LineNumberIndex.key(hash(name), hash(desc)), LineNumberIndex.check(check(name), check(desc)),
+                    line);
+        }
+        return offset;
+    }
+
+    private int scanCode(int offset) {
+        // Skip max stack, max locals and the bytecode
+        offset += 4;
+        int codeLength = buffer.getInt(offset);
+        int codeOffset = offset + 4;
+        offset = codeOffset + codeLength;
+        // Skip exception table
+        offset += 2 + 8 * u2(buffer, offset);
+
+        int attributesOffset = offset;
+        int attributesCount = u2(buffer, offset);
+        offset += 2;
+
+        int firstPc = Integer.MAX_VALUE;
+        int firstLine = NO_LINE;
+        for (int i = 0; i < attributesCount; i++) {
+            int attributeNameIndex = u2(buffer, offset);
+            int attributeLength = buffer.getInt(offset + 2);
+            if (utf8Equals(attributeNameIndex, LINE_NUMBER_TABLE_ATTRIBUTE)) {
+                int tableLength = u2(buffer, offset + 6);
+                for (int entry = offset + 8, end = entry + 4 * tableLength; entry < end; entry += 4) {
+                    int startPc = u2(buffer, entry);
+                    if (startPc < firstPc) {
+                        firstPc = startPc;
+                        firstLine = u2(buffer, entry + 2);
+                    }
+                }
+            }
+            offset += 6 + attributeLength;
+        }
+
+        if (hasInvokeDynamic && firstLine != NO_LINE) {
+            scanInvokeDynamics(codeOffset, codeLength, attributesOffset);
+        }
+        return firstLine;
+    }
+
+    /**
+     * Record the constant and the line of every <code>invokedynamic</code> instruction of the given bytecode.
+     */
+    private void scanInvokeDynamics(int codeOffset, int codeLength, int attributesOffset) {
+        for (int pc = 0; pc < codeLength; ) {
+            int opcode = buffer.get(codeOffset + pc) & 0xFF;
+            if (opcode == INVOKEDYNAMIC) {
+                int line = lineAt(attributesOffset, pc);
+                if (line != NO_LINE) {
+                    addSite(u2(buffer, codeOffset + pc + 1), line);
+                }
+            }
+            pc += instructionLength(codeOffset, pc, opcode);
+        }
+    }
+
+    private int instructionLength(int codeOffset, int pc, int opcode) {
+        int length = INSTRUCTION_LENGTHS[opcode];
+        if (length != 0) {
+            return length;
+        }
+        // Switches are padded so their operands are aligned on 4 bytes from the start of the bytecode
+        int operands = (pc + 4) & ~3;
+        switch (opcode) {
+            case TABLESWITCH:
+                int low = buffer.getInt(codeOffset + operands + 4);
+                int high = buffer.getInt(codeOffset + operands + 8);
+                return operands - pc + 12 + 4 * (high - low + 1);
+            case LOOKUPSWITCH:
+                return operands - pc + 8 + 8 * buffer.getInt(codeOffset + operands + 4);
+            case WIDE:
+                return (buffer.get(codeOffset + pc + 1) & 0xFF) == IINC ? 6 : 4;
+            default:
+                throw new IllegalArgumentException("Unknown opcode " + opcode + " at offset " + (codeOffset + pc));
+        }
+    }
+
+    /**
+     * Returns the line of the instruction at the given offset, from the attributes of its code.
+     */
+    private int lineAt(int attributesOffset, int pc) {
+        int attributesCount = u2(buffer, attributesOffset);
+        int offset = attributesOffset + 2;
+
+        int linePc = -1;
+        int line = NO_LINE;
+        for (int i = 0; i < attributesCount; i++) {
+            int attributeNameIndex = u2(buffer, offset);
+            int attributeLength = buffer.getInt(offset + 2);
+            if (utf8Equals(attributeNameIndex, LINE_NUMBER_TABLE_ATTRIBUTE)) {
+                int tableLength = u2(buffer, offset + 6);
+                for (int entry = offset + 8, end = entry + 4 * tableLength; entry < end; entry += 4) {
+                    int startPc = u2(buffer, entry);
+                    if (startPc <= pc && startPc > linePc) {
+                        linePc = startPc;
+                        line = u2(buffer, entry + 2);
+                    }
+                }
+            }
+            offset += 6 + attributeLength;
+        }
+        return line;
+    }
+
+    private void addSite(int invokeDynamicIndex, int line) {
+        if (sites == null) {
+            sites = new int[16];
+        } else if (2 * siteCount == sites.length) {
+            sites = Arrays.copyOf(sites, sites.length * 2);
+        }
+        sites[2 * siteCount] = invokeDynamicIndex;
+        sites[2 * siteCount + 1] = line;
+        siteCount++;
+    }
+
+    /**
+     * Index the recorded <code>invokedynamic</code> instructions creating lambdas, by their implementation method.
+     *
+     * @param offset offset of the attributes of the class
+     */
+    private void indexSites(int offset, LineNumberIndex.Builder builder) {
+        int[] bootstrapMethodOffsets = bootstrapMethodOffsets(offset);
+        if (bootstrapMethodOffsets == null) {
+            return;
+        }
+
+        for (int i = 0; i < siteCount; i++) {
+            int invokeDynamic = constant(sites[2 * i], CONSTANT_INVOKE_DYNAMIC);
+            int implHandle = lambdaImplHandle(invokeDynamic, bootstrapMethodOffsets);
+            if (implHandle == 0) {
+                continue;
+            }
+
+            int implRef = constant(u2(buffer, implHandle + 2));
+            int nameAndType = constant(u2(buffer, implRef + 3), CONSTANT_NAME_AND_TYPE);
+            long implClass = utf8Hashes(className(implRef));
+            long name = utf8Hashes(u2(buffer, nameAndType + 1));
+            long desc = utf8Hashes(u2(buffer, nameAndType + 3));
+            int line = sites[2 * i + 1];
+            builder.put(LineNumberIndex.siteKey(hash(implClass), hash(name), hash(desc)),
+                    LineNumberIndex.siteCheck(check(implClass), check(name), check(desc)), line);
+            builder.put(LineNumberIndex.siteKey(0, hash(name), hash(desc)),
+                    LineNumberIndex.siteCheck(0, check(name), check(desc)), line);
+        }
+    }
+
+    /**
+     * Returns the offsets of the entries of the <code>BootstrapMethods</code> attribute, or <code>null</code> if the
+     * class has none.
+     *
+     * @param offset offset of the attributes of the class
+     */
+    private int[] bootstrapMethodOffsets(int offset) {
+        int bootstrapMethods = 0;
+        int attributesCount = u2(buffer, offset);
+        offset += 2;
+        for (int i = 0; i < attributesCount; i++) {
+            if (utf8Equals(u2(buffer, offset), BOOTSTRAP_METHODS_ATTRIBUTE)) {
+                bootstrapMethods = offset + 6;
+            }
+            offset += 6 + buffer.getInt(offset + 2);
+        }
+        if (bootstrapMethods == 0) {
+            return null;
+        }
+
+        int bootstrapMethodCount = u2(buffer, bootstrapMethods);
+        int[] bootstrapMethodOffsets = new int[bootstrapMethodCount];
+        offset = bootstrapMethods + 2;
+        for (int i = 0; i < bootstrapMethodCount; i++) {
+            bootstrapMethodOffsets[i] = offset;
+            offset += 4 + 2 * u2(buffer, offset + 2);
+        }
+        return bootstrapMethodOffsets;
+    }
+
+    /**
+     * Returns the offset of the implementation method handle of the given <code>invokedynamic</code> constant, or
+     * <code>0</code> if it is not bootstrapped by the <code>LambdaMetafactory</code>.
+     */
+    private int lambdaImplHandle(int invokeDynamic, int[] bootstrapMethodOffsets) {
+        int bootstrapMethod = bootstrapMethodOffsets[u2(buffer, invokeDynamic + 1)];
+
+        // The lambda metafactories take the implementation method as second argument
+        int factoryRef = constant(u2(buffer, constant(u2(buffer, bootstrapMethod), CONSTANT_METHOD_HANDLE) + 2));
+        if (!utf8Equals(className(factoryRef), LAMBDA_META_FACTORY_NAME) || u2(buffer, bootstrapMethod + 2) < 2) {
+            return 0;
+        }
+        int implHandle = constantOffsets[u2(buffer, bootstrapMethod + 6)];
+        if ((buffer.get(implHandle) & 0xFF) != CONSTANT_METHOD_HANDLE) {
+            return 0;
+        }
+        return implHandle;
+    }
+
+    /**
+     * Returns the index of the UTF8 name of the class of the given member reference constant.
+     */
+    private int className(int memberRef) {
+        return u2(buffer, constant(u2(buffer, memberRef + 1), CONSTANT_CLASS) + 1);
+    }
+
+    private int constant(int index) {
+        int offset = constantOffsets[index];
+        if (offset == 0) {
+            throw new IllegalArgumentException("Invalid constant index " + index);
+        }
+        return offset;
+    }
+
+    private int constant(int index, int expectedTag) {
+        int offset = constant(index);
+        if ((buffer.get(offset) & 0xFF) != expectedTag) {
+            throw new IllegalArgumentException("Constant " + index + " is not of tag " + expectedTag);
+        }
+        return offset;
+    }
+
+    private int skipAttributes(int offset) {
+        int attributesCount = u2(buffer, offset);
+        offset += 2;
+        for (int i = 0; i < attributesCount; i++) {
+            offset += 6 + buffer.getInt(offset + 2);
+        }
+        return offset;
+    }
+
+    private boolean utf8Equals(int index, byte[] expected) {
+        int offset = constantOffsets[index];
+        if (offset == 0 || buffer.get(offset) != CONSTANT_UTF8 || u2(buffer, offset + 1) != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(offset + 3 + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the {@link String#hashCode()} of the given UTF8 constant in the high bits, and its
+     * {@link LineNumberIndex#check(CharSequence) check hash} in the low bits, without decoding it into a string.
+     * <p>
+     * Constants are in modified UTF8, where each char is encoded in one, two or three bytes. Supplementary characters
+     * are encoded as their two surrogate chars, as in a string.
+     */
+    private long utf8Hashes(int index) {
+        int offset = constant(index, CONSTANT_UTF8);
+        int hash = 0;
+        int check = LineNumberIndex.CHECK_OFFSET_BASIS;
+        int end = offset + 3 + u2(buffer, offset + 1);
+        for (int i = offset + 3; i < end; ) {
+            int c = buffer.get(i++) & 0xFF;
+            if (c >= 0x80) {
+                if ((c & 0xE0) == 0xC0) {
+                    c = ((c & 0x1F) << 6) | (buffer.get(i++) & 0x3F);
+                } else {
+                    c = ((c & 0x0F) << 12) | ((buffer.get(i++) & 0x3F) << 6);
+                    c |= buffer.get(i++) & 0x3F;
+                }
+            }
+            hash = 31 * hash + c;
+            check = (check ^ c) * LineNumberIndex.CHECK_PRIME;
+        }
+        return ((long) hash << 32) | (check & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Decode the given UTF8 constant into a string.
+     */
+    private String utf8(int index) {
+        int offset = constant(index, CONSTANT_UTF8);
+        int end = offset + 3 + u2(buffer, offset + 1);
+        StringBuilder decoded = new StringBuilder(end - offset - 3);
+        for (int i = offset + 3; i < end; ) {
+            int c = buffer.get(i++) & 0xFF;
+            if (c >= 0x80) {
+                if ((c & 0xE0) == 0xC0) {
+                    c = ((c & 0x1F) << 6) | (buffer.get(i++) & 0x3F);
+                } else {
+                    c = ((c & 0x0F) << 12) | ((buffer.get(i++) & 0x3F) << 6);
+                    c |= buffer.get(i++) & 0x3F;
+                }
+            }
+            decoded.append((char) c);
+        }
+        return decoded.toString();
+    }
+
+    private static int hash(long hashes) {
+        return (int) (hashes >>> 32);
+    }
+
+    private static int check(long hashes) {
+        return (int) hashes;
+    }
+
+    private static int u2(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    private static byte[] instructionLengths() {
+        byte[] lengths = new byte[256];
+        Arrays.fill(lengths, (byte) 1);
+        // bipush, ldc, xload, xstore, ret, newarray
+        for (int opcode : new int[]{ 0x10, 0x12, 0x15, 0x16, 0x17, 0x18, 0x19,
+                0x36, 0x37, 0x38, 0x39, 0x3A, 0xA9, 0xBC }) {
+            lengths[opcode] = 2;
+        }
+        // sipush, ldc_w, ldc2_w, iinc, branches, field and method instructions, new, anewarray, checkcast, instanceof
+        for (int opcode : new int[]{ 0x11, 0x13, 0x14, 0x84, 0xBB, 0xBD, 0xC0, 0xC1, 0xC6, 0xC7 }) {
+            lengths[opcode] = 3;
+        }
+        for (int opcode = 0x99; opcode <= 0xA8; opcode++) {
+            lengths[opcode] = 3;
+        }
+        for (int opcode = 0xB2; opcode <= 0xB8; opcode++) {
+            lengths[opcode] = 3;
+        }
+        // multianewarray
+        lengths[0xC5] = 4;
+        // invokeinterface, invokedynamic, goto_w, jsr_w
+        for (int opcode : new int[]{ 0xB9, 0xBA, 0xC8, 0xC9 }) {
+            lengths[opcode] = 5;
+        }
+        lengths[TABLESWITCH] = 0;
+        lengths[LOOKUPSWITCH] = 0;
+        lengths[WIDE] = 0;
+        return lengths;
+    }
+
+    /**
+     * Consumer of the site of a lambda.
+     */
+    @FunctionalInterface
+    interface LambdaSiteConsumer {
+
+        /**
+         * Consume the site of a lambda.
+         *
+         * @param interfaceMethodName name of the implemented method of the functional interface
+         * @param factoryDesc         descriptor of the factory, taking the captured arguments and returning the
+         *                            functional interface
+         * @param implKind            reference kind of the implementation method handle
+         * @param implOwner           internal name of the class declaring the implementation method
+         * @param implName            name of the implementation method
+         * @param implDesc            descriptor of the implementation method
+         */
+        void accept(String interfaceMethodName, String factoryDesc, int implKind, String implOwner, String implName,
+                String implDesc);
+
+    }
+
+}
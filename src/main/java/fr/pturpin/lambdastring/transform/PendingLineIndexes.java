@@ -0,0 +1,95 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Side table of the {@link LineNumberIndex} built before their class is indexed, by the
+ * {@link LineCapturingTransformer} or the {@link ClasspathPrescanner}.
+ * <p>
+ * Indexes are kept by class loader and class name until the {@link LineNumberIndex} of the class is loaded, and then
+ * removed. Class loaders are weakly referenced, so indexes of unloaded classes are dropped with their loader.
+ * <p>
+ * An index captured from the bytes of the loaded class always wins over a prescanned one. Between prescanned indexes of
+ * a same class, the one of the first entry in the classpath wins, as the class loader would.
+ */
+final class PendingLineIndexes {
+
+    /**
+     * Position of the captured indexes, before any classpath entry.
+     */
+    private static final int CAPTURED = -1;
+
+    private static final Map<ClassLoader, Map<String, Pending>> PENDING_BY_LOADER =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private PendingLineIndexes() {
+    }
+
+    /**
+     * Keep the index of the given class, replacing any previous one.
+     *
+     * @param loader        defining class loader of the class
+     * @param internalName  internal name of the class
+     * @param index         index of the class
+     */
+    static void put(ClassLoader loader, String internalName, LineNumberIndex index) {
+        pendingOf(loader).put(internalName, new Pending(index, CAPTURED));
+    }
+
+    /**
+     * Keep the index of the given class found in the given classpath entry, unless an index is already kept from its
+     * captured bytes or from an earlier entry.
+     *
+     * @param loader        class loader of the classpath
+     * @param internalName  internal name of the class
+     * @param index         index of the class
+     * @param position      position of the entry in the classpath
+     */
+    static void putPrescanned(ClassLoader loader, String internalName, LineNumberIndex index, int position) {
+        Pending prescanned = new Pending(index, position);
+        pendingOf(loader).merge(internalName, prescanned,
+                (kept, scanned) -> kept.position <= scanned.position ? kept : scanned);
+    }
+
+    /**
+     * Remove and return the index kept for the given class.
+     *
+     * @param declaringClass class whose index is taken
+     * @return kept index, or <code>null</code> if there is none
+     */
+    static LineNumberIndex take(Class<?> declaringClass) {
+        ClassLoader loader = declaringClass.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        Map<String, Pending> pending = PENDING_BY_LOADER.get(loader);
+        if (pending == null) {
+            return null;
+        }
+        Pending taken = pending.remove(declaringClass.getName().replace('.', '/'));
+        return taken == null ? null : taken.index;
+    }
+
+    private static Map<String, Pending> pendingOf(ClassLoader loader) {
+        Map<String, Pending> pending = PENDING_BY_LOADER.get(loader);
+        if (pending == null) {
+            pending = PENDING_BY_LOADER.computeIfAbsent(loader, l -> new ConcurrentHashMap<>());
+        }
+        return pending;
+    }
+
+    private static final class Pending {
+
+        private final LineNumberIndex index;
+        private final int position;
+
+        Pending(LineNumberIndex index, int position) {
+            this.index = index;
+            this.position = position;
+        }
+    }
+
+}
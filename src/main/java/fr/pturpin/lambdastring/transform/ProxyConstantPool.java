@@ -0,0 +1,144 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reader of the member references of the constant pool of lambda classes, giving the method their functional method
+ * forwards to, without their class file.
+ * <p>
+ * The constant pool is read through the internal <code>ConstantPool</code> of the JDK. Since JDK 9, its package is not
+ * exported and the method giving it is not accessible, so the {@link Instrumentation} of the agent is used to export
+ * and open them to this class. Without it, or if the JDK refuses, the member references are unknown.
+ */
+final class ProxyConstantPool {
+
+    private static final Object LOCK = new Object();
+
+    private static volatile Instrumentation instrumentation;
+    private static volatile Accessor accessor;
+
+    private ProxyConstantPool() {
+    }
+
+    /**
+     * Give the instrumentation allowing to open the JDK internals when needed.
+     */
+    static void install(Instrumentation instrumentation) {
+        synchronized (LOCK) {
+            ProxyConstantPool.instrumentation = instrumentation;
+            // Created again, as an accessor created without instrumentation may be unavailable, or may have set
+            // accessible the method giving the constant pools without their package being exported
+            accessor = null;
+        }
+    }
+
+    /**
+     * Returns the member references of the constant pool of the given class, as
+     * <code>owner name descriptor</code> strings with the internal name of the owner, or <code>null</code> if the
+     * constant pool is not readable.
+     *
+     * @param type class whose constant pool is read
+     * @return member references, or <code>null</code>
+     */
+    static Set<String> getMemberRefs(Class<?> type) {
+        Accessor current = getAccessor();
+        if (current == Accessor.UNAVAILABLE) {
+            return null;
+        }
+        try {
+            Object constantPool = current.getConstantPool.invoke(type);
+            int size = (Integer) current.getSize.invoke(constantPool);
+            Set<String> memberRefs = new HashSet<>();
+            for (int i = 1; i < size; i++) {
+                String[] memberRef;
+                try {
+                    memberRef = (String[]) current.getMemberRefInfoAt.invoke(constantPool, i);
+                } catch (InvocationTargetException e) {
+                    // Not a member reference
+                    continue;
+                }
+                memberRefs.add(memberRef[0] + ' ' + memberRef[1] + ' ' + memberRef[2]);
+            }
+            return memberRefs;
+        } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Accessor getAccessor() {
+        Accessor current = accessor;
+        if (current != null) {
+            return current;
+        }
+        synchronized (LOCK) {
+            if (accessor == null) {
+                accessor = Accessor.create();
+            }
+            return accessor;
+        }
+    }
+
+    /**
+     * Export the package of the internal <code>ConstantPool</code> and open <code>java.lang</code> to this class.
+     * Before JDK 9, there is no module and this does nothing.
+     */
+    private static void openJavaBase() throws ReflectiveOperationException {
+        Method getModule;
+        try {
+            getModule = Class.class.getMethod("getModule");
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        Instrumentation inst = instrumentation;
+        if (inst == null) {
+            return;
+        }
+        Object javaBase = getModule.invoke(Object.class);
+        Set<Object> self = Collections.singleton(getModule.invoke(ProxyConstantPool.class));
+        Map<String, Set<Object>> exports = Collections.singletonMap("jdk.internal.reflect", self);
+        Map<String, Set<Object>> opens = Collections.singletonMap("java.lang", self);
+        Instrumentation.class.getMethod("redefineModule", getModule.getReturnType(),
+                Set.class, Map.class, Map.class, Set.class, Map.class)
+                .invoke(inst, javaBase, Collections.emptySet(), exports, opens, Collections.emptySet(),
+                        Collections.emptyMap());
+    }
+
+    private static final class Accessor {
+        private static final Accessor UNAVAILABLE = new Accessor(null, null, null);
+
+        private final Method getConstantPool;
+        private final Method getSize;
+        private final Method getMemberRefInfoAt;
+
+        private Accessor(Method getConstantPool, Method getSize, Method getMemberRefInfoAt) {
+            this.getConstantPool = getConstantPool;
+            this.getSize = getSize;
+            this.getMemberRefInfoAt = getMemberRefInfoAt;
+        }
+
+        /**
+         * Returns the accessor of the constant pools, or {@link #UNAVAILABLE} if they are not accessible.
+         */
+        private static Accessor create() {
+            try {
+                openJavaBase();
+                Method getConstantPool = Class.class.getDeclaredMethod("getConstantPool");
+                getConstantPool.setAccessible(true);
+                Class<?> constantPoolClass = getConstantPool.getReturnType();
+                return new Accessor(getConstantPool,
+                        constantPoolClass.getMethod("getSize"),
+                        constantPoolClass.getMethod("getMemberRefInfoAt", int.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Inaccessible JDK internals, as InaccessibleObjectException since JDK 9
+                return UNAVAILABLE;
+            }
+        }
+    }
+
+}
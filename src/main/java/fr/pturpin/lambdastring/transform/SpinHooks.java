@@ -0,0 +1,178 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Agent side of the <code>fr.pturpin.lambdastring.boot.LambdaSpinHooks</code>, holding the callbacks of the patched
+ * <code>InnerClassLambdaMetafactory</code>.
+ * <p>
+ * The hooks should be visible from the metafactory, so they are defined in the bootstrap class loader from their class
+ * file. Appending a jar to the bootstrap class path would also make them visible, but it disables the sharing of the
+ * application classes archived by CDS, with a warning. So they are defined through the <code>Unsafe</code> of the JDK:
+ * <code>sun.misc.Unsafe</code> before JDK 9, then the internal one, whose package is exported to this class by the
+ * {@link Instrumentation} of the agent. Since JDK 9, the <code>java.base</code> module is also made to read the module
+ * of the hooks, so the metafactory may call them.
+ * <p>
+ * The hooks class is only referenced by its name, and its callbacks are set through reflection, so it's never loaded
+ * from the agent jar.
+ */
+public final class SpinHooks {
+
+    static final String HOOKS_CLASS_NAME = "fr.pturpin.lambdastring.boot.LambdaSpinHooks";
+
+    private static volatile Class<?> hooksClass;
+
+    private SpinHooks() {
+    }
+
+    /**
+     * Define the hooks in the bootstrap class loader, if not already done.
+     *
+     * @param inst instrumentation of the agent, opening the JDK internals
+     * @throws IllegalStateException if the hooks could not be defined
+     */
+    public static synchronized void install(Instrumentation inst) {
+        if (hooksClass != null) {
+            return;
+        }
+        Class<?> hooks;
+        try {
+            // Already there if this agent is in the bootstrap class path
+            hooks = Class.forName(HOOKS_CLASS_NAME, false, null);
+        } catch (ClassNotFoundException e) {
+            hooks = null;
+        }
+        try {
+            if (hooks == null) {
+                hooks = define(inst, readHooksClassFile());
+            }
+            readFromJavaBase(inst, hooks);
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException("Could not define the spin hooks in the bootstrap class loader", e);
+        }
+        hooksClass = hooks;
+    }
+
+    /**
+     * Indicate if the hooks are defined.
+     */
+    public static boolean isInstalled() {
+        return hooksClass != null;
+    }
+
+    /**
+     * Set the callback of the given hook.
+     *
+     * @param hookName name of the static field of the hook
+     * @param callback callback to set, or <code>null</code> to remove it
+     * @throws IllegalStateException if the hooks are not installed
+     */
+    static void set(String hookName, Object callback) {
+        try {
+            getHookField(hookName).set(null, callback);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Inaccessible spin hook " + hookName, e);
+        }
+    }
+
+    /**
+     * Returns the callback of the given hook, or <code>null</code> if it's not set.
+     *
+     * @param hookName name of the static field of the hook
+     * @throws IllegalStateException if the hooks are not installed
+     */
+    static Object get(String hookName) {
+        try {
+            return getHookField(hookName).get(null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Inaccessible spin hook " + hookName, e);
+        }
+    }
+
+    private static Field getHookField(String hookName) {
+        Class<?> hooks = hooksClass;
+        if (hooks == null) {
+            throw new IllegalStateException("The spin hooks are not installed");
+        }
+        try {
+            return hooks.getField(hookName);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unknown spin hook " + hookName, e);
+        }
+    }
+
+    private static byte[] readHooksClassFile() throws IOException {
+        String resource = "/" + HOOKS_CLASS_NAME.replace('.', '/') + ".class";
+        try (InputStream input = SpinHooks.class.getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new IOException("Class file not found: " + resource);
+            }
+            return LineNumberIndex.readFully(input);
+        }
+    }
+
+    private static Class<?> define(Instrumentation inst, byte[] classFile) throws ReflectiveOperationException {
+        Method getModule = getModuleMethod();
+        Class<?> unsafeClass;
+        Object unsafe;
+        if (getModule == null) {
+            unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } else {
+            Set<Object> self = Collections.singleton(getModule.invoke(SpinHooks.class));
+            Map<String, Set<Object>> exports = Collections.singletonMap("jdk.internal.misc", self);
+            redefineJavaBase(inst, getModule, Collections.emptySet(), exports);
+            unsafeClass = Class.forName("jdk.internal.misc.Unsafe");
+            unsafe = unsafeClass.getMethod("getUnsafe").invoke(null);
+        }
+        return (Class<?>) unsafeClass.getMethod("defineClass",
+                String.class,
+                byte[].class,
+                int.class,
+                int.class,
+                ClassLoader.class,
+                ProtectionDomain.class)
+                .invoke(unsafe, HOOKS_CLASS_NAME, classFile, 0, classFile.length, null, null);
+    }
+
+    /**
+     * Make <code>java.base</code> read the module of the hooks. Before JDK 9, there is no module and this does nothing.
+     */
+    private static void readFromJavaBase(Instrumentation inst, Class<?> hooks) throws ReflectiveOperationException {
+        Method getModule = getModuleMethod();
+        if (getModule != null) {
+            redefineJavaBase(inst, getModule, Collections.singleton(getModule.invoke(hooks)), Collections.emptyMap());
+        }
+    }
+
+    private static void redefineJavaBase(
+            Instrumentation inst,
+            Method getModule,
+            Set<Object> reads,
+            Map<String, Set<Object>> exports) throws ReflectiveOperationException {
+        Object javaBase = getModule.invoke(Object.class);
+        Instrumentation.class.getMethod("redefineModule", getModule.getReturnType(),
+                Set.class, Map.class, Map.class, Set.class, Map.class)
+                .invoke(inst, javaBase, reads, exports, Collections.emptyMap(), Collections.emptySet(),
+                        Collections.emptyMap());
+    }
+
+    private static Method getModuleMethod() {
+        try {
+            return Class.class.getMethod("getModule");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
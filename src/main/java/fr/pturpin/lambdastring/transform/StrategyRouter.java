@@ -0,0 +1,128 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Routes of the lambdas to {@link fr.pturpin.lambdastring.strategy.LambdaToStringStrategy strategy} classes, by the
+ * package of their target class.
+ * <p>
+ * The routes are evaluated by the {@link LambdaToStringLinker linker}, once per lambda class, when its first
+ * <code>toString</code> is linked. The chosen strategy is then permanently bound to the lambda class, so the routing
+ * costs nothing on the next calls. Lambdas matching no route are linked to the strategy given to the agent.
+ * <p>
+ * A route matches a class if its prefix is the name of the class, of its package or of one of its parent packages,
+ * or of its enclosing class. If several routes match, the longest prefix wins. Routes are given as
+ * <code>prefix:strategyClassName</code> entries separated by <code>;</code>, such as
+ * <code>com.mycompany:my.RichStrategy;org.springframework:my.CheapStrategy</code>.
+ */
+public final class StrategyRouter {
+
+    private static volatile StrategyRouter installed;
+
+    private final List<Map.Entry<String, String>> routes;
+
+    private StrategyRouter(List<Map.Entry<String, String>> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Parse the given routes.
+     *
+     * @param spec <code>;</code> separated <code>prefix:strategyClassName</code> entries
+     * @return parsed routes
+     * @throws IllegalArgumentException if an entry is invalid or if a prefix is given twice
+     */
+    public static StrategyRouter parse(String spec) {
+        Map<String, String> strategyByPrefix = new LinkedHashMap<>();
+        for (String entry : spec.split(";")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            int separator = entry.indexOf(':');
+            String prefix = separator < 0 ? "" : entry.substring(0, separator).trim();
+            String strategyClassName = separator < 0 ? "" : entry.substring(separator + 1).trim();
+            if (prefix.isEmpty() || strategyClassName.isEmpty()) {
+                throw new IllegalArgumentException("Invalid route, expected prefix:strategyClassName but got " + entry);
+            }
+            if (strategyByPrefix.put(prefix, strategyClassName) != null) {
+                throw new IllegalArgumentException("Several routes are given for " + prefix);
+            }
+        }
+
+        List<Map.Entry<String, String>> routes = new ArrayList<>(strategyByPrefix.entrySet());
+        // Longest prefixes first, so the first matching route is the most specific one
+        routes.sort(Comparator.comparingInt((Map.Entry<String, String> route) -> route.getKey().length()).reversed());
+        return new StrategyRouter(routes);
+    }
+
+    /**
+     * Install the given routes, used by the next linked lambdas.
+     *
+     * @param router routes to install
+     */
+    public static void install(StrategyRouter router) {
+        installed = requireNonNull(router);
+    }
+
+    /**
+     * Returns the strategy class name of the given lambda target class according to the installed routes, or the
+     * given default one if no route matches.
+     */
+    static String route(Class<?> targetClass, String defaultStrategyClassName) {
+        StrategyRouter router = installed;
+        if (router == null) {
+            return defaultStrategyClassName;
+        }
+        String strategyClassName = router.getStrategyClassName(targetClass.getName());
+        return strategyClassName == null ? defaultStrategyClassName : strategyClassName;
+    }
+
+    /**
+     * Returns the strategy class name of the most specific route matching the given class name, or <code>null</code>
+     * if no route matches.
+     *
+     * @param className binary name of the class
+     * @return strategy class name, or <code>null</code>
+     */
+    public String getStrategyClassName(String className) {
+        for (Map.Entry<String, String> route : routes) {
+            if (matches(route.getKey(), className)) {
+                return route.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the strategy class names of all routes.
+     */
+    public Collection<String> getStrategyClassNames() {
+        List<String> strategyClassNames = new ArrayList<>(routes.size());
+        for (Map.Entry<String, String> route : routes) {
+            strategyClassNames.add(route.getValue());
+        }
+        return Collections.unmodifiableList(strategyClassNames);
+    }
+
+    private static boolean matches(String prefix, String className) {
+        if (!className.startsWith(prefix)) {
+            return false;
+        }
+        if (className.length() == prefix.length() || prefix.endsWith(".")) {
+            return true;
+        }
+        char next = className.charAt(prefix.length());
+        return next == '.' || next == '$';
+    }
+
+}
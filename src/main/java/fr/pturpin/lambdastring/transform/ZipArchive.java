@@ -0,0 +1,176 @@
+package fr.pturpin.lambdastring.transform;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only zip archive over a {@link ByteBuffer}, typically a memory-mapped file or a slice of an other archive.
+ * <p>
+ * Only the central directory is read when opening the archive. Stored entries are returned as slices of the archive
+ * buffer, without any copy, so a stored nested archive is itself readable as a {@link ZipArchive}. Deflated entries are
+ * inflated on each read.
+ * <p>
+ * Zip64 archives, encrypted and multi-disk archives are not supported.
+ *
+ * @see <a href="https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT">Zip file format specification</a>
+ */
+final class ZipArchive {
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> centralHeaderByName;
+
+    private ZipArchive(ByteBuffer buffer, Map<String, Integer> centralHeaderByName) {
+        this.buffer = buffer;
+        this.centralHeaderByName = centralHeaderByName;
+    }
+
+    /**
+     * Open the zip archive contained in the given buffer, from its beginning to its limit.
+     *
+     * @param buffer buffer containing the archive
+     * @return opened archive
+     * @throws IOException if the buffer does not contain a supported zip archive
+     */
+    static ZipArchive open(ByteBuffer buffer) throws IOException {
+        ByteBuffer zip = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int endOfCentralDirectory = findEndOfCentralDirectory(zip);
+            int entryCount = u2(zip, endOfCentralDirectory + 10);
+            int offset = zip.getInt(endOfCentralDirectory + 16);
+
+            Map<String, Integer> centralHeaderByName = new HashMap<>(entryCount * 2);
+            for (int i = 0; i < entryCount; i++) {
+                if (zip.getInt(offset) != CENTRAL_DIRECTORY_SIGNATURE) {
+                    throw new IOException("Invalid central directory header at offset " + offset);
+                }
+                int nameLength = u2(zip, offset + 28);
+                int extraLength = u2(zip, offset + 30);
+                int commentLength = u2(zip, offset + 32);
+                centralHeaderByName.put(readName(zip, offset + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength), offset);
+                offset += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+            }
+            return new ZipArchive(zip, centralHeaderByName);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or malformed zip archive", e);
+        }
+    }
+
+    /**
+     * Returns the content of the given entry, or <code>null</code> if there is no such entry.
+     * <p>
+     * The returned buffer is in big endian and starts at the beginning of the entry.
+     *
+     * @param name name of the entry
+     * @return content of the entry or <code>null</code>
+     * @throws IOException if the entry could not be read
+     */
+    ByteBuffer read(String name) throws IOException {
+        Integer centralHeader = centralHeaderByName.get(name);
+        if (centralHeader == null) {
+            return null;
+        }
+
+        try {
+            int flags = u2(buffer, centralHeader + 8);
+            int method = u2(buffer, centralHeader + 10);
+            int compressedSize = buffer.getInt(centralHeader + 20);
+            int size = buffer.getInt(centralHeader + 24);
+            int localHeader = buffer.getInt(centralHeader + 42);
+            if ((flags & 1) != 0 || compressedSize < 0 || size < 0 || localHeader < 0) {
+                throw new IOException("Unsupported encrypted or zip64 entry " + name);
+            }
+            if (buffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid local header of entry " + name);
+            }
+
+            int dataOffset = localHeader + LOCAL_HEADER_SIZE + u2(buffer, localHeader + 26) + u2(buffer, localHeader + 28);
+            ByteBuffer data = slice(dataOffset, compressedSize);
+            switch (method) {
+                case STORED:
+                    return data;
+                case DEFLATED:
+                    return ByteBuffer.wrap(inflate(data, size, name));
+                default:
+                    throw new IOException("Unsupported compression method " + method + " of entry " + name);
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated or malformed entry " + name, e);
+        }
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length);
+        slice.position(offset);
+        return slice.slice();
+    }
+
+    private static byte[] inflate(ByteBuffer data, int size, String name) throws IOException {
+        byte[] compressed = new byte[data.remaining()];
+        data.get(compressed);
+
+        byte[] inflated = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int read = inflater.inflate(inflated, length, size - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != size) {
+                throw new IOException("Unexpected size of inflated entry " + name);
+            }
+            return inflated;
+        } catch (DataFormatException e) {
+            throw new IOException("Could not inflate entry " + name, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer zip) throws IOException {
+        int last = zip.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_SIZE);
+        for (int offset = last; offset >= first; offset--) {
+            if (zip.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return offset;
+            }
+        }
+        throw new IOException("End of central directory not found");
+    }
+
+    private static String readName(ByteBuffer zip, int offset, int length) {
+        byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = zip.get(offset + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private static int u2(ByteBuffer zip, int offset) {
+        return zip.getShort(offset) & 0xFFFF;
+    }
+
+}
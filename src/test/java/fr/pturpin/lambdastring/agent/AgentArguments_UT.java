@@ -0,0 +1,145 @@
+package fr.pturpin.lambdastring.agent;
+
+import fr.pturpin.lambdastring.asm.InjectionOptions;
+import fr.pturpin.lambdastring.asm.ToStringMode;
+import fr.pturpin.lambdastring.strategy.DefaultMetaInfoToStringStrategy;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AgentArguments_UT {
+
+    @Test
+    void emptyArgumentsShouldUseDefaults() {
+        AgentArguments arguments = AgentArguments.parse(null);
+
+        assertThat(arguments.getStrategyClassName()).isEqualTo(DefaultMetaInfoToStringStrategy.class.getName());
+        assertThat(arguments.isEagerLines()).isFalse();
+        assertThat(arguments.getEagerLinesQueue()).isEqualTo(AgentArguments.DEFAULT_EAGER_LINES_QUEUE);
+        assertThat(arguments.isCaptureLines()).isFalse();
+        assertThat(arguments.getLineStore()).isNull();
+        assertThat(arguments.isPrescan()).isFalse();
+        assertThat(arguments.getPrescanParallelism()).isEqualTo(Runtime.getRuntime().availableProcessors());
+        assertThat(arguments.getPrescanTimeout()).isEqualTo(AgentArguments.DEFAULT_PRESCAN_TIMEOUT);
+        assertThat(arguments.isEagerToString()).isFalse();
+        assertThat(arguments.isCompactToString()).isFalse();
+        assertThat(arguments.isSharedStrategy()).isFalse();
+        assertThat(arguments.getRoutes()).isNull();
+        assertThat(arguments.getIncludes()).isNull();
+        assertThat(arguments.getExcludes()).isNull();
+        assertThat(arguments.isSwitchable()).isFalse();
+        assertThat(arguments.isEnabled()).isTrue();
+        assertThat(arguments.isCds()).isFalse();
+        assertThat(arguments.isRegistry()).isFalse();
+        assertThat(arguments.getDescribe()).isNull();
+        assertThat(arguments.getInventory()).isNull();
+        assertThat(AgentArguments.parse("")).isEqualTo(arguments);
+    }
+
+    @Test
+    void strategyOnlyShouldBeParsed() {
+        AgentArguments arguments = AgentArguments.parse("my.Strategy");
+
+        assertThat(arguments.getStrategyClassName()).isEqualTo("my.Strategy");
+        assertThat(arguments.isEagerLines()).isFalse();
+    }
+
+    @Test
+    void optionsShouldBeParsedInAnyOrder() {
+        AgentArguments arguments = AgentArguments.parse(
+                "eager-lines-queue=12, my.Strategy ,capture-lines=true,eager-lines=true,line-store=/tmp/lines,"
+                        + "prescan=true,prescan-parallelism=3,prescan-timeout=100,eager-tostring=true,"
+                        + "compact-tostring=true,shared-strategy=true,routes=my.app:my.Rich;org:my.Cheap,"
+                        + "include=my.app;org,exclude=org.lib,switchable=true,enabled=false,cds=true,"
+                        + "registry=true,describe=/tmp/lambdas.txt,inventory=/tmp/lambdas.csv");
+
+        assertThat(arguments.getStrategyClassName()).isEqualTo("my.Strategy");
+        assertThat(arguments.isEagerLines()).isTrue();
+        assertThat(arguments.getEagerLinesQueue()).isEqualTo(12);
+        assertThat(arguments.isCaptureLines()).isTrue();
+        assertThat(arguments.getLineStore()).isEqualTo("/tmp/lines");
+        assertThat(arguments.isPrescan()).isTrue();
+        assertThat(arguments.getPrescanParallelism()).isEqualTo(3);
+        assertThat(arguments.getPrescanTimeout()).isEqualTo(100);
+        assertThat(arguments.isEagerToString()).isTrue();
+        assertThat(arguments.isCompactToString()).isTrue();
+        assertThat(arguments.isSharedStrategy()).isTrue();
+        assertThat(arguments.getRoutes()).isEqualTo("my.app:my.Rich;org:my.Cheap");
+        assertThat(arguments.getIncludes()).isEqualTo("my.app;org");
+        assertThat(arguments.getExcludes()).isEqualTo("org.lib");
+        assertThat(arguments.isSwitchable()).isTrue();
+        assertThat(arguments.isEnabled()).isFalse();
+        assertThat(arguments.isCds()).isTrue();
+        assertThat(arguments.isRegistry()).isTrue();
+        assertThat(arguments.getDescribe()).isEqualTo("/tmp/lambdas.txt");
+        assertThat(arguments.getInventory()).isEqualTo("/tmp/lambdas.csv");
+    }
+
+    @Test
+    void optionsWithoutStrategyShouldUseDefaultStrategy() {
+        AgentArguments arguments = AgentArguments.parse("eager-lines=true");
+
+        assertThat(arguments.getStrategyClassName()).isEqualTo(DefaultMetaInfoToStringStrategy.class.getName());
+        assertThat(arguments.isEagerLines()).isTrue();
+    }
+
+    @Test
+    void injectionOptionsShouldFollowArguments() {
+        InjectionOptions defaults = AgentArguments.parse("my.Strategy").toInjectionOptions(ToStringMode.LAZY);
+        InjectionOptions options = AgentArguments.parse(
+                "my.Strategy,eager-lines=true,shared-strategy=true,exclude=org.lib,registry=true")
+                .toInjectionOptions(ToStringMode.COMPACT);
+
+        assertThat(defaults.getToStringStrategyClassName()).isEqualTo("my.Strategy");
+        assertThat(defaults.getToStringMode()).isEqualTo(ToStringMode.LAZY);
+        assertThat(defaults.isSharedStrategy()).isFalse();
+        assertThat(defaults.isNotifySpinListener()).isFalse();
+        assertThat(defaults.isFilterSpin()).isFalse();
+        assertThat(defaults.isRegisterClasses()).isFalse();
+        assertThat(options.getToStringMode()).isEqualTo(ToStringMode.COMPACT);
+        assertThat(options.isSharedStrategy()).isTrue();
+        assertThat(options.isNotifySpinListener()).isTrue();
+        assertThat(options.isFilterSpin()).isTrue();
+        assertThat(options.isRegisterClasses()).isTrue();
+    }
+
+    @Test
+    void sameArgumentsShouldBeEqual() {
+        assertThat(AgentArguments.parse("my.Strategy,eager-lines=false"))
+                .isEqualTo(AgentArguments.parse("my.Strategy"))
+                .hasSameHashCodeAs(AgentArguments.parse("my.Strategy"));
+        assertThat(AgentArguments.parse("my.Strategy,eager-lines=true"))
+                .isNotEqualTo(AgentArguments.parse("my.Strategy"));
+    }
+
+    @Test
+    void onlyLinkedOptionsOfSwitchableAgentShouldBeSwappable() {
+        AgentArguments switchable = AgentArguments.parse("my.Strategy,switchable=true,shared-strategy=true");
+
+        assertThat(switchable.isSwappableTo(AgentArguments.parse(
+                "my.Other,switchable=true,shared-strategy=true,routes=my.app:my.Rich,enabled=false"))).isTrue();
+        assertThat(switchable.isSwappableTo(AgentArguments.parse("my.Other,switchable=true"))).isFalse();
+        assertThat(switchable.isSwappableTo(AgentArguments.parse("my.Other,shared-strategy=true"))).isFalse();
+        assertThat(switchable.isSwappableTo(AgentArguments.parse(
+                "my.Other,switchable=true,shared-strategy=true,cds=true"))).isFalse();
+        assertThat(AgentArguments.parse("my.Strategy").isSwappableTo(AgentArguments.parse("my.Other"))).isFalse();
+    }
+
+    @Test
+    void invalidArgumentsShouldThrow() {
+        assertThatThrownBy(() -> AgentArguments.parse("unknown=1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AgentArguments.parse("eager-lines=yes"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AgentArguments.parse("eager-lines-queue=0"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AgentArguments.parse("eager-lines-queue=many"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AgentArguments.parse("line-store="))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AgentArguments.parse("my.Strategy,my.OtherStrategy"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
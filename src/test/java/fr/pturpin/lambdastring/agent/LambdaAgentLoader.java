@@ -1,7 +1,7 @@
 package fr.pturpin.lambdastring.agent;
 
 import com.ea.agentloader.AgentLoader;
-import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
+import fr.pturpin.lambdastring.strategy.DefaultMetaInfoToStringStrategy;
 import fr.pturpin.lambdastring.strategy.LambdaToStringException;
 import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
 import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
@@ -47,7 +47,7 @@ public final class LambdaAgentLoader {
     private static void loadAgentForIT(String agentArgs) {
         Supplier<LambdaToStringStrategy> newDelegateFactory;
         if (agentArgs == null || agentArgs.isEmpty()) {
-            newDelegateFactory = DefaultToStringStrategy::new;
+            newDelegateFactory = DefaultMetaInfoToStringStrategy::new;
         } else {
             newDelegateFactory = () -> {
                 try {
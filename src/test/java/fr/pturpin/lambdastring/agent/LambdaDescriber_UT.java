@@ -0,0 +1,67 @@
+package fr.pturpin.lambdastring.agent;
+
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import fr.pturpin.lambdastring.transform.LambdaSpinFilter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LambdaDescriber_UT {
+
+    @Test
+    void loadedLambdaClassesShouldBeDescribed() throws IOException {
+        int captured = 42;
+        IntSupplier lambda = () -> captured; int lambdaLine = currentLine();
+        Function<String, Integer> methodRef = String::length;
+
+        List<String> lines = describe(null, String.class, lambda.getClass(), methodRef.getClass());
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).isEqualTo(lambda.getClass().getName() + "\tLambdaDescriber_UT:" + lambdaLine);
+        assertThat(lines.get(1)).startsWith(methodRef.getClass().getName() + "\tString::length");
+    }
+
+    @Test
+    void lambdaClassesShouldBeFilteredByTheirTargetClass() throws IOException {
+        Lambda lambda = () -> {};
+        Class<?> filteredClass = StaticLambdaHolder.STATIC_LAMBDA.getClass();
+
+        List<String> lines = describe(LambdaSpinFilter.parse(StaticLambdaHolder.class.getName(), null),
+                lambda.getClass(), filteredClass);
+
+        assertThat(lines).hasSize(1).allMatch(line -> line.startsWith(filteredClass.getName() + "\t"));
+    }
+
+    private static List<String> describe(LambdaSpinFilter filter, Class<?>... loadedClasses) throws IOException {
+        Path output = Files.createTempFile("lambda-string", ".txt");
+        try {
+            LambdaDescriber.describeLoadedLambdas(loadedClassesInstrumentation(loadedClasses), output, filter);
+            return Files.readAllLines(output);
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    private static Instrumentation loadedClassesInstrumentation(Class<?>[] loadedClasses) {
+        // Use a proxy because the JDK9 add a new method in the Instrumentation interface.
+        return (Instrumentation) Proxy.newProxyInstance(
+                LambdaDescriber_UT.class.getClassLoader(),
+                new Class[] { Instrumentation.class },
+                (proxy, method, args) -> "getAllLoadedClasses".equals(method.getName()) ? loadedClasses : null);
+    }
+
+    private static int currentLine() {
+        return new Throwable().getStackTrace()[1].getLineNumber();
+    }
+
+}
@@ -0,0 +1,98 @@
+package fr.pturpin.lambdastring.asm;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetafactoryShape_UT {
+
+    private static final String CLASS_WRITER_NAME = "jdk/internal/org/objectweb/asm/ClassWriter";
+    private static final String CLASS_WRITER_VISIT_DESC =
+            "(IILjava/lang/String;Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;)V";
+
+    @Test
+    void runningMetafactoryShouldBeSupported() throws Exception {
+        MetafactoryShape shape = MetafactoryShape.of(new ClassReader("java.lang.invoke.InnerClassLambdaMetafactory"));
+
+        assertThat(shape.getGeneratorName()).isIn("spinInnerClass", "generateInnerClass");
+        assertThat(shape.getGeneratorDesc()).isEqualTo("()Ljava/lang/Class;");
+        assertThat(shape.getFirstFreeLocal()).isPositive();
+    }
+
+    @Test
+    void generatorShouldBeTheMethodWritingTheHeader() {
+        MetafactoryShape shape = MetafactoryShape.of(new ClassReader(metafactory(false)));
+
+        assertThat(shape.getGeneratorName()).isEqualTo("generateInnerClass");
+        assertThat(shape.getGeneratorDesc()).isEqualTo("()Ljava/lang/Class;");
+        assertThat(shape.getFirstFreeLocal()).isEqualTo(2);
+    }
+
+    @Test
+    void metafactoryWithoutClassWriterShouldNotBeSupported() throws Exception {
+        assertThatThrownBy(() -> MetafactoryShape.of(new ClassReader(MetafactoryShape_UT.class.getName())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ClassFile API");
+    }
+
+    @Test
+    void localsChangingBeforeHeaderShouldNotBeSupported() {
+        assertThatThrownBy(() -> MetafactoryShape.of(new ClassReader(metafactory(true))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("generateInnerClass");
+    }
+
+    /**
+     * Returns a class of the same shape as the JDK 15+ metafactory, whose generator stores a local between its stack
+     * map frame and the header if asked.
+     */
+    private static byte[] metafactory(boolean storeBeforeHeader) {
+        String name = "java/lang/invoke/InnerClassLambdaMetafactory";
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_FINAL, name, null, "java/lang/Object", null);
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "cw", "L" + CLASS_WRITER_NAME + ";", null, null);
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "lambdaClassName", "Ljava/lang/String;", null, null);
+
+        MethodVisitor spin = cw.visitMethod(Opcodes.ACC_PRIVATE, "spinInnerClass", "()Ljava/lang/Class;", null, null);
+        spin.visitCode();
+        spin.visitVarInsn(Opcodes.ALOAD, 0);
+        spin.visitMethodInsn(Opcodes.INVOKESPECIAL, name, "generateInnerClass", "()Ljava/lang/Class;", false);
+        spin.visitInsn(Opcodes.ARETURN);
+        spin.visitMaxs(0, 0);
+        spin.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PRIVATE, "generateInnerClass", "()Ljava/lang/Class;", null, null);
+        mv.visitCode();
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, 1);
+        if (!storeBeforeHeader) {
+            mv.visitFrame(Opcodes.F_APPEND, 1, new Object[] { Opcodes.INTEGER }, 0, null);
+        }
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, name, "cw", "L" + CLASS_WRITER_NAME + ";");
+        mv.visitIntInsn(Opcodes.BIPUSH, Opcodes.V1_8);
+        mv.visitIntInsn(Opcodes.SIPUSH, Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, name, "lambdaClassName", "Ljava/lang/String;");
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitLdcInsn("java/lang/Object");
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CLASS_WRITER_NAME, "visit", CLASS_WRITER_VISIT_DESC, false);
+        if (storeBeforeHeader) {
+            mv.visitFrame(Opcodes.F_APPEND, 1, new Object[] { Opcodes.INTEGER }, 0, null);
+        }
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+}
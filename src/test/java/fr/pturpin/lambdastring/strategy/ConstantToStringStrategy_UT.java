@@ -0,0 +1,61 @@
+package fr.pturpin.lambdastring.strategy;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConstantToStringStrategy_UT {
+
+    private static final AtomicInteger CALLS = new AtomicInteger();
+    private static volatile boolean failing;
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(CountingToStringStrategy.class.getName());
+    }
+
+    @Test
+    void strategyShouldBeCalledOncePerLambdaClass() {
+        Lambda lambda = () -> {};
+        Lambda methodRef = LambdaTestHolder::body;
+        int calls = CALLS.get();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(lambda.toString()).isEqualTo("toString " + (calls + 1));
+            assertThat(methodRef.toString()).isEqualTo("toString " + (calls + 2));
+        }
+        assertThat(CALLS.get()).isEqualTo(calls + 2);
+    }
+
+    @Test
+    void failingToStringShouldNotBeMemoized() {
+        Lambda lambda = () -> {};
+
+        failing = true;
+        try {
+            assertThatThrownBy(lambda::toString).isInstanceOf(LambdaToStringException.class);
+        } finally {
+            failing = false;
+        }
+        assertThat(lambda.toString()).startsWith("toString ");
+    }
+
+    private static final class CountingToStringStrategy implements ConstantToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) throws LambdaToStringException {
+            if (failing) {
+                throw new LambdaToStringException();
+            }
+            return "toString " + CALLS.incrementAndGet();
+        }
+    }
+
+}
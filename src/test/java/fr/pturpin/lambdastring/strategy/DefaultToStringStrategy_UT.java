@@ -0,0 +1,62 @@
+package fr.pturpin.lambdastring.strategy;
+
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DefaultToStringStrategy_UT {
+
+    private static final AtomicInteger CALLS = new AtomicInteger();
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(InstanceToStringStrategy.class.getName());
+    }
+
+    @Test
+    void defaultStrategyShouldNotBeConstant() {
+        assertThat(new DefaultToStringStrategy()).isNotInstanceOf(ConstantToStringStrategy.class);
+        assertThat(new DefaultMetaInfoToStringStrategy()).isInstanceOf(MetaInfoToStringStrategy.class);
+    }
+
+    @Test
+    void overriddenToStringShouldBeCalledForEachInstance() {
+        IntSupplier first = newLambda(1);
+        IntSupplier second = newLambda(2);
+        int calls = CALLS.get();
+
+        assertThat(first.getClass()).isEqualTo(second.getClass());
+        assertThat(first.toString()).isEqualTo("DefaultToStringStrategy_UT:51 returning 1");
+        assertThat(second.toString()).isEqualTo("DefaultToStringStrategy_UT:51 returning 2");
+        assertThat(first.toString()).isEqualTo("DefaultToStringStrategy_UT:51 returning 1");
+        assertThat(CALLS.get()).isEqualTo(calls + 3);
+    }
+
+    @Test
+    void preparedFormatterShouldCallOverriddenToString() throws LambdaToStringException {
+        IntSupplier lambda = newLambda(3);
+        LambdaMetaInfo metaInfo = LambdaMetaInfo.of(lambda).get();
+
+        assertThat(new InstanceToStringStrategy().prepare(metaInfo).format(lambda))
+                .isEqualTo("DefaultToStringStrategy_UT:51 returning 3");
+    }
+
+    private static IntSupplier newLambda(int value) {
+        return () -> value;
+    }
+
+    public static final class InstanceToStringStrategy extends DefaultToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) throws LambdaToStringException {
+            CALLS.incrementAndGet();
+            return super.createToString(lambda, metaInfo) + " returning " + ((IntSupplier) lambda).getAsInt();
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package fr.pturpin.lambdastring.strategy;
+
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.transform.LambdaMetaInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LambdaToStringFormatter_UT {
+
+    private static final AtomicInteger PREPARES = new AtomicInteger();
+    private static volatile boolean failing;
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(PreparingToStringStrategy.class.getName());
+    }
+
+    @Test
+    void formatterShouldBePreparedOncePerLambdaClass() {
+        IntFunction<Lambda> factory = i -> () -> System.out.println(i);
+        Lambda lambda1 = factory.apply(1);
+        Lambda lambda2 = factory.apply(2);
+        int prepares = PREPARES.get();
+
+        assertThat(lambda1.toString()).isEqualTo("prepared " + (prepares + 1) + " " + lambda1.hashCode());
+        assertThat(lambda2.toString()).isEqualTo("prepared " + (prepares + 1) + " " + lambda2.hashCode());
+        assertThat(lambda1.toString()).isEqualTo("prepared " + (prepares + 1) + " " + lambda1.hashCode());
+        assertThat(PREPARES.get()).isEqualTo(prepares + 1);
+    }
+
+    @Test
+    void failingPreparationShouldFallBackToCreateToString() {
+        Lambda lambda = () -> {};
+
+        failing = true;
+        try {
+            assertThat(lambda.toString()).isEqualTo("created " + lambda.hashCode());
+        } finally {
+            failing = false;
+        }
+        assertThat(lambda.toString()).isEqualTo("created " + lambda.hashCode());
+    }
+
+    private static final class PreparingToStringStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "created " + lambda.hashCode();
+        }
+
+        @Override
+        public LambdaToStringFormatter prepare(LambdaMetaInfo metaInfo) throws LambdaToStringException {
+            if (failing) {
+                throw new LambdaToStringException();
+            }
+            String prefix = "prepared " + PREPARES.incrementAndGet() + " ";
+            return lambda -> prefix + lambda.hashCode();
+        }
+    }
+
+}
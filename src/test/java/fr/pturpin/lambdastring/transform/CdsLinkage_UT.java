@@ -0,0 +1,86 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.ConstantToStringStrategy;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CdsLinkage_UT {
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(RunningStrategy.class.getName() + ",cds=true");
+    }
+
+    @Test
+    void spunLambdaShouldBeLinkedToTheRunningStrategy() {
+        Lambda lambda = () -> {};
+
+        assertThat(CdsLinkage.isInstalled()).isTrue();
+        assertThat(lambda.toString()).isEqualTo("running");
+    }
+
+    @Test
+    void constantStrategyShouldNotBeMemoized() {
+        Lambda lambda = () -> {};
+
+        assertThat(lambda.getClass().getDeclaredFields())
+                .noneMatch(field -> field.getName().equals(LambdaToStringLinker.TO_STRING_FIELD_NAME));
+    }
+
+    @Test
+    void archivedLambdaShouldBeLinkedToTheRunningStrategy() throws Throwable {
+        // As an archived lambda class, linking the strategy of the run which dumped the archive
+        String dumpingStrategyClassName = DumpingStrategy.class.getName();
+        MethodHandles.Lookup caller = MethodHandles.lookup().in(FakeLambda.class);
+        MethodType type = MethodType.methodType(String.class, Object.class);
+        Object lambda = new FakeLambda();
+
+        CallSite callSite = LambdaToStringLinker.link(caller, "format", type, dumpingStrategyClassName);
+        CallSite compactCallSite = LambdaToStringLinker.linkSharedToString(caller, "toString", type,
+                dumpingStrategyClassName);
+
+        assertThat(callSite.getTarget().invoke(lambda)).isEqualTo("running");
+        assertThat(compactCallSite.getTarget().invoke(lambda)).isEqualTo("running");
+    }
+
+    /**
+     * Class declaring its meta information as the injected lambda classes.
+     */
+    private static final class FakeLambda {
+        @SuppressWarnings("unused")
+        private static LambdaMetaInfo lambdaMetaInfo$() {
+            return new LambdaMetaInfo(FakeLambda.class,
+                    FakeLambda.class,
+                    "lambda$0",
+                    "()V",
+                    MethodHandleInfo.REF_invokeStatic,
+                    Modifier.PRIVATE | Modifier.STATIC);
+        }
+    }
+
+    private static final class RunningStrategy implements ConstantToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "running";
+        }
+    }
+
+    private static final class DumpingStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "dumping";
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassFileLocator_UT {
+
+    private static final String ENTRY_NAME = "fr/pturpin/lambdastring/StaticLambdaHolder.class";
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("class-file-locator");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void classInDirectoryShouldBeLocated() throws Exception {
+        ByteBuffer classFile = ClassFileLocator.locate(StaticLambdaHolder.class);
+
+        assertThat(toBytes(classFile)).isEqualTo(readResource(StaticLambdaHolder.class));
+        assertThat(classFile.isDirect()).as("small files should be read, not mapped").isFalse();
+    }
+
+    @Test
+    void classInJarShouldBeLocated() throws Exception {
+        assertThat(toBytes(ClassFileLocator.locate(ClassReader.class))).isEqualTo(readResource(ClassReader.class));
+    }
+
+    @Test
+    void classInJarDirectoryShouldBeLocated() throws Exception {
+        byte[] classFile = readResource(StaticLambdaHolder.class);
+        Path jar = directory.resolve("app.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            putDeflated(zip, "BOOT-INF/classes/" + ENTRY_NAME, classFile);
+        }
+
+        URL location = new URL("jar:" + jar.toUri() + "!/BOOT-INF/classes!/");
+
+        assertThat(toBytes(ClassFileLocator.locate(location, ENTRY_NAME))).isEqualTo(classFile);
+    }
+
+    @Test
+    void classInNestedJarShouldBeLocated() throws Exception {
+        byte[] classFile = readResource(StaticLambdaHolder.class);
+
+        ByteArrayOutputStream nested = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(nested)) {
+            putDeflated(zip, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes("UTF-8"));
+            putDeflated(zip, ENTRY_NAME, classFile);
+        }
+        Path jar = directory.resolve("fat.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            putDeflated(zip, "BOOT-INF/classes/other.txt", new byte[]{ 1, 2, 3 });
+            putStored(zip, "BOOT-INF/lib/nested.jar", nested.toByteArray());
+        }
+
+        URL location = new URL("jar:" + jar.toUri() + "!/BOOT-INF/lib/nested.jar!/");
+
+        assertThat(toBytes(ClassFileLocator.locate(location, ENTRY_NAME))).isEqualTo(classFile);
+        assertThat(ClassFileLocator.locate(location, "missing/Class.class")).isNull();
+    }
+
+    @Test
+    void openArchivesShouldBeBounded() throws Exception {
+        byte[] classFile = readResource(StaticLambdaHolder.class);
+        for (int i = 0; i < ClassFileLocator.MAX_OPEN_ARCHIVES * 2; i++) {
+            Path jar = directory.resolve("lib-" + i + ".jar");
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+                putDeflated(zip, ENTRY_NAME, classFile);
+            }
+
+            assertThat(toBytes(ClassFileLocator.locate(jar.toUri().toURL(), ENTRY_NAME))).isEqualTo(classFile);
+            assertThat(ClassFileLocator.openArchiveCount()).isLessThanOrEqualTo(ClassFileLocator.MAX_OPEN_ARCHIVES);
+        }
+    }
+
+    @Test
+    void missingClassShouldNotBeLocated() throws Exception {
+        Class<?> lambdaClass = ((Runnable) () -> {}).getClass();
+
+        assertThat(ClassFileLocator.locate(lambdaClass)).isNull();
+        assertThat(ClassFileLocator.locate(String.class)).isNull();
+    }
+
+    private static void putDeflated(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static void putStored(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        assertThat(buffer).isNotNull();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] readResource(Class<?> type) throws IOException {
+        String resourceName = type.getName().replace('.', '/') + ".class";
+        try (InputStream input = type.getClassLoader().getResourceAsStream(resourceName)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            copy(input, output);
+            return output.toByteArray();
+        }
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package fr.pturpin.lambdastring.transform;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClasspathPrescanner_UT {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        tempDir = Files.createTempDirectory("classpath-prescanner");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void classesOfDirectoryShouldBeIndexed() throws Exception {
+        Path directory = tempDir.resolve("classes");
+        Path classFile = directory.resolve(internalName(PrescannedHolder.class) + ".class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, readBytes(PrescannedHolder.class));
+        InMemoryClassLoader loader = new InMemoryClassLoader();
+
+        ClasspathPrescanner scanner = new ClasspathPrescanner(
+                Collections.singletonList(directory), loader, 2, 10_000, ClasspathPrescanner.MAX_INDEXED_CLASSES);
+        scanner.start();
+
+        assertThat(scanner.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(scanner.getIndexedClasses()).isEqualTo(1);
+        assertIndexedWithoutResource(loader);
+    }
+
+    @Test
+    void classesOfJarShouldBeIndexed() throws Exception {
+        Path jar = tempDir.resolve("classes.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new JarEntry(internalName(PrescannedHolder.class) + ".class"));
+            output.write(readBytes(PrescannedHolder.class));
+            output.putNextEntry(new JarEntry(internalName(WithoutLambdaHolder.class) + ".class"));
+            output.write(readBytes(WithoutLambdaHolder.class));
+        }
+        InMemoryClassLoader loader = new InMemoryClassLoader();
+
+        ClasspathPrescanner scanner = new ClasspathPrescanner(
+                Arrays.asList(jar, tempDir.resolve("missing.jar")), loader, 2, 10_000,
+                ClasspathPrescanner.MAX_INDEXED_CLASSES);
+        scanner.start();
+
+        assertThat(scanner.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(scanner.getIndexedClasses()).isEqualTo(1);
+        assertIndexedWithoutResource(loader);
+    }
+
+    @Test
+    void expiredScanShouldIndexNothing() throws Exception {
+        Path directory = tempDir.resolve("classes");
+        Path classFile = directory.resolve(internalName(PrescannedHolder.class) + ".class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, readBytes(PrescannedHolder.class));
+
+        ClasspathPrescanner scanner = new ClasspathPrescanner(
+                Collections.singletonList(directory), new InMemoryClassLoader(), 1, 1,
+                ClasspathPrescanner.MAX_INDEXED_CLASSES);
+        Thread.sleep(10);
+        scanner.start();
+
+        assertThat(scanner.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(scanner.getIndexedClasses()).isZero();
+    }
+
+    @Test
+    void scanShouldStopOnceEnoughClassesAreIndexed() throws Exception {
+        Path directory = tempDir.resolve("classes");
+        for (Class<?> type : Arrays.asList(PrescannedHolder.class, OtherPrescannedHolder.class)) {
+            Path classFile = directory.resolve(internalName(type) + ".class");
+            Files.createDirectories(classFile.getParent());
+            Files.write(classFile, readBytes(type));
+        }
+
+        ClasspathPrescanner scanner = new ClasspathPrescanner(
+                Collections.singletonList(directory), new InMemoryClassLoader(), 1, 10_000, 1);
+        scanner.start();
+
+        assertThat(scanner.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(scanner.getIndexedClasses()).isEqualTo(1);
+    }
+
+    @Test
+    void firstClasspathEntryShouldWinWhateverTheScanOrder() throws Exception {
+        InMemoryClassLoader loader = new InMemoryClassLoader();
+        String internalName = internalName(PrescannedHolder.class);
+
+        PendingLineIndexes.putPrescanned(loader, internalName, indexWithLine(2), 2);
+        PendingLineIndexes.putPrescanned(loader, internalName, indexWithLine(0), 0);
+        PendingLineIndexes.putPrescanned(loader, internalName, indexWithLine(1), 1);
+        Class<?> definedClass = loader.define(PrescannedHolder.class.getName(), readBytes(PrescannedHolder.class));
+
+        assertThat(PendingLineIndexes.take(definedClass).getFirstLine("lambda", "()V")).isEqualTo(0);
+    }
+
+    @Test
+    void capturedIndexShouldWinOverPrescannedOnes() throws Exception {
+        InMemoryClassLoader loader = new InMemoryClassLoader();
+        String internalName = internalName(PrescannedHolder.class);
+
+        PendingLineIndexes.putPrescanned(loader, internalName, indexWithLine(0), 0);
+        PendingLineIndexes.put(loader, internalName, indexWithLine(10));
+        PendingLineIndexes.putPrescanned(loader, internalName, indexWithLine(1), 0);
+        Class<?> definedClass = loader.define(PrescannedHolder.class.getName(), readBytes(PrescannedHolder.class));
+
+        assertThat(PendingLineIndexes.take(definedClass).getFirstLine("lambda", "()V")).isEqualTo(10);
+    }
+
+    private static LineNumberIndex indexWithLine(int line) {
+        LineNumberIndex.Builder builder = new LineNumberIndex.Builder();
+        builder.put("lambda", "()V", line);
+        return builder.build();
+    }
+
+    private static void assertIndexedWithoutResource(InMemoryClassLoader loader) throws Exception {
+        byte[] bytes = readBytes(PrescannedHolder.class);
+        Class<?> definedClass = loader.define(PrescannedHolder.class.getName(), bytes);
+
+        assertThat(LineNumberIndex.of(definedClass).getFirstLine("lambda", "()Ljava/lang/Runnable;"))
+                .isEqualTo(LineNumberIndex.of(PrescannedHolder.class).getFirstLine("lambda", "()Ljava/lang/Runnable;"))
+                .isPositive();
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static byte[] readBytes(Class<?> type) throws IOException {
+        try (InputStream input = type.getClassLoader().getResourceAsStream(internalName(type) + ".class")) {
+            return LineNumberIndex.readFully(input);
+        }
+    }
+
+    /**
+     * Class loader defining classes from memory, without any resource.
+     */
+    private static final class InMemoryClassLoader extends ClassLoader {
+
+        InMemoryClassLoader() {
+            super(ClasspathPrescanner_UT.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            return null;
+        }
+    }
+
+    private static final class PrescannedHolder {
+        static Runnable lambda() {
+            return () -> {
+            };
+        }
+    }
+
+    private static final class OtherPrescannedHolder {
+        static Runnable lambda() {
+            return () -> {
+            };
+        }
+    }
+
+    private static final class WithoutLambdaHolder {
+        static Runnable anonymous() {
+            return new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+        }
+    }
+
+}
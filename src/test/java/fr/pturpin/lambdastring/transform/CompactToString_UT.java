@@ -0,0 +1,115 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.ConstantToStringStrategy;
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactToString_UT {
+
+    private static final AtomicInteger CALLS = new AtomicInteger();
+    private static volatile Throwable failure;
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(CountingToStringStrategy.class.getName() + ",compact-tostring=true");
+    }
+
+    @Test
+    void lambdaShouldBeGivenToTheStrategy() {
+        Lambda lambda = () -> {};
+
+        assertThat(lambda.toString()).isEqualTo("toString " + LambdaMetaInfo.of(lambda)
+                .orElseThrow(AssertionError::new)
+                .getMethodName() + " 0");
+    }
+
+    @Test
+    void strategyShouldBePermanentAndNotShared() {
+        Lambda methodRef1 = LambdaTestHolder::body;
+        Lambda methodRef2 = LambdaTestHolder::body;
+
+        assertThat(methodRef1.toString()).endsWith(" 0");
+        assertThat(methodRef1.toString()).endsWith(" 1");
+        assertThat(methodRef2.toString()).endsWith(" 0");
+    }
+
+    @Test
+    void lambdaClassShouldHaveNoToStringField() {
+        Lambda lambda = () -> {};
+
+        assertThat(lambda.getClass().getDeclaredFields())
+                .noneMatch(field -> field.getName().equals(LambdaToStringLinker.TO_STRING_FIELD_NAME));
+    }
+
+    @Test
+    void failingStrategyShouldRethrowLambdaToStringException() {
+        Lambda lambda = () -> {};
+
+        failure = new LambdaToStringException();
+        try {
+            assertThatThrownBy(lambda::toString).isSameAs(failure);
+        } finally {
+            failure = null;
+        }
+        assertThat(lambda.toString()).startsWith("toString ");
+    }
+
+    @Test
+    void failingStrategyShouldGiveOriginalToString() {
+        Lambda lambda = () -> {};
+
+        failure = new IllegalStateException();
+        try {
+            assertThat(lambda.toString())
+                    .isEqualTo(lambda.getClass().getName() + "@" + Integer.toHexString(lambda.hashCode()));
+        } finally {
+            failure = null;
+        }
+    }
+
+    @Test
+    void constantStrategyShouldBeCalledOncePerLambdaClass() throws Exception {
+        Lambda lambda = () -> {};
+        LambdaMetaInfo metaInfo = LambdaMetaInfo.of(lambda).orElseThrow(AssertionError::new);
+        CompactToString compactToString = new CompactToString(
+                new CountingConstantToStringStrategy().prepare(metaInfo), true);
+        int calls = CALLS.get();
+
+        assertThat(compactToString.createToString(lambda)).isEqualTo("constant " + (calls + 1));
+        assertThat(compactToString.createToString(lambda)).isEqualTo("constant " + (calls + 1));
+        assertThat(CALLS.get()).isEqualTo(calls + 1);
+    }
+
+    private static final class CountingToStringStrategy implements LambdaToStringStrategy {
+        private int count = 0;
+
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) throws LambdaToStringException {
+            Throwable e = failure;
+            if (e instanceof LambdaToStringException) {
+                throw (LambdaToStringException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            return "toString " + metaInfo.getMethodName() + " " + count++;
+        }
+    }
+
+    private static final class CountingConstantToStringStrategy implements ConstantToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "constant " + CALLS.incrementAndGet();
+        }
+    }
+
+}
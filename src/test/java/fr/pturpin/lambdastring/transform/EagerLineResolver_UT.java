@@ -0,0 +1,135 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EagerLineResolver_UT {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(DefaultToStringStrategy.class.getName() + ",eager-lines=true");
+    }
+
+    @AfterAll
+    static void afterAll() {
+        LambdaSpinListeners.uninstall();
+    }
+
+    @Test
+    void notifiedClassShouldBeIndexedInBackground() throws Exception {
+        EagerLineResolver resolver = new EagerLineResolver(16);
+        MethodHandleInfo implInfo = MethodHandles.lookup().revealDirect(MethodHandles.lookup().findStatic(
+                NotifiedHolder.class,
+                "method",
+                MethodType.methodType(void.class)));
+
+        resolver.accept(EagerLineResolver_UT.class, implInfo);
+
+        awaitUntil(() -> LineNumberIndex.isLoaded(NotifiedHolder.class));
+    }
+
+    @Test
+    void spunLambdaShouldHaveItsDeclaringClassIndexedInBackground() throws Exception {
+        assertThat(LineNumberIndex.isLoaded(SpunHolder.class)).isFalse();
+
+        Runnable lambda = SpunHolder.lambda();
+
+        awaitUntil(() -> LineNumberIndex.isLoaded(SpunHolder.class));
+        assertThat(lambda.toString()).contains(SpunHolder.class.getSimpleName());
+    }
+
+    @Test
+    void lambdaSpunWhileResolvingShouldBeIgnored() throws Exception {
+        Class<?> lookedUpClass = new LambdaSpinningLoader().define(LookedUpHolder.class);
+
+        lookedUpClass.getDeclaredMethod("lambda").invoke(null);
+        awaitUntil(() -> LineNumberIndex.isLoaded(lookedUpClass));
+        // Queued after the classes notified while resolving the looked up one, if any
+        MarkerHolder.lambda();
+        awaitUntil(() -> LineNumberIndex.isLoaded(MarkerHolder.class));
+
+        assertThat(LineNumberIndex.isLoaded(SpunWhileResolvingHolder.class)).isFalse();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Timeout while waiting the background resolution")
+                    .isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class NotifiedHolder {
+        static void method() {
+        }
+    }
+
+    private static final class SpunHolder {
+        static Runnable lambda() {
+            return () -> {
+            };
+        }
+    }
+
+    private static final class MarkerHolder {
+        static Runnable lambda() {
+            return () -> {
+            };
+        }
+    }
+
+    public static final class LookedUpHolder {
+        public static Runnable lambda() {
+            return () -> {
+            };
+        }
+    }
+
+    private static final class SpunWhileResolvingHolder {
+        static Runnable lambda() {
+            return () -> {
+            };
+        }
+    }
+
+    /**
+     * Class loader without code source, so the class files of its classes are looked up through
+     * {@link #getResourceAsStream(String)}, which spins a lambda.
+     */
+    private static final class LambdaSpinningLoader extends ClassLoader {
+
+        LambdaSpinningLoader() {
+            super(EagerLineResolver_UT.class.getClassLoader());
+        }
+
+        Class<?> define(Class<?> type) throws IOException {
+            String resourceName = "/" + type.getName().replace('.', '/') + ".class";
+            try (InputStream input = EagerLineResolver_UT.class.getResourceAsStream(resourceName)) {
+                byte[] classFile = LineNumberIndex.readFully(input);
+                return defineClass(type.getName(), classFile, 0, classFile.length);
+            }
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            SpunWhileResolvingHolder.lambda();
+            return super.getResourceAsStream(name);
+        }
+    }
+
+}
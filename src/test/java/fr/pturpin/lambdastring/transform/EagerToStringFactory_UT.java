@@ -0,0 +1,128 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+import fr.pturpin.lambdastring.strategy.MetaInfoToStringStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EagerToStringFactory_UT {
+
+    private static final AtomicInteger CALLS = new AtomicInteger();
+
+    @Test
+    void factoryShouldGiveTheStringOfTheStrategy() throws Exception {
+        EagerToStringFactory factory = new EagerToStringFactory(metaInfo -> metaInfo.getMethodName() + "@"
+                + metaInfo.getTargetClass().getSimpleName());
+
+        assertThat(factory.apply(EagerToStringFactory_UT.class, implInfo()))
+                .isEqualTo("method@" + EagerToStringFactory_UT.class.getSimpleName());
+    }
+
+    @Test
+    void failingStrategyShouldGiveNoString() throws Exception {
+        EagerToStringFactory throwing = new EagerToStringFactory(metaInfo -> {
+            throw new LambdaToStringException();
+        });
+        EagerToStringFactory failing = new EagerToStringFactory(metaInfo -> {
+            throw new IllegalStateException();
+        });
+        EagerToStringFactory erroneous = new EagerToStringFactory(metaInfo -> {
+            throw new NoClassDefFoundError();
+        });
+
+        assertThat(throwing.apply(EagerToStringFactory_UT.class, implInfo())).isNull();
+        assertThat(failing.apply(EagerToStringFactory_UT.class, implInfo())).isNull();
+        assertThat(erroneous.apply(EagerToStringFactory_UT.class, implInfo())).isNull();
+    }
+
+    @Test
+    void lambdaOfBootstrapClassShouldGiveNoString() throws Exception {
+        EagerToStringFactory factory = new EagerToStringFactory(metaInfo -> "toString");
+
+        assertThat(factory.apply(Function.class, implInfo())).isNull();
+    }
+
+    @Test
+    void nestedComputationShouldGiveNoString() throws Exception {
+        MethodHandleInfo implInfo = implInfo();
+        EagerToStringFactory[] factory = new EagerToStringFactory[1];
+        factory[0] = new EagerToStringFactory(metaInfo -> "outer "
+                + factory[0].apply(EagerToStringFactory_UT.class, implInfo));
+
+        assertThat(factory[0].apply(EagerToStringFactory_UT.class, implInfo)).isEqualTo("outer null");
+    }
+
+    @Test
+    void spunLambdaShouldHaveItsToStringComputedEagerly() throws Exception {
+        LambdaAgentLoader.loadAgent(CountingStrategy.class.getName() + ",eager-tostring=true");
+
+        int callsBeforeSpin = CALLS.get();
+        Runnable lambda = () -> {};
+        int callsAfterSpin = CALLS.get();
+        String toString = lambda.toString();
+        int callsAfterToString = CALLS.get();
+
+        assertThat(callsAfterSpin).isGreaterThan(callsBeforeSpin);
+        assertThat(callsAfterToString).isEqualTo(callsAfterSpin);
+        assertThat(toString).isEqualTo("eager " + LambdaMetaInfo.of(lambda)
+                .orElseThrow(AssertionError::new)
+                .getMethodName());
+
+        Field field = lambda.getClass().getDeclaredField(LambdaToStringLinker.TO_STRING_FIELD_NAME);
+        assertThat(Modifier.isStatic(field.getModifiers())).isTrue();
+        assertThat(Modifier.isFinal(field.getModifiers())).isTrue();
+    }
+
+    @Test
+    void spunLambdaWithoutFactoryShouldHaveItsToStringComputedLazily() throws Exception {
+        LambdaAgentLoader.loadAgent(CountingStrategy.class.getName() + ",eager-tostring=true");
+        EagerToStringFactory.uninstall();
+        try {
+            int callsBeforeSpin = CALLS.get();
+            Runnable lambda = () -> {};
+            int callsAfterSpin = CALLS.get();
+            String toString = lambda.toString();
+
+            assertThat(callsAfterSpin).isEqualTo(callsBeforeSpin);
+            assertThat(CALLS.get()).isGreaterThan(callsAfterSpin);
+            assertThat(toString).isEqualTo("eager " + LambdaMetaInfo.of(lambda)
+                    .orElseThrow(AssertionError::new)
+                    .getMethodName());
+
+            Field field = lambda.getClass().getDeclaredField(LambdaToStringLinker.TO_STRING_FIELD_NAME);
+            assertThat(Modifier.isFinal(field.getModifiers())).isFalse();
+        } finally {
+            EagerToStringFactory.install(new CountingStrategy());
+        }
+    }
+
+    private static MethodHandleInfo implInfo() throws ReflectiveOperationException {
+        return MethodHandles.lookup().revealDirect(MethodHandles.lookup().findStatic(
+                EagerToStringFactory_UT.class,
+                "method",
+                MethodType.methodType(void.class)));
+    }
+
+    @SuppressWarnings("unused")
+    private static void method() {
+    }
+
+    private static final class CountingStrategy implements MetaInfoToStringStrategy {
+        @Override
+        public String createToString(LambdaMetaInfo metaInfo) {
+            CALLS.incrementAndGet();
+            return "eager " + metaInfo.getMethodName();
+        }
+    }
+
+}
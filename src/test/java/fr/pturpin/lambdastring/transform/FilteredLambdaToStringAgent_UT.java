@@ -0,0 +1,103 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilteredLambdaToStringAgent_UT {
+
+    private static final String EXCLUDES = StaticLambdaHolder.class.getName() + ";" + Excluded.class.getName() + ";"
+            + UninstalledExcluded.class.getName() + ";" + FailingExcluded.class.getName();
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(InjectedToStringStrategy.class.getName()
+                + ",include=fr.pturpin.lambdastring"
+                + ",exclude=" + EXCLUDES);
+    }
+
+    @Test
+    void includedLambdaShouldBeInjected() {
+        Lambda lambda = () -> {};
+
+        assertThat(lambda.toString()).isEqualTo("injected");
+        assertThat(LambdaMetaInfo.of(lambda)).isPresent();
+    }
+
+    @Test
+    void excludedLambdaShouldNotBeInjected() {
+        assertNotInjected(StaticLambdaHolder.STATIC_FINAL_LAMBDA);
+        assertNotInjected(Excluded.LAMBDA);
+    }
+
+    @Test
+    void notIncludedLambdaShouldNotBeInjected() {
+        // The target class of this lambda is the JDK class declaring it
+        BiFunction<Object, Object, Object> first = (a, b) -> a;
+
+        assertNotInjected(first.andThen(a -> a));
+    }
+
+    @Test
+    void uninstalledFilterShouldInjectAllLambdas() {
+        LambdaSpinFilter.uninstall();
+        try {
+            assertThat(UninstalledExcluded.LAMBDA.toString()).isEqualTo("injected");
+        } finally {
+            LambdaSpinFilter.install(LambdaSpinFilter.parse("fr.pturpin.lambdastring", EXCLUDES));
+        }
+    }
+
+    @Test
+    void failingFilterShouldInjectLambdas() {
+        Predicate<Class<?>> failing = targetClass -> {
+            throw new IllegalStateException("Failing filter");
+        };
+        SpinHooks.set("spinFilter", failing);
+        try {
+            assertThat(FailingExcluded.LAMBDA.toString()).isEqualTo("injected");
+        } finally {
+            LambdaSpinFilter.install(LambdaSpinFilter.parse("fr.pturpin.lambdastring", EXCLUDES));
+        }
+    }
+
+    private static void assertNotInjected(Object lambda) {
+        assertThat(lambda.toString())
+                .isEqualTo(lambda.getClass().getName() + "@" + Integer.toHexString(lambda.hashCode()));
+        assertThat(LambdaMetaInfo.of(lambda)).isEmpty();
+        assertThat(lambda.getClass().getDeclaredFields())
+                .noneMatch(field -> field.getName().equals(LambdaToStringLinker.TO_STRING_FIELD_NAME));
+        assertThat(lambda.getClass().getDeclaredMethods())
+                .extracting(Method::getName)
+                .doesNotContain("toString", LambdaToStringLinker.META_INFO_METHOD_NAME);
+    }
+
+    private static final class Excluded {
+        static final Lambda LAMBDA = () -> {};
+    }
+
+    private static final class UninstalledExcluded {
+        static final Lambda LAMBDA = () -> {};
+    }
+
+    private static final class FailingExcluded {
+        static final Lambda LAMBDA = () -> {};
+    }
+
+    private static final class InjectedToStringStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "injected";
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package fr.pturpin.lambdastring.transform;
 
+import fr.pturpin.lambdastring.asm.InjectionOptions;
+import fr.pturpin.lambdastring.asm.ToStringMode;
 import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -13,8 +15,81 @@ class InnerClassLambdaMetafactoryTransformer_UT {
 
     @Test
     void testInnerMetafactoryTransformation() throws Exception {
-        InnerClassLambdaMetafactoryTransformer transformer = new InnerClassLambdaMetafactoryTransformer(
-                DummyStrategy.class.getName(), CheckClassAdapter::new);
+        assertTransformation(transformer(options()));
+    }
+
+    @Test
+    void testInnerMetafactoryTransformationWithSpinListener() throws Exception {
+        assertTransformation(transformer(options().notifySpinListener(true)));
+    }
+
+    @Test
+    void testInnerMetafactoryTransformationWithMemoizedToString() throws Exception {
+        assertTransformation(transformer(options().toStringMode(ToStringMode.MEMOIZED)));
+    }
+
+    @Test
+    void testInnerMetafactoryTransformationWithEagerToString() throws Exception {
+        assertTransformation(transformer(options().toStringMode(ToStringMode.EAGER)));
+    }
+
+    @Test
+    void testInnerMetafactoryTransformationWithCompactToString() throws Exception {
+        assertTransformation(transformer(options().toStringMode(ToStringMode.COMPACT)));
+    }
+
+    @Test
+    void testInnerMetafactoryTransformationWithSharedStrategy() throws Exception {
+        assertTransformation(transformer(options().sharedStrategy(true)));
+        assertTransformation(transformer(options().toStringMode(ToStringMode.COMPACT).sharedStrategy(true)));
+    }
+
+    @Test
+    void testInnerMetafactoryTransformationWithSpinFilter() throws Exception {
+        assertTransformation(transformer(options().filterSpin(true)));
+        assertTransformation(transformer(options()
+                .toStringMode(ToStringMode.EAGER)
+                .notifySpinListener(true)
+                .filterSpin(true)));
+    }
+
+    @Test
+    void testInnerMetafactoryTransformationWithClassRegistry() throws Exception {
+        assertTransformation(transformer(options().registerClasses(true)));
+        assertTransformation(transformer(options()
+                .toStringMode(ToStringMode.EAGER)
+                .notifySpinListener(true)
+                .filterSpin(true)
+                .registerClasses(true)));
+    }
+
+    @Test
+    void unsupportedMetafactoryShouldBeLeftUntouched() throws Exception {
+        InnerClassLambdaMetafactoryTransformer transformer = transformer(options());
+        ClassLoader classLoader = getClass().getClassLoader();
+        // No ClassWriter, as a metafactory generating the lambda classes with the ClassFile API
+        byte[] unsupported = readAll(classLoader.getResourceAsStream(
+                DummyStrategy.class.getName().replace('.', '/') + ".class"));
+
+        byte[] transformed = transformer.transform(classLoader,
+                "java/lang/invoke/InnerClassLambdaMetafactory",
+                null,
+                null,
+                unsupported);
+
+        Assertions.assertThat(transformed).isNull();
+        Assertions.assertThat(transformer.getUnsupportedReason()).contains("ClassFile API");
+    }
+
+    private static InjectionOptions.Builder options() {
+        return InjectionOptions.builder(DummyStrategy.class.getName());
+    }
+
+    private static InnerClassLambdaMetafactoryTransformer transformer(InjectionOptions.Builder options) {
+        return new InnerClassLambdaMetafactoryTransformer(options.build(), CheckClassAdapter::new);
+    }
+
+    private void assertTransformation(InnerClassLambdaMetafactoryTransformer transformer) throws Exception {
         ClassLoader classLoader = getClass().getClassLoader();
         String metafactoryName = "java/lang/invoke/InnerClassLambdaMetafactory";
         Class<?> metafactory = classLoader.loadClass(metafactoryName.replace('/', '.'));
@@ -22,6 +97,7 @@ class InnerClassLambdaMetafactoryTransformer_UT {
         byte[] metafactoryBuffer = readAll(is);
         byte[] transformed = transformer.transform(classLoader, metafactoryName, metafactory, null, metafactoryBuffer);
         Assertions.assertThat(transformed).isNotNull();
+        Assertions.assertThat(transformer.getUnsupportedReason()).isNull();
     }
 
     private static byte[] readAll(InputStream is) throws IOException {
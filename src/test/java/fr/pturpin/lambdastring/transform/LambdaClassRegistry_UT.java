@@ -0,0 +1,109 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
+import fr.pturpin.lambdastring.transform.LambdaClassRegistry.RegisteredLambda;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandleInfo;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LambdaClassRegistry_UT {
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(DefaultToStringStrategy.class.getName()
+                + ",registry=true"
+                + ",exclude=" + Excluded.class.getName());
+    }
+
+    @Test
+    void spunLambdaShouldBeRegisteredWithItsMetaInfo() throws Exception {
+        Lambda lambda = () -> {};
+
+        RegisteredLambda registered = findRegistration(
+                LambdaClassRegistry.findByDeclaringClass(LambdaClassRegistry_UT.class), lambda);
+        LambdaMetaInfo metaInfo = registered.getMetaInfo();
+
+        assertThat(LambdaClassRegistry.isInstalled()).isTrue();
+        assertThat(metaInfo.getTargetClass()).isEqualTo(LambdaClassRegistry_UT.class);
+        assertThat(metaInfo.getDeclaringClass()).isEqualTo(LambdaClassRegistry_UT.class);
+        assertThat(metaInfo.getMethodName()).isEqualTo(LambdaMetaInfo.of(lambda).get().getMethodName());
+        assertThat(metaInfo.getMethodDesc()).isEqualTo("()V");
+        assertThat(metaInfo.getReferenceKind()).isEqualTo(MethodHandleInfo.REF_invokeStatic);
+    }
+
+    @Test
+    void methodRefShouldBeRegisteredByItsDeclaringClass() throws Exception {
+        Lambda lambda = LambdaTestHolder::body;
+
+        RegisteredLambda registered = findRegistration(
+                LambdaClassRegistry.findByDeclaringClass(LambdaTestHolder.class), lambda);
+
+        assertThat(registered.getMetaInfo().getTargetClass()).isEqualTo(LambdaClassRegistry_UT.class);
+        assertThat(registered.getMetaInfo().getMethodName()).isEqualTo("body");
+        assertThat(registered.getMetaInfo().getModifers())
+                .isEqualTo(LambdaTestHolder.class.getMethod("body").getModifiers());
+        assertThat(LambdaClassRegistry.findByDeclaringClass(LambdaClassRegistry_UT.class))
+                .extracting(RegisteredLambda::getLambdaClass)
+                .doesNotContain(lambda.getClass());
+    }
+
+    @Test
+    void lambdaSpunAfterPropertiesResetShouldBeRegistered() {
+        Properties properties = System.getProperties();
+        Lambda lambda;
+        try {
+            System.setProperties(null);
+            lambda = () -> {};
+        } finally {
+            System.setProperties(properties);
+        }
+
+        assertThat(LambdaMetaInfo.of(lambda)).isPresent();
+        findRegistration(LambdaClassRegistry.findByDeclaringClass(LambdaClassRegistry_UT.class), lambda);
+    }
+
+    @Test
+    void notInjectedLambdaShouldBeRegistered() {
+        assertThat(LambdaMetaInfo.of(Excluded.LAMBDA)).isEmpty();
+        assertThat(LambdaClassRegistry.findByDeclaringClass(Excluded.class))
+                .extracting(RegisteredLambda::getLambdaClass)
+                .containsExactly(Excluded.LAMBDA.getClass());
+    }
+
+    @Test
+    void lambdaShouldBeFoundByPackageOfItsDeclaringClass() {
+        Lambda lambda = () -> {};
+
+        assertThat(LambdaClassRegistry.findByPackage("fr.pturpin.lambdastring.transform"))
+                .extracting(RegisteredLambda::getLambdaClass)
+                .contains(lambda.getClass());
+        assertThat(LambdaClassRegistry.findByPackage("fr.pturpin"))
+                .extracting(RegisteredLambda::getLambdaClass)
+                .contains(lambda.getClass());
+        assertThat(LambdaClassRegistry.findByPackage("fr.pturpin.lambda"))
+                .extracting(RegisteredLambda::getLambdaClass)
+                .doesNotContain(lambda.getClass());
+        assertThat(LambdaClassRegistry.findByPackage("fr.pturpin.lambdastring.transform.LambdaClassRegistry_UT"))
+                .isEmpty();
+    }
+
+    private static RegisteredLambda findRegistration(List<RegisteredLambda> registrations, Object lambda) {
+        return registrations.stream()
+                .filter(registered -> registered.getLambdaClass() == lambda.getClass())
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(lambda.getClass() + " not found in " + registrations));
+    }
+
+    private static final class Excluded {
+        static final Lambda LAMBDA = () -> {};
+    }
+
+}
@@ -0,0 +1,124 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LambdaInventory_UT {
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(DefaultToStringStrategy.class.getName() + ",registry=true");
+    }
+
+    @Test
+    void registeredLambdaShouldBeWrittenWithItsSiteSizeAndLoader() throws IOException {
+        Lambda lambda = () -> {}; int lambdaLine = currentLine();
+
+        List<String> lines = writeInventory();
+        String[] columns = findLine(lines, lambda.getClass()).split(",", -1);
+
+        assertThat(lines.get(0)).isEqualTo(LambdaInventory.HEADER);
+        assertThat(columns).hasSize(8);
+        assertThat(columns[1]).isEqualTo(Lambda.class.getName());
+        assertThat(columns[2]).isEqualTo(LambdaInventory_UT.class.getName());
+        assertThat(columns[3]).isEqualTo(LambdaInventory_UT.class.getName());
+        assertThat(columns[4]).isEqualTo(LambdaMetaInfo.of(lambda).get().getMethodName());
+        assertThat(columns[5]).isEqualTo(Integer.toString(lambdaLine));
+        assertThat(Integer.parseInt(columns[6])).isPositive();
+        assertThat(columns[7]).isEqualTo(LambdaInventory_UT.class.getClassLoader().getClass().getName() + "@"
+                + Integer.toHexString(System.identityHashCode(LambdaInventory_UT.class.getClassLoader())));
+    }
+
+    @Test
+    void biggerLambdaClassShouldHaveBiggerSize() throws IOException {
+        int first = 1;
+        long second = 2;
+        Lambda lambda = () -> {};
+        IntSupplier capturing = () -> first + (int) second;
+
+        List<String> lines = writeInventory();
+
+        assertThat(getSize(findLine(lines, capturing.getClass())))
+                .isGreaterThan(getSize(findLine(lines, lambda.getClass())));
+    }
+
+    @Test
+    void loadedLambdaShouldBeWrittenWithoutSize() throws IOException {
+        Lambda lambda = () -> {}; int lambdaLine = currentLine();
+        StringWriter output = new StringWriter();
+
+        try (BufferedWriter writer = new BufferedWriter(output)) {
+            LambdaInventory.writeLoadedLambdas(writer, new Class<?>[] { String.class, lambda.getClass() });
+        }
+
+        String[] lines = output.toString().split(System.lineSeparator());
+        assertThat(lines).hasSize(2);
+        assertThat(lines[1]).startsWith(lambda.getClass().getName() + "," + Lambda.class.getName() + ","
+                + LambdaInventory_UT.class.getName() + ",")
+                .contains("," + lambdaLine + ",,");
+    }
+
+    @Test
+    void valuesWithCommasOrQuotesShouldBeQuoted() throws IOException {
+        assertThat(writeValue("com.mycompany.MyClass$$Lambda$1/123")).isEqualTo("com.mycompany.MyClass$$Lambda$1/123");
+        assertThat(writeValue("My,Class")).isEqualTo("\"My,Class\"");
+        assertThat(writeValue("My\"Class")).isEqualTo("\"My\"\"Class\"");
+        assertThat(writeValue("My\nClass")).isEqualTo("\"My\nClass\"");
+    }
+
+    @Test
+    void unresolvedDeclarationLineShouldNotBeKept() throws IOException {
+        Lambda lambda = () -> {}; int lambdaLine = currentLine();
+        LambdaMetaInfo metaInfo = LambdaMetaInfo.of(lambda).get();
+
+        String[] columns = findLine(writeInventory(), lambda.getClass()).split(",", -1);
+
+        assertThat(columns[5]).isEqualTo(Integer.toString(lambdaLine));
+        assertThat(metaInfo.isDeclarationLineResolved()).isFalse();
+    }
+
+    private static String writeValue(String value) throws IOException {
+        StringWriter output = new StringWriter();
+        LambdaInventory.writeValue(output, value);
+        return output.toString();
+    }
+
+    private static List<String> writeInventory() throws IOException {
+        Path output = Files.createTempFile("lambda-string", ".csv");
+        try {
+            LambdaInventory.write(output);
+            return Files.readAllLines(output);
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    private static String findLine(List<String> lines, Class<?> lambdaClass) {
+        return lines.stream()
+                .filter(line -> line.startsWith(lambdaClass.getName() + ","))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(lambdaClass + " not found in " + lines));
+    }
+
+    private static int getSize(String line) {
+        return Integer.parseInt(line.split(",", -1)[6]);
+    }
+
+    private static int currentLine() {
+        return new Throwable().getStackTrace()[1].getLineNumber();
+    }
+
+}
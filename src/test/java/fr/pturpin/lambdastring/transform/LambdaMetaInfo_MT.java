@@ -0,0 +1,110 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Stack;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LambdaMetaInfo_MT {
+
+    private static final List<LambdaMetaInfo> GIVEN_META_INFOS = new ArrayList<>();
+    private static final int LINE_OF_METHOD_REF = 69;
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(RecordingMetaInfoStrategy.class.getName());
+    }
+
+    @Test
+    void metaInfoShouldBeSharedByInstancesOfSameLambda() throws Exception {
+        Lambda lambda1 = newCapturingLambda(1);
+        Lambda lambda2 = newCapturingLambda(2);
+        assertThat(lambda1.getClass()).isEqualTo(lambda2.getClass());
+
+        Optional<LambdaMetaInfo> metaInfo1 = LambdaMetaInfo.of(lambda1);
+        Optional<LambdaMetaInfo> metaInfo2 = LambdaMetaInfo.of(lambda2);
+
+        assertThat(metaInfo1).isPresent();
+        assertThat(metaInfo1.get()).isSameAs(metaInfo2.get());
+    }
+
+    @Test
+    void metaInfoShouldBeTheOneGivenToStrategy() throws Exception {
+        Lambda methodRef = LambdaTestHolder::body;
+
+        methodRef.toString();
+        methodRef.toString();
+
+        LambdaMetaInfo metaInfo = LambdaMetaInfo.of(methodRef).orElseThrow(AssertionError::new);
+        assertThat(GIVEN_META_INFOS).filteredOn(given -> given == metaInfo).hasSize(2);
+        assertThat(metaInfo.getDeclaringClass()).isEqualTo(LambdaTestHolder.class);
+        assertThat(metaInfo.getMethodName()).isEqualTo("body");
+        assertThat(metaInfo.getMethodDesc()).isEqualTo("()V");
+        assertThat(metaInfo.getTargetClass()).isEqualTo(LambdaMetaInfo_MT.class);
+    }
+
+    @Test
+    void metaInfoShouldBeAvailableBeforeAnyToString() throws Exception {
+        LambdaMetaInfo metaInfo = LambdaMetaInfo.of(StaticLambdaHolder.STATIC_FINAL_MULTILINE_LAMBDA)
+                .orElseThrow(AssertionError::new);
+
+        assertThat(metaInfo.getDeclaringClass()).isEqualTo(StaticLambdaHolder.class);
+        assertThat(metaInfo.getDeclarationLine()).hasValue(17);
+    }
+
+    @Test
+    void creationLineShouldBeTheLineOfMethodReference() throws Exception {
+        Function<Object, String> methodRef = LambdaTestHolder::defaultToString;
+        ToIntFunction<Stack<Object>> inheritedMethodRef = Stack::size;
+
+        LambdaMetaInfo metaInfo = LambdaMetaInfo.of(methodRef).orElseThrow(AssertionError::new);
+        LambdaMetaInfo inheritedMetaInfo = LambdaMetaInfo.of(inheritedMethodRef).orElseThrow(AssertionError::new);
+
+        assertThat(metaInfo.getCreationLine()).hasValue(LINE_OF_METHOD_REF);
+        assertThat(metaInfo.getDeclarationLine()).isNotEqualTo(metaInfo.getCreationLine());
+        assertThat(inheritedMetaInfo.getCreationLine()).hasValue(LINE_OF_METHOD_REF + 1);
+    }
+
+    @Test
+    void creationLineOfLambdaShouldBeTheLineOfItsArrow() throws Exception {
+        LambdaMetaInfo metaInfo = LambdaMetaInfo.of(StaticLambdaHolder.STATIC_FINAL_MULTILINE_LAMBDA)
+                .orElseThrow(AssertionError::new);
+
+        assertThat(metaInfo.getCreationLine()).hasValue(16);
+        assertThat(metaInfo.getDeclarationLine()).hasValue(17);
+    }
+
+    @Test
+    void nonLambdaShouldNotHaveMetaInfo() throws Exception {
+        assertThat(LambdaMetaInfo.of(new Object())).isEmpty();
+        assertThat(LambdaMetaInfo.of("dummy")).isEmpty();
+    }
+
+    private static Lambda newCapturingLambda(int value) {
+        return () -> {
+            int i = value;
+        };
+    }
+
+    private static final class RecordingMetaInfoStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            synchronized (GIVEN_META_INFOS) {
+                GIVEN_META_INFOS.add(metaInfo);
+            }
+            return "";
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import fr.pturpin.lambdastring.StaticMethodRefHolder;
+import fr.pturpin.lambdastring.asm.FetchingLambdaImplMethodsClassVisitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LambdaSiteIndexer_UT {
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("lambda-site-indexer");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void indexShouldContainLinesOfAllLambdaImplMethods() throws Exception {
+        Path classes = directory.resolve("classes");
+        List<Class<?>> indexedClasses = new ArrayList<>(Arrays.asList(StaticLambdaHolder.class, StaticMethodRefHolder.class));
+        indexedClasses.addAll(Arrays.asList(StaticMethodRefHolder.class.getDeclaredClasses()));
+        for (Class<?> indexedClass : indexedClasses) {
+            copyClass(indexedClass, classes, false);
+        }
+        Path output = directory.resolve("lambda-string.idx");
+
+        int indexed = LambdaSiteIndexer.index(Collections.singletonList(classes), output);
+
+        LambdaSiteIndex index = LambdaSiteIndex.read(ByteBuffer.wrap(Files.readAllBytes(output)));
+        List<String[]> implMethods = new ArrayList<>();
+        for (Class<?> indexedClass : indexedClasses) {
+            new ClassReader(readClass(indexedClass)).accept(new FetchingLambdaImplMethodsClassVisitor(
+                    (owner, name, desc) -> implMethods.add(new String[]{ owner, name, desc })), 0);
+        }
+
+        assertThat(indexed).isPositive();
+        for (String[] implMethod : implMethods) {
+            String className = implMethod[0].replace('/', '.');
+            if (indexedClasses.stream().noneMatch(c -> c.getName().equals(className))) {
+                continue;
+            }
+            Class<?> owner = Class.forName(className);
+            assertThat(index.getFirstLine(className, implMethod[1], implMethod[2]))
+                    .as(className + "#" + implMethod[1])
+                    .isEqualTo(LineNumberIndex.of(owner).getFirstLine(implMethod[1], implMethod[2]));
+        }
+    }
+
+    @Test
+    void indexShouldContainCreationLinesOfAllLambdas() throws Exception {
+        Path classes = directory.resolve("classes");
+        copyClass(StaticMethodRefHolder.class, classes, false);
+        Path output = directory.resolve("lambda-string.idx");
+
+        LambdaSiteIndexer.index(Collections.singletonList(classes), output);
+
+        LambdaSiteIndex index = LambdaSiteIndex.read(ByteBuffer.wrap(Files.readAllBytes(output)));
+        LineNumberIndex lineIndex = LineNumberIndex.of(StaticMethodRefHolder.class);
+        List<String[]> implMethods = new ArrayList<>();
+        new ClassReader(readClass(StaticMethodRefHolder.class)).accept(new FetchingLambdaImplMethodsClassVisitor(
+                (owner, name, desc) -> implMethods.add(new String[]{ owner.replace('/', '.'), name, desc })), 0);
+
+        assertThat(implMethods).isNotEmpty();
+        for (String[] implMethod : implMethods) {
+            assertThat(index.getCreationLine(StaticMethodRefHolder.class.getName(),
+                    implMethod[0], implMethod[1], implMethod[2]))
+                    .as(implMethod[0] + "#" + implMethod[1])
+                    .isEqualTo(lineIndex.getCreationLine(implMethod[0], implMethod[1], implMethod[2]))
+                    .isPositive();
+        }
+    }
+
+    @Test
+    void indexShouldGiveLinesOfClassesWithoutDebugInformation() throws Exception {
+        Path classes = directory.resolve("classes");
+        Path strippedClasses = directory.resolve("stripped");
+        copyClass(IndexedHolder.class, classes, false);
+        copyClass(IndexedHolder.class, strippedClasses, true);
+
+        LambdaSiteIndexer.index(Collections.singletonList(classes),
+                strippedClasses.resolve(LambdaSiteIndex.RESOURCE_NAME));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{ strippedClasses.toUri().toURL() }, null)) {
+            Class<?> strippedClass = loader.loadClass(IndexedHolder.class.getName());
+            Method lambdaMethod = Arrays.stream(strippedClass.getDeclaredMethods())
+                    .filter(method -> method.getName().startsWith("lambda$"))
+                    .findFirst()
+                    .orElseThrow(IllegalStateException::new);
+
+            assertThat(LineNumberIndex.of(strippedClass).getFirstLine(lambdaMethod.getName(), "()V")).isEqualTo(-1);
+
+            LambdaMetaInfo metaInfo = new LambdaMetaInfo(strippedClass,
+                    strippedClass,
+                    lambdaMethod.getName(),
+                    "()V",
+                    6,
+                    lambdaMethod.getModifiers());
+            assertThat(metaInfo.getDeclarationLine()).hasValue(
+                    LineNumberIndex.of(IndexedHolder.class).getFirstLine(lambdaMethod.getName(), "()V"));
+            assertThat(metaInfo.getCreationLine()).hasValue(LineNumberIndex.of(IndexedHolder.class)
+                    .getCreationLine(IndexedHolder.class.getName(), lambdaMethod.getName(), "()V"));
+        }
+    }
+
+    @Test
+    void entriesWithCollidingHashesShouldHaveTheirOwnLine() {
+        assertThat("holder.Aa".hashCode()).isEqualTo("holder.BB".hashCode());
+        LambdaSiteIndex.Builder builder = new LambdaSiteIndex.Builder();
+        builder.put("holder.Aa", "Aa", "()V", 1);
+        builder.put("holder.BB", "BB", "()V", 2);
+        builder.putCreationSite("holder.Aa", "holder/Aa", "Aa", "()V", 3);
+
+        LambdaSiteIndex index = LambdaSiteIndex.read(ByteBuffer.wrap(builder.build()));
+
+        assertThat(index.getFirstLine("holder.Aa", "Aa", "()V")).isEqualTo(1);
+        assertThat(index.getFirstLine("holder.BB", "BB", "()V")).isEqualTo(2);
+        assertThat(index.getFirstLine("holder.BB", "Aa", "()V")).isEqualTo(-1);
+        assertThat(index.getFirstLine("holder.Aa", "BB", "()V")).isEqualTo(-1);
+        assertThat(index.getCreationLine("holder.Aa", "holder.Aa", "Aa", "()V")).isEqualTo(3);
+        assertThat(index.getCreationLine("holder.Aa", "holder.BB", "BB", "()V")).isEqualTo(-1);
+        assertThat(index.getCreationLine("holder.BB", "holder.Aa", "Aa", "()V")).isEqualTo(-1);
+    }
+
+    private static void copyClass(Class<?> type, Path classes, boolean stripDebug) throws IOException {
+        byte[] classFile = readClass(type);
+        if (stripDebug) {
+            ClassWriter cw = new ClassWriter(0);
+            new ClassReader(classFile).accept(cw, ClassReader.SKIP_DEBUG);
+            classFile = cw.toByteArray();
+        }
+        Path file = classes.resolve(type.getName().replace('.', '/') + ".class");
+        Files.createDirectories(file.getParent());
+        Files.write(file, classFile);
+    }
+
+    private static byte[] readClass(Class<?> type) throws IOException {
+        String resourceName = type.getName().replace('.', '/') + ".class";
+        try (InputStream input = type.getClassLoader().getResourceAsStream(resourceName)) {
+            return LineNumberIndex.readFully(input);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static final class IndexedHolder {
+        static Runnable lambda() {
+            return () -> {
+            };
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package fr.pturpin.lambdastring.transform;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LambdaSpinFilter_UT {
+
+    @Test
+    void allClassesShouldBeInjectedWithoutPattern() {
+        LambdaSpinFilter filter = LambdaSpinFilter.parse(null, null);
+
+        assertThat(filter.isInjected("com.app.Service")).isTrue();
+        assertThat(filter.test(String.class)).isTrue();
+    }
+
+    @Test
+    void excludedPackagesShouldNotBeInjected() {
+        LambdaSpinFilter filter = LambdaSpinFilter.parse(null, "org.lib; com.app.Main ;java.");
+
+        assertThat(filter.isInjected("org.lib.Util")).isFalse();
+        assertThat(filter.isInjected("org.lib.sub.Util$Inner")).isFalse();
+        assertThat(filter.isInjected("com.app.Main")).isFalse();
+        assertThat(filter.isInjected("com.app.Main$1")).isFalse();
+        assertThat(filter.test(String.class)).isFalse();
+
+        assertThat(filter.isInjected("org.library.Util")).isTrue();
+        assertThat(filter.isInjected("com.app.MainService")).isTrue();
+        assertThat(filter.isInjected("com.app.Service")).isTrue();
+    }
+
+    @Test
+    void onlyIncludedPackagesShouldBeInjected() {
+        LambdaSpinFilter filter = LambdaSpinFilter.parse("com.app", null);
+
+        assertThat(filter.isInjected("com.app.Service")).isTrue();
+        assertThat(filter.isInjected("com.application.Service")).isFalse();
+        assertThat(filter.isInjected("org.lib.Util")).isFalse();
+        assertThat(filter.isInjected("Main")).isFalse();
+    }
+
+    @Test
+    void longestPatternShouldWin() {
+        LambdaSpinFilter filter = LambdaSpinFilter.parse("com.app;com.app.gen.Kept", "com.app.gen");
+
+        assertThat(filter.isInjected("com.app.Service")).isTrue();
+        assertThat(filter.isInjected("com.app.gen.Generated")).isFalse();
+        assertThat(filter.isInjected("com.app.gen.Kept$1")).isTrue();
+    }
+
+    @Test
+    void nestedClassesShouldNotMatchPackages() {
+        LambdaSpinFilter filter = LambdaSpinFilter.parse(null, "com.app.Main$Inner");
+
+        assertThat(filter.isInjected("com.app.Main$Inner")).isFalse();
+        assertThat(filter.isInjected("com.app.Main.Inner")).isTrue();
+        assertThat(filter.isInjected("com.app.Main")).isTrue();
+    }
+
+    @Test
+    void patternBothIncludedAndExcludedShouldBeRejected() {
+        assertThatThrownBy(() -> LambdaSpinFilter.parse("com.app", "org.lib;com.app."))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,111 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntSupplier;
+
+import static fr.pturpin.lambdastring.LambdaTestHolder.defaultToString;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LambdaStrings_UT {
+
+    private static Lambda FIRST_LAMBDA_BEFORE_AGENT;
+    private static int FIRST_LAMBDA_LINE;
+    private static Lambda SECOND_LAMBDA_BEFORE_AGENT;
+    private static int SECOND_LAMBDA_LINE;
+    private static IntSupplier CAPTURING_LAMBDA_BEFORE_AGENT;
+    private static int CAPTURING_LAMBDA_LINE;
+    private static Lambda METHOD_REF_BEFORE_AGENT;
+    private static Lambda LAMBDA_AFTER_AGENT;
+    private static Lambda FIRST_LAMBDA_RESOLVED_BEFORE_INSTALL;
+    private static int FIRST_LAMBDA_RESOLVED_BEFORE_INSTALL_LINE;
+    private static Lambda SECOND_LAMBDA_RESOLVED_BEFORE_INSTALL;
+
+    @BeforeAll
+    static void beforeAll() throws IOException {
+        int captured = 42;
+        // Lambdas of the same shape, only told apart by the method they forward to
+        FIRST_LAMBDA_BEFORE_AGENT = () -> {}; FIRST_LAMBDA_LINE = currentLine();
+        SECOND_LAMBDA_BEFORE_AGENT = () -> {}; SECOND_LAMBDA_LINE = currentLine();
+        CAPTURING_LAMBDA_BEFORE_AGENT = () -> captured; CAPTURING_LAMBDA_LINE = currentLine();
+        METHOD_REF_BEFORE_AGENT = LambdaTestHolder::body;
+        FIRST_LAMBDA_RESOLVED_BEFORE_INSTALL = () -> {}; FIRST_LAMBDA_RESOLVED_BEFORE_INSTALL_LINE = currentLine();
+        SECOND_LAMBDA_RESOLVED_BEFORE_INSTALL = () -> {};
+        LambdaAgentLoader.loadAgent(DefaultToStringStrategy.class.getName());
+        LAMBDA_AFTER_AGENT = () -> {};
+        // Since JDK 9, these lambdas are not told apart yet
+        LambdaStrings.resolve(FIRST_LAMBDA_RESOLVED_BEFORE_INSTALL.getClass());
+        LambdaStrings.resolve(SECOND_LAMBDA_RESOLVED_BEFORE_INSTALL.getClass());
+        // Attached to describe, the agent gives its instrumentation to read the constant pool of the lambda classes
+        // since JDK 9
+        Path description = Files.createTempFile("lambda-string", ".txt");
+        try {
+            LambdaAgentLoader.loadAgent("describe=" + description);
+        } finally {
+            Files.delete(description);
+        }
+    }
+
+    @Test
+    void lambdasBeforeAgentShouldKeepTheirOriginalToString() {
+        assertThat(FIRST_LAMBDA_BEFORE_AGENT.toString()).isEqualTo(defaultToString(FIRST_LAMBDA_BEFORE_AGENT));
+    }
+
+    @Test
+    void lambdasBeforeAgentShouldBeDescribedByTheirDeclarationLine() {
+        assertThat(LambdaStrings.describe(FIRST_LAMBDA_BEFORE_AGENT))
+                .isEqualTo("LambdaStrings_UT:" + FIRST_LAMBDA_LINE);
+        assertThat(LambdaStrings.describe(SECOND_LAMBDA_BEFORE_AGENT))
+                .isEqualTo("LambdaStrings_UT:" + SECOND_LAMBDA_LINE);
+        assertThat(LambdaStrings.describe(CAPTURING_LAMBDA_BEFORE_AGENT))
+                .isEqualTo("LambdaStrings_UT:" + CAPTURING_LAMBDA_LINE);
+    }
+
+    @Test
+    void lambdasResolvedBeforeInstallShouldBeResolvedAgainAfter() {
+        assertThat(LambdaStrings.describe(FIRST_LAMBDA_RESOLVED_BEFORE_INSTALL))
+                .isEqualTo("LambdaStrings_UT:" + FIRST_LAMBDA_RESOLVED_BEFORE_INSTALL_LINE);
+        assertThat(LambdaStrings.describe(SECOND_LAMBDA_RESOLVED_BEFORE_INSTALL))
+                .isEqualTo("LambdaStrings_UT:" + (FIRST_LAMBDA_RESOLVED_BEFORE_INSTALL_LINE + 1));
+    }
+
+    @Test
+    void methodRefBeforeAgentShouldBeDescribedByItsMethod() throws Exception {
+        LambdaMetaInfo metaInfo = LambdaStrings.resolve(METHOD_REF_BEFORE_AGENT.getClass()).get();
+
+        assertThat(metaInfo.getTargetClass()).isEqualTo(LambdaStrings_UT.class);
+        assertThat(metaInfo.getDeclaringClass()).isEqualTo(LambdaTestHolder.class);
+        assertThat(metaInfo.getMethodName()).isEqualTo("body");
+        assertThat(metaInfo.getMethodDesc()).isEqualTo("()V");
+        assertThat(metaInfo.getModifers()).isEqualTo(LambdaTestHolder.class.getMethod("body").getModifiers());
+        assertThat(LambdaStrings.describe(METHOD_REF_BEFORE_AGENT)).startsWith("LambdaTestHolder::body:");
+    }
+
+    @Test
+    void lambdaAfterAgentShouldBeDescribedByItsInjectedMetaInfo() {
+        assertThat(LambdaStrings.resolve(LAMBDA_AFTER_AGENT.getClass()))
+                .isEqualTo(LambdaMetaInfo.of(LAMBDA_AFTER_AGENT));
+        assertThat(LambdaStrings.describe(LAMBDA_AFTER_AGENT)).isEqualTo(LAMBDA_AFTER_AGENT.toString());
+    }
+
+    @Test
+    void otherObjectsShouldBeDescribedByTheirToString() {
+        assertThat(LambdaStrings.isLambdaClass(String.class)).isFalse();
+        assertThat(LambdaStrings.isLambdaClass(FIRST_LAMBDA_BEFORE_AGENT.getClass())).isTrue();
+        assertThat(LambdaStrings.resolve(String.class)).isEmpty();
+        assertThat(LambdaStrings.describe("not a lambda")).isEqualTo("not a lambda");
+    }
+
+    private static int currentLine() {
+        return new Throwable().getStackTrace()[1].getLineNumber();
+    }
+
+}
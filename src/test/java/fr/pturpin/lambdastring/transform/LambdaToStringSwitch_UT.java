@@ -0,0 +1,107 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.ConstantToStringStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LambdaToStringSwitch_UT {
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(ConstantStrategy.class.getName() + ",switchable=true");
+    }
+
+    @AfterEach
+    void afterEach() {
+        LambdaToStringSwitch.enable();
+    }
+
+    @Test
+    void lambdaShouldBeSwitchedOffAndOn() {
+        Lambda lambda = () -> {};
+        Lambda methodRef = LambdaTestHolder::body;
+
+        assertThat(LambdaToStringSwitch.isInstalled()).isTrue();
+        assertThat(lambda.toString()).isEqualTo("constant");
+        assertThat(methodRef.toString()).isEqualTo("constant");
+
+        LambdaToStringSwitch.disable();
+        assertThat(LambdaToStringSwitch.isEnabled()).isFalse();
+        assertThat(lambda.toString()).isEqualTo(originalToString(lambda));
+        assertThat(methodRef.toString()).isEqualTo(originalToString(methodRef));
+
+        LambdaToStringSwitch.enable();
+        assertThat(LambdaToStringSwitch.isEnabled()).isTrue();
+        assertThat(lambda.toString()).isEqualTo("constant");
+        assertThat(methodRef.toString()).isEqualTo("constant");
+    }
+
+    @Test
+    void lambdaLinkedWhileSwitchedOffShouldBeSwitchedOn() {
+        Lambda lambda = () -> {};
+
+        LambdaToStringSwitch.disable();
+        assertThat(lambda.toString()).isEqualTo(originalToString(lambda));
+
+        LambdaToStringSwitch.enable();
+        assertThat(lambda.toString()).isEqualTo("constant");
+    }
+
+    @Test
+    void compactCallSiteShouldBeSwitched() throws Throwable {
+        MethodHandles.Lookup caller = MethodHandles.lookup().in(FakeLambda.class);
+        MethodType type = MethodType.methodType(String.class, Object.class);
+        CallSite callSite = LambdaToStringLinker.linkToString(caller,
+                "toString",
+                type,
+                ConstantStrategy.class.getName());
+        Object lambda = new FakeLambda();
+
+        assertThat(callSite.getTarget().invoke(lambda)).isEqualTo("constant");
+
+        LambdaToStringSwitch.disable();
+        assertThat(callSite.getTarget().invoke(lambda)).isEqualTo(originalToString(lambda));
+
+        LambdaToStringSwitch.enable();
+        assertThat(callSite.getTarget().invoke(lambda)).isEqualTo("constant");
+    }
+
+    private static String originalToString(Object lambda) {
+        return lambda.getClass().getName() + "@" + Integer.toHexString(lambda.hashCode());
+    }
+
+    /**
+     * Class declaring its meta information as the injected lambda classes.
+     */
+    private static final class FakeLambda {
+        @SuppressWarnings("unused")
+        private static LambdaMetaInfo lambdaMetaInfo$() {
+            return new LambdaMetaInfo(FakeLambda.class,
+                    FakeLambda.class,
+                    "lambda$0",
+                    "()V",
+                    MethodHandleInfo.REF_invokeStatic,
+                    Modifier.PRIVATE | Modifier.STATIC);
+        }
+    }
+
+    private static final class ConstantStrategy implements ConstantToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "constant";
+        }
+    }
+
+}
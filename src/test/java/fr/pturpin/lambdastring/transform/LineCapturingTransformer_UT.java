@@ -0,0 +1,107 @@
+package fr.pturpin.lambdastring.transform;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineCapturingTransformer_UT {
+
+    @Test
+    void classesWithoutLambdaShouldBeSkipped() throws Exception {
+        assertThat(LineCapturingTransformer.containsLambdaMethodName(readBytes(WithoutLambdaHolder.class))).isFalse();
+        assertThat(LineCapturingTransformer.containsLambdaMethodName(readBytes(CapturedHolder.class))).isTrue();
+    }
+
+    @Test
+    void transformerShouldNeverTransform() throws Exception {
+        LineCapturingTransformer transformer = new LineCapturingTransformer();
+        byte[] bytes = readBytes(CapturedHolder.class);
+
+        assertThat(transformer.transform(new InMemoryClassLoader(), internalName(CapturedHolder.class), null, null, bytes))
+                .isNull();
+    }
+
+    @Test
+    void capturedClassShouldBeIndexedWithoutResource() throws Exception {
+        LineCapturingTransformer transformer = new LineCapturingTransformer();
+        InMemoryClassLoader loader = new InMemoryClassLoader();
+        byte[] bytes = readBytes(CapturedHolder.class);
+
+        transformer.transform(loader, internalName(CapturedHolder.class), null, null, bytes);
+        Class<?> definedClass = loader.define(CapturedHolder.class.getName(), bytes);
+
+        assertThat(LineNumberIndex.of(definedClass).getFirstLine("lambda", "()Ljava/lang/Runnable;"))
+                .isEqualTo(LineNumberIndex.of(CapturedHolder.class).getFirstLine("lambda", "()Ljava/lang/Runnable;"))
+                .isPositive();
+    }
+
+    @Test
+    void capturedIndexShouldBeTakenOnlyOnce() throws Exception {
+        LineCapturingTransformer transformer = new LineCapturingTransformer();
+        InMemoryClassLoader loader = new InMemoryClassLoader();
+        byte[] bytes = readBytes(CapturedHolder.class);
+
+        transformer.transform(loader, internalName(CapturedHolder.class), null, null, bytes);
+        Class<?> definedClass = loader.define(CapturedHolder.class.getName(), bytes);
+
+        assertThat(PendingLineIndexes.take(definedClass)).isNotNull();
+        assertThat(PendingLineIndexes.take(definedClass)).isNull();
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static byte[] readBytes(Class<?> type) throws IOException {
+        try (InputStream input = type.getClassLoader().getResourceAsStream(internalName(type) + ".class")) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * Class loader defining classes from memory, without any resource.
+     */
+    private static final class InMemoryClassLoader extends ClassLoader {
+
+        InMemoryClassLoader() {
+            super(LineCapturingTransformer_UT.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            return null;
+        }
+    }
+
+    private static final class CapturedHolder {
+        static Runnable lambda() {
+            return () -> {
+            };
+        }
+    }
+
+    private static final class WithoutLambdaHolder {
+        static Runnable anonymous() {
+            return new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineIndexStore_UT {
+
+    private static final String ACCEPT_DESC = "(Lorg/objectweb/asm/ClassVisitor;I)V";
+    private static final String TO_BYTE_ARRAY_DESC = "()[B";
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("line-index-store");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void flushedIndexShouldBeFoundByNextStore() throws Exception {
+        LineNumberIndex index = scan(ClassReader.class);
+        LineIndexStore store = new LineIndexStore(directory);
+        assertThat(store.lookup(ClassReader.class)).isNull();
+
+        store.record(ClassReader.class, index);
+        store.flush();
+
+        LineNumberIndex stored = new LineIndexStore(directory).lookup(ClassReader.class);
+        assertThat(stored).isNotNull();
+        assertThat(stored.size()).isEqualTo(index.size());
+        assertThat(stored.getFirstLine("accept", ACCEPT_DESC))
+                .isEqualTo(index.getFirstLine("accept", ACCEPT_DESC))
+                .isPositive();
+    }
+
+    @Test
+    void successiveFlushesShouldBeMerged() throws Exception {
+        LineIndexStore firstRun = new LineIndexStore(directory);
+        firstRun.record(ClassReader.class, scan(ClassReader.class));
+        firstRun.flush();
+
+        LineIndexStore secondRun = new LineIndexStore(directory);
+        assertThat(secondRun.lookup(ClassReader.class)).isNotNull();
+        secondRun.record(ClassWriter.class, scan(ClassWriter.class));
+        secondRun.flush();
+
+        LineIndexStore thirdRun = new LineIndexStore(directory);
+        assertThat(thirdRun.lookup(ClassReader.class)).isNotNull();
+        assertThat(thirdRun.lookup(ClassWriter.class).getFirstLine("toByteArray", TO_BYTE_ARRAY_DESC))
+                .isEqualTo(scan(ClassWriter.class).getFirstLine("toByteArray", TO_BYTE_ARRAY_DESC));
+        assertThat(storeFiles()).hasSize(1);
+    }
+
+    @Test
+    void classesOfDirectoriesShouldNotBeStored() throws Exception {
+        LineIndexStore store = new LineIndexStore(directory);
+
+        store.record(StaticLambdaHolder.class, scan(StaticLambdaHolder.class));
+        store.flush();
+
+        assertThat(new LineIndexStore(directory).lookup(StaticLambdaHolder.class)).isNull();
+        assertThat(storeFiles()).isEmpty();
+    }
+
+    @Test
+    void corruptedFileShouldBeIgnored() throws Exception {
+        LineIndexStore store = new LineIndexStore(directory);
+        store.record(ClassReader.class, scan(ClassReader.class));
+        store.flush();
+
+        for (Path file : storeFiles()) {
+            Files.write(file, new byte[]{ 'L', 'S', 'I', '1', 0x7F, 0, 0, 0 });
+        }
+
+        assertThat(new LineIndexStore(directory).lookup(ClassReader.class)).isNull();
+    }
+
+    private List<Path> storeFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private static LineNumberIndex scan(Class<?> type) throws IOException {
+        return LineNumberTableScanner.scan(ClassFileLocator.locate(type));
+    }
+
+}
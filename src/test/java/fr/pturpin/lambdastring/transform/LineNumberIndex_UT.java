@@ -0,0 +1,142 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import fr.pturpin.lambdastring.StaticMethodRefHolder;
+import fr.pturpin.lambdastring.strategy.LambdaToStringException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LineNumberIndex_UT {
+
+    @Test
+    void indexShouldBeBuiltOncePerClass() throws Exception {
+        LineNumberIndex index = LineNumberIndex.of(StaticMethodRefHolder.class);
+
+        assertThat(LineNumberIndex.of(StaticMethodRefHolder.class)).isSameAs(index);
+    }
+
+    @Test
+    void concurrentCallersShouldShareSameIndex() throws Exception {
+        int nbThreads = 16;
+        CyclicBarrier barrier = new CyclicBarrier(nbThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<LineNumberIndex>> futures = new ArrayList<>();
+            for (int i = 0; i < nbThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return LineNumberIndex.of(StaticLambdaHolder.class);
+                }));
+            }
+
+            LineNumberIndex index = LineNumberIndex.of(StaticLambdaHolder.class);
+            for (Future<LineNumberIndex> future : futures) {
+                assertThat(future.get()).isSameAs(index);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentCallersShouldNeverSeeUnresolvedLine() throws Exception {
+        int nbThreads = 16;
+        LambdaMetaInfo metaInfo = new LambdaMetaInfo(StaticMethodRefHolder.class,
+                StaticMethodRefHolder.class,
+                "staticMultilineMethod",
+                "()V",
+                6,
+                0);
+        CyclicBarrier barrier = new CyclicBarrier(nbThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < nbThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return metaInfo.getDeclarationLine().orElse(-1);
+                }));
+            }
+
+            for (Future<Integer> future : futures) {
+                assertThat(future.get()).isEqualTo(20);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void classWithoutResourceShouldFail() {
+        Class<?> lambdaClass = ((Runnable) () -> {}).getClass();
+
+        assertThatThrownBy(() -> LineNumberIndex.of(lambdaClass)).isInstanceOf(LambdaToStringException.class);
+        assertThatThrownBy(() -> LineNumberIndex.of(lambdaClass)).isInstanceOf(LambdaToStringException.class);
+    }
+
+    @Test
+    void indexShouldContainAllMethodsOfClass() throws Exception {
+        LineNumberIndex index = LineNumberIndex.of(StaticMethodRefHolder.class);
+
+        assertThat(index.getFirstLine("staticMethod", "()V")).isEqualTo(12);
+        assertThat(index.getFirstLine("staticLinedMethod", "()V")).isEqualTo(15);
+        assertThat(index.getFirstLine("staticMultilineMethod", "()V")).isEqualTo(20);
+        assertThat(index.getFirstLine("instanceMethod", "()V")).isEqualTo(25);
+    }
+
+    @Test
+    void unknownMethodShouldNotHaveLine() throws Exception {
+        LineNumberIndex index = LineNumberIndex.of(StaticMethodRefHolder.class);
+
+        assertThat(index.getFirstLine("staticMethod", "(I)V")).isEqualTo(-1);
+        assertThat(index.getFirstLine("unknownMethod", "()V")).isEqualTo(-1);
+    }
+
+    @Test
+    void emptyIndexShouldNotHaveLine() {
+        LineNumberIndex index = new LineNumberIndex.Builder().build();
+
+        assertThat(index.getFirstLine("method", "()V")).isEqualTo(-1);
+    }
+
+    @Test
+    void indexShouldSupportManyMethods() {
+        LineNumberIndex.Builder builder = new LineNumberIndex.Builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.put("lambda$main$" + i, "()V", i + 1);
+        }
+        LineNumberIndex index = builder.build();
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(index.getFirstLine("lambda$main$" + i, "()V")).isEqualTo(i + 1);
+        }
+        assertThat(index.getFirstLine("lambda$main$1000", "()V")).isEqualTo(-1);
+    }
+
+    @Test
+    void methodsWithCollidingHashesShouldHaveTheirOwnLine() {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+        LineNumberIndex.Builder builder = new LineNumberIndex.Builder();
+        builder.put("Aa", "()V", 1);
+        LineNumberIndex index = builder.build();
+
+        assertThat(index.getFirstLine("Aa", "()V")).isEqualTo(1);
+        assertThat(index.getFirstLine("BB", "()V")).isEqualTo(-1);
+
+        builder.put("BB", "()V", 2);
+        index = builder.build();
+
+        assertThat(index.getFirstLine("Aa", "()V")).isEqualTo(1);
+        assertThat(index.getFirstLine("BB", "()V")).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,277 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import fr.pturpin.lambdastring.StaticMethodRefHolder;
+import fr.pturpin.lambdastring.asm.FetchingFirstLineNumbersClassVisitor;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.Vector;
+import java.util.function.ToIntFunction;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LineNumberTableScanner_UT {
+
+    @Test
+    void scannerShouldFindSameLinesThanAsm() throws Exception {
+        for (Class<?> scannedClass : Arrays.asList(
+                StaticMethodRefHolder.class,
+                StaticLambdaHolder.class,
+                LambdaTestHolder.class,
+                UnicodeHolder.class,
+                LineNumberTableScanner_UT.class,
+                ClassReader.class,
+                String.class)) {
+            byte[] classFile = readBytes(scannedClass);
+            LineNumberIndex index = LineNumberTableScanner.scan(ByteBuffer.wrap(classFile));
+
+            Map<String, Integer> asmLines = new LinkedHashMap<>();
+            new ClassReader(classFile).accept(new FetchingFirstLineNumbersClassVisitor(
+                    (name, desc, line) -> asmLines.put(name + desc, line)), ClassReader.SKIP_FRAMES);
+
+            assertThat(asmLines).isNotEmpty();
+            asmLines.forEach((method, line) -> {
+                int descStart = method.indexOf('(');
+                assertThat(index.getFirstLine(method.substring(0, descStart), method.substring(descStart)))
+                        .as(scannedClass.getName() + "#" + method)
+                        .isEqualTo(line);
+            });
+        }
+    }
+
+    @Test
+    void scannerShouldFindSameCreationSitesThanAsm() throws Exception {
+        for (Class<?> scannedClass : Arrays.asList(
+                StaticMethodRefHolder.class,
+                StaticLambdaHolder.class,
+                SwitchingHolder.class,
+                LineNumberTableScanner_UT.class)) {
+            byte[] classFile = readBytes(scannedClass);
+            LineNumberIndex index = LineNumberTableScanner.scan(ByteBuffer.wrap(classFile));
+
+            Map<Handle, Integer> asmLines = new LinkedHashMap<>();
+            new ClassReader(classFile).accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                                 String[] exceptions) {
+                    return new MethodVisitor(Opcodes.ASM9) {
+                        private int line;
+
+                        @Override
+                        public void visitLineNumber(int line, Label start) {
+                            this.line = line;
+                        }
+
+                        @Override
+                        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+                            if (bsm.getOwner().equals("java/lang/invoke/LambdaMetafactory")) {
+                                asmLines.putIfAbsent((Handle) bsmArgs[1], line);
+                            }
+                        }
+                    };
+                }
+            }, ClassReader.SKIP_FRAMES);
+
+            assertThat(asmLines).isNotEmpty();
+            asmLines.forEach((implMethod, line) -> assertThat(index.getCreationLine(
+                    implMethod.getOwner().replace('/', '.'), implMethod.getName(), implMethod.getDesc()))
+                    .as(scannedClass.getName() + " creating " + implMethod)
+                    .isEqualTo(line));
+        }
+    }
+
+    @Test
+    void scannerShouldListSameLambdaSitesThanAsm() throws Exception {
+        for (Class<?> scannedClass : Arrays.asList(
+                StaticMethodRefHolder.class,
+                StaticLambdaHolder.class,
+                SwitchingHolder.class,
+                UnicodeHolder.class,
+                LineNumberTableScanner_UT.class)) {
+            byte[] classFile = readBytes(scannedClass);
+            Set<List<Object>> sites = new HashSet<>();
+            LineNumberTableScanner.scanLambdaSites(ByteBuffer.wrap(classFile),
+                    (interfaceMethodName, factoryDesc, implKind, implOwner, implName, implDesc) -> sites.add(
+                            Arrays.asList(interfaceMethodName, factoryDesc, implKind, implOwner, implName, implDesc)));
+
+            Set<List<Object>> asmSites = new HashSet<>();
+            new ClassReader(classFile).accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                                 String[] exceptions) {
+                    return new MethodVisitor(Opcodes.ASM9) {
+                        @Override
+                        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+                            if (bsm.getOwner().equals("java/lang/invoke/LambdaMetafactory")) {
+                                Handle impl = (Handle) bsmArgs[1];
+                                asmSites.add(Arrays.asList(name, desc, impl.getTag(), impl.getOwner(),
+                                        impl.getName(), impl.getDesc()));
+                            }
+                        }
+                    };
+                }
+            }, ClassReader.SKIP_FRAMES);
+
+            assertThat(sites).as(scannedClass.getName()).isEqualTo(asmSites);
+        }
+    }
+
+    @Test
+    void creationSiteShouldBeFoundByNameWhenClassDiffers() throws Exception {
+        LineNumberIndex index = LineNumberTableScanner.scan(ByteBuffer.wrap(readBytes(SwitchingHolder.class)));
+
+        int line = index.getCreationLine(Stack.class.getName(), "size", "()I");
+        assertThat(line).isPositive();
+        assertThat(index.getCreationLine(Vector.class.getName(), "size", "()I")).isEqualTo(line);
+        assertThat(index.getCreationLine(Stack.class.getName(), "unknown", "()I")).isEqualTo(-1);
+    }
+
+    @Test
+    void nonAsciiNamesShouldBeHashedAsStrings() throws Exception {
+        LineNumberIndex index = LineNumberTableScanner.scan(ByteBuffer.wrap(readBytes(UnicodeHolder.class)));
+
+        assertThat(index.getFirstLine("m\u00e9thode", "()V")).isPositive();
+        assertThat(index.getFirstLine("\u03bb", "()V")).isPositive();
+        assertThat(index.getFirstLine("\uD835\uDD38", "()V")).isPositive();
+    }
+
+    @Test
+    void methodsWithCollidingHashesShouldHaveTheirOwnLines() throws Exception {
+        LineNumberIndex index = LineNumberTableScanner.scan(ByteBuffer.wrap(readBytes(CollidingHolder.class)));
+        String holderName = CollidingHolder.class.getName();
+
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+        assertThat(index.getFirstLine("Aa", "()V")).isPositive()
+                .isNotEqualTo(index.getFirstLine("BB", "()V"));
+        assertThat(index.getCreationLine(holderName, "Aa", "()V")).isPositive()
+                .isNotEqualTo(index.getCreationLine(holderName, "BB", "()V"));
+        assertThat(index.getFirstLine("Ab", "()V")).isEqualTo(-1);
+    }
+
+    @Test
+    void scannerShouldNotModifyBufferPosition() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(readBytes(StaticLambdaHolder.class));
+
+        LineNumberTableScanner.scan(buffer);
+
+        assertThat(buffer.position()).isZero();
+    }
+
+    @Test
+    void invalidClassFileShouldFail() throws Exception {
+        byte[] classFile = readBytes(StaticLambdaHolder.class);
+
+        assertThatThrownBy(() -> LineNumberTableScanner.scan(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6 })))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LineNumberTableScanner.scan(ByteBuffer.wrap(Arrays.copyOf(classFile, 100))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] readBytes(Class<?> type) throws IOException {
+        String resourceName = type.getName().replace('.', '/') + ".class";
+        ClassLoader classLoader = type.getClassLoader() == null ? ClassLoader.getSystemClassLoader() : type.getClassLoader();
+        try (InputStream input = classLoader.getResourceAsStream(resourceName)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * Holder of methods whose names are encoded in two bytes, three bytes and as a surrogate pair in modified UTF8.
+     */
+    @SuppressWarnings({ "unused", "NonAsciiCharacters" })
+    private static final class UnicodeHolder {
+
+        static void m\u00e9thode() {
+        }
+
+        static void \u03bb() {
+        }
+
+        static void \uD835\uDD38() {
+        }
+    }
+
+    /**
+     * Holder of methods whose names have the same {@link String#hashCode()}.
+     */
+    @SuppressWarnings("unused")
+    private static final class CollidingHolder {
+
+        static void Aa() {
+        }
+
+        static void BB() {
+        }
+
+        static Runnable aa() {
+            return CollidingHolder::Aa;
+        }
+
+        static Runnable bb() {
+            return CollidingHolder::BB;
+        }
+    }
+
+    /**
+     * Holder of lambdas created after instructions of variable length: table switch, lookup switch and wide.
+     */
+    @SuppressWarnings("unused")
+    private static final class SwitchingHolder {
+
+        static Supplier<String> select(int value) {
+            switch (value) {
+                case 0:
+                    return () -> "zero";
+                case 1:
+                    return () -> "one";
+                case 2:
+                    return () -> "two";
+                default:
+                    break;
+            }
+            switch (value) {
+                case -1000:
+                    return () -> "minus thousand";
+                case 1000000:
+                    return () -> "million";
+                default:
+                    break;
+            }
+            int wide = value;
+            wide += 1000;
+            int result = wide;
+            return () -> String.valueOf(result);
+        }
+
+        static ToIntFunction<Stack<Object>> size() {
+            return Stack::size;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoutedLambdaToStringLinker_UT {
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(MainStrategy.class.getName()
+                + ",routes=" + StaticLambdaHolder.class.getName() + ":" + RoutedStrategy.class.getName()
+                + ";" + Nested.class.getName() + ":" + NestedStrategy.class.getName());
+    }
+
+    @Test
+    void lambdaWithoutRouteShouldBeLinkedToMainStrategy() {
+        Lambda lambda = () -> {};
+        Lambda methodRef = LambdaTestHolder::body;
+
+        assertThat(lambda.toString()).isEqualTo("main");
+        assertThat(methodRef.toString()).isEqualTo("main");
+    }
+
+    @Test
+    void lambdaOfRoutedClassShouldBeLinkedToRoutedStrategy() {
+        assertThat(StaticLambdaHolder.STATIC_FINAL_LAMBDA.toString()).isEqualTo("routed");
+        assertThat(Nested.LAMBDA.toString()).isEqualTo("nested");
+    }
+
+    private static final class Nested {
+        static final Lambda LAMBDA = () -> {};
+    }
+
+    private static final class MainStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "main";
+        }
+    }
+
+    private static final class RoutedStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "routed";
+        }
+    }
+
+    private static final class NestedStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "nested";
+        }
+    }
+
+}
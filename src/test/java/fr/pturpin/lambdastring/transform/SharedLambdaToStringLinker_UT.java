@@ -0,0 +1,90 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedLambdaToStringLinker_UT {
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(CountingCallsToStringStrategy.class.getName() + ",shared-strategy=true");
+    }
+
+    @Test
+    void lambdaStrategyShouldBeShared() {
+        Lambda lambda1 = () -> {};
+        Lambda lambda2 = () -> {};
+        Lambda methodRef = LambdaTestHolder::body;
+
+        int first = Integer.parseInt(lambda1.toString());
+        assertThat(lambda2.toString()).isEqualTo(String.valueOf(first + 1));
+        assertThat(methodRef.toString()).isEqualTo(String.valueOf(first + 2));
+        assertThat(lambda1.toString()).isEqualTo(String.valueOf(first + 3));
+    }
+
+    @Test
+    void sharedCallSitesShouldBeLinkedToTheSameStrategy() throws Throwable {
+        String strategyClassName = CountingCallsToStringStrategy.class.getName();
+        MethodHandles.Lookup caller = MethodHandles.lookup().in(FakeLambda.class);
+        MethodType type = MethodType.methodType(String.class, Object.class);
+        Object lambda = new FakeLambda();
+
+        CallSite callSite1 = LambdaToStringLinker.linkShared(caller, "format", type, strategyClassName);
+        CallSite callSite2 = LambdaToStringLinker.linkShared(caller, "format", type, strategyClassName);
+        CallSite notShared = LambdaToStringLinker.link(caller, "format", type, strategyClassName);
+
+        int first = Integer.parseInt((String) callSite1.getTarget().invoke(lambda));
+        assertThat(callSite2.getTarget().invoke(lambda)).isEqualTo(String.valueOf(first + 1));
+        assertThat(notShared.getTarget().invoke(lambda)).isEqualTo("0");
+    }
+
+    @Test
+    void sharedCompactCallSitesShouldBeLinkedToTheSameStrategy() throws Throwable {
+        String strategyClassName = CountingCallsToStringStrategy.class.getName();
+        MethodHandles.Lookup caller = MethodHandles.lookup().in(FakeLambda.class);
+        MethodType type = MethodType.methodType(String.class, Object.class);
+        Object lambda = new FakeLambda();
+
+        CallSite callSite1 = LambdaToStringLinker.linkSharedToString(caller, "toString", type, strategyClassName);
+        CallSite callSite2 = LambdaToStringLinker.linkSharedToString(caller, "toString", type, strategyClassName);
+
+        int first = Integer.parseInt((String) callSite1.getTarget().invoke(lambda));
+        assertThat(callSite2.getTarget().invoke(lambda)).isEqualTo(String.valueOf(first + 1));
+    }
+
+    /**
+     * Class declaring its meta information as the injected lambda classes.
+     */
+    private static final class FakeLambda {
+        @SuppressWarnings("unused")
+        private static LambdaMetaInfo lambdaMetaInfo$() {
+            return new LambdaMetaInfo(FakeLambda.class,
+                    FakeLambda.class,
+                    "lambda$0",
+                    "()V",
+                    MethodHandleInfo.REF_invokeStatic,
+                    Modifier.PRIVATE | Modifier.STATIC);
+        }
+    }
+
+    private static final class CountingCallsToStringStrategy implements LambdaToStringStrategy {
+        private int count = 0;
+
+        @Override
+        public synchronized String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return String.valueOf(count++);
+        }
+    }
+}
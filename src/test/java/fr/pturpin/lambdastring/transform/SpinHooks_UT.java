@@ -0,0 +1,69 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.DefaultToStringStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpinHooks_UT {
+
+    @BeforeAll
+    static void beforeAll() {
+        LambdaAgentLoader.loadAgent(DefaultToStringStrategy.class.getName() + ",eager-lines=true");
+    }
+
+    @AfterEach
+    void tearDown() {
+        LambdaSpinListeners.uninstall();
+    }
+
+    @Test
+    void hooksShouldBeDefinedInBootstrapClassLoader() throws Exception {
+        assertThat(SpinHooks.isInstalled()).isTrue();
+        assertThat(Class.forName(SpinHooks.HOOKS_CLASS_NAME, false, null).getClassLoader()).isNull();
+    }
+
+    @Test
+    void installedListenerShouldBeNotified() {
+        List<Class<?>> targetClasses = new CopyOnWriteArrayList<>();
+        LambdaSpinListeners.install((targetClass, implInfo) -> targetClasses.add(targetClass));
+
+        Runnable lambda = () -> {
+        };
+
+        assertThat(targetClasses).contains(SpinHooks_UT.class);
+        assertThat(lambda.toString()).contains(SpinHooks_UT.class.getSimpleName());
+    }
+
+    @Test
+    void throwingListenerShouldNotDisturbLinkage() {
+        LambdaSpinListeners.install((targetClass, implInfo) -> {
+            throw new IllegalStateException("Failing listener");
+        });
+
+        Runnable lambda = () -> {
+        };
+
+        assertThat(lambda.toString()).contains(SpinHooks_UT.class.getSimpleName());
+    }
+
+    @Test
+    void uninstalledListenerShouldNotBeNotified() {
+        List<Class<?>> targetClasses = new CopyOnWriteArrayList<>();
+        LambdaSpinListeners.install((targetClass, implInfo) -> targetClasses.add(targetClass));
+        LambdaSpinListeners.uninstall();
+
+        Runnable lambda = () -> {
+        };
+
+        assertThat(targetClasses).isEmpty();
+        assertThat(SpinHooks.get("spinListener")).isNull();
+    }
+
+}
@@ -0,0 +1,52 @@
+package fr.pturpin.lambdastring.transform;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StrategyRouter_UT {
+
+    @Test
+    void routeShouldMatchPackagesAndClasses() {
+        StrategyRouter router = StrategyRouter.parse("com.app:my.Rich; org.lib.:my.Cheap ;com.app.Main:my.Main");
+
+        assertThat(router.getStrategyClassName("com.app.Service")).isEqualTo("my.Rich");
+        assertThat(router.getStrategyClassName("com.app.sub.Service$Inner")).isEqualTo("my.Rich");
+        assertThat(router.getStrategyClassName("org.lib.Util")).isEqualTo("my.Cheap");
+        assertThat(router.getStrategyClassName("com.app.Main")).isEqualTo("my.Main");
+        assertThat(router.getStrategyClassName("com.app.Main$1")).isEqualTo("my.Main");
+    }
+
+    @Test
+    void routeShouldNotMatchOtherPackages() {
+        StrategyRouter router = StrategyRouter.parse("com.app:my.Rich;org.lib.:my.Cheap");
+
+        assertThat(router.getStrategyClassName("com.application.Service")).isNull();
+        assertThat(router.getStrategyClassName("org.lib")).isNull();
+        assertThat(router.getStrategyClassName("Main")).isNull();
+    }
+
+    @Test
+    void longestRouteShouldWin() {
+        StrategyRouter router = StrategyRouter.parse("com:my.Any;com.app.core:my.Core;com.app:my.App");
+
+        assertThat(router.getStrategyClassName("com.app.core.Service")).isEqualTo("my.Core");
+        assertThat(router.getStrategyClassName("com.app.Service")).isEqualTo("my.App");
+        assertThat(router.getStrategyClassName("com.other.Service")).isEqualTo("my.Any");
+        assertThat(router.getStrategyClassNames()).containsExactly("my.Core", "my.App", "my.Any");
+    }
+
+    @Test
+    void invalidRoutesShouldBeRejected() {
+        assertThatThrownBy(() -> StrategyRouter.parse("com.app"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StrategyRouter.parse("com.app:"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StrategyRouter.parse(":my.Rich"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StrategyRouter.parse("com.app:my.Rich;com.app:my.Cheap"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,79 @@
+package fr.pturpin.lambdastring.transform;
+
+import fr.pturpin.lambdastring.LambdaTestHolder;
+import fr.pturpin.lambdastring.LambdaTestHolder.Lambda;
+import fr.pturpin.lambdastring.StaticLambdaHolder;
+import fr.pturpin.lambdastring.agent.LambdaAgentLoader;
+import fr.pturpin.lambdastring.strategy.LambdaToStringStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StrategySwap_UT {
+
+    @BeforeEach
+    void beforeEach() {
+        LambdaAgentLoader.loadAgent(FirstStrategy.class.getName() + ",switchable=true");
+    }
+
+    @Test
+    void reattachingShouldSwapTheStrategy() {
+        Lambda lambda = () -> {};
+        Lambda methodRef = LambdaTestHolder::body;
+
+        assertThat(lambda.toString()).isEqualTo("first");
+        assertThat(methodRef.toString()).isEqualTo("first");
+
+        LambdaAgentLoader.loadAgent(SecondStrategy.class.getName() + ",switchable=true");
+        assertThat(lambda.toString()).isEqualTo("second");
+        assertThat(methodRef.toString()).isEqualTo("second");
+
+        LambdaAgentLoader.loadAgent(FirstStrategy.class.getName() + ",switchable=true");
+        assertThat(lambda.toString()).isEqualTo("first");
+        assertThat(methodRef.toString()).isEqualTo("first");
+    }
+
+    @Test
+    void lambdaLinkedAfterSwapShouldUseTheSwappedStrategy() {
+        LambdaAgentLoader.loadAgent(SecondStrategy.class.getName() + ",switchable=true");
+        Lambda lambda = () -> {};
+
+        assertThat(lambda.toString()).isEqualTo("second");
+    }
+
+    @Test
+    void reattachingShouldSwapTheRoutesAndTheState() {
+        Lambda lambda = () -> {};
+        Lambda routed = StaticLambdaHolder.STATIC_LAMBDA;
+
+        LambdaAgentLoader.loadAgent(FirstStrategy.class.getName() + ",switchable=true,routes="
+                + StaticLambdaHolder.class.getName() + ":" + SecondStrategy.class.getName());
+        assertThat(lambda.toString()).isEqualTo("first");
+        assertThat(routed.toString()).isEqualTo("second");
+
+        LambdaAgentLoader.loadAgent(FirstStrategy.class.getName() + ",switchable=true,enabled=false");
+        assertThat(LambdaToStringSwitch.isEnabled()).isFalse();
+        assertThat(routed.toString())
+                .isEqualTo(routed.getClass().getName() + "@" + Integer.toHexString(routed.hashCode()));
+
+        LambdaAgentLoader.loadAgent(FirstStrategy.class.getName() + ",switchable=true");
+        assertThat(LambdaToStringSwitch.isEnabled()).isTrue();
+        assertThat(routed.toString()).isEqualTo("first");
+    }
+
+    private static final class FirstStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "first";
+        }
+    }
+
+    private static final class SecondStrategy implements LambdaToStringStrategy {
+        @Override
+        public String createToString(Object lambda, LambdaMetaInfo metaInfo) {
+            return "second";
+        }
+    }
+
+}